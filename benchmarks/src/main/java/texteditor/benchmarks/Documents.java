@@ -0,0 +1,118 @@
+package texteditor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+
+/**
+ * Creates the documents the benchmarks work on. The documents are lines of
+ * words of varying length, made from a fixed seed, so every run works on the
+ * same text. Sizes are given as strings like "1KB", "64MB" or "1GB".
+ */
+final class Documents {
+
+
+    /**
+     * The words documents are made of. Every document contains "needle" about
+     * once every few lines, which is what the search benchmarks look for.
+     */
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "editor",
+        "document", "line", "text", "buffer", "piece", "table", "search", "needle",
+        "caret", "scroll", "tab", "save", "open", "file", "chunk", "charset", "index"
+    };
+
+
+    /**
+     * The longest a line gets before it is broken, in characters.
+     */
+    private static final int MAX_LINE_LENGTH = 120;
+
+
+    /**
+     * Documents is not meant to be created.
+     */
+    private Documents() {
+    }
+
+
+    /**
+     * Parses a size like "1KB", "64MB" or "1GB".
+     *
+     * @param size  The size.
+     * @return  The size in characters or bytes.
+     */
+    static long parseSize(String size) {
+        String upper = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if(upper.endsWith("KB")) {
+            unit = 1024;
+        } else if(upper.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if(upper.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        String digits = unit == 1 ? upper : upper.substring(0, upper.length() - 2);
+        return Long.parseLong(digits.trim()) * unit;
+    }
+
+
+    /**
+     * Creates the text of a document.
+     *
+     * @param size  The size of the document, as parsed by parseSize.
+     * @return  The text, which is exactly that many characters long.
+     */
+    static String text(String size) {
+        long length = parseSize(size);
+        if(length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A document of " + size + " does not fit in a string.");
+        }
+
+        StringBuilder text = new StringBuilder((int)length);
+        Random random = new Random(42);
+        int lineLength = 0;
+        while(text.length() < length) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if(lineLength + word.length() + 1 > random.nextInt(MAX_LINE_LENGTH) + 8) {
+                text.append('\n');
+                lineLength = 0;
+            } else if(lineLength > 0) {
+                text.append(' ');
+                lineLength++;
+            }
+            text.append(word);
+            lineLength += word.length();
+        }
+        text.setLength((int)length);
+        return text.toString();
+    }
+
+
+    /**
+     * Writes a document to a temporary file as UTF-8. Documents too large to
+     * fit in a string are written a piece at a time.
+     *
+     * @param size  The size of the document, as parsed by parseSize.
+     * @return  The file, which is deleted when the JVM exits.
+     * @throws IOException  If the file could not be written.
+     */
+    static File file(String size) throws IOException {
+        long length = parseSize(size);
+        File file = File.createTempFile("benchmark-" + size + "-", ".txt");
+        file.deleteOnExit();
+
+        String piece = text(length < 64 * 1024 * 1024 ? size : "64MB");
+        try(BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for(long written = 0; written < length; written += piece.length()) {
+                writer.write(piece, 0, (int)Math.min(piece.length(), length - written));
+            }
+        }
+        return file;
+    }
+}
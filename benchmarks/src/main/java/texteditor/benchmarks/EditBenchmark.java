@@ -0,0 +1,130 @@
+package texteditor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.EditingArea;
+
+
+/**
+ * Measures what happens each time the text of an EditingArea changes: the
+ * document, the line index, the undo journal and the tracking of whether the
+ * document has been edited are all updated. Each invocation types a character
+ * in the middle of the document and deletes it again, so the document stays
+ * the same size. editFarApart instead edits a quarter and three quarters of
+ * the way through the document in turn, which is the worst case for the line
+ * index. The area is not shown in a scene, so nothing else touches it
+ * and it is edited on the benchmark thread, without the cost of handing each
+ * edit to the JavaFX thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class EditBenchmark {
+
+
+    /**
+     * The size of the document.
+     */
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+
+    /**
+     * The area that is edited.
+     */
+    private EditingArea editingArea;
+
+
+    /**
+     * Where the edits are made.
+     */
+    private int offset;
+
+
+    /**
+     * Where the edits far apart are made, in turn.
+     */
+    private int[] farOffsets;
+
+
+    /**
+     * Which of farOffsets the next far edit is made at.
+     */
+    private int nextFar;
+
+
+    /**
+     * Starts JavaFX and creates the document.
+     *
+     * @throws Exception    If the document could not be created.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Fx.start();
+        String text = Documents.text(size);
+        editingArea = Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            area.resetHasBeenEdited();
+            return area;
+        });
+        offset = text.length() / 2;
+        farOffsets = new int[] { text.length() / 4, text.length() * 3 / 4 };
+    }
+
+
+    /**
+     * Types a character and deletes it.
+     *
+     * @return  Whether or not the area has been edited.
+     */
+    @Benchmark
+    public boolean typeCharacter() {
+        editingArea.replaceText(offset, offset, "x");
+        editingArea.replaceText(offset, offset + 1, "");
+        return editingArea.getHasBeenEdited();
+    }
+
+
+    /**
+     * Breaks a line and joins it again, which also changes the line count.
+     *
+     * @return  Whether or not the area has been edited.
+     */
+    @Benchmark
+    public boolean typeNewline() {
+        editingArea.replaceText(offset, offset, "\n");
+        editingArea.replaceText(offset, offset + 1, "");
+        return editingArea.getHasBeenEdited();
+    }
+
+
+    /**
+     * Breaks a line and joins it again half of the document away from the
+     * edit before, so that the line index moves its gap over half of the
+     * lines each time.
+     *
+     * @return  Whether or not the area has been edited.
+     */
+    @Benchmark
+    public boolean editFarApart() {
+        int at = farOffsets[nextFar];
+        nextFar = 1 - nextFar;
+        editingArea.replaceText(at, at, "\n");
+        editingArea.replaceText(at, at + 1, "");
+        return editingArea.getHasBeenEdited();
+    }
+}
@@ -0,0 +1,130 @@
+package texteditor.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+
+
+/**
+ * Starts the JavaFX toolkit for the benchmarks and runs work on its thread.
+ * The toolkit is started once per JVM, and the benchmarks are forked with the
+ * headless Monocle platform so they can run on machines without a display.
+ */
+final class Fx {
+
+
+    /**
+     * Whether or not the toolkit has been started.
+     */
+    private static boolean started = false;
+
+
+    /**
+     * Fx is not meant to be created.
+     */
+    private Fx() {
+    }
+
+
+    /**
+     * Starts the JavaFX toolkit if it has not been started yet.
+     *
+     * @throws InterruptedException If the thread was interrupted while waiting
+     *                              for the toolkit to start.
+     */
+    static synchronized void start() throws InterruptedException {
+        if(started) {
+            return;
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Platform.startup(latch::countDown);
+        Platform.setImplicitExit(false);
+        latch.await();
+        started = true;
+    }
+
+
+    /**
+     * Runs work on the JavaFX thread and waits for it to finish.
+     *
+     * @param <T>       The type of the result.
+     * @param callable  The work to run.
+     * @return  The result of the work.
+     * @throws Exception    If the work threw an exception.
+     */
+    static <T> T call(Callable<T> callable) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch(Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        }
+    }
+
+
+    /**
+     * Creates a task on the JavaFX thread, starts it there, and waits until
+     * the handlers of its last state have run, so whatever the task does on
+     * the JavaFX thread when it is done is part of the time measured.
+     *
+     * @param <T>       The type of the task.
+     * @param creator   Creates the task.
+     * @param starter   Starts the task.
+     * @return  The task, once it is done.
+     * @throws Exception    If the task failed or was cancelled.
+     */
+    static <T extends Task<?>> T run(Callable<T> creator, TaskStarter<T> starter) throws Exception {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        call(() -> {
+            T task = creator.call();
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                done.complete(task);
+            });
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, e -> {
+                done.completeExceptionally(task.getException());
+            });
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, e -> {
+                done.completeExceptionally(new IllegalStateException("The task was cancelled."));
+            });
+            starter.start(task);
+            return task;
+        });
+
+        try {
+            return done.get();
+        } catch(ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        }
+    }
+
+
+    /**
+     * Starts a task on the JavaFX thread.
+     *
+     * @param <T>   The type of the task.
+     */
+    @FunctionalInterface
+    interface TaskStarter<T> {
+
+
+        /**
+         * Starts a task.
+         *
+         * @param task  The task to start.
+         */
+        void start(T task);
+    }
+}
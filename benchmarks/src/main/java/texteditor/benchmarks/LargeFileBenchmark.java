@@ -0,0 +1,91 @@
+package texteditor.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import javafx.concurrent.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.LargeFileArea;
+
+
+/**
+ * Measures opening a file of LargeFileArea.THRESHOLD or more, which is mapped
+ * instead of loaded, until all of its lines have been indexed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class LargeFileBenchmark {
+
+
+    /**
+     * The size of the file.
+     */
+    @Param({"128MB", "1GB"})
+    public String size;
+
+
+    /**
+     * The file that is opened.
+     */
+    private File file;
+
+
+    /**
+     * Starts JavaFX and writes the file.
+     *
+     * @throws Exception    If the file could not be written.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Fx.start();
+        file = Documents.file(size);
+    }
+
+
+    /**
+     * Deletes the file.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    /**
+     * Opens the file as a LargeFileArea and indexes all of its lines.
+     *
+     * @return  The amount of lines in the file.
+     * @throws Exception    If the file could not be mapped.
+     */
+    @Benchmark
+    public int largeFileArea() throws Exception {
+        LargeFileArea[] area = new LargeFileArea[1];
+        Task<Void> indexer = Fx.run(() -> {
+            area[0] = new LargeFileArea(file);
+            return area[0].startIndexing();
+        }, task -> {
+            // Indexing starts as soon as the task is created.
+        });
+
+        int lines = area[0].getMappedDocument().getLineCount();
+        Fx.call(() -> {
+            area[0].close();
+            return null;
+        });
+        return lines;
+    }
+}
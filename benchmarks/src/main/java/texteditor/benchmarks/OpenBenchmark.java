@@ -0,0 +1,106 @@
+package texteditor.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.EditingArea;
+import texteditor.FileLoader;
+
+
+/**
+ * Measures opening a file, from reading the first byte to the document being
+ * ready to edit. FileLoader is compared with the readLine and appendText loop
+ * the editor used to open files with. Larger files are not loaded into a
+ * document, and are measured by LargeFileBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class OpenBenchmark {
+
+
+    /**
+     * The size of the file.
+     */
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+
+    /**
+     * The file that is opened.
+     */
+    private File file;
+
+
+    /**
+     * Starts JavaFX and writes the file.
+     *
+     * @throws Exception    If the file could not be written.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Fx.start();
+        file = Documents.file(size);
+    }
+
+
+    /**
+     * Deletes the file.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    /**
+     * Opens the file with a FileLoader, the way the editor opens files smaller
+     * than LargeFileArea.THRESHOLD.
+     *
+     * @return  The area the file was loaded into.
+     * @throws Exception    If the file could not be loaded.
+     */
+    @Benchmark
+    public EditingArea fileLoader() throws Exception {
+        return Fx.run(() -> new FileLoader(file, new EditingArea()), FileLoader::start).getEditingArea();
+    }
+
+
+    /**
+     * Opens the file by appending it a line at a time on the JavaFX thread,
+     * the way the editor used to open every file.
+     *
+     * @return  The area the file was loaded into.
+     * @throws Exception    If the file could not be read.
+     */
+    @Benchmark
+    public EditingArea readLineAppendText() throws Exception {
+        return Fx.call(() -> {
+            EditingArea editingArea = new EditingArea();
+            try(BufferedReader br = new BufferedReader(new FileReader(file))) {
+                String line;
+                while((line = br.readLine()) != null) {
+                    editingArea.appendText(line + "\n");
+                }
+            }
+            editingArea.resetHasBeenEdited();
+            return editingArea;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package texteditor.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.EditingArea;
+import texteditor.FileSaver;
+
+
+/**
+ * Measures saving a document with a FileSaver, from taking the snapshot on the
+ * JavaFX thread to the area being marked as saved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class SaveBenchmark {
+
+
+    /**
+     * The size of the document.
+     */
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+
+    /**
+     * The area that is saved.
+     */
+    private EditingArea editingArea;
+
+
+    /**
+     * The file the document is saved to.
+     */
+    private File file;
+
+
+    /**
+     * Starts JavaFX and creates the document.
+     *
+     * @throws Exception    If the document could not be created.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Fx.start();
+        String text = Documents.text(size);
+        file = File.createTempFile("benchmark-save-", ".txt");
+        file.deleteOnExit();
+        editingArea = Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            area.setCurrentFile(file);
+            return area;
+        });
+    }
+
+
+    /**
+     * Deletes the file.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    /**
+     * Saves the document.
+     *
+     * @return  Whether or not the area was marked as saved.
+     * @throws Exception    If the file could not be written.
+     */
+    @Benchmark
+    public boolean fileSaver() throws Exception {
+        Fx.run(() -> new FileSaver(file, editingArea), FileSaver::start);
+        return editingArea.getHasBeenEdited();
+    }
+}
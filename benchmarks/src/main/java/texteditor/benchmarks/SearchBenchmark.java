@@ -0,0 +1,111 @@
+package texteditor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.EditingArea;
+import texteditor.SearchQuery;
+import texteditor.SearchTask;
+
+
+/**
+ * Measures searching a document with a SearchTask, from taking the snapshot to
+ * every match having been handed to the EditingArea. A document of 1GB needs
+ * a heap of several gigabytes, which the fork is given.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class SearchBenchmark {
+
+
+    /**
+     * The size of the document.
+     */
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String size;
+
+
+    /**
+     * The area that is searched.
+     */
+    private EditingArea editingArea;
+
+
+    /**
+     * Starts JavaFX and creates the document.
+     *
+     * @throws Exception    If the document could not be created.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Fx.start();
+        String text = Documents.text(size);
+        editingArea = Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            return area;
+        });
+    }
+
+
+    /**
+     * Searches for plain text, ignoring case.
+     *
+     * @return  The amount of matches.
+     * @throws Exception    If the search failed.
+     */
+    @Benchmark
+    public int plainText() throws Exception {
+        return search(new SearchQuery("Needle", false, false));
+    }
+
+
+    /**
+     * Searches for plain text, matching case.
+     *
+     * @return  The amount of matches.
+     * @throws Exception    If the search failed.
+     */
+    @Benchmark
+    public int plainTextMatchCase() throws Exception {
+        return search(new SearchQuery("needle", false, true));
+    }
+
+
+    /**
+     * Searches for a regular expression.
+     *
+     * @return  The amount of matches.
+     * @throws Exception    If the search failed.
+     */
+    @Benchmark
+    public int regex() throws Exception {
+        return search(new SearchQuery("ne+dle \\w+", true, true));
+    }
+
+
+    /**
+     * Searches the document and waits for the matches to be added to it.
+     *
+     * @param query What to search for.
+     * @return  The amount of matches.
+     * @throws Exception    If the search failed.
+     */
+    private int search(SearchQuery query) throws Exception {
+        SearchTask task = Fx.run(() -> new SearchTask(editingArea, query), SearchTask::start);
+        return Fx.call(task::getValue);
+    }
+}
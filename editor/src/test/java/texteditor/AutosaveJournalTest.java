@@ -0,0 +1,192 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests writing journals, and recovering documents from the journals left
+ * behind.
+ */
+class AutosaveJournalTest {
+
+
+    /**
+     * The directory the journals are kept in.
+     */
+    static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".texteditor", "autosave");
+
+
+    /**
+     * Starts each test without any journals.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        AutosaveJournal.shutdown(true, 5);
+        deleteJournals();
+    }
+
+
+    /**
+     * Deletes the journals the test kept.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        AutosaveJournal.shutdown(true, 5);
+        deleteJournals();
+    }
+
+
+    /**
+     * The edits made after the snapshot are replayed on top of it.
+     */
+    @Test
+    void recoversEditsAfterSnapshot() throws Exception {
+        crash("crashed", "Hello", ", world", "!\nSecond line");
+
+        AutosaveJournal.Recovery recovery = recoverOne();
+        assertEquals("crashed", recovery.getId());
+        assertEquals("Hello, world!\nSecond line", recovery.getText());
+        assertNull(recovery.getFile());
+    }
+
+
+    /**
+     * Replaying stops at an edit that was only partly written.
+     */
+    @Test
+    void stopsAtTornEdit() throws Exception {
+        crash("crashed", "one", " two", " three");
+
+        Path journal = DIRECTORY.resolve("crashed.journal");
+        try(FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+        assertEquals("one two", recoverOne().getText());
+    }
+
+
+    /**
+     * A journal written after an older snapshot is not replayed on top of a
+     * newer one.
+     */
+    @Test
+    void ignoresJournalOfOtherGeneration() throws Exception {
+        crash("crashed", "snapshot", " edit");
+
+        Path journal = DIRECTORY.resolve("crashed.journal");
+        ByteBuffer generation = ByteBuffer.allocate(8);
+        generation.putLong(readGeneration(journal) + 1).flip();
+        try(FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.write(generation, 8);
+        }
+        assertEquals("snapshot", recoverOne().getText());
+    }
+
+
+    /**
+     * A journal reopened for a recovered document writes its first snapshot
+     * with a generation the old journal does not have, so the old journal is
+     * not replayed a second time if the editor stops before it is replaced.
+     */
+    @Test
+    void reopenedJournalStartsNewGeneration() throws Exception {
+        crash("crashed", "abc", "def");
+        long old = readGeneration(DIRECTORY.resolve("crashed.journal"));
+
+        AutosaveJournal.Recovery recovery = recoverOne();
+        Fx.run(() -> {
+            EditingArea area = new EditingArea();
+            AutosaveJournal journal = new AutosaveJournal(area, recovery.getId());
+            recovery.restore(area);
+            journal.start();
+        });
+        AutosaveJournal.shutdown(false, 5);
+
+        assertNotEquals(old, readGeneration(DIRECTORY.resolve("crashed.snapshot")));
+        assertNotEquals(old, readGeneration(DIRECTORY.resolve("crashed.journal")));
+    }
+
+
+    /**
+     * Leaves the journal of an edited document behind as if the editor had
+     * crashed. The first piece of text starts the journal with a snapshot, and
+     * each piece after it is appended as an edit.
+     *
+     * @param name      The name to leave the journal's files under.
+     * @param pieces    The text typed into the document, a piece at a time.
+     */
+    static void crash(String name, String... pieces) throws Exception {
+        AutosaveJournal journal = Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            AutosaveJournal created = new AutosaveJournal(area);
+            for(String piece : pieces) {
+                area.appendText(piece);
+            }
+            return created;
+        });
+        AutosaveJournal.shutdown(false, 5);
+
+        // The journal is locked while it is open, so a copy of its files is
+        // what is left behind.
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY)) {
+            for(Path file : files) {
+                String fileName = file.getFileName().toString();
+                Files.copy(file, DIRECTORY.resolve(name + fileName.substring(fileName.indexOf('.'))));
+            }
+        }
+        Fx.run(journal::close);
+        AutosaveJournal.shutdown(false, 5);
+    }
+
+
+    /**
+     * Recovers the one document that was left behind.
+     *
+     * @return  The recovered document.
+     */
+    private static AutosaveJournal.Recovery recoverOne() {
+        List<AutosaveJournal.Recovery> recovered = AutosaveJournal.recover();
+        assertEquals(1, recovered.size());
+        return recovered.get(0);
+    }
+
+
+    /**
+     * Reads the generation from the header of a snapshot or journal.
+     *
+     * @param file  The file.
+     * @return  The generation.
+     */
+    private static long readGeneration(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong(8);
+    }
+
+
+    /**
+     * Deletes every journal's files.
+     */
+    static void deleteJournals() throws IOException {
+        if(Files.isDirectory(DIRECTORY)) {
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY)) {
+                for(Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests that what a DeflatingChannel writes an InflatingChannel reads back,
+ * and that both agree with the streams of java.util.zip.
+ */
+class CompressionChannelTest {
+
+
+    /**
+     * The directory the files are written in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * Several buffers' worth of gzip data comes back the same, read a few
+     * bytes at a time.
+     */
+    @Test
+    void gzipRoundTrip() throws IOException {
+        byte[] data = sample(3 * BufferPool.BUFFER_SIZE + 12345);
+        Path file = write(data, Compression.GZIP, 4096);
+
+        assertEquals(Compression.GZIP, Compression.detect(file.toFile()));
+        assertArrayEquals(data, read(file, Compression.GZIP, 7));
+        assertArrayEquals(data, read(file, Compression.GZIP, 100_000));
+    }
+
+
+    /**
+     * Several buffers' worth of zlib data comes back the same, read a few
+     * bytes at a time.
+     */
+    @Test
+    void deflateRoundTrip() throws IOException {
+        byte[] data = sample(3 * BufferPool.BUFFER_SIZE + 12345);
+        Path file = write(data, Compression.DEFLATE, 4096);
+
+        assertArrayEquals(data, read(file, Compression.DEFLATE, 7));
+        assertArrayEquals(data, read(file, Compression.DEFLATE, 100_000));
+    }
+
+
+    /**
+     * Nothing written is read back as nothing.
+     */
+    @Test
+    void emptyRoundTrip() throws IOException {
+        for(Compression compression : new Compression[] {Compression.GZIP, Compression.DEFLATE}) {
+            Path file = write(new byte[0], compression, 4096);
+            assertArrayEquals(new byte[0], read(file, compression, 4096));
+        }
+    }
+
+
+    /**
+     * Filling the buffer that was just written again does not change what
+     * was compressed from it, and writes larger than the pooled buffer are
+     * taken whole.
+     */
+    @Test
+    void reusedBufferIsNotKept() throws IOException {
+        byte[] data = sample(5 * BufferPool.BUFFER_SIZE);
+        Path file = write(data, Compression.GZIP, 2 * BufferPool.BUFFER_SIZE + 1);
+
+        try(InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+
+    /**
+     * Files written by the streams of java.util.zip are read back, including
+     * a gzip file of two members one after another.
+     */
+    @Test
+    void readsStreamOutput() throws IOException {
+        byte[] first = sample(BufferPool.BUFFER_SIZE + 1);
+        byte[] second = sample(1000);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        for(byte[] member : new byte[][] {first, second}) {
+            try(OutputStream out = new GZIPOutputStream(new NoClose(gzip))) {
+                out.write(member);
+            }
+        }
+        Path gzipFile = Files.write(directory.resolve("members.gz"), gzip.toByteArray());
+        ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write(first);
+        both.write(second);
+        assertArrayEquals(both.toByteArray(), read(gzipFile, Compression.GZIP, 4096));
+
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try(OutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(first);
+        }
+        Path zlibFile = Files.write(directory.resolve("stream.zz"), zlib.toByteArray());
+        assertArrayEquals(first, read(zlibFile, Compression.DEFLATE, 4096));
+    }
+
+
+    /**
+     * A zlib file written by a DeflatingChannel is read by an
+     * InflaterInputStream.
+     */
+    @Test
+    void writesStreamInput() throws IOException {
+        byte[] data = sample(BufferPool.BUFFER_SIZE + 1);
+        Path file = write(data, Compression.DEFLATE, 4096);
+
+        try(InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+
+    /**
+     * Setting the position back to the start reads the file again, and the
+     * position reaches the size of the compressed file at its end.
+     */
+    @Test
+    void readsAgainFromStart() throws IOException {
+        byte[] data = sample(2 * BufferPool.BUFFER_SIZE);
+        Path file = write(data, Compression.GZIP, 4096);
+
+        try(SeekableByteChannel channel = Compression.GZIP.open(file.toFile())) {
+            channel.read(ByteBuffer.allocate(1000));
+            channel.position(0);
+            assertArrayEquals(data, readAll(channel, 4096));
+            assertEquals(channel.size(), channel.position());
+            assertThrows(IllegalArgumentException.class, () -> channel.position(1));
+        }
+    }
+
+
+    /**
+     * A file that is cut short fails the read instead of ending early.
+     */
+    @Test
+    void failsOnTruncatedFile() throws IOException {
+        byte[] data = sample(BufferPool.BUFFER_SIZE);
+        Path file = write(data, Compression.GZIP, 4096);
+        byte[] compressed = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(compressed, compressed.length / 2));
+
+        try(SeekableByteChannel channel = Compression.GZIP.open(file.toFile())) {
+            assertThrows(IOException.class, () -> readAll(channel, 4096));
+        }
+    }
+
+
+    /**
+     * Returns bytes that are partly text that compresses well and partly
+     * random bytes that do not.
+     *
+     * @param length    The amount of bytes.
+     * @return  The bytes.
+     */
+    private static byte[] sample(int length) {
+        Random random = new Random(length);
+        byte[] data = new byte[length];
+        for(int i = 0; i < length; i++) {
+            data[i] = (i / 1000) % 2 == 0 ? (byte)('a' + i % 26) : (byte)random.nextInt();
+        }
+        return data;
+    }
+
+
+    /**
+     * Compresses bytes into a file through a DeflatingChannel, filling one
+     * buffer again for every write.
+     *
+     * @param data          The bytes.
+     * @param compression   How to compress them.
+     * @param writeSize     The amount of bytes written at a time.
+     * @return  The file.
+     * @throws IOException  If the file could not be written.
+     */
+    private Path write(byte[] data, Compression compression, int writeSize) throws IOException {
+        Path file = directory.resolve(compression == Compression.GZIP ? "data.gz" : "data.zz");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(writeSize);
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                DeflatingChannel deflating = new DeflatingChannel(channel, compression)) {
+            for(int i = 0; i < data.length; i += writeSize) {
+                buffer.clear();
+                buffer.put(data, i, Math.min(writeSize, data.length - i));
+                buffer.flip();
+                assertEquals(buffer.remaining(), deflating.write(buffer));
+
+                // Scribble over the buffer, as the caller is free to.
+                buffer.clear();
+                while(buffer.hasRemaining()) {
+                    buffer.put((byte)0x55);
+                }
+            }
+        }
+        return file;
+    }
+
+
+    /**
+     * Reads a compressed file through an InflatingChannel.
+     *
+     * @param file          The file.
+     * @param compression   How it is compressed.
+     * @param readSize      The amount of bytes read at a time.
+     * @return  The decompressed bytes.
+     * @throws IOException  If the file could not be read.
+     */
+    private static byte[] read(Path file, Compression compression, int readSize) throws IOException {
+        try(SeekableByteChannel channel = compression.open(file.toFile())) {
+            return readAll(channel, readSize);
+        }
+    }
+
+
+    /**
+     * Reads a channel to its end.
+     *
+     * @param channel   The channel.
+     * @param readSize  The amount of bytes read at a time.
+     * @return  The bytes read.
+     * @throws IOException  If the channel could not be read.
+     */
+    private static byte[] readAll(SeekableByteChannel channel, int readSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(readSize);
+        while(channel.read(buffer) != -1) {
+            bytes.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Writes to a stream without closing it, so several gzip members can be
+     * written to it one after another.
+     */
+    private static class NoClose extends FilterOutputStream {
+
+
+        /**
+         * Creates a NoClose.
+         *
+         * @param out   The stream to write to.
+         */
+        NoClose(OutputStream out) {
+            super(out);
+        }
+
+
+        /*
+         * Flushes the stream instead of closing it.
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
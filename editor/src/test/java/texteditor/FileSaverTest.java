@@ -0,0 +1,97 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javafx.concurrent.WorkerStateEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests how a FileSaver marks its EditingArea once the file is written.
+ */
+class FileSaverTest {
+
+
+    /**
+     * The directory the files are saved in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * A save with no edits made while it was writing leaves the area unedited.
+     */
+    @Test
+    void marksAreaSaved() throws Exception {
+        File file = directory.resolve("saved.txt").toFile();
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.setCurrentFile(file);
+            created.appendText("saved");
+            return created;
+        });
+
+        save(area, () -> { });
+
+        assertEquals("saved", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertFalse(Fx.call(area::getHasBeenEdited));
+        assertNull(Fx.call(area::getSavedText));
+    }
+
+
+    /**
+     * A save with edits made while it was writing leaves the area edited, but
+     * changes to the file are merged from the text that was saved.
+     */
+    @Test
+    void keepsSavedTextWhenEditedDuringSave() throws Exception {
+        File file = directory.resolve("edited.txt").toFile();
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.setCurrentFile(file);
+            created.appendText("old");
+            created.resetHasBeenEdited();
+            created.appendText(" saved");
+            return created;
+        });
+
+        save(area, () -> area.appendText(" unsaved"));
+
+        assertEquals("old saved", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertTrue(Fx.call(area::getHasBeenEdited));
+        DocumentSnapshot savedText = Fx.call(area::getSavedText);
+        assertEquals("old saved", savedText.getText(0, savedText.length()));
+    }
+
+
+    /**
+     * Saves an EditingArea to its file and waits for the save to finish.
+     *
+     * @param area      The area to save.
+     * @param editing   What to do to the area once the save has taken its
+     *                  snapshot.
+     */
+    private static void save(EditingArea area, Runnable editing) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Fx.run(() -> {
+            FileSaver saver = new FileSaver(area.getCurrentFile(), area);
+            saver.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> done.complete(null));
+            saver.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED,
+                    e -> done.completeExceptionally(saver.getException()));
+            editing.run();
+            saver.start();
+        });
+        done.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,87 @@
+package texteditor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+
+
+/**
+ * Runs code on the JavaFX thread for the tests that need the toolkit. The
+ * toolkit is started the first time it is needed, and runs headless with the
+ * properties the build passes to the tests.
+ */
+final class Fx {
+
+
+    /**
+     * Whether or not the toolkit has been started.
+     */
+    private static boolean started = false;
+
+
+    /**
+     * Not used.
+     */
+    private Fx() {
+    }
+
+
+    /**
+     * Starts the toolkit if it has not been started yet.
+     */
+    static synchronized void start() {
+        if(!started) {
+            Platform.setImplicitExit(false);
+            try {
+                Platform.startup(() -> { });
+            } catch(IllegalStateException e) {
+                // Another test started it already.
+            }
+            started = true;
+        }
+    }
+
+
+    /**
+     * Runs code on the JavaFX thread and waits for its result.
+     *
+     * @param <T>       The type of the result.
+     * @param callable  The code to run.
+     * @return  The result of the code.
+     * @throws Exception    If the code threw an exception.
+     */
+    static <T> T call(Callable<T> callable) throws Exception {
+        start();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(callable.call());
+            } catch(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        try {
+            return result.get(30, TimeUnit.SECONDS);
+        } catch(java.util.concurrent.ExecutionException e) {
+            if(e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Runs code on the JavaFX thread and waits for it to finish.
+     *
+     * @param runnable  The code to run.
+     * @throws Exception    If the code threw an exception.
+     */
+    static void run(Runnable runnable) throws Exception {
+        call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+import javafx.event.Event;
+import javafx.scene.Scene;
+import javafx.scene.input.InputMethodEvent;
+import javafx.scene.input.InputMethodHighlight;
+import javafx.scene.input.InputMethodTextRun;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that text typed through an input method goes into an EditingArea
+ * once it is committed.
+ */
+class InputMethodTest {
+
+
+    /**
+     * The window the area is shown in.
+     */
+    private Stage stage;
+
+
+    /**
+     * Closes the window.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        if(stage != null) {
+            Fx.run(stage::close);
+        }
+    }
+
+
+    /**
+     * Composed text is left out of the document until it is committed, and
+     * then replaces the selection.
+     */
+    @Test
+    void commitsComposedText() throws Exception {
+        EditingArea area = show("say hello");
+        assertNotNull(Fx.call(area::getInputMethodRequests));
+
+        Fx.run(() -> {
+            area.selectRange(4, 9);
+            compose(area, "にほ", "");
+        });
+        assertEquals("say hello", Fx.call(area::getText));
+
+        Fx.run(() -> compose(area, "", "日本"));
+        assertEquals("say 日本", Fx.call(area::getText));
+        assertEquals(6, (int)Fx.call(area::getCaretPosition));
+    }
+
+
+    /**
+     * Committed text does not go into an area that can not be edited.
+     */
+    @Test
+    void ignoresReadOnlyArea() throws Exception {
+        EditingArea area = show("read only");
+        Fx.run(() -> {
+            area.setEditable(false);
+            compose(area, "", "日本");
+        });
+        assertEquals("read only", Fx.call(area::getText));
+    }
+
+
+    /**
+     * Shows an area with some text in a window and lays it out.
+     *
+     * @param text  The text of the area.
+     * @return  The area.
+     */
+    private EditingArea show(String text) throws Exception {
+        return Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            area.setShowLineNumbers(false);
+            stage = new Stage();
+            stage.setScene(new Scene(new StackPane(area), 400, 300));
+            stage.show();
+            area.applyCss();
+            area.layout();
+            return area;
+        });
+    }
+
+
+    /**
+     * Sends an area the text of an input method.
+     *
+     * @param area      The area.
+     * @param composed  The text being composed.
+     * @param committed The text committed.
+     */
+    private static void compose(EditingArea area, String composed, String committed) {
+        List<InputMethodTextRun> runs = composed.isEmpty() ? List.of()
+                : List.of(new InputMethodTextRun(composed, InputMethodHighlight.UNSELECTED_RAW));
+        Event.fireEvent(area, new InputMethodEvent(InputMethodEvent.INPUT_METHOD_TEXT_CHANGED, runs,
+                committed, composed.length()));
+        area.layout();
+    }
+}
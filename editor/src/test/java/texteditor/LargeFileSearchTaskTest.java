@@ -0,0 +1,148 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests searching the file of a LargeFileArea.
+ */
+class LargeFileSearchTaskTest {
+
+
+    /**
+     * The directory the files are written in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * The area being searched.
+     */
+    private LargeFileArea area;
+
+
+    /**
+     * Releases the file.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        if(area != null) {
+            Fx.run(area::close);
+        }
+    }
+
+
+    /**
+     * Plain text is found by line and column, ignoring case, in a file with
+     * CRLF line endings.
+     */
+    @Test
+    void findsPlainTextByLine() throws Exception {
+        open("Error: one\r\nok\r\nerror and ERROR\r\nlast error");
+
+        search(new SearchQuery("error", false, false));
+        LineMatches matches = area.getLineMatches();
+
+        assertEquals(4, area.getMatchCount());
+        assertMatch(matches, 0, 0, 0, 5);
+        assertMatch(matches, 1, 2, 0, 5);
+        assertMatch(matches, 2, 2, 10, 15);
+        assertMatch(matches, 3, 3, 5, 10);
+    }
+
+
+    /**
+     * Regular expressions are matched against each line, so ^ and $ match at
+     * the start and end of every line.
+     */
+    @Test
+    void findsRegexByLine() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 10000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        open(text.toString());
+
+        search(new SearchQuery("^line 9\\d*$", true, true));
+        LineMatches matches = area.getLineMatches();
+
+        assertEquals(1111, area.getMatchCount());
+        assertMatch(matches, 0, 9, 0, 6);
+        assertMatch(matches, 1110, 9999, 0, 9);
+    }
+
+
+    /**
+     * Find Next starts from the top of the viewport, steps through the
+     * matches, and goes off either end so the find bar can go round.
+     */
+    @Test
+    void stepsThroughMatches() throws Exception {
+        open("a\nb a\nc\na");
+        search(new SearchQuery("a", false, true));
+
+        Fx.run(() -> {
+            assertEquals(0, area.getNextMatch(true));
+            assertEquals(-1, area.getNextMatch(false));
+            area.selectMatch(1);
+            assertEquals(1, area.getSelectedMatch());
+            assertEquals(2, area.getNextMatch(true));
+            assertEquals(0, area.getNextMatch(false));
+            area.selectMatch(2);
+            assertEquals(3, area.getNextMatch(true));
+        });
+        assertEquals(1, area.getLineMatches().getLine(1));
+        assertEquals(3, area.getLineMatches().getLine(2));
+    }
+
+
+    /**
+     * Opens a file in a LargeFileArea and starts indexing it.
+     *
+     * @param text  The text of the file.
+     */
+    private void open(String text) throws Exception {
+        Path file = directory.resolve("large.log");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        area = Fx.call(() -> {
+            LargeFileArea created = new LargeFileArea(file.toFile());
+            created.startIndexing();
+            return created;
+        });
+    }
+
+
+    /**
+     * Searches the area and waits for the matches to be added.
+     *
+     * @param query What to search for.
+     */
+    private void search(SearchQuery query) throws Exception {
+        LargeFileSearchTask task = Fx.call(() -> {
+            LargeFileSearchTask created = new LargeFileSearchTask(area, query);
+            created.start();
+            return created;
+        });
+        task.get(30, TimeUnit.SECONDS);
+        Fx.run(() -> { });
+    }
+
+
+    /**
+     * Checks the line and columns of a match.
+     */
+    private static void assertMatch(LineMatches matches, int index, int line, int start, int end) {
+        assertEquals(line, matches.getLine(index));
+        assertEquals(start, matches.getStart(index));
+        assertEquals(end, matches.getEnd(index));
+    }
+}
@@ -0,0 +1,196 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that the hunks of a LineDiff turn the old text into the new one, with
+ * no more changed lines than are needed.
+ */
+class LineDiffTest {
+
+
+    /**
+     * Small random texts are rebuilt from their diff, and the diff changes
+     * as few lines as the longest common subsequence allows.
+     */
+    @Test
+    void randomDiffsAreMinimal() {
+        Random random = new Random(7);
+        for(int i = 0; i < 2000; i++) {
+            List<String> a = randomLines(random);
+            List<String> b = randomLines(random);
+            List<LineDiff.Hunk> hunks = LineDiff.diff(a, b);
+
+            assertEquals(b, apply(a, b, hunks));
+            int common = longestCommonSubsequence(a, b);
+            assertEquals(a.size() + b.size() - 2 * common, changedLines(hunks), a + " to " + b);
+        }
+    }
+
+
+    /**
+     * Empty texts need no hunks between them, and all of a text is inserted
+     * into or removed from an empty one.
+     */
+    @Test
+    void diffsEmptyTexts() {
+        List<String> empty = List.of();
+        List<String> text = LineDiff.split("a\nb\nc");
+
+        assertTrue(LineDiff.diff(empty, empty).isEmpty());
+        assertHunks(LineDiff.diff(empty, text), new int[] { 0, 0, 0, 3 });
+        assertHunks(LineDiff.diff(text, empty), new int[] { 0, 3, 0, 0 });
+    }
+
+
+    /**
+     * The same text has no hunks.
+     */
+    @Test
+    void diffsIdenticalTexts() {
+        List<String> text = LineDiff.split("one\ntwo\nthree\n");
+        assertTrue(LineDiff.diff(text, new ArrayList<>(text)).isEmpty());
+    }
+
+
+    /**
+     * Texts with no lines in common are a single hunk that replaces all of
+     * one with all of the other.
+     */
+    @Test
+    void diffsDisjointTexts() {
+        List<String> a = LineDiff.split("a\nb\nc\n");
+        List<String> b = LineDiff.split("x\ny\n");
+        assertHunks(LineDiff.diff(a, b), new int[] { 0, 3, 0, 2 });
+    }
+
+
+    /**
+     * A diff that is cancelled stops and says so.
+     */
+    @Test
+    void stopsWhenCancelled() {
+        List<LineDiff.Hunk> hunks = new ArrayList<>();
+        assertFalse(LineDiff.diff(new int[] { 0, 1, 2 }, new int[] { 2, 1, 0 }, hunks::add, () -> true));
+        assertTrue(hunks.isEmpty());
+    }
+
+
+    /**
+     * Splitting a text keeps the '\n' of each line, and a last line without
+     * one.
+     */
+    @Test
+    void splitsLines() {
+        assertEquals(List.of(), LineDiff.split(""));
+        assertEquals(List.of("a\n", "\n", "b"), LineDiff.split("a\n\nb"));
+        assertEquals(List.of("a\n"), LineDiff.split("a\n"));
+    }
+
+
+    /**
+     * Returns a few lines picked from a small set, so that random texts have
+     * some lines in common.
+     *
+     * @param random    The random numbers to use.
+     * @return  The lines.
+     */
+    private static List<String> randomLines(Random random) {
+        int count = random.nextInt(12);
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            lines.add((char)('a' + random.nextInt(4)) + "\n");
+        }
+        return lines;
+    }
+
+
+    /**
+     * Applies hunks to the old lines, checking that the lines between them are
+     * the same in both texts.
+     *
+     * @param a     The old lines.
+     * @param b     The new lines.
+     * @param hunks The hunks that turn a into b.
+     * @return  The lines the hunks make from a.
+     */
+    private static List<String> apply(List<String> a, List<String> b, List<LineDiff.Hunk> hunks) {
+        List<String> result = new ArrayList<>();
+        int aAt = 0;
+        int bAt = 0;
+        for(LineDiff.Hunk hunk : hunks) {
+            assertTrue(hunk.getAStart() >= aAt && hunk.getAEnd() >= hunk.getAStart());
+            assertTrue(hunk.getBStart() >= bAt && hunk.getBEnd() >= hunk.getBStart());
+            assertEquals(hunk.getAStart() - aAt, hunk.getBStart() - bAt);
+
+            result.addAll(a.subList(aAt, hunk.getAStart()));
+            result.addAll(b.subList(hunk.getBStart(), hunk.getBEnd()));
+            aAt = hunk.getAEnd();
+            bAt = hunk.getBEnd();
+        }
+        assertEquals(a.size() - aAt, b.size() - bAt);
+        result.addAll(a.subList(aAt, a.size()));
+        return result;
+    }
+
+
+    /**
+     * Returns the amount of lines removed and inserted by hunks.
+     *
+     * @param hunks The hunks.
+     * @return  The amount of changed lines.
+     */
+    private static int changedLines(List<LineDiff.Hunk> hunks) {
+        int changed = 0;
+        for(LineDiff.Hunk hunk : hunks) {
+            changed += hunk.getAEnd() - hunk.getAStart() + hunk.getBEnd() - hunk.getBStart();
+        }
+        return changed;
+    }
+
+
+    /**
+     * Returns the length of the longest common subsequence of two lists.
+     *
+     * @param a The first list.
+     * @param b The second list.
+     * @return  The amount of lines in the longest common subsequence.
+     */
+    private static int longestCommonSubsequence(List<String> a, List<String> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for(int i = a.size() - 1; i >= 0; i--) {
+            for(int j = b.size() - 1; j >= 0; j--) {
+                lengths[i][j] = a.get(i).equals(b.get(j)) ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+
+    /**
+     * Checks that hunks cover the given ranges.
+     *
+     * @param hunks     The hunks.
+     * @param expected  The start and end in the old text and the start and end
+     *                  in the new text of each hunk.
+     */
+    private static void assertHunks(List<LineDiff.Hunk> hunks, int[]... expected) {
+        assertEquals(expected.length, hunks.size());
+        for(int i = 0; i < expected.length; i++) {
+            LineDiff.Hunk hunk = hunks.get(i);
+            assertEquals(expected[i][0], hunk.getAStart());
+            assertEquals(expected[i][1], hunk.getAEnd());
+            assertEquals(expected[i][2], hunk.getBStart());
+            assertEquals(expected[i][3], hunk.getBEnd());
+        }
+    }
+}
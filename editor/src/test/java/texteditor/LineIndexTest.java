@@ -0,0 +1,96 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that a LineIndex follows the lines of its document through edits.
+ */
+class LineIndexTest {
+
+
+    /**
+     * The lines of a document that is indexed when it is created are found.
+     */
+    @Test
+    void findsExistingLines() {
+        PieceTable document = new PieceTable("one\ntwo\n\nfour");
+        LineIndex index = new LineIndex(document);
+
+        assertEquals(4, index.getLineCount());
+        assertEquals(0, index.getLineStart(0));
+        assertEquals(4, index.getLineStart(1));
+        assertEquals(8, index.getLineStart(2));
+        assertEquals(9, index.getLineStart(3));
+        assertEquals(0, index.getLineOfOffset(3));
+        assertEquals(1, index.getLineOfOffset(4));
+        assertEquals(2, index.getLineOfOffset(8));
+        assertEquals(3, index.getLineOfOffset(13));
+    }
+
+
+    /**
+     * An empty document has one line.
+     */
+    @Test
+    void emptyDocumentHasOneLine() {
+        LineIndex index = new LineIndex(new PieceTable());
+        assertEquals(1, index.getLineCount());
+        assertEquals(0, index.getLineStart(0));
+        assertEquals(0, index.getLineOfOffset(0));
+    }
+
+
+    /**
+     * Random edits anywhere in the document, which move the gap back and
+     * forth, leave the same line starts as indexing the text again.
+     */
+    @Test
+    void randomEditsMatchNewIndex() {
+        Random random = new Random(7);
+        PieceTable document = new PieceTable("first\nsecond\nthird\n");
+        LineIndex index = new LineIndex(document);
+        document.addDocumentListener(index);
+
+        for(int i = 0; i < 3000; i++) {
+            int length = document.length();
+            int offset = random.nextInt(length + 1);
+            int removed = random.nextInt(Math.min(12, length - offset) + 1);
+            int inserted = random.nextInt(50) == 0 ? 20000 : random.nextInt(10);
+            document.replace(offset, removed, PieceTableTest.randomText(random, inserted));
+
+            if(i % 100 == 0) {
+                assertSameLines(document.getText(), index);
+            }
+        }
+        assertSameLines(document.getText(), index);
+    }
+
+
+    /**
+     * Checks every line start of an index against the line breaks in a text.
+     *
+     * @param text  The text of the document.
+     * @param index The index of the document.
+     */
+    private static void assertSameLines(String text, LineIndex index) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n') {
+                starts.add(i + 1);
+            }
+        }
+
+        assertEquals(starts.size(), index.getLineCount());
+        for(int line = 0; line < starts.size(); line++) {
+            assertEquals((int)starts.get(line), index.getLineStart(line));
+            assertEquals(line, index.getLineOfOffset(starts.get(line)));
+        }
+    }
+}
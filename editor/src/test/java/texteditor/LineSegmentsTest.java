@@ -0,0 +1,206 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests where LineSegments breaks a long line, how it follows edits, and the
+ * heights it guesses for its segments.
+ */
+class LineSegmentsTest {
+
+
+    /**
+     * A line with no spaces is broken every SEGMENT_LENGTH characters, and
+     * a line with spaces just after a space close to that.
+     */
+    @Test
+    void breaksLongLines() throws Exception {
+        int size = LineSegments.SEGMENT_LENGTH;
+        LineSegments plain = segments("x".repeat(3 * size + 10));
+        assertEquals(4, plain.getSegmentCount());
+        for(int i = 0; i < 4; i++) {
+            assertEquals(i * size, plain.getSegmentStart(i));
+        }
+        assertEquals(3 * size + 10, plain.getSegmentEnd(3));
+
+        String words = "x".repeat(size - 10) + " " + "x".repeat(size);
+        LineSegments spaced = segments(words);
+        assertEquals(2, spaced.getSegmentCount());
+        assertEquals(size - 9, spaced.getSegmentStart(1));
+    }
+
+
+    /**
+     * A break is never put between the two halves of a surrogate pair, however
+     * the pairs line up with the segment length.
+     */
+    @Test
+    void keepsSurrogatePairsTogether() throws Exception {
+        String emoji = "😀";
+        for(String prefix : new String[] { "", "a" }) {
+            String text = prefix + emoji.repeat(3 * LineSegments.SEGMENT_LENGTH / 2);
+            LineSegments segments = segments(text);
+
+            assertTrue(segments.getSegmentCount() > 1);
+            assertSegmentsCover(segments, text);
+        }
+    }
+
+
+    /**
+     * A column at a break is in the segment that starts there, and the end of
+     * the line is in the last segment.
+     */
+    @Test
+    void findsSegmentOfColumn() throws Exception {
+        int size = LineSegments.SEGMENT_LENGTH;
+        LineSegments segments = segments("x".repeat(2 * size + 1));
+
+        assertEquals(0, segments.getSegmentOf(0));
+        assertEquals(0, segments.getSegmentOf(size - 1));
+        assertEquals(1, segments.getSegmentOf(size));
+        assertEquals(2, segments.getSegmentOf(2 * size));
+        assertEquals(2, segments.getSegmentOf(2 * size + 1));
+    }
+
+
+    /**
+     * The heights of segments that have not been measured are guessed in
+     * whole rows of the wrapping width, a segment exactly as wide as the
+     * wrapping width takes one row, and a distance on the boundary between two
+     * segments is in the lower one.
+     */
+    @Test
+    void guessesHeightsAtWrapBoundaries() throws Exception {
+        int size = LineSegments.SEGMENT_LENGTH;
+        LineSegments segments = segments("x".repeat(2 * size));
+
+        segments.setMetrics(0, 10, 1);
+        assertEquals(20, segments.getHeight());
+
+        segments.setMetrics(size, 10, 1);
+        assertEquals(10, segments.getSegmentHeight(0));
+        assertEquals(20, segments.getHeight());
+
+        segments.setMetrics(size - 1, 10, 1);
+        assertEquals(20, segments.getSegmentHeight(0));
+        assertEquals(20, segments.getSegmentTop(1));
+        assertEquals(0, segments.getSegmentAt(19.9));
+        assertEquals(1, segments.getSegmentAt(20));
+        assertEquals(1, segments.getSegmentAt(1000));
+
+        segments.setSegmentHeight(0, 35);
+        assertEquals(35, segments.getSegmentTop(1));
+        assertEquals(55, segments.getHeight());
+
+        segments.setMetrics(size, 10, 1);
+        assertEquals(10, segments.getSegmentHeight(0));
+    }
+
+
+    /**
+     * Random edits inside of the line keep the segments covering the line in
+     * order, without empty segments or split surrogate pairs, and an edit that
+     * adds a line break asks for the segments to be made again.
+     */
+    @Test
+    void followsEdits() throws Exception {
+        Random random = new Random(9);
+        String[] pieces = { "x", "xyz ", "😀", "x".repeat(3000), "" };
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.appendText("first\n" + "ab 😀".repeat(3000) + "\nlast");
+            return created;
+        });
+        LineSegments segments = Fx.call(() -> new LineSegments(area, 1));
+
+        for(int i = 0; i < 300; i++) {
+            boolean updated = Fx.call(() -> {
+                int lineStart = area.getLineStart(1);
+                int length = area.getLineLength(1);
+                int from = alignedColumn(area, random.nextInt(length + 1));
+                int to = alignedColumn(area, Math.min(length, from + random.nextInt(200)));
+                String text = pieces[random.nextInt(pieces.length)];
+
+                boolean[] result = { true };
+                DocumentListener listener = e -> result[0] = segments.update(area, 1, 1, 0, e);
+                area.getDocument().addDocumentListener(listener);
+                area.replaceText(lineStart + from, lineStart + to, text);
+                area.getDocument().removeDocumentListener(listener);
+                return result[0];
+            });
+            assertTrue(updated);
+            assertSegmentsCover(segments, Fx.call(() -> area.getLinePart(1, 0, area.getLineLength(1))));
+        }
+
+        boolean updated = Fx.call(() -> {
+            boolean[] result = new boolean[1];
+            DocumentListener listener = e -> result[0] = segments.update(area, 1, 1, 1, e);
+            area.getDocument().addDocumentListener(listener);
+            area.replaceText(area.getLineStart(1) + 2, area.getLineStart(1) + 2, "\n");
+            area.getDocument().removeDocumentListener(listener);
+            return result[0];
+        });
+        assertFalse(updated);
+    }
+
+
+    /**
+     * Breaks the only line of a new area into segments.
+     *
+     * @param text  The text of the line.
+     * @return  The segments.
+     */
+    private static LineSegments segments(String text) throws Exception {
+        return Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            return new LineSegments(area, 0);
+        });
+    }
+
+
+    /**
+     * Moves a column of the second line of an area back off the second half
+     * of a surrogate pair.
+     *
+     * @param area      The area.
+     * @param column    The column.
+     * @return  The column, or the one before it if it was inside of a pair.
+     */
+    private static int alignedColumn(EditingArea area, int column) {
+        if(column > 0 && column < area.getLineLength(1)
+                && Character.isLowSurrogate(area.getLinePart(1, column, column + 1).charAt(0))) {
+            return column - 1;
+        }
+        return column;
+    }
+
+
+    /**
+     * Checks that segments cover a line in order, without empty segments and
+     * without breaking a surrogate pair.
+     *
+     * @param segments  The segments.
+     * @param text      The text of the line.
+     */
+    private static void assertSegmentsCover(LineSegments segments, String text) {
+        assertEquals(0, segments.getSegmentStart(0));
+        assertEquals(text.length(), segments.getSegmentEnd(segments.getSegmentCount() - 1));
+        for(int i = 0; i < segments.getSegmentCount(); i++) {
+            int start = segments.getSegmentStart(i);
+            assertTrue(segments.getSegmentEnd(i) > start || segments.getSegmentCount() == 1);
+            assertFalse(start > 0 && Character.isHighSurrogate(text.charAt(start - 1))
+                    && Character.isLowSurrogate(text.charAt(start)), "Pair split at " + start);
+            if(i + 1 < segments.getSegmentCount()) {
+                assertEquals(segments.getSegmentEnd(i), segments.getSegmentStart(i + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests the order a PathIndex ranks the paths that match the letters typed.
+ */
+class PathIndexTest {
+
+
+    /**
+     * The folder that is indexed.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * The index being tested.
+     */
+    private PathIndex index;
+
+
+    /**
+     * Released each time the index tells its listener that it changed.
+     */
+    private final Semaphore changed = new Semaphore(0);
+
+
+    /**
+     * Stops watching the folder.
+     */
+    @AfterEach
+    void tearDown() {
+        if(index != null) {
+            index.close();
+        }
+    }
+
+
+    /**
+     * Letters at the start of the words of a file name beat the same letters
+     * picked out of the middle of words.
+     */
+    @Test
+    void prefersWordStarts() throws Exception {
+        build("aqueous.txt", "QuickOpen.java", "src/equinox.md");
+
+        assertEquals(List.of("QuickOpen.java", "aqueous.txt", path("src/equinox.md")), index.find("qo", 10));
+    }
+
+
+    /**
+     * Letters that follow each other in the path beat letters with other
+     * letters between them.
+     */
+    @Test
+    void prefersRuns() throws Exception {
+        build("exported.txt", "editor.txt");
+
+        assertEquals(List.of("editor.txt", "exported.txt"), index.find("ed", 10));
+    }
+
+
+    /**
+     * Letters in the file name beat the same letters in a folder name.
+     */
+    @Test
+    void prefersFileName() throws Exception {
+        build("main/util.txt", "src/main.txt");
+
+        assertEquals(List.of(path("src/main.txt"), path("main/util.txt")), index.find("main", 10));
+    }
+
+
+    /**
+     * Paths that match as well are ranked shortest first, and at most the
+     * amount of paths asked for are given.
+     */
+    @Test
+    void prefersShortPaths() throws Exception {
+        build("a/b/c/readme.md", "a/readme.md", "a/b/readme.md");
+
+        assertEquals(List.of(path("a/readme.md"), path("a/b/readme.md"), path("a/b/c/readme.md")),
+                index.find("readme", 10));
+        assertEquals(List.of(path("a/readme.md")), index.find("readme", 1));
+    }
+
+
+    /**
+     * Case and spaces in the query are ignored, and paths that do not have
+     * every letter in order are left out.
+     */
+    @Test
+    void matchesLettersInOrder() throws Exception {
+        build("TextEditor.java", "EditingArea.java");
+
+        assertEquals(List.of("TextEditor.java"), index.find("t ED", 10));
+        assertEquals(List.of(), index.find("zz", 10));
+        assertEquals(List.of(), index.find("avaj", 10));
+    }
+
+
+    /**
+     * Refining a query by typing another letter ranks the paths again, and
+     * going back to a shorter query finds the paths the longer one dropped.
+     */
+    @Test
+    void refinesQuery() throws Exception {
+        build("alpha.txt", "alps.txt", "apple.txt");
+
+        assertEquals(3, index.find("a", 10).size());
+        assertEquals(2, index.find("alp", 10).size());
+        assertEquals(List.of("alps.txt"), index.find("alps", 10));
+        assertEquals(3, index.find("a", 10).size());
+    }
+
+
+    /**
+     * Creates files under the folder, then builds the index and waits for it
+     * to finish.
+     *
+     * @param paths The paths of the files, with '/' between folders.
+     * @throws IOException          If a file could not be created.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void build(String... paths) throws IOException, InterruptedException {
+        for(String path : paths) {
+            Path file = directory.resolve(path(path));
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+
+        index = new PathIndex(directory, changed::release);
+        index.start();
+        assertTrue(changed.tryAcquire(10, TimeUnit.SECONDS));
+        while(index.isBuilding()) {
+            assertTrue(changed.tryAcquire(10, TimeUnit.SECONDS));
+        }
+        assertEquals(paths.length, index.getPathCount());
+    }
+
+
+    /**
+     * Returns a path with the separator of the platform.
+     *
+     * @param path  The path, with '/' between folders.
+     * @return  The path as the index gives it.
+     */
+    private String path(String path) {
+        return directory.getFileSystem().getPath(path).toString();
+    }
+}
@@ -0,0 +1,212 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the PieceTable against a StringBuilder holding the same text.
+ */
+class PieceTableTest {
+
+
+    /**
+     * Random inserts, deletes and replaces leave the same text as they do in a
+     * StringBuilder, including inserts large enough to get their own buffer.
+     */
+    @Test
+    void randomEditsMatchStringBuilder() {
+        Random random = new Random(42);
+        PieceTable document = new PieceTable("The quick brown fox\njumps over the lazy dog\n");
+        StringBuilder expected = new StringBuilder(document.getText());
+
+        for(int i = 0; i < 5000; i++) {
+            int offset = random.nextInt(expected.length() + 1);
+            int length = random.nextInt(Math.min(20, expected.length() - offset) + 1);
+            String text = randomText(random, random.nextInt(100) == 0 ? 20000 : random.nextInt(8));
+
+            document.replace(offset, length, text);
+            expected.replace(offset, offset + length, text);
+
+            if(i % 250 == 0) {
+                assertEquals(expected.toString(), document.getText());
+            }
+        }
+
+        assertEquals(expected.length(), document.length());
+        assertEquals(expected.toString(), document.getText());
+        for(int i = 0; i < 100; i++) {
+            int offset = random.nextInt(expected.length());
+            assertEquals(expected.charAt(offset), document.charAt(offset));
+        }
+    }
+
+
+    /**
+     * Typing one character at a time at the end of the text gives the same
+     * text as inserting it at once.
+     */
+    @Test
+    void typingAppendsToPiece() {
+        PieceTable document = new PieceTable();
+        String text = "Hello, world!\nSecond line";
+        for(int i = 0; i < text.length(); i++) {
+            document.insert(i, text.substring(i, i + 1));
+        }
+        assertEquals(text, document.getText());
+
+        document.delete(5, 7);
+        assertEquals("Hello!\nSecond line", document.getText());
+        assertEquals("Second", document.getText(7, 6));
+
+        char[] chars = new char[8];
+        document.getChars(3, 6, chars, 1);
+        assertEquals("lo!\nSe", new String(chars, 1, 6));
+    }
+
+
+    /**
+     * A snapshot keeps the text the document had when it was taken.
+     */
+    @Test
+    void snapshotIsNotChangedByEdits() {
+        PieceTable document = new PieceTable("abcdef");
+        document.insert(3, "XYZ");
+        DocumentSnapshot snapshot = document.snapshot();
+
+        document.delete(0, 4);
+        document.insert(0, "123");
+
+        assertEquals("abcXYZdef", snapshot.getText(0, snapshot.length()));
+        assertEquals("abcXYZdef", snapshot.asCharSequence().toString());
+        assertEquals("cXY", snapshot.asCharSequence().subSequence(2, 5).toString());
+        assertEquals("123YZdef", document.getText());
+    }
+
+
+    /**
+     * Listeners hear about each edit once, with the removed and inserted
+     * lengths.
+     */
+    @Test
+    void listenersAreToldAboutEdits() {
+        PieceTable document = new PieceTable("hello world");
+        List<int[]> events = new ArrayList<>();
+        document.addDocumentListener(e -> events.add(
+                new int[] { e.getOffset(), e.getRemovedLength(), e.getInsertedLength() }));
+
+        document.replace(6, 5, "there");
+        document.insert(0, ">> ");
+        document.delete(0, 3);
+        document.replace(0, 0, "");
+
+        assertEquals(3, events.size());
+        assertEquals("[6, 5, 5]", Arrays.toString(events.get(0)));
+        assertEquals("[0, 0, 3]", Arrays.toString(events.get(1)));
+        assertEquals("[0, 3, 0]", Arrays.toString(events.get(2)));
+    }
+
+
+    /**
+     * Compacted text is read back the same, as Latin-1 or as UTF-8, without
+     * expanding the document, and text that UTF-8 can not hold is not
+     * compacted.
+     */
+    @Test
+    void compactKeepsText() {
+        for(String text : new String[] { "plain ascii\n", "café naïve", "€ and 😀" }) {
+            PieceTable document = new PieceTable(text);
+            document.insert(0, "x");
+            document.compact();
+            assertTrue(document.isCompacted());
+            assertEquals(text.length() + 1, document.length());
+            assertEquals("x" + text, document.getText());
+            assertEquals(text.charAt(2), document.charAt(3));
+            assertEquals(text.substring(1, 4), document.getText(2, 3));
+            char[] chars = new char[3];
+            document.getChars(2, 3, chars, 0);
+            assertEquals(text.substring(1, 4), new String(chars));
+
+            DocumentSnapshot snapshot = document.snapshot();
+            assertEquals("x" + text, snapshot.getText(0, snapshot.length()));
+            assertEquals("x" + text, snapshot.asCharSequence().toString());
+            assertEquals(text.charAt(0), snapshot.asCharSequence().charAt(1));
+            assertTrue(document.isCompacted());
+
+            document.expand();
+            assertFalse(document.isCompacted());
+            assertEquals("x" + text, document.getText());
+
+            document.compact();
+            document.insert(1, "y");
+            assertEquals("xy" + text, document.getText());
+        }
+
+        PieceTable broken = new PieceTable("a\ud800b");
+        broken.compact();
+        assertFalse(broken.isCompacted());
+        assertEquals("a\ud800b", broken.getText());
+    }
+
+
+    /**
+     * The memory counted for the text follows edits, compaction and
+     * expansion.
+     */
+    @Test
+    void countsMemoryAfterChanges() {
+        PieceTable document = new PieceTable("x".repeat(1000));
+        long before = document.getMemoryUsed();
+        assertEquals(before, document.getMemoryUsed());
+
+        document.insert(500, "y".repeat(100_000));
+        long inserted = document.getMemoryUsed();
+        assertTrue(inserted > before + 200_000);
+
+        document.compact();
+        assertEquals(101_000, document.getMemoryUsed());
+        document.expand();
+        assertTrue(document.getMemoryUsed() >= 202_000);
+
+        document.setText("");
+        assertTrue(document.getMemoryUsed() < inserted);
+    }
+
+
+    /**
+     * Ranges outside of the document are refused.
+     */
+    @Test
+    void refusesRangesOutsideOfDocument() {
+        PieceTable document = new PieceTable("abc");
+        assertThrows(IndexOutOfBoundsException.class, () -> document.delete(2, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> document.insert(4, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> document.charAt(3));
+        assertEquals("abc", document.getText());
+    }
+
+
+    /**
+     * Returns random text made of a few letters, spaces and line breaks.
+     *
+     * @param random    The random numbers.
+     * @param length    The length of the text.
+     * @return  The text.
+     */
+    static String randomText(Random random, int length) {
+        String alphabet = "ab \né";
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,180 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javafx.event.Event;
+import javafx.geometry.Point2D;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests that the text of read-only areas can be selected and copied from the
+ * keyboard and the mouse, though it can not be edited.
+ */
+class ReadOnlySelectionTest {
+
+
+    /**
+     * The directory the files are written in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * The window the area is shown in.
+     */
+    private Stage stage;
+
+
+    /**
+     * Closes the window.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        if(stage != null) {
+            Fx.run(stage::close);
+        }
+    }
+
+
+    /**
+     * The caret of a read-only area moves and selects from the keyboard, but
+     * the keys that edit do nothing.
+     */
+    @Test
+    void selectsFromKeyboard() throws Exception {
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.appendText("first line\nsecond line");
+            created.positionCaret(0);
+            created.setEditable(false);
+            return created;
+        });
+        show(area);
+
+        Fx.run(() -> {
+            press(area, KeyCode.RIGHT, true, false);
+            press(area, KeyCode.RIGHT, true, false);
+            press(area, KeyCode.RIGHT, true, false);
+        });
+        assertEquals("fir", Fx.call(area::getSelectedText));
+
+        Fx.run(() -> {
+            press(area, KeyCode.DELETE, false, false);
+            press(area, KeyCode.BACK_SPACE, false, false);
+            press(area, KeyCode.X, false, true);
+        });
+        assertEquals("first line\nsecond line", Fx.call(area::getText));
+
+        Fx.run(() -> press(area, KeyCode.A, false, true));
+        assertEquals("first line\nsecond line", Fx.call(area::getSelectedText));
+    }
+
+
+    /**
+     * A line of a read-only area is selected by clicking it three times.
+     */
+    @Test
+    void selectsWithMouse() throws Exception {
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.appendText("first line\nsecond line");
+            created.setEditable(false);
+            return created;
+        });
+        show(area);
+
+        Fx.run(() -> click(area, 3));
+        assertEquals("first line", Fx.call(area::getSelectedText));
+    }
+
+
+    /**
+     * The text of a large file is selected by line and column, across lines
+     * and with the keyboard and the mouse.
+     */
+    @Test
+    void selectsInLargeFile() throws Exception {
+        Path file = directory.resolve("large.log");
+        Files.write(file, "alpha beta\r\ngamma\r\ndelta".getBytes(StandardCharsets.UTF_8));
+        LargeFileArea area = Fx.call(() -> {
+            LargeFileArea created = new LargeFileArea(file.toFile());
+            created.setShowLineNumbers(false);
+            created.startIndexing().get();
+            return created;
+        });
+        show(area);
+
+        try {
+            Fx.run(() -> area.selectLines(2, 3, 0, 6));
+            assertEquals("beta\ngamma\ndel", Fx.call(area::getSelectedText));
+
+            Fx.run(() -> press(area, KeyCode.A, false, true));
+            assertEquals("alpha beta\ngamma\ndelta", Fx.call(area::getSelectedText));
+
+            Fx.run(() -> click(area, 2));
+            assertEquals("alpha", Fx.call(area::getSelectedText));
+        } finally {
+            Fx.run(area::close);
+        }
+    }
+
+
+    /**
+     * Shows an area in a window and lays it out.
+     *
+     * @param area  The area to show.
+     */
+    private void show(EditingArea area) throws Exception {
+        Fx.run(() -> {
+            area.setShowLineNumbers(false);
+            stage = new Stage();
+            stage.setScene(new Scene(new StackPane(area), 400, 300));
+            stage.show();
+            area.applyCss();
+            area.layout();
+        });
+    }
+
+
+    /**
+     * Presses a key in an area.
+     *
+     * @param area      The area.
+     * @param code      The key.
+     * @param shift     Whether or not shift is held down.
+     * @param shortcut  Whether or not the shortcut key is held down.
+     */
+    private static void press(EditingArea area, KeyCode code, boolean shift, boolean shortcut) {
+        Event.fireEvent(area, new KeyEvent(KeyEvent.KEY_PRESSED, "", "", code, shift, shortcut, false, false));
+        area.layout();
+    }
+
+
+    /**
+     * Clicks near the start of the first line of an area.
+     *
+     * @param area          The area.
+     * @param clickCount    The amount of clicks.
+     */
+    private static void click(EditingArea area, int clickCount) {
+        Point2D point = area.localToScene(area.snappedLeftInset() + 10, area.snappedTopInset() + 5);
+        Event.fireEvent(area, new MouseEvent(MouseEvent.MOUSE_PRESSED, point.getX(), point.getY(),
+                point.getX(), point.getY(), MouseButton.PRIMARY, clickCount, false, false, false, false,
+                true, false, false, false, false, true, null));
+        area.layout();
+    }
+}
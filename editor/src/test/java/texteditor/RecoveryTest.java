@@ -0,0 +1,120 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that a document recovered when the editor starts is treated as unsaved.
+ */
+class RecoveryTest {
+
+
+    /**
+     * The directory the journals are kept in.
+     */
+    private static final Path DIRECTORY = AutosaveJournalTest.DIRECTORY;
+
+
+    /**
+     * The window of the editor started by the test.
+     */
+    private Stage stage;
+
+
+    /**
+     * Closes the editor and deletes the journals it kept.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        if(stage != null) {
+            Fx.run(stage::hide);
+        }
+        AutosaveJournal.shutdown(true, 5);
+    }
+
+
+    /**
+     * Closing the tab of a recovered document asks to save it, and the journal
+     * is kept when the user cancels.
+     */
+    @Test
+    void closingRecoveredDocumentAsksToSave() throws Exception {
+        AutosaveJournal.shutdown(true, 5);
+        AutosaveJournalTest.deleteJournals();
+        AutosaveJournalTest.crash("crashed", "recovered", " text");
+        assertTrue(Files.exists(DIRECTORY.resolve("crashed.snapshot")));
+
+        Tab tab = Fx.call(() -> {
+            stage = new Stage();
+            new TextEditor().start(stage);
+            TabPane tabPane = (TabPane)((BorderPane)stage.getScene().getRoot()).getCenter();
+            return tabPane.getSelectionModel().getSelectedItem();
+        });
+        EditingArea area = (EditingArea)tab.getContent();
+        assertEquals("recovered text", Fx.call(area::getText));
+        assertTrue(Fx.call(area::getHasBeenEdited));
+
+        // Ask to close the tab the way its close button does.
+        CompletableFuture<Boolean> consumed = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            Event event = new Event(tab, tab, Tab.TAB_CLOSE_REQUEST_EVENT);
+            tab.getOnCloseRequest().handle(event);
+            consumed.complete(event.isConsumed());
+        });
+
+        DialogPane prompt = null;
+        for(int i = 0; i < 100 && prompt == null; i++) {
+            prompt = Fx.call(RecoveryTest::findDialog);
+            Thread.sleep(50);
+        }
+        assertNotNull(prompt, "closing the recovered document did not ask to save it");
+
+        DialogPane dialog = prompt;
+        Fx.run(() -> {
+            for(ButtonType type : dialog.getButtonTypes()) {
+                if(type.getText().equals("Cancel")) {
+                    ((Button)dialog.lookupButton(type)).fire();
+                }
+            }
+        });
+        assertTrue(consumed.get(10, TimeUnit.SECONDS));
+
+        AutosaveJournal.shutdown(false, 5);
+        assertTrue(Files.exists(DIRECTORY.resolve("crashed.snapshot")));
+        assertTrue(Files.exists(DIRECTORY.resolve("crashed.journal")));
+        assertNotNull(Fx.call(tab::getTabPane));
+    }
+
+
+    /**
+     * Returns the dialog that is showing, if there is one.
+     */
+    private static DialogPane findDialog() {
+        for(Window window : Window.getWindows()) {
+            if(window.isShowing() && window.getScene().getRoot() instanceof DialogPane) {
+                return (DialogPane)window.getScene().getRoot();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,181 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that a SearchTask finds plain text wherever it is in the blocks the
+ * document is copied out in, with and without matching case.
+ */
+class SearchTaskTest {
+
+
+    /**
+     * Matches that start a few characters before the end of a block, and so
+     * end in the next one, are found once, and so is a match straight after
+     * one of them.
+     */
+    @Test
+    void findsMatchesAcrossBlocks() throws Exception {
+        int size = SearchTask.BLOCK_SIZE;
+        StringBuilder text = new StringBuilder("x".repeat(3 * size));
+        int[] starts = { size - 5, size + 1, 2 * size - 1, 3 * size - 6 };
+        for(int start : starts) {
+            text.replace(start, start + 6, "needle");
+        }
+
+        List<int[]> matches = search(text.toString(), "needle", true);
+        assertEquals(starts.length, matches.size());
+        for(int i = 0; i < starts.length; i++) {
+            assertMatch(matches.get(i), starts[i], starts[i] + 6);
+        }
+    }
+
+
+    /**
+     * Text is found ignoring case, including letters outside of ASCII.
+     */
+    @Test
+    void findsCaseFoldedMatches() throws Exception {
+        List<int[]> matches = search("École, ÉCOLE and école; not ecole", "éCoLe", false);
+
+        assertEquals(3, matches.size());
+        assertMatch(matches.get(0), 0, 5);
+        assertMatch(matches.get(1), 7, 12);
+        assertMatch(matches.get(2), 17, 22);
+        assertEquals(0, search("École", "éCoLe", true).size());
+    }
+
+
+    /**
+     * A single character is found everywhere it is, and a text as long as the
+     * document only when it is the document.
+     */
+    @Test
+    void findsShortestAndLongestPatterns() throws Exception {
+        assertEquals(4, search("abacada", "a", true).size());
+        assertEquals(4, search("AbacAda", "a", false).size());
+
+        assertMatch(search("whole", "whole", true).get(0), 0, 5);
+        assertMatch(search("WHOLE", "whole", false).get(0), 0, 5);
+        assertEquals(0, search("whole", "wholf", true).size());
+        assertEquals(0, search("whole", "wholes", true).size());
+        assertEquals(0, search("", "a", true).size());
+    }
+
+
+    /**
+     * Random text over a few blocks gives the same matches as looking for
+     * each one with indexOf, in both case modes.
+     */
+    @Test
+    void matchesIndexOf() throws Exception {
+        Random random = new Random(11);
+        char[] chars = new char[2 * SearchTask.BLOCK_SIZE + 100];
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = "abAB".charAt(random.nextInt(4));
+        }
+        String text = new String(chars);
+
+        for(int i = 0; i < 20; i++) {
+            char[] pattern = new char[1 + random.nextInt(6)];
+            for(int j = 0; j < pattern.length; j++) {
+                pattern[j] = "abAB".charAt(random.nextInt(4));
+            }
+            String query = new String(pattern);
+            boolean matchCase = i % 2 == 0;
+
+            List<int[]> matches = search(text, query, matchCase);
+            List<Integer> expected = indexesOf(text, query, matchCase);
+            assertEquals(expected.size(), matches.size(), query);
+            for(int j = 0; j < expected.size(); j++) {
+                assertMatch(matches.get(j), expected.get(j), expected.get(j) + query.length());
+            }
+        }
+    }
+
+
+    /**
+     * Searches a text for plain text.
+     *
+     * @param text      The text to search.
+     * @param query     The text to look for.
+     * @param matchCase Whether or not case has to match.
+     * @return  The start and end of each match, in order.
+     */
+    private static List<int[]> search(String text, String query, boolean matchCase) throws Exception {
+        List<int[]> matches = new ArrayList<>();
+        SearchTask task = Fx.call(() -> {
+            EditingArea area = new EditingArea();
+            area.appendText(text);
+            return new SearchTask(area, new SearchQuery(query, false, matchCase)) {
+
+                @Override
+                protected void found(int start, int end) {
+                    matches.add(new int[] { start, end });
+                    super.found(start, end);
+                }
+            };
+        });
+        task.run();
+        task.get(30, TimeUnit.SECONDS);
+        return matches;
+    }
+
+
+    /**
+     * Finds the matches of a text that do not overlap, from the start, with
+     * indexOf.
+     *
+     * @param text      The text to search.
+     * @param query     The text to look for.
+     * @param matchCase Whether or not case has to match.
+     * @return  The offsets of the matches.
+     */
+    private static List<Integer> indexesOf(String text, String query, boolean matchCase) {
+        if(!matchCase) {
+            text = fold(text);
+            query = fold(query);
+        }
+
+        List<Integer> offsets = new ArrayList<>();
+        for(int i = text.indexOf(query); i >= 0; i = text.indexOf(query, i + query.length())) {
+            offsets.add(i);
+        }
+        return offsets;
+    }
+
+
+    /**
+     * Folds the case of every character of a text.
+     *
+     * @param text  The text.
+     * @return  The folded text.
+     */
+    private static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = SearchQuery.foldCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Checks the start and end of a match.
+     *
+     * @param match The start and end of the match.
+     * @param start The start it should have.
+     * @param end   The end it should have.
+     */
+    private static void assertMatch(int[] match, int start, int end) {
+        assertEquals(start, match[0]);
+        assertEquals(end, match[1]);
+    }
+}
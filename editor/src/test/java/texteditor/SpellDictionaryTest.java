@@ -0,0 +1,175 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests looking words up in a SpellDictionary and the suggestions it gives
+ * for misspelled ones.
+ */
+class SpellDictionaryTest {
+
+
+    /**
+     * The directory the dictionaries are written in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * A built dictionary holds exactly its words, counted once each, and not
+     * their prefixes or longer words that start with them.
+     */
+    @Test
+    void containsItsWords() throws IOException {
+        SpellDictionary dictionary = build("cat", "cats", "catalog", "dog", "cat", " ", "");
+
+        assertEquals(4, dictionary.getWordCount());
+        for(String word : new String[] { "cat", "cats", "catalog", "dog" }) {
+            assertTrue(contains(dictionary, word), word);
+        }
+        for(String word : new String[] { "ca", "catal", "catalogs", "do", "dogs", "bird" }) {
+            assertFalse(contains(dictionary, word), word);
+        }
+        assertTrue(dictionary.contains("the cat sat", 4, 7));
+    }
+
+
+    /**
+     * Many random words are all found, and words that were left out are not,
+     * however much the DAWG merged their endings.
+     */
+    @Test
+    void containsRandomWords() throws IOException {
+        Random random = new Random(5);
+        Set<String> words = new HashSet<>();
+        while(words.size() < 2000) {
+            words.add(randomWord(random));
+        }
+        SpellDictionary dictionary = build(words.toArray(new String[0]));
+
+        assertEquals(words.size(), dictionary.getWordCount());
+        for(String word : words) {
+            assertTrue(contains(dictionary, word), word);
+        }
+        for(int i = 0; i < 2000; i++) {
+            String word = randomWord(random);
+            assertEquals(words.contains(word), contains(dictionary, word), word);
+        }
+    }
+
+
+    /**
+     * A word starting with a capital or in capitals is correct if the
+     * dictionary has it in lower case, but a name is not correct in lower case.
+     */
+    @Test
+    void acceptsCapitals() throws IOException {
+        SpellDictionary dictionary = build("hello", "Paris");
+
+        assertTrue(contains(dictionary, "Hello"));
+        assertTrue(contains(dictionary, "HELLO"));
+        assertFalse(contains(dictionary, "hELLO"));
+        assertTrue(contains(dictionary, "PARIS"));
+        assertFalse(contains(dictionary, "paris"));
+    }
+
+
+    /**
+     * Words one edit away are suggested first, including swapped letters,
+     * those as long as the misspelled word before the rest, and with the
+     * capital of the misspelled word kept.
+     */
+    @Test
+    void suggestsClosestWords() throws IOException {
+        SpellDictionary dictionary = build("hello", "help", "hold", "the", "then", "world", "word");
+
+        assertEquals(List.of("help", "hello"), dictionary.suggest("helo", 2));
+        assertEquals("the", dictionary.suggest("teh", 5).get(0));
+        assertEquals(List.of("World"), dictionary.suggest("Wrold", 1));
+        assertEquals(1, dictionary.suggest("helo", 1).size());
+        assertEquals(List.of(), dictionary.suggest("xylophone", 5));
+        assertEquals(List.of(), dictionary.suggest("", 5));
+    }
+
+
+    /**
+     * A dictionary with no words finds and suggests nothing.
+     */
+    @Test
+    void emptyDictionary() throws IOException {
+        SpellDictionary dictionary = build();
+
+        assertEquals(0, dictionary.getWordCount());
+        assertFalse(contains(dictionary, "word"));
+        assertEquals(List.of(), dictionary.suggest("word", 5));
+    }
+
+
+    /**
+     * A file that is not a dictionary is refused.
+     */
+    @Test
+    void refusesOtherFiles() throws IOException {
+        Path file = Files.write(directory.resolve("words.txt"), "hello\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> SpellDictionary.open(file));
+    }
+
+
+    /**
+     * Builds a dictionary file from words and opens it.
+     *
+     * @param words The words.
+     * @return  The dictionary.
+     * @throws IOException  If the file could not be written or read.
+     */
+    private SpellDictionary build(String... words) throws IOException {
+        Path file = directory.resolve("words.dawg");
+        SpellDictionary.build(new ArrayList<>(List.of(words)), file);
+        return SpellDictionary.open(file);
+    }
+
+
+    /**
+     * Returns whether or not a dictionary holds a word.
+     *
+     * @param dictionary    The dictionary.
+     * @param word          The word.
+     * @return  true if the word is spelled correctly; false if not.
+     */
+    private static boolean contains(SpellDictionary dictionary, String word) {
+        return dictionary.contains(word, 0, word.length());
+    }
+
+
+    /**
+     * Returns a short word of a few letters, so that random words share many
+     * beginnings and endings.
+     *
+     * @param random    The random numbers to use.
+     * @return  The word.
+     */
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(6)];
+        for(int i = 0; i < word.length; i++) {
+            word[i] = "abcde".charAt(random.nextInt(5));
+        }
+        return new String(word);
+    }
+}
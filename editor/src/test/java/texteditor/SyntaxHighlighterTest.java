@@ -0,0 +1,137 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that the line states a SyntaxHighlighter keeps after edits are the
+ * same as reading the whole document again.
+ */
+class SyntaxHighlighterTest {
+
+
+    /**
+     * The pieces of Java the documents are made of, several of which change
+     * the state the lines after them start in.
+     */
+    private static final String[] PIECES = {
+        "int x = 1;", "/*", "*/", "\"\"\"", "// note", "\n", "\n", "\n", "\"text\"", " ", "class A {", "}"
+    };
+
+
+    /**
+     * Random edits that open and close comments and text blocks leave every
+     * line in the state a full read of the document gives it.
+     */
+    @Test
+    void relexingMatchesFullLex() throws Exception {
+        Random random = new Random(3);
+        Lexer lexer = new JavaLexer();
+        EditingArea area = Fx.call(() -> {
+            EditingArea created = new EditingArea();
+            created.appendText(randomText(random, 2000));
+            return created;
+        });
+        SyntaxHighlighter highlighter = Fx.call(() -> new SyntaxHighlighter(area, lexer));
+
+        try {
+            awaitComplete(highlighter);
+            assertArrayEquals(fullLex(area, lexer), states(area, highlighter));
+
+            for(int i = 0; i < 200; i++) {
+                Fx.run(() -> {
+                    int length = area.getLength();
+                    int start = random.nextInt(length + 1);
+                    int end = Math.min(length, start + random.nextInt(40));
+                    area.replaceText(start, end, randomText(random, random.nextInt(4)));
+                });
+                if(i % 10 == 0) {
+                    awaitComplete(highlighter);
+                    assertArrayEquals(fullLex(area, lexer), states(area, highlighter), "After edit " + i);
+                }
+            }
+
+            awaitComplete(highlighter);
+            assertArrayEquals(fullLex(area, lexer), states(area, highlighter));
+        } finally {
+            Fx.run(highlighter::stop);
+        }
+    }
+
+
+    /**
+     * Returns text made of random pieces of Java.
+     *
+     * @param random    The random numbers to use.
+     * @param pieces    The amount of pieces.
+     * @return  The text.
+     */
+    private static String randomText(Random random, int pieces) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * Waits until a highlighter has read the whole document.
+     *
+     * @param highlighter   The highlighter.
+     */
+    private static void awaitComplete(SyntaxHighlighter highlighter) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while(!Fx.call(highlighter::isComplete)) {
+            assertTrue(System.nanoTime() < deadline, "The highlighter did not finish reading.");
+            Thread.sleep(5);
+        }
+    }
+
+
+    /**
+     * Returns the states a highlighter has for the lines of an area.
+     *
+     * @param area          The area.
+     * @param highlighter   The highlighter of the area.
+     * @return  The state each line starts in.
+     */
+    private static int[] states(EditingArea area, SyntaxHighlighter highlighter) throws Exception {
+        return Fx.call(() -> {
+            int[] states = new int[area.getLineCount()];
+            for(int line = 0; line < states.length; line++) {
+                states[line] = highlighter.getLineState(line);
+            }
+            return states;
+        });
+    }
+
+
+    /**
+     * Reads every line of an area with a lexer from the start.
+     *
+     * @param area  The area.
+     * @param lexer The lexer.
+     * @return  The state each line starts in.
+     */
+    private static int[] fullLex(EditingArea area, Lexer lexer) throws Exception {
+        String text = Fx.call(area::getText);
+        int[] states = new int[(int)text.chars().filter(c -> c == '\n').count() + 1];
+        int state = Lexer.INITIAL_STATE;
+        int offset = 0;
+        for(int line = 0; line < states.length; line++) {
+            states[line] = state;
+            int end = text.indexOf('\n', offset);
+            if(end < 0) {
+                end = text.length();
+            }
+            state = lexer.tokenize(text, offset, end, state, Lexer.NONE);
+            offset = end + 1;
+        }
+        return states;
+    }
+}
@@ -0,0 +1,179 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests that a TextDecoder turns line endings into "\n" and counts them the
+ * same wherever the chunks it decodes in are split.
+ */
+class TextDecoderTest {
+
+
+    /**
+     * The directory the files are read from.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * A CRLF whose '\r' ends one chunk and whose '\n' starts the next becomes
+     * a single line break, wherever around the end of the chunk it falls.
+     */
+    @Test
+    void joinsCrlfSplitAcrossChunks() throws Exception {
+        for(int length = TextDecoder.CHUNK_SIZE - 2; length <= TextDecoder.CHUNK_SIZE + 1; length++) {
+            String line = "x".repeat(length);
+            Result result = decode(utf8(line + "\r\nend\r\n"));
+
+            assertEquals(line + "\nend\n", result.text.toString());
+            assertEquals(LineEnding.CRLF, result.decoder.getLineEnding(LineEnding.LF));
+            assertFalse(result.decoder.hasMixedLineEndings());
+            assertTrue(result.chunks > 1);
+        }
+    }
+
+
+    /**
+     * A CRLF split between two reads of the file is joined as well, when the
+     * reads do not end where the chunks do.
+     */
+    @Test
+    void joinsCrlfSplitAcrossReads() throws Exception {
+        String line = "a" + "é".repeat((BufferPool.BUFFER_SIZE - 2) / 2);
+        assertEquals(BufferPool.BUFFER_SIZE - 1, utf8(line).length);
+        Result result = decode(utf8(line + "\r\n" + line + "\r\n"));
+
+        assertEquals(line + "\n" + line + "\n", result.text.toString());
+        assertEquals(LineEnding.CRLF, result.decoder.getLineEnding(LineEnding.LF));
+        assertFalse(result.decoder.hasMixedLineEndings());
+    }
+
+
+    /**
+     * A CR at the end of a chunk that is followed by another CR is not joined
+     * with the '\n' after that.
+     */
+    @Test
+    void keepsCrBeforeCrlf() throws Exception {
+        String line = "x".repeat(TextDecoder.CHUNK_SIZE - 1);
+        Result result = decode(utf8(line + "\r\r\n"));
+
+        assertEquals(line + "\n\n", result.text.toString());
+        assertTrue(result.decoder.hasMixedLineEndings());
+    }
+
+
+    /**
+     * Line endings are counted again from the start when a file that is not
+     * UTF-8 is read again in the legacy charset.
+     */
+    @Test
+    void countsAgainAfterRestart() throws Exception {
+        String line = "x".repeat(TextDecoder.CHUNK_SIZE - 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(utf8(line + "\r\n" + line + "\r\n"));
+        bytes.write(0xff);
+        Result result = decode(bytes.toByteArray());
+
+        assertEquals(CharsetDetector.getLegacyCharset(), result.decoder.getCharset());
+        assertEquals(1, result.restarts);
+        assertTrue(result.text.toString().startsWith(line + "\n" + line + "\n"));
+        assertEquals(LineEnding.CRLF, result.decoder.getLineEnding(LineEnding.LF));
+        assertFalse(result.decoder.hasMixedLineEndings());
+    }
+
+
+    /**
+     * Encodes text in UTF-8.
+     *
+     * @param text  The text.
+     * @return  The bytes.
+     */
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Writes bytes to a file and decodes it.
+     *
+     * @param bytes The contents of the file.
+     * @return  What the decoder gave the sink.
+     * @throws IOException          If the file could not be written or read.
+     * @throws InterruptedException Never.
+     */
+    private Result decode(byte[] bytes) throws IOException, InterruptedException {
+        Path file = Files.write(directory.resolve("text.txt"), bytes);
+        Result result = new Result();
+        result.decoder = new TextDecoder(result);
+        try(SeekableByteChannel channel = Files.newByteChannel(file)) {
+            result.decoder.read(channel);
+        }
+        return result;
+    }
+
+
+    /**
+     * A sink that keeps the text it is given.
+     */
+    private static class Result implements TextDecoder.Sink {
+
+
+        /**
+         * The decoder that read the file.
+         */
+        TextDecoder decoder;
+
+
+        /**
+         * The text decoded since the last restart.
+         */
+        final StringBuilder text = new StringBuilder();
+
+
+        /**
+         * The amount of chunks added since the last restart.
+         */
+        int chunks;
+
+
+        /**
+         * The amount of times the file was read again.
+         */
+        int restarts;
+
+
+        /*
+         * Keeps the chunk.
+         */
+        @Override
+        public void append(CharSequence chunk) {
+            text.append(chunk);
+            chunks++;
+        }
+
+
+        /*
+         * Throws away the text.
+         */
+        @Override
+        public void restart() {
+            text.setLength(0);
+            chunks = 0;
+            restarts++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests writing text with a TextEncoder.
+ */
+class TextEncoderTest {
+
+
+    /**
+     * The directory the files are written in.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * Line endings are put back and the byte order mark is written first.
+     */
+    @Test
+    void writesLineEndingsAndByteOrderMark() throws IOException {
+        Path file = directory.resolve("text.txt");
+        new TextEncoder(StandardCharsets.UTF_8, true, LineEnding.CRLF).save(file, source("a\nb\n"));
+
+        assertArrayEquals(new byte[] {(byte)0xef, (byte)0xbb, (byte)0xbf, 'a', '\r', '\n', 'b', '\r', '\n'},
+                Files.readAllBytes(file));
+    }
+
+
+    /**
+     * Text the charset can not hold fails the save instead of being written
+     * as '?', and the file is left as it was.
+     */
+    @Test
+    void refusesTextCharsetCanNotHold() throws IOException {
+        Path file = directory.resolve("latin.txt");
+        Files.write(file, "old".getBytes(StandardCharsets.ISO_8859_1));
+        TextEncoder encoder = new TextEncoder(StandardCharsets.ISO_8859_1, false, LineEnding.LF);
+
+        assertThrows(CharacterCodingException.class, () -> encoder.save(file, source("café €5")));
+        assertEquals("old", new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+        try(Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+
+    /**
+     * A lone half of a surrogate pair can not be written in UTF-8 either.
+     */
+    @Test
+    void refusesLoneSurrogate() {
+        Path file = directory.resolve("broken.txt");
+        TextEncoder encoder = new TextEncoder(Charset.forName("UTF-8"), false, LineEnding.LF);
+
+        assertThrows(CharacterCodingException.class, () -> encoder.save(file, source("a\ud800b")));
+    }
+
+
+    /**
+     * Saving through a symbolic link writes the file it points to and leaves
+     * the link in place, with the permissions of the file kept.
+     */
+    @Test
+    void followsSymbolicLink() throws IOException {
+        Path file = Files.write(directory.resolve("real.txt"), "old".getBytes(StandardCharsets.UTF_8));
+        Path link = directory.resolve("link.txt");
+        try {
+            Files.createSymbolicLink(link, file.getFileName());
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r-----"));
+        } catch(UnsupportedOperationException e) {
+            assumeTrue(false, "The file system has no symbolic links or POSIX permissions.");
+        }
+
+        new TextEncoder(StandardCharsets.UTF_8, false, LineEnding.LF).save(link, source("new"));
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+
+    /**
+     * A file that belongs to another user still belongs to them once it is
+     * saved.
+     */
+    @Test
+    void keepsOwner() throws IOException {
+        Path file = Files.write(directory.resolve("owned.txt"), "old".getBytes(StandardCharsets.UTF_8));
+        UserPrincipal other;
+        try {
+            other = directory.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName("nobody");
+            Files.setOwner(file, other);
+        } catch(IOException | UnsupportedOperationException e) {
+            assumeTrue(false, "The owner of the file can not be changed.");
+            return;
+        }
+
+        new TextEncoder(StandardCharsets.UTF_8, false, LineEnding.LF).save(file, source("new"));
+
+        assertEquals("new", Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(other, Files.getOwner(file));
+    }
+
+
+    /**
+     * Returns a Source that reads a string.
+     *
+     * @param text  The text.
+     * @return  The source.
+     */
+    static TextEncoder.Source source(String text) {
+        return new TextEncoder.Source() {
+
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public void getChars(int offset, int length, char[] dest, int destPos) {
+                text.getChars(offset, offset + length, dest, destPos);
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests that a TrigramIndex leaves out only the files that can not match, is
+ * read back from its file, and follows files that change.
+ */
+class TrigramIndexTest {
+
+
+    /**
+     * The directory that is indexed.
+     */
+    @TempDir
+    Path directory;
+
+
+    /**
+     * The threads the files are read on.
+     */
+    private final ExecutorService workers = Executors.newFixedThreadPool(2);
+
+
+    /**
+     * Stops the threads.
+     */
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+    }
+
+
+    /**
+     * An index read back from its file gives the same files, and trusts the
+     * file for files whose size and modification time have not changed.
+     */
+    @Test
+    void roundTripsThroughDisk() throws Exception {
+        Path hello = write("hello.txt", "hello world");
+        Path goodbye = write("goodbye.txt", "goodbye moon");
+        TrigramIndex index = update(new TrigramIndex(directory));
+        assertEquals(Set.of(hello), candidates(index, "world", false));
+
+        // Changed without its size or modification time changing, the file
+        // is only found by what was in it when the index was saved.
+        FileTime modified = Files.getLastModifiedTime(hello);
+        write("hello.txt", "HELLO earth");
+        Files.setLastModifiedTime(hello, modified);
+
+        TrigramIndex loaded = update(new TrigramIndex(directory));
+        assertEquals(2, loaded.getFileCount());
+        assertEquals(Set.of(hello), candidates(loaded, "world", false));
+        assertEquals(Set.of(), candidates(loaded, "earth", false));
+        assertEquals(Set.of(goodbye), candidates(loaded, "MOON", false));
+    }
+
+
+    /**
+     * Queries with no trigrams in them, regular expressions with alternatives
+     * and the characters of a regular expression that are not literal do not
+     * leave out files that could match.
+     */
+    @Test
+    void filtersShortQueriesAndRegexes() throws Exception {
+        Path hello = write("hello.txt", "hello world");
+        Path goodbye = write("goodbye.txt", "goodbye moon");
+        TrigramIndex index = update(new TrigramIndex(directory));
+
+        assertEquals(Set.of(hello, goodbye), candidates(index, "wo", false));
+        assertEquals(Set.of(hello, goodbye), candidates(index, "", false));
+        assertEquals(Set.of(hello), candidates(index, "wor.d", true));
+        assertEquals(Set.of(hello), candidates(index, "hel+o", true));
+        assertEquals(Set.of(hello, goodbye), candidates(index, "world|moon", true));
+        assertEquals(Set.of(goodbye), candidates(index, "(?i)GOOD\\w+", true));
+        assertEquals(Set.of(), candidates(index, "planet", false));
+    }
+
+
+    /**
+     * An update reads files that changed and drops files that were deleted.
+     */
+    @Test
+    void followsChangedAndDeletedFiles() throws Exception {
+        Path hello = write("hello.txt", "hello world");
+        Path goodbye = write("goodbye.txt", "goodbye moon");
+        TrigramIndex index = update(new TrigramIndex(directory));
+
+        write("goodbye.txt", "goodbye cruel world");
+        update(index);
+        assertEquals(Set.of(hello, goodbye), candidates(index, "world", false));
+        assertEquals(Set.of(), candidates(index, "moon", false));
+
+        Files.delete(hello);
+        update(index);
+        assertEquals(1, index.getFileCount());
+        assertEquals(Set.of(goodbye), candidates(index, "world", false));
+        assertEquals(Set.of(goodbye), candidates(index, "wo", false));
+    }
+
+
+    /**
+     * Writes a file in the indexed directory.
+     *
+     * @param name  The name of the file.
+     * @param text  The text of the file.
+     * @return  The file.
+     * @throws IOException  If the file could not be written.
+     */
+    private Path write(String name, String text) throws IOException {
+        return Files.write(directory.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Brings an index up to date.
+     *
+     * @param index The index.
+     * @return  The index.
+     */
+    private TrigramIndex update(TrigramIndex index) throws Exception {
+        index.update(workers, () -> false);
+        return index;
+    }
+
+
+    /**
+     * Returns the files an index gives for a query that ignores case.
+     *
+     * @param index The index.
+     * @param text  The text to look for.
+     * @param regex Whether or not the text is a regular expression.
+     * @return  The files that could match.
+     */
+    private static Set<Path> candidates(TrigramIndex index, String text, boolean regex) {
+        List<Path> candidates = index.getCandidates(new SearchQuery(text, regex, false));
+        return new HashSet<>(candidates);
+    }
+}
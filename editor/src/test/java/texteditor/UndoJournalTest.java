@@ -0,0 +1,233 @@
+package texteditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests that an UndoJournal joins runs of typing, and that edits written to
+ * its files come back the same.
+ */
+class UndoJournalTest {
+
+
+    /**
+     * The journal being tested.
+     */
+    private final UndoJournal journal = new UndoJournal();
+
+
+    /**
+     * Deletes the temporary files of the journal.
+     */
+    @AfterEach
+    void close() {
+        journal.close();
+    }
+
+
+    /**
+     * Characters typed one after another are undone together.
+     */
+    @Test
+    void joinsTyping() {
+        type(0, "hello");
+
+        assertEquals(1, journal.getUndoCount());
+        assertEdit(journal.undo(), 0, "", "hello");
+        assertFalse(journal.canUndo());
+    }
+
+
+    /**
+     * A line break is not joined onto a run of typing, but starts a new one.
+     */
+    @Test
+    void lineBreakStartsRun() {
+        type(0, "ab\ncd");
+
+        assertEquals(2, journal.getUndoCount());
+        assertEdit(journal.undo(), 2, "", "\ncd");
+        assertEdit(journal.undo(), 0, "", "ab");
+    }
+
+
+    /**
+     * Characters removed with backspace, including both halves of a
+     * surrogate pair, are undone together in the order they were in.
+     */
+    @Test
+    void joinsBackspace() {
+        String text = "ab😀cd";
+        for(int i = text.length() - 1; i >= 0; i--) {
+            journal.record(i, text.substring(i, i + 1), "");
+        }
+
+        assertEquals(1, journal.getUndoCount());
+        assertEdit(journal.undo(), 0, text, "");
+    }
+
+
+    /**
+     * Deleting forwards and then backwards from the same place is undone
+     * together.
+     */
+    @Test
+    void joinsDeleteAndBackspace() {
+        journal.record(3, "d", "");
+        journal.record(3, "e", "");
+        journal.record(2, "c", "");
+        journal.record(1, "b", "");
+        journal.record(1, "f", "");
+
+        assertEquals(1, journal.getUndoCount());
+        assertEdit(journal.undo(), 1, "bcdef", "");
+    }
+
+
+    /**
+     * A run that was ended by being undone and redone can be carried on.
+     */
+    @Test
+    void carriesOnRedoneRun() {
+        type(0, "ab");
+        assertEdit(journal.undo(), 0, "", "ab");
+        assertEdit(journal.redo(), 0, "", "ab");
+        type(2, "cd");
+
+        assertEquals(1, journal.getUndoCount());
+        assertEdit(journal.undo(), 0, "", "abcd");
+    }
+
+
+    /**
+     * The memory used follows a run as it grows, and is given back when the
+     * edits are forgotten.
+     */
+    @Test
+    void countsMemoryOfRun() {
+        type(0, "a");
+        long one = journal.getMemoryUsed();
+        type(1, "bcd");
+
+        assertEquals(one + 6, journal.getMemoryUsed());
+        journal.clear();
+        assertEquals(0, journal.getMemoryUsed());
+    }
+
+
+    /**
+     * Edits over the memory budget are written to a file and read back in
+     * order when they are undone and redone.
+     */
+    @Test
+    void spillsToFile() {
+        journal.setMemoryLimit(0);
+        for(int i = 0; i < 100; i++) {
+            journal.record(i * 10, "old " + i, "new " + i);
+        }
+
+        assertEquals(100, journal.getUndoCount());
+        assertTrue(journal.getSpilledBytes() > 0);
+        assertTrue(journal.getMemoryUsed() < 200);
+
+        for(int i = 99; i >= 0; i--) {
+            assertEdit(journal.undo(), i * 10, "old " + i, "new " + i);
+        }
+        assertNull(journal.undo());
+
+        for(int i = 0; i < 100; i++) {
+            assertEdit(journal.redo(), i * 10, "old " + i, "new " + i);
+        }
+        assertNull(journal.redo());
+    }
+
+
+    /**
+     * A run of typing that is written to a file comes back whole.
+     */
+    @Test
+    void spillsRun() {
+        type(0, "run of typing");
+        journal.record(0, "r", "R");
+        journal.setMemoryLimit(0);
+
+        assertEquals(2, journal.getUndoCount());
+        assertEdit(journal.undo(), 0, "r", "R");
+        assertEdit(journal.undo(), 0, "", "run of typing");
+    }
+
+
+    /**
+     * The oldest edits are forgotten to keep the file within its budget, and
+     * the space they used is taken back as they are dropped.
+     */
+    @Test
+    void dropsOldestOverDiskLimit() {
+        journal.setMemoryLimit(0);
+        journal.setDiskLimit(4096);
+        for(int i = 0; i < 1000; i++) {
+            journal.record(i, "", "edit " + i);
+        }
+
+        assertTrue(journal.getSpilledBytes() <= 4096);
+        int count = journal.getUndoCount();
+        assertTrue(count < 1000);
+        assertTrue(count > 10);
+
+        for(int i = 999; i >= 1000 - count; i--) {
+            assertEdit(journal.undo(), i, "", "edit " + i);
+        }
+        assertNull(journal.undo());
+    }
+
+
+    /**
+     * A disk limit of 0 forgets the edits that do not fit in memory.
+     */
+    @Test
+    void forgetsWithoutDisk() {
+        journal.setDiskLimit(0);
+        journal.setMemoryLimit(0);
+        for(int i = 0; i < 10; i++) {
+            journal.record(i, "", "edit " + i);
+        }
+
+        assertEquals(1, journal.getUndoCount());
+        assertEquals(0, journal.getSpilledBytes());
+        assertEdit(journal.undo(), 9, "", "edit 9");
+    }
+
+
+    /**
+     * Records text as if it were typed one character at a time.
+     *
+     * @param offset    The offset the first character is typed at.
+     * @param text      The text typed.
+     */
+    private void type(int offset, String text) {
+        for(int i = 0; i < text.length(); i++) {
+            journal.record(offset + i, "", text.substring(i, i + 1));
+        }
+    }
+
+
+    /**
+     * Checks an edit given back by the journal.
+     *
+     * @param edit      The edit.
+     * @param offset    The offset it should be at.
+     * @param removed   The text it should have removed.
+     * @param inserted  The text it should have inserted.
+     */
+    private static void assertEdit(UndoJournal.Edit edit, int offset, String removed, String inserted) {
+        assertEquals(offset, edit.offset);
+        assertEquals(removed, edit.removed);
+        assertEquals(inserted, edit.inserted);
+    }
+}
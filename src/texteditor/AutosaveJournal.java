@@ -0,0 +1,970 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import javafx.application.Platform;
+
+
+/**
+ * Keeps a copy of the unsaved changes of an EditingArea on disk, so that they
+ * can be recovered if the editor does not exit normally. The journal starts
+ * with a snapshot of the document when it is first edited, and each edit after
+ * that is added to an append-only journal file.
+ *
+ * Edits are only put in a queue on the JavaFX thread. A background thread
+ * writes the queued edits of every journal on an interval and forces them to
+ * disk once per interval, and replaces the journal with a new snapshot when it
+ * grows larger than the document. The interval can be set in milliseconds with
+ * the texteditor.autosave.interval system property.
+ */
+public class AutosaveJournal implements DocumentListener {
+
+
+    /**
+     * How often the queued edits are written and forced to disk.
+     */
+    public static final long COMMIT_INTERVAL = Long.getLong("texteditor.autosave.interval", 1000);
+
+
+    /**
+     * The directory the journals are kept in.
+     */
+    private static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".texteditor", "autosave");
+
+
+    /**
+     * The first bytes of snapshot and journal files, and the version of their
+     * format.
+     */
+    private static final int MAGIC = 0x54454a4c, VERSION = 1;
+
+
+    /**
+     * The size of the header of a journal file: the magic number, the version
+     * and the generation of the snapshot it follows.
+     */
+    private static final int JOURNAL_HEADER = 16;
+
+
+    /**
+     * The size of the fields of an edit record before its text: the length of
+     * the record, its checksum, the offset and the removed and inserted lengths.
+     */
+    private static final int RECORD_HEADER = 20;
+
+
+    /**
+     * The journal is replaced with a snapshot once it is at least this large
+     * and larger than the last snapshot.
+     */
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+
+    /**
+     * The amount of characters written to a snapshot at a time.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+
+    /**
+     * The item put in the queue when the journal's files should be deleted.
+     */
+    private static final Object DISCARD = new Object();
+
+
+    /**
+     * The item put in the queue when the journal is closed for good.
+     */
+    private static final Object CLOSE = new Object();
+
+
+    /**
+     * The thread the journals are written on.
+     */
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * Every journal that is open.
+     */
+    private static final List<AutosaveJournal> JOURNALS = new CopyOnWriteArrayList<>();
+
+
+    static {
+        WRITER.scheduleWithFixedDelay(AutosaveJournal::commitAll, COMMIT_INTERVAL, COMMIT_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * The EditingArea whose edits are journaled.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The name the journal's files are given.
+     */
+    private final String id;
+
+
+    /**
+     * The edits and snapshots waiting to be written.
+     */
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Whether or not a snapshot has been asked for on the JavaFX thread and not
+     * yet taken.
+     */
+    private final AtomicBoolean snapshotRequested = new AtomicBoolean(false);
+
+
+    /**
+     * Whether or not edits are being journaled. This is only used on the JavaFX
+     * thread. A journal becomes active when the user first edits the document,
+     * and stops when its files are discarded.
+     */
+    private boolean active = false;
+
+
+    /**
+     * The journal file, or null if it is not open. Only used on the writer.
+     */
+    private FileChannel channel;
+
+
+    /**
+     * The lock held on the journal file, so another instance of the editor
+     * does not recover it while it is in use.
+     */
+    private FileLock lock;
+
+
+    /**
+     * The generation of the last snapshot written, which the journal written
+     * after it starts with. Each snapshot is given a new random generation, so
+     * a journal left over from an earlier snapshot never matches, even the
+     * snapshot of a journal reopened for a recovered document.
+     */
+    private long generation = 0;
+
+
+    /**
+     * The size of the last snapshot and of the journal written since.
+     */
+    private long snapshotSize = 0, journalSize = 0;
+
+
+    /**
+     * The edits waiting to be written to the journal file.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+
+
+    /**
+     * Creates a journal for an EditingArea with new files.
+     *
+     * @param editingArea   The EditingArea to journal.
+     */
+    public AutosaveJournal(EditingArea editingArea) {
+        this(editingArea, UUID.randomUUID().toString());
+    }
+
+
+    /**
+     * Creates a journal for an EditingArea, using the files with a name. This
+     * is used for recovered documents, whose journal is replaced by a snapshot
+     * of the recovered text straight away.
+     *
+     * @param editingArea   The EditingArea to journal.
+     * @param id            The name of the journal's files.
+     */
+    public AutosaveJournal(EditingArea editingArea, String id) {
+        this.editingArea = editingArea;
+        this.id = id;
+        editingArea.getDocument().addDocumentListener(this);
+        JOURNALS.add(this);
+    }
+
+
+    /**
+     * Starts journaling, writing a snapshot of the document as it is now.
+     */
+    public void start() {
+        active = true;
+        queue.add(takeSnapshot());
+    }
+
+
+    /**
+     * Deletes the journal's files, because the document has been saved or is
+     * being thrown away. Journaling starts again at the next edit.
+     */
+    public void discard() {
+        if(active) {
+            active = false;
+            queue.add(DISCARD);
+        }
+    }
+
+
+    /**
+     * Deletes the journal's files and stops listening to the document.
+     */
+    public void close() {
+        active = false;
+        editingArea.getDocument().removeDocumentListener(this);
+        queue.add(CLOSE);
+    }
+
+
+    /*
+     * Queues the edit. The first edit the user makes starts the journal with a
+     * snapshot instead. This runs on the JavaFX thread for every edit, so it
+     * only copies the inserted text and adds it to the queue.
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        if(active) {
+            String inserted = e.getDocument().getText(e.getOffset(), e.getInsertedLength());
+            queue.add(new Edit(e.getOffset(), e.getRemovedLength(), inserted));
+        } else if(editingArea.isEditable()) {
+            start();
+        }
+    }
+
+
+    /**
+     * Waits for the queued edits of every journal to be written, deleting the
+     * files of every journal first if asked to. This is called when the editor
+     * exits.
+     *
+     * @param discard   Whether or not to delete every journal's files.
+     * @param seconds   The most seconds to wait.
+     */
+    public static void shutdown(boolean discard, long seconds) {
+        if(discard) {
+            for(AutosaveJournal journal : JOURNALS) {
+                journal.close();
+            }
+        }
+
+        try {
+            WRITER.submit(AutosaveJournal::commitAll).get(seconds, TimeUnit.SECONDS);
+        } catch(Exception e) {
+            // The journals are recovered the next time the editor starts.
+        }
+    }
+
+
+    /**
+     * Reads the journals left behind by an editor that did not exit normally.
+     * Journals that are locked by another running editor are left alone.
+     *
+     * @return  The documents that were recovered.
+     */
+    public static List<Recovery> recover() {
+        List<Recovery> recovered = new ArrayList<>();
+        if(!Files.isDirectory(DIRECTORY)) {
+            return recovered;
+        }
+
+        try(DirectoryStream<Path> snapshots = Files.newDirectoryStream(DIRECTORY, "*.snapshot")) {
+            for(Path snapshot : snapshots) {
+                String name = snapshot.getFileName().toString();
+                String id = name.substring(0, name.length() - ".snapshot".length());
+                try {
+                    Recovery recovery = recover(id, snapshot, DIRECTORY.resolve(id + ".journal"));
+                    if(recovery != null) {
+                        recovered.add(recovery);
+                    }
+                } catch(IOException | RuntimeException e) {
+                    // A damaged snapshot can not be recovered.
+                }
+            }
+        } catch(IOException e) {
+            // Nothing can be recovered if the directory can not be read.
+        }
+        return recovered;
+    }
+
+
+    /**
+     * Reads a snapshot and replays the edits in its journal.
+     *
+     * @param id        The name of the journal's files.
+     * @param snapshot  The snapshot file.
+     * @param journal   The journal file.
+     * @return  The recovered document, or null if the journal is in use.
+     * @throws IOException  If the snapshot could not be read.
+     */
+    private static Recovery recover(String id, Path snapshot, Path journal) throws IOException {
+        PieceTable document;
+        Recovery recovery;
+
+        try(FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 20);
+            if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a snapshot: " + snapshot);
+            }
+            long snapshotGeneration = header.getLong();
+            ByteBuffer metadata = read(channel, header.getInt());
+            String path = getString(metadata);
+            String charset = getString(metadata);
+            boolean byteOrderMark = metadata.get() != 0;
+            String lineEnding = getString(metadata);
+            int caret = metadata.getInt();
+
+            int length = read(channel, 4).getInt();
+            CharBuffer text = read(channel, length * 2L).asCharBuffer();
+            document = new PieceTable(text.toString());
+
+            recovery = new Recovery(id, path.isEmpty() ? null : new File(path), charset, byteOrderMark,
+                    lineEnding, caret);
+
+            if(Files.exists(journal) && !replay(journal, snapshotGeneration, document)) {
+                return null;
+            }
+        }
+
+        recovery.text = document.getText();
+        return recovery;
+    }
+
+
+    /**
+     * Applies the edits in a journal to a document, stopping at the first edit
+     * that was not written completely.
+     *
+     * @param journal       The journal file.
+     * @param generation    The generation of the snapshot the document holds.
+     * @param document      The document to apply the edits to.
+     * @return  false if the journal is locked by another editor; true if not.
+     * @throws IOException  If the journal could not be read.
+     */
+    private static boolean replay(Path journal, long generation, PieceTable document) throws IOException {
+        try(FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if(channel.tryLock() == null) {
+                return false;
+            }
+
+            long size = channel.size();
+            if(size < JOURNAL_HEADER) {
+                return true;
+            }
+
+            ByteBuffer bytes = read(channel, size);
+            if(bytes.getInt() != MAGIC || bytes.getInt() != VERSION || bytes.getLong() != generation) {
+                // The journal is older than the snapshot, which already holds
+                // its edits.
+                return true;
+            }
+
+            CRC32 crc = new CRC32();
+            while(bytes.remaining() >= RECORD_HEADER) {
+                int length = bytes.getInt();
+                int checksum = bytes.getInt();
+                if(length < RECORD_HEADER - 8 || length > bytes.remaining()) {
+                    break;
+                }
+
+                ByteBuffer record = bytes.slice();
+                record.limit(length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if((int)crc.getValue() != checksum) {
+                    break;
+                }
+                bytes.position(bytes.position() + length);
+
+                int offset = record.getInt();
+                int removed = record.getInt();
+                int inserted = record.getInt();
+                if(offset < 0 || removed < 0 || offset + removed > document.length() || inserted * 2 != record.remaining()) {
+                    break;
+                }
+                document.replace(offset, removed, record.asCharBuffer());
+            }
+        } catch(java.nio.channels.OverlappingFileLockException e) {
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Deletes the files of a recovered journal that the user chose not to keep.
+     *
+     * @param id    The name of the journal's files.
+     */
+    public static void delete(String id) {
+        try {
+            Files.deleteIfExists(DIRECTORY.resolve(id + ".journal"));
+            Files.deleteIfExists(DIRECTORY.resolve(id + ".snapshot"));
+        } catch(IOException e) {
+            // The files are offered again the next time the editor starts.
+        }
+    }
+
+
+    /**
+     * Writes the queued items of every journal. This runs on the writer.
+     */
+    private static void commitAll() {
+        for(AutosaveJournal journal : JOURNALS) {
+            journal.commit();
+        }
+    }
+
+
+    /**
+     * Writes the queued items of this journal, then forces the journal file to
+     * disk once for all of them. If the journal could not be written, its files
+     * are deleted and it starts again with a snapshot at the next edit.
+     */
+    private void commit() {
+        if(queue.isEmpty()) {
+            return;
+        }
+
+        try {
+            Object item;
+            while((item = queue.poll()) != null) {
+                if(item instanceof Edit) {
+                    append((Edit)item);
+                } else if(item instanceof Snapshot) {
+                    writeSnapshot((Snapshot)item);
+                } else {
+                    deleteFiles();
+                    if(item == CLOSE) {
+                        JOURNALS.remove(this);
+                        queue.clear();
+                        return;
+                    }
+                }
+            }
+
+            flush();
+            if(channel != null) {
+                channel.force(false);
+            }
+
+            // Replace the journal once replaying it would be slower than
+            // reading a new snapshot.
+            if(journalSize > MIN_COMPACT_SIZE && journalSize > snapshotSize
+                    && snapshotRequested.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    snapshotRequested.set(false);
+                    if(active) {
+                        queue.add(takeSnapshot());
+                    }
+                });
+            }
+        } catch(IOException e) {
+            queue.clear();
+            deleteFiles();
+            Platform.runLater(() -> active = false);
+        }
+    }
+
+
+    /**
+     * Takes a snapshot of the document and the details needed to save it
+     * again. This runs on the JavaFX thread.
+     *
+     * @return  The snapshot.
+     */
+    private Snapshot takeSnapshot() {
+        File file = editingArea.getCurrentFile();
+        return new Snapshot(editingArea.getDocument().snapshot(),
+                file == null ? "" : file.getAbsolutePath(),
+                editingArea.getCharset().name(),
+                editingArea.hasByteOrderMark(),
+                editingArea.getLineEnding().name(),
+                editingArea.getCaretPosition());
+    }
+
+
+    /**
+     * Adds an edit to the edits waiting to be written.
+     *
+     * @param edit  The edit.
+     */
+    private void append(Edit edit) throws IOException {
+        if(channel == null) {
+            // Edits made before the first snapshot was written are in it.
+            return;
+        }
+
+        int length = RECORD_HEADER - 8 + edit.inserted.length() * 2;
+        if(pending.remaining() < length + 8) {
+            flush();
+            if(pending.capacity() < length + 8) {
+                pending = ByteBuffer.allocate(length + 8);
+            }
+        }
+
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putInt(0);
+        pending.putInt(edit.offset);
+        pending.putInt(edit.removedLength);
+        pending.putInt(edit.inserted.length());
+        pending.asCharBuffer().put(edit.inserted);
+        pending.position(start + 8 + length);
+
+        ByteBuffer record = pending.duplicate();
+        record.position(start + 8);
+        record.limit(start + 8 + length);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        pending.putInt(start + 4, (int)crc.getValue());
+    }
+
+
+    /**
+     * Writes the edits waiting to the end of the journal file.
+     *
+     * @throws IOException  If the journal could not be written.
+     */
+    private void flush() throws IOException {
+        pending.flip();
+        while(pending.hasRemaining()) {
+            journalSize += channel.write(pending);
+        }
+        pending.clear();
+    }
+
+
+    /**
+     * Writes a snapshot to a new file that replaces the old one, then starts a
+     * new journal after it. A crash between the two leaves an old journal
+     * whose generation does not match the snapshot, so it is not replayed.
+     * The generation is random rather than counted, because a journal reopened
+     * for a recovered document would count from the start again and could
+     * give the new snapshot the generation of the old journal.
+     *
+     * @param snapshot  The snapshot.
+     * @throws IOException  If the snapshot could not be written.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        if(channel != null) {
+            flush();
+        }
+        Files.createDirectories(DIRECTORY);
+        long previous = generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while(generation == previous);
+
+        Path target = DIRECTORY.resolve(id + ".snapshot");
+        Path temp = DIRECTORY.resolve(id + ".snapshot.tmp");
+        try(FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer metadata = ByteBuffer.allocate(4096 + snapshot.path.length() * 3);
+            putString(metadata, snapshot.path);
+            putString(metadata, snapshot.charset);
+            metadata.put((byte)(snapshot.byteOrderMark ? 1 : 0));
+            putString(metadata, snapshot.lineEnding);
+            metadata.putInt(snapshot.caret);
+            metadata.flip();
+
+            ByteBuffer header = ByteBuffer.allocate(20);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(metadata.remaining());
+            header.flip();
+            write(out, header);
+            write(out, metadata);
+
+            DocumentSnapshot text = snapshot.text;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            length.putInt(text.length()).flip();
+            write(out, length);
+
+            char[] chars = new char[CHUNK_SIZE];
+            ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE * 2);
+            for(int offset = 0; offset < text.length(); offset += CHUNK_SIZE) {
+                int count = Math.min(CHUNK_SIZE, text.length() - offset);
+                text.getChars(offset, count, chars, 0);
+                bytes.clear();
+                bytes.asCharBuffer().put(chars, 0, count);
+                bytes.limit(count * 2);
+                write(out, bytes);
+            }
+            out.force(true);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if(channel == null) {
+            channel = FileChannel.open(DIRECTORY.resolve(id + ".journal"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+        }
+        channel.truncate(0);
+        channel.position(0);
+
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER);
+        header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+        write(channel, header);
+        channel.force(false);
+
+        snapshotSize = snapshot.text.length() * 2L;
+        journalSize = JOURNAL_HEADER;
+    }
+
+
+    /**
+     * Closes the journal file and deletes both of the journal's files.
+     */
+    private void deleteFiles() {
+        pending.clear();
+        if(channel != null) {
+            try {
+                if(lock != null) {
+                    lock.release();
+                }
+                channel.close();
+            } catch(IOException e) {
+                // The file is deleted below either way.
+            }
+            channel = null;
+            lock = null;
+        }
+        delete(id);
+        snapshotSize = 0;
+        journalSize = 0;
+    }
+
+
+    /**
+     * Writes all of a buffer to a channel.
+     *
+     * @param channel   The channel.
+     * @param buffer    The buffer.
+     * @throws IOException  If the channel could not be written.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+
+    /**
+     * Reads a number of bytes from a channel.
+     *
+     * @param channel   The channel.
+     * @param count     The amount of bytes to read.
+     * @return  The bytes, ready to be read.
+     * @throws IOException  If the channel ended early.
+     */
+    private static ByteBuffer read(FileChannel channel, long count) throws IOException {
+        if(count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Bad length: " + count);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)count);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                throw new IOException("The file ended early.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    /**
+     * Adds a string to a buffer as its length followed by its characters.
+     *
+     * @param buffer    The buffer.
+     * @param string    The string.
+     */
+    private static void putString(ByteBuffer buffer, String string) {
+        buffer.putInt(string.length());
+        for(int i = 0; i < string.length(); i++) {
+            buffer.putChar(string.charAt(i));
+        }
+    }
+
+
+    /**
+     * Reads a string written by putString.
+     *
+     * @param buffer    The buffer.
+     * @return  The string.
+     */
+    private static String getString(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getInt()];
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * An edit waiting to be written.
+     */
+    private static class Edit {
+
+
+        /**
+         * The offset the edit was made at.
+         */
+        final int offset;
+
+
+        /**
+         * The amount of characters the edit removed.
+         */
+        final int removedLength;
+
+
+        /**
+         * The text the edit inserted.
+         */
+        final String inserted;
+
+
+        /**
+         * Creates an Edit.
+         *
+         * @param offset        The offset the edit was made at.
+         * @param removedLength The amount of characters removed.
+         * @param inserted      The text inserted.
+         */
+        Edit(int offset, int removedLength, String inserted) {
+            this.offset = offset;
+            this.removedLength = removedLength;
+            this.inserted = inserted;
+        }
+    }
+
+
+    /**
+     * A snapshot waiting to be written.
+     */
+    private static class Snapshot {
+
+
+        /**
+         * The text of the document.
+         */
+        final DocumentSnapshot text;
+
+
+        /**
+         * The path of the document's file, or "" if it has none.
+         */
+        final String path;
+
+
+        /**
+         * The name of the document's charset.
+         */
+        final String charset;
+
+
+        /**
+         * Whether or not the document is saved with a byte order mark.
+         */
+        final boolean byteOrderMark;
+
+
+        /**
+         * The name of the document's line ending.
+         */
+        final String lineEnding;
+
+
+        /**
+         * The position of the caret.
+         */
+        final int caret;
+
+
+        /**
+         * Creates a Snapshot.
+         *
+         * @param text          The text of the document.
+         * @param path          The path of the document's file, or "".
+         * @param charset       The name of the document's charset.
+         * @param byteOrderMark Whether or not there is a byte order mark.
+         * @param lineEnding    The name of the document's line ending.
+         * @param caret         The position of the caret.
+         */
+        Snapshot(DocumentSnapshot text, String path, String charset, boolean byteOrderMark,
+                String lineEnding, int caret) {
+            this.text = text;
+            this.path = path;
+            this.charset = charset;
+            this.byteOrderMark = byteOrderMark;
+            this.lineEnding = lineEnding;
+            this.caret = caret;
+        }
+    }
+
+
+    /**
+     * A document recovered from a journal.
+     */
+    public static class Recovery {
+
+
+        /**
+         * The name of the journal's files.
+         */
+        private final String id;
+
+
+        /**
+         * The file of the document, or null if it was never saved.
+         */
+        private final File file;
+
+
+        /**
+         * The name of the document's charset.
+         */
+        private final String charset;
+
+
+        /**
+         * Whether or not the document is saved with a byte order mark.
+         */
+        private final boolean byteOrderMark;
+
+
+        /**
+         * The name of the document's line ending.
+         */
+        private final String lineEnding;
+
+
+        /**
+         * The position of the caret.
+         */
+        private final int caret;
+
+
+        /**
+         * The recovered text.
+         */
+        private String text;
+
+
+        /**
+         * Creates a Recovery.
+         *
+         * @param id            The name of the journal's files.
+         * @param file          The file of the document, or null.
+         * @param charset       The name of the document's charset.
+         * @param byteOrderMark Whether or not there is a byte order mark.
+         * @param lineEnding    The name of the document's line ending.
+         * @param caret         The position of the caret.
+         */
+        private Recovery(String id, File file, String charset, boolean byteOrderMark,
+                String lineEnding, int caret) {
+            this.id = id;
+            this.file = file;
+            this.charset = charset;
+            this.byteOrderMark = byteOrderMark;
+            this.lineEnding = lineEnding;
+            this.caret = caret;
+        }
+
+
+        /**
+         * Returns the name of the journal's files.
+         *
+         * @return  The id of the journal.
+         */
+        public String getId() {
+            return id;
+        }
+
+
+        /**
+         * Returns the file of the document.
+         *
+         * @return  The file, or null if the document was never saved.
+         */
+        public File getFile() {
+            return file;
+        }
+
+
+        /**
+         * Returns the recovered text.
+         *
+         * @return  The text.
+         */
+        public String getText() {
+            return text;
+        }
+
+
+        /**
+         * Puts the recovered text and the details of the document into an
+         * EditingArea. The text is not added to the undo history. The
+         * EditingArea has to be marked as edited once it is shown in a tab,
+         * since adding the tab marks it as unedited.
+         *
+         * @param editingArea   The EditingArea to restore the document into.
+         */
+        public void restore(EditingArea editingArea) {
+            editingArea.setEditable(false);
+            editingArea.appendText(text);
+            editingArea.setEditable(true);
+            editingArea.setCurrentFile(file);
+
+            try {
+                editingArea.setCharset(Charset.forName(charset));
+            } catch(RuntimeException e) {
+                // The document keeps the default charset.
+            }
+            editingArea.setByteOrderMark(byteOrderMark);
+            try {
+                editingArea.setLineEnding(LineEnding.valueOf(lineEnding));
+            } catch(IllegalArgumentException e) {
+                // The document keeps the default line ending.
+            }
+            editingArea.positionCaret(Math.min(caret, editingArea.getLength()));
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+
+/**
+ * Runs jobs over many files without starting JavaFX, for scripts and build
+ * pipelines. The Launcher starts it when "--batch" is the first argument, for
+ * example:
+ *
+ *     java -jar texteditor.jar --batch --eol lf --strip-trailing "src/**.java"
+ *
+ * Files are read and written by the same TextDecoder and TextEncoder that open
+ * and save files in the editor, and replacements are made with a SearchQuery
+ * the way Replace All makes them, so a file comes out of a batch job the way it
+ * would come out of the editor. The files are processed in parallel on a
+ * fork/join pool, and the throughput is reported once all of them are done.
+ */
+public class BatchProcessor {
+
+
+    /**
+     * What is printed for --help, or when the arguments are wrong.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: texteditor --batch [options] <file or glob>...",
+            "",
+            "Jobs, which are done in this order:",
+            "  --replace <regex> <replacement>  Replace every match; $1 and ${name} insert groups",
+            "  --literal                        Take the --replace pattern as plain text",
+            "  --ignore-case                    Let the --replace pattern match any case",
+            "  --strip-trailing                 Remove spaces and tabs at the ends of lines",
+            "  --charset <name>                 Write the files in a charset, such as UTF-8",
+            "  --bom, --no-bom                  Write the files with or without a byte order mark",
+            "  --eol <lf|crlf|cr>               Write the files with a line ending",
+            "",
+            "Other options:",
+            "  --threads <n>                    The amount of files processed at once",
+            "  --check                          Write nothing; exit with 1 if a file would change",
+            "",
+            "Globs are matched from the folder before their first wildcard, and ** crosses",
+            "folders, so \"src/**.java\" is every Java file under src. Hidden folders are",
+            "skipped, and so are files that hold NUL characters. Only files that change are",
+            "written, and their paths are printed. The exit code is 0 on success, 1 if",
+            "--check found files that would change, and 2 if a file or an argument was bad.");
+
+
+    /**
+     * What the replace job searches for, or null if there is no replace job.
+     */
+    private SearchQuery query;
+
+
+    /**
+     * What the replace job puts in place of each match.
+     */
+    private String replacement;
+
+
+    /**
+     * Whether or not the lines have their trailing spaces and tabs removed.
+     */
+    private boolean stripTrailing;
+
+
+    /**
+     * The charset the files are written in, or null to keep their own.
+     */
+    private Charset charset;
+
+
+    /**
+     * Whether or not the files are written with a byte order mark, or null to
+     * decide from the file and the charset.
+     */
+    private Boolean byteOrderMark;
+
+
+    /**
+     * The line ending the files are written with, or null to keep their own.
+     */
+    private LineEnding lineEnding;
+
+
+    /**
+     * The amount of files processed at once.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+
+    /**
+     * Whether or not files that would change are only reported.
+     */
+    private boolean check;
+
+
+    /**
+     * The files and globs to process.
+     */
+    private final List<String> patterns = new ArrayList<>();
+
+
+    /**
+     * The amount of bytes read.
+     */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+
+    /**
+     * The amount of files that changed, or would change.
+     */
+    private final AtomicInteger changed = new AtomicInteger();
+
+
+    /**
+     * The amount of files that were left alone because they are binary.
+     */
+    private final AtomicInteger skipped = new AtomicInteger();
+
+
+    /**
+     * The amount of files that could not be processed.
+     */
+    private final AtomicInteger failed = new AtomicInteger();
+
+
+    /**
+     * Processes the files named by the arguments.
+     *
+     * @param args  The arguments after "--batch".
+     * @return  The exit code.
+     */
+    public static int run(String[] args) {
+        BatchProcessor processor = new BatchProcessor();
+        try {
+            if(!processor.parse(args)) {
+                System.out.println(USAGE);
+                return 0;
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        return processor.process();
+    }
+
+
+    /**
+     * Reads the options and the files from the arguments.
+     *
+     * @param args  The arguments after "--batch".
+     * @return  false if the usage was asked for; true otherwise.
+     * @throws IllegalArgumentException If the arguments are not valid.
+     */
+    private boolean parse(String[] args) {
+        String pattern = null;
+        boolean literal = false;
+        boolean ignoreCase = false;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--help":
+                    return false;
+                case "--replace":
+                    pattern = value(args, ++i, "--replace");
+                    replacement = value(args, ++i, "--replace");
+                    break;
+                case "--literal":
+                    literal = true;
+                    break;
+                case "--ignore-case":
+                    ignoreCase = true;
+                    break;
+                case "--strip-trailing":
+                    stripTrailing = true;
+                    break;
+                case "--charset":
+                    charset = Charset.forName(value(args, ++i, "--charset"));
+                    break;
+                case "--bom":
+                    byteOrderMark = true;
+                    break;
+                case "--no-bom":
+                    byteOrderMark = false;
+                    break;
+                case "--eol":
+                    lineEnding = parseLineEnding(value(args, ++i, "--eol"));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value(args, ++i, "--threads"));
+                    if(threads < 1) {
+                        throw new IllegalArgumentException("--threads must be at least 1");
+                    }
+                    break;
+                case "--check":
+                    check = true;
+                    break;
+                default:
+                    if(args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                    }
+                    patterns.add(args[i]);
+            }
+        }
+
+        if(pattern != null) {
+            query = new SearchQuery(pattern, !literal, !ignoreCase);
+        }
+        if(query == null && !stripTrailing && charset == null && byteOrderMark == null && lineEnding == null) {
+            throw new IllegalArgumentException("No job was given");
+        }
+        if(patterns.isEmpty()) {
+            throw new IllegalArgumentException("No files were given");
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args      The arguments.
+     * @param index     Where the value should be.
+     * @param option    The option, for the error message.
+     * @return  The value.
+     * @throws IllegalArgumentException If the arguments end first.
+     */
+    private static String value(String[] args, int index, String option) {
+        if(index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+
+    /**
+     * Returns the line ending named on the command line.
+     *
+     * @param name  "lf", "crlf" or "cr", in any case.
+     * @return  The line ending.
+     * @throws IllegalArgumentException If the name is not one of them.
+     */
+    private static LineEnding parseLineEnding(String name) {
+        for(LineEnding ending : LineEnding.values()) {
+            if(ending.toString().equalsIgnoreCase(name)) {
+                return ending;
+            }
+        }
+        throw new IllegalArgumentException("--eol must be lf, crlf or cr");
+    }
+
+
+    /**
+     * Finds the files, processes them in parallel, and reports how it went.
+     *
+     * @return  The exit code.
+     */
+    private int process() {
+        long start = System.nanoTime();
+
+        Set<Path> files = new LinkedHashSet<>();
+        for(String pattern : patterns) {
+            try {
+                if(!find(pattern, files)) {
+                    System.err.println("No files match " + pattern);
+                }
+            } catch(IOException e) {
+                System.err.println(pattern + ": " + describe(e));
+                failed.incrementAndGet();
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        for(Path file : files) {
+            tasks.add(() -> {
+                process(file);
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads, (ForkJoinPool p) -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("Batch Worker");
+            return thread;
+        }, null, false);
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        double megabytes = bytesRead.get() / (1024.0 * 1024.0);
+        System.out.printf(Locale.ROOT, "%d files, %d %s, %d skipped, %d failed: %.1f MB in %.2f s (%.1f MB/s)%n",
+                files.size(), changed.get(), check ? "would change" : "changed", skipped.get(), failed.get(),
+                megabytes, seconds, megabytes / seconds);
+
+        if(failed.get() > 0) {
+            return 2;
+        }
+        return check && changed.get() > 0 ? 1 : 0;
+    }
+
+
+    /**
+     * Adds the files a file name or glob matches.
+     *
+     * @param pattern   The file name or glob.
+     * @param files     The set to add the files to.
+     * @return  Whether or not anything matched.
+     * @throws IOException  If a file named without wildcards does not exist.
+     */
+    private static boolean find(String pattern, Set<Path> files) throws IOException {
+        int wildcard = -1;
+        for(int i = 0; i < pattern.length() && wildcard < 0; i++) {
+            if("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                wildcard = i;
+            }
+        }
+
+        if(wildcard < 0) {
+            Path path = Paths.get(pattern);
+            if(Files.isRegularFile(path)) {
+                files.add(path);
+                return true;
+            } else if(!Files.isDirectory(path)) {
+                throw new NoSuchFileException(pattern);
+            }
+            // A folder stands for every file under it.
+            return walk(path, null, files);
+        }
+
+        // Walk from the last folder named before the first wildcard.
+        int slash = Math.max(pattern.lastIndexOf('/', wildcard), pattern.lastIndexOf('\\', wildcard));
+        Path root = slash < 0 ? Paths.get("") : Paths.get(pattern.substring(0, slash + 1));
+        if(!Files.isDirectory(root)) {
+            return false;
+        }
+        return walk(root, FileSystems.getDefault().getPathMatcher("glob:" + pattern), files);
+    }
+
+
+    /**
+     * Adds the regular files under a folder that a glob matches. Hidden folders
+     * below the folder, such as those of version control, are skipped.
+     *
+     * @param root      The folder to walk.
+     * @param matcher   The glob, or null to add every file.
+     * @param files     The set to add the files to.
+     * @return  Whether or not anything matched.
+     * @throws IOException  If the folder could not be walked.
+     */
+    private static boolean walk(Path root, PathMatcher matcher, Set<Path> files) throws IOException {
+        int before = files.size();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            /*
+             * Skips hidden directories below the root.
+             */
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if(!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+
+            /*
+             * Adds regular files that match.
+             */
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if(attrs.isRegularFile() && (matcher == null || matcher.matches(file))) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+
+            /*
+             * Leaves out files and directories that can not be read.
+             */
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return files.size() > before;
+    }
+
+
+    /**
+     * Runs the jobs on one file, and writes it if it changed. This runs on
+     * one of the pool's threads.
+     *
+     * @param file  The file.
+     */
+    private void process(Path file) {
+        try {
+            StringBuilder text = new StringBuilder();
+            TextDecoder decoder = new TextDecoder(new TextDecoder.Sink() {
+
+                /*
+                 * Adds the chunk to the text.
+                 */
+                @Override
+                public void append(CharSequence chunk) {
+                    text.append(chunk);
+                }
+
+
+                /*
+                 * Throws away what was read in the wrong charset.
+                 */
+                @Override
+                public void restart() {
+                    text.setLength(0);
+                }
+            });
+
+            Compression compression = Compression.detect(file.toFile());
+            try(SeekableByteChannel channel = compression.open(file.toFile())) {
+                bytesRead.addAndGet(channel.size());
+                decoder.read(channel);
+            }
+
+            if(text.indexOf("\0") >= 0) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            StringBuilder result = text;
+            if(query != null) {
+                result = replace(result);
+            }
+            if(stripTrailing) {
+                result = stripTrailing(result);
+            }
+
+            Charset oldCharset = decoder.getCharset();
+            Charset newCharset = charset != null ? charset : oldCharset;
+            boolean newByteOrderMark = hasByteOrderMark(newCharset, decoder.hasByteOrderMark());
+            LineEnding oldLineEnding = decoder.getLineEnding(LineEnding.getDefault());
+            LineEnding newLineEnding = lineEnding != null ? lineEnding : oldLineEnding;
+
+            if(result == text && newCharset.equals(oldCharset) && newByteOrderMark == decoder.hasByteOrderMark()
+                    && (lineEnding == null || (lineEnding == oldLineEnding && !decoder.hasMixedLineEndings()))) {
+                return;
+            }
+
+            // Text the charset can not hold would be written as '?'.
+            if(!newCharset.equals(oldCharset) && !newCharset.newEncoder().canEncode(result)) {
+                throw new IOException("Can not be written in " + newCharset.name());
+            }
+
+            changed.incrementAndGet();
+            System.out.println(file);
+            if(check) {
+                return;
+            }
+
+            StringBuilder source = result;
+            new TextEncoder(newCharset, newByteOrderMark, newLineEnding, compression).save(file, new TextEncoder.Source() {
+
+                /*
+                 * Returns the length of the text.
+                 */
+                @Override
+                public int length() {
+                    return source.length();
+                }
+
+
+                /*
+                 * Copies part of the text.
+                 */
+                @Override
+                public void getChars(int offset, int length, char[] dest, int destPos) {
+                    source.getChars(offset, offset + length, dest, destPos);
+                }
+            });
+        } catch(IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println(file + ": " + describe(e));
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Returns whether or not a file is written with a byte order mark. Unless
+     * an option says otherwise, a file keeps the mark it had, and UTF-16 files
+     * always get one since they can not be recognized without it.
+     *
+     * @param newCharset    The charset the file is written in.
+     * @param hadMark       Whether or not the file had a byte order mark.
+     * @return  Whether or not the file is written with a byte order mark.
+     */
+    private boolean hasByteOrderMark(Charset newCharset, boolean hadMark) {
+        if(CharsetDetector.getByteOrderMark(newCharset).length == 0) {
+            return false;
+        } else if(byteOrderMark != null) {
+            return byteOrderMark;
+        }
+        return hadMark || !newCharset.equals(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Replaces every match of the query in a text.
+     *
+     * @param text  The text.
+     * @return  The text with the matches replaced, or the same text if
+     *          nothing matched.
+     */
+    private StringBuilder replace(StringBuilder text) {
+        Matcher matcher = query.getPattern().matcher(text);
+        if(!matcher.find()) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(text.length());
+        int last = 0;
+        do {
+            out.append(text, last, matcher.start());
+            if(query.isRegex()) {
+                SearchQuery.appendReplacement(matcher, replacement, out);
+            } else {
+                out.append(replacement);
+            }
+            last = matcher.end();
+        } while(matcher.find());
+        out.append(text, last, text.length());
+
+        return out.compareTo(text) == 0 ? text : out;
+    }
+
+
+    /**
+     * Removes the spaces and tabs at the end of each line of a text.
+     *
+     * @param text  The text.
+     * @return  The stripped text, or the same text if no line ended in a
+     *          space or tab.
+     */
+    private static StringBuilder stripTrailing(StringBuilder text) {
+        StringBuilder out = new StringBuilder(text.length());
+
+        // Where the run of spaces and tabs at the end of out starts, or -1.
+        int blanks = -1;
+        int length = text.length();
+        for(int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if(c == ' ' || c == '\t') {
+                if(blanks < 0) {
+                    blanks = out.length();
+                }
+            } else {
+                if(c == '\n' && blanks >= 0) {
+                    out.setLength(blanks);
+                }
+                blanks = -1;
+            }
+            out.append(c);
+        }
+        if(blanks >= 0) {
+            out.setLength(blanks);
+        }
+
+        return out.length() == length ? text : out;
+    }
+
+
+    /**
+     * Returns a message for an exception that names what went wrong.
+     *
+     * @param e The exception.
+     * @return  The message.
+     */
+    private static String describe(Exception e) {
+        if(e instanceof NoSuchFileException) {
+            return "No such file";
+        } else if(e instanceof CharacterCodingException) {
+            return "Has characters its charset can not hold";
+        }
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+}
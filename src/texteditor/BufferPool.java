@@ -0,0 +1,77 @@
+package texteditor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A pool of direct byte buffers used to read and write files. Direct buffers are
+ * expensive to allocate and are only freed by the garbage collector, so they are
+ * kept and handed out again instead of being allocated for every file.
+ */
+public final class BufferPool {
+
+
+    /**
+     * The size of each buffer.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+
+    /**
+     * The most buffers kept in the pool. Buffers released while the pool is full
+     * are left to the garbage collector.
+     */
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() + 1;
+
+
+    /**
+     * The buffers that are free to be used.
+     */
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * The amount of buffers in the pool.
+     */
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+
+    /**
+     * The pool only has static methods.
+     */
+    private BufferPool() {
+    }
+
+
+    /**
+     * Returns an empty buffer, taken from the pool if there is one.
+     *
+     * @return  A cleared direct buffer of BUFFER_SIZE bytes.
+     */
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if(buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        POOLED.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer    The buffer to give back.
+     */
+    public static void release(ByteBuffer buffer) {
+        if(POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
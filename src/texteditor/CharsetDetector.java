@@ -0,0 +1,168 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+
+/**
+ * Works out which charset a file is encoded in. A byte order mark at the start
+ * of the file decides the charset. Without one, files are read as UTF-8, and
+ * files that turn out not to be valid UTF-8 are read in a legacy charset.
+ */
+public final class CharsetDetector {
+
+
+    /**
+     * The byte order marks that are recognized.
+     */
+    private static final byte[] UTF_8_BOM = { (byte)0xEF, (byte)0xBB, (byte)0xBF },
+                                UTF_16BE_BOM = { (byte)0xFE, (byte)0xFF },
+                                UTF_16LE_BOM = { (byte)0xFF, (byte)0xFE };
+
+
+    /**
+     * The detector only has static methods.
+     */
+    private CharsetDetector() {
+    }
+
+
+    /**
+     * Returns the charset named by the byte order mark at the position of a
+     * buffer, without moving the position.
+     *
+     * @param bytes The bytes at the start of a file.
+     * @return  The charset of the byte order mark, or null if there is none.
+     */
+    public static Charset detectByteOrderMark(ByteBuffer bytes) {
+        if(startsWith(bytes, UTF_8_BOM)) {
+            return StandardCharsets.UTF_8;
+        } else if(startsWith(bytes, UTF_16BE_BOM)) {
+            return StandardCharsets.UTF_16BE;
+        } else if(startsWith(bytes, UTF_16LE_BOM)) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the byte order mark of a charset.
+     *
+     * @param charset   The charset.
+     * @return  The bytes of the byte order mark, or an empty array if the
+     *          charset does not have one.
+     */
+    public static byte[] getByteOrderMark(Charset charset) {
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            return UTF_8_BOM.clone();
+        } else if(charset.equals(StandardCharsets.UTF_16BE)) {
+            return UTF_16BE_BOM.clone();
+        } else if(charset.equals(StandardCharsets.UTF_16LE)) {
+            return UTF_16LE_BOM.clone();
+        }
+        return new byte[0];
+    }
+
+
+    /**
+     * Returns the charset used for files that are not valid UTF-8. This is the
+     * charset of the platform, unless that is UTF-8 or ASCII, in which case the
+     * Windows Latin charset is used since it is the most common legacy encoding.
+     *
+     * @return  The legacy charset.
+     */
+    public static Charset getLegacyCharset() {
+        Charset charset = Charset.defaultCharset();
+        if(!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII)) {
+            return charset;
+        }
+
+        try {
+            return Charset.forName("windows-1252");
+        } catch(UnsupportedCharsetException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+
+    /**
+     * Returns a decoder for a charset. Strict decoders report malformed input,
+     * so that the caller can switch to the legacy charset; other decoders
+     * replace it.
+     *
+     * @param charset   The charset to decode.
+     * @param strict    Whether or not malformed input is reported.
+     * @return  The decoder.
+     */
+    public static CharsetDecoder newDecoder(Charset charset, boolean strict) {
+        CodingErrorAction action = strict ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE;
+        return charset.newDecoder()
+                .onMalformedInput(action)
+                .onUnmappableCharacter(action);
+    }
+
+
+    /**
+     * Guesses the charset of a file from the bytes at its start. This is used
+     * for files that are too large to be decoded before they are shown. The
+     * start of a compressed file is decompressed to look at it.
+     *
+     * @param file  The file to look at.
+     * @return  The charset of the file.
+     * @throws IOException  If the file could not be read.
+     */
+    public static Charset detect(File file) throws IOException {
+        ByteBuffer bytes = BufferPool.acquire();
+        try(SeekableByteChannel channel = Compression.detect(file).open(file)) {
+            boolean endOfInput = false;
+            while(bytes.hasRemaining() && !endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+            }
+            bytes.flip();
+
+            Charset charset = detectByteOrderMark(bytes);
+            if(charset != null) {
+                return charset;
+            }
+
+            CharsetDecoder decoder = newDecoder(StandardCharsets.UTF_8, true);
+            CharBuffer chars = CharBuffer.allocate(bytes.remaining());
+            if(decoder.decode(bytes, chars, endOfInput).isError()) {
+                return getLegacyCharset();
+            }
+            return StandardCharsets.UTF_8;
+        } finally {
+            BufferPool.release(bytes);
+        }
+    }
+
+
+    /**
+     * Returns whether or not the bytes at the position of a buffer start with a
+     * prefix.
+     *
+     * @param bytes     The bytes to look at.
+     * @param prefix    The prefix to look for.
+     * @return  true if the bytes start with the prefix; false if not.
+     */
+    private static boolean startsWith(ByteBuffer bytes, byte[] prefix) {
+        if(bytes.remaining() < prefix.length) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length; i++) {
+            if(bytes.get(bytes.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
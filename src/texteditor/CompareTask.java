@@ -0,0 +1,536 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+
+/**
+ * Compares the texts of two documents line by line and lays them out side by
+ * side in two EditingAreas. The lines are numbered without copying them out of
+ * the documents, and LineDiff hands over each change as soon as it is known,
+ * so the start of the texts is shown while the rest is still being compared.
+ * The lines of each change are highlighted, and the shorter side of a change
+ * is padded with blank lines so the lines that are the same stay next to each
+ * other. The value of the task is the amount of changes.
+ */
+public class CompareTask extends Task<Integer> {
+
+
+    /**
+     * The amount of characters laid out on a side before they are handed to
+     * the JavaFX thread.
+     */
+    private static final int BATCH_SIZE = 256 * 1024;
+
+
+    /**
+     * The amount of batches that may wait for the JavaFX thread before the
+     * comparison stops and waits for it to catch up.
+     */
+    private static final int MAX_PENDING_BATCHES = 16;
+
+
+    /**
+     * The thread the comparisons are run on.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Compare");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The old and new text.
+     */
+    private final Side left, right;
+
+
+    /**
+     * The line in the view each change starts at, which is added to as the
+     * changes are found.
+     */
+    private final ObservableList<Integer> changes;
+
+
+    /**
+     * The batches that have been laid out but not yet added to the views.
+     */
+    private final BlockingQueue<Batch> pendingBatches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+
+
+    /**
+     * Whether or not the batches are already waiting to be added on the
+     * JavaFX thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * The lines of the batch being laid out at which changes start.
+     */
+    private List<Integer> batchChanges = new ArrayList<>();
+
+
+    /**
+     * The amount of lines laid out on each side.
+     */
+    private int viewLines = 0;
+
+
+    /**
+     * The amount of changes, and of lines removed and added by them.
+     */
+    private int changeCount = 0, removedLines = 0, addedLines = 0;
+
+
+    /**
+     * Creates a CompareTask. The snapshots have to be taken on the JavaFX
+     * thread.
+     *
+     * @param oldText   The text shown on the left.
+     * @param newText   The text shown on the right.
+     * @param leftView  The area to show the old text in.
+     * @param rightView The area to show the new text in.
+     * @param changes   The list to add the line each change starts at to.
+     */
+    public CompareTask(DocumentSnapshot oldText, DocumentSnapshot newText, EditingArea leftView,
+            EditingArea rightView, ObservableList<Integer> changes) {
+        this.left = new Side(oldText, leftView);
+        this.right = new Side(newText, rightView);
+        this.changes = changes;
+    }
+
+
+    /**
+     * Starts the comparison on the compare thread.
+     */
+    public void start() {
+        EXECUTOR.execute(this);
+    }
+
+
+    /*
+     * Numbers the lines of both texts, then lays out the texts as the changes
+     * between them are found.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        long startTime = System.nanoTime();
+        updateMessage("Reading the lines...");
+
+        LineNumbering numbering = new LineNumbering();
+        if(!numbering.add(left.text, this::isCancelled) || !numbering.add(right.text, this::isCancelled)) {
+            return changeCount;
+        }
+        left.lineStarts = numbering.getLineStarts(0);
+        right.lineStarts = numbering.getLineStarts(1);
+
+        int[] oldLines = numbering.getNumbers(0);
+        int[] newLines = numbering.getNumbers(1);
+        int total = Math.max(1, oldLines.length + newLines.length);
+
+        updateMessage(String.format("Comparing %,d and %,d lines...", oldLines.length, newLines.length));
+        boolean finished = LineDiff.diff(oldLines, newLines, (LineDiff.Hunk hunk) -> {
+            if(!Thread.currentThread().isInterrupted()) {
+                addHunk(hunk);
+                updateProgress(hunk.getAEnd() + hunk.getBEnd(), total);
+            }
+        }, () -> isCancelled() || Thread.currentThread().isInterrupted());
+        if(!finished || isCancelled()) {
+            return changeCount;
+        }
+
+        // The lines after the last change are the same on both sides.
+        addLines(oldLines.length, newLines.length, false);
+        flush();
+        updateProgress(1, 1);
+
+        long time = (System.nanoTime() - startTime) / 1000000;
+        if(changeCount == 0) {
+            updateMessage(String.format("The texts are the same, %,d ms", time));
+        } else {
+            updateMessage(String.format("%,d %s, %,d %s removed and %,d added, %,d ms",
+                    changeCount, changeCount == 1 ? "change" : "changes",
+                    removedLines, removedLines == 1 ? "line" : "lines", addedLines, time));
+        }
+        return changeCount;
+    }
+
+
+    /*
+     * Adds the last of the text to the views.
+     */
+    @Override
+    protected void succeeded() {
+        addPendingBatches();
+    }
+
+
+    /*
+     * Stops adding text to the views once the task is cancelled.
+     */
+    @Override
+    protected void cancelled() {
+        pendingBatches.clear();
+    }
+
+
+    /**
+     * Lays out the lines that are the same up to a change, then the change.
+     *
+     * @param hunk  The change.
+     */
+    private void addHunk(LineDiff.Hunk hunk) {
+        if(!addLines(hunk.getAStart(), hunk.getBStart(), false)) {
+            return;
+        }
+
+        batchChanges.add(viewLines);
+        changeCount++;
+        removedLines += hunk.getAEnd() - hunk.getAStart();
+        addedLines += hunk.getBEnd() - hunk.getBStart();
+        addLines(hunk.getAEnd(), hunk.getBEnd(), true);
+    }
+
+
+    /**
+     * Lays out the lines of both texts up to the given lines. The side with
+     * fewer lines is padded with blank lines.
+     *
+     * @param leftEnd   The old line to stop at.
+     * @param rightEnd  The new line to stop at.
+     * @param changed   Whether or not the lines are highlighted as changed.
+     * @return  false if the task was stopped while waiting for the JavaFX
+     *          thread; true otherwise.
+     */
+    private boolean addLines(int leftEnd, int rightEnd, boolean changed) {
+        int lines = Math.max(leftEnd - left.line, rightEnd - right.line);
+        if(changed) {
+            left.startChange(viewLines);
+            right.startChange(viewLines);
+        }
+
+        for(int i = 0; i < lines; i++) {
+            left.addLine(viewLines, leftEnd);
+            right.addLine(viewLines, rightEnd);
+            viewLines++;
+
+            if(left.out.length() >= BATCH_SIZE || right.out.length() >= BATCH_SIZE) {
+                if(!queueBatch()) {
+                    return false;
+                }
+            }
+        }
+
+        if(changed) {
+            left.endChange();
+            right.endChange();
+        }
+        return true;
+    }
+
+
+    /**
+     * Queues what has been laid out since the last batch to be added to the
+     * views.
+     *
+     * @return  false if the task was stopped while waiting for room in the
+     *          queue; true otherwise.
+     */
+    private boolean queueBatch() {
+        Batch batch = new Batch(left.takeBatch(), right.takeBatch(), batchChanges);
+        batchChanges = new ArrayList<>();
+
+        try {
+            pendingBatches.put(batch);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if(batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingBatches);
+        }
+        return true;
+    }
+
+
+    /**
+     * Hands the rest of the layout to the JavaFX thread.
+     */
+    private void flush() {
+        queueBatch();
+        updateValue(changeCount);
+    }
+
+
+    /**
+     * Adds every batch that is waiting to the views. This runs on the JavaFX
+     * thread.
+     */
+    private void addPendingBatches() {
+        batchScheduled.set(false);
+
+        if(isCancelled()) {
+            return;
+        }
+
+        Batch batch;
+        while((batch = pendingBatches.poll()) != null) {
+            left.show(batch.left);
+            right.show(batch.right);
+            changes.addAll(batch.changes);
+        }
+    }
+
+
+    /**
+     * One of the texts being compared, and how much of it has been laid out.
+     */
+    private static class Side {
+
+
+        /**
+         * The text.
+         */
+        private final DocumentSnapshot text;
+
+
+        /**
+         * The area the text is shown in.
+         */
+        private final EditingArea view;
+
+
+        /**
+         * The text laid out since the last batch.
+         */
+        private final StringBuilder out = new StringBuilder();
+
+
+        /**
+         * A buffer for copying lines out of the text.
+         */
+        private final char[] buffer = new char[4096];
+
+
+        /**
+         * The offset of each line of the text, with one extra entry holding
+         * the length of the text.
+         */
+        private int[] lineStarts;
+
+
+        /**
+         * The next line of the text to lay out.
+         */
+        private int line = 0;
+
+
+        /**
+         * The amount of characters laid out before the current batch.
+         */
+        private int batchStart = 0;
+
+
+        /**
+         * The offsets in the view of the changes in the current batch.
+         */
+        private int[] changeStarts = new int[16], changeEnds = new int[16];
+
+
+        /**
+         * The amount of changes in the current batch.
+         */
+        private int changeCount = 0;
+
+
+        /**
+         * Where in the view the change being laid out starts, and the line of
+         * the text it starts at.
+         */
+        private int changeStart, changeLine;
+
+
+        /**
+         * Creates a Side.
+         *
+         * @param text  The text.
+         * @param view  The area the text is shown in.
+         */
+        Side(DocumentSnapshot text, EditingArea view) {
+            this.text = text;
+            this.view = view;
+        }
+
+
+        /**
+         * Lays out the next line of the text, or a blank line if the text has
+         * reached the given line.
+         *
+         * @param viewLine  The line of the view being laid out.
+         * @param end       The line of the text to stop at.
+         */
+        void addLine(int viewLine, int end) {
+            if(viewLine > 0) {
+                out.append('\n');
+            }
+            if(line >= end) {
+                return;
+            }
+
+            int start = lineStarts[line];
+            int lineEnd = lineStarts[line + 1];
+            if(line < lineStarts.length - 2 || (lineEnd > start && endsWithNewline())) {
+                lineEnd--;
+            }
+            for(int offset = start; offset < lineEnd; offset += buffer.length) {
+                int part = Math.min(buffer.length, lineEnd - offset);
+                text.getChars(offset, part, buffer, 0);
+                out.append(buffer, 0, part);
+            }
+            line++;
+        }
+
+
+        /**
+         * Returns whether or not the text ends with a '\n'.
+         *
+         * @return  true if the last line has a '\n'; false if not.
+         */
+        private boolean endsWithNewline() {
+            text.getChars(text.length() - 1, 1, buffer, 0);
+            return buffer[0] == '\n';
+        }
+
+
+        /**
+         * Marks the start of a change.
+         *
+         * @param viewLine  The line of the view the change starts at.
+         */
+        void startChange(int viewLine) {
+            changeStart = batchStart + out.length() + (viewLine > 0 ? 1 : 0);
+            changeLine = line;
+        }
+
+
+        /**
+         * Marks the end of a change, which is highlighted once its text has
+         * been added to the view. A side that only has blank lines for the
+         * change is not highlighted.
+         */
+        void endChange() {
+            if(line == changeLine) {
+                return;
+            }
+            if(changeCount == changeStarts.length) {
+                changeStarts = Arrays.copyOf(changeStarts, changeCount * 2);
+                changeEnds = Arrays.copyOf(changeEnds, changeCount * 2);
+            }
+            changeStarts[changeCount] = changeStart;
+            changeEnds[changeCount++] = batchStart + out.length();
+        }
+
+
+        /**
+         * Takes the text and changes laid out since the last batch.
+         *
+         * @return  The batch for this side.
+         */
+        Batch.Part takeBatch() {
+            Batch.Part part = new Batch.Part(out.toString(), Arrays.copyOf(changeStarts, changeCount),
+                    Arrays.copyOf(changeEnds, changeCount));
+            batchStart += out.length();
+            out.setLength(0);
+            changeCount = 0;
+            return part;
+        }
+
+
+        /**
+         * Adds part of a batch to the view. This runs on the JavaFX thread.
+         *
+         * @param part  The text and changes to add.
+         */
+        void show(Batch.Part part) {
+            view.appendText(part.text);
+            view.addMatches(part.starts, part.ends, part.starts.length);
+        }
+    }
+
+
+    /**
+     * The text laid out on both sides since the last batch.
+     */
+    private static class Batch {
+
+
+        /**
+         * The text and changes of each side.
+         */
+        private final Part left, right;
+
+
+        /**
+         * The lines at which changes start.
+         */
+        private final List<Integer> changes;
+
+
+        /**
+         * Creates a Batch.
+         *
+         * @param left      The text and changes of the left side.
+         * @param right     The text and changes of the right side.
+         * @param changes   The lines at which changes start.
+         */
+        Batch(Part left, Part right, List<Integer> changes) {
+            this.left = left;
+            this.right = right;
+            this.changes = changes;
+        }
+
+
+        /**
+         * The text and changes of one side of a batch.
+         */
+        private static class Part {
+
+
+            /**
+             * The text.
+             */
+            private final String text;
+
+
+            /**
+             * The offsets in the view of the starts and ends of the changes.
+             */
+            private final int[] starts, ends;
+
+
+            /**
+             * Creates a Part.
+             *
+             * @param text      The text.
+             * @param starts    The starts of the changes.
+             * @param ends      The ends of the changes.
+             */
+            Part(String text, int[] starts, int[] ends) {
+                this.text = text;
+                this.starts = starts;
+                this.ends = ends;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package texteditor;
+
+import javafx.beans.binding.Bindings;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+
+/**
+ * The window that shows two texts side by side with the lines that differ
+ * highlighted. The texts are laid out as a CompareTask finds the changes, and
+ * scrolling either side scrolls the other, so the lines that are the same stay
+ * next to each other. The changes can be stepped through with the buttons or
+ * with ALT + Up and ALT + Down.
+ */
+public class CompareWindow extends Stage {
+
+
+    /**
+     * The areas showing the old and the new text.
+     */
+    private final EditingArea leftView = new EditingArea(), rightView = new EditingArea();
+
+
+    /**
+     * The labels naming the old and the new text.
+     */
+    private final Label leftTitle = new Label(), rightTitle = new Label();
+
+
+    /**
+     * The line each change starts at, in order.
+     */
+    private final ObservableList<Integer> changes = FXCollections.observableArrayList();
+
+
+    /**
+     * The label showing what the comparison is doing.
+     */
+    private final Label status = new Label();
+
+
+    /**
+     * The bar showing how much of the texts have been compared.
+     */
+    private final ProgressBar progress = new ProgressBar(0);
+
+
+    /**
+     * The comparison that is running, or null.
+     */
+    private CompareTask task;
+
+
+    /**
+     * The index of the change last gone to, or -1 if there is none.
+     */
+    private int currentChange = -1;
+
+
+    /**
+     * Whether or not one view is being scrolled to follow the other.
+     */
+    private boolean syncingScroll = false;
+
+
+    /**
+     * Creates a CompareWindow.
+     *
+     * @param owner The window the compare window belongs to.
+     */
+    public CompareWindow(Window owner) {
+        initOwner(owner);
+        setTitle("Compare");
+
+        VBox left = createSide(leftTitle, leftView);
+        VBox right = createSide(rightTitle, rightView);
+        HBox.setHgrow(left, Priority.ALWAYS);
+        HBox.setHgrow(right, Priority.ALWAYS);
+        HBox sides = new HBox(6, left, right);
+        VBox.setVgrow(sides, Priority.ALWAYS);
+
+        syncScrolling(leftView, rightView);
+        syncScrolling(rightView, leftView);
+
+        Button previous = new Button("Previous Change");
+        previous.setOnAction(e -> goToChange(currentChange - 1));
+        previous.disableProperty().bind(Bindings.isEmpty(changes));
+
+        Button next = new Button("Next Change");
+        next.setOnAction(e -> goToChange(currentChange + 1));
+        next.disableProperty().bind(Bindings.isEmpty(changes));
+
+        // Show the first change as soon as it has been found.
+        changes.addListener((ListChangeListener.Change<? extends Integer> c) -> {
+            if(currentChange < 0 && !changes.isEmpty()) {
+                goToChange(0);
+            }
+        });
+
+        progress.setVisible(false);
+        progress.setPrefWidth(150);
+        HBox.setHgrow(status, Priority.ALWAYS);
+        status.setMaxWidth(Double.MAX_VALUE);
+        HBox statusRow = new HBox(6, previous, next, status, progress);
+        statusRow.setAlignment(Pos.CENTER_LEFT);
+
+        VBox root = new VBox(6, sides, statusRow);
+        root.setPadding(new Insets(8));
+
+        KeyCodeCombination previousKC = new KeyCodeCombination(KeyCode.UP, KeyCombination.ALT_DOWN);
+        KeyCodeCombination nextKC = new KeyCodeCombination(KeyCode.DOWN, KeyCombination.ALT_DOWN);
+
+        Scene scene = new Scene(root, 1000, 600);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ESCAPE) {
+                hide();
+            } else if(previousKC.match(e)) {
+                goToChange(currentChange - 1);
+                e.consume();
+            } else if(nextKC.match(e)) {
+                goToChange(currentChange + 1);
+                e.consume();
+            }
+        });
+        setScene(scene);
+
+        // The views can hold a lot of text, so it is let go of once the window
+        // is closed.
+        setOnHidden(e -> {
+            if(task != null) {
+                task.cancel();
+                task = null;
+            }
+            clear();
+        });
+    }
+
+
+    /**
+     * Shows the window and starts comparing two texts, stopping the last
+     * comparison.
+     *
+     * @param oldTitle  The name of the old text.
+     * @param oldText   The old text, shown on the left.
+     * @param newTitle  The name of the new text.
+     * @param newText   The new text, shown on the right.
+     */
+    public void compare(String oldTitle, DocumentSnapshot oldText, String newTitle, DocumentSnapshot newText) {
+        if(task != null) {
+            task.cancel();
+        }
+        clear();
+        leftTitle.setText(oldTitle);
+        rightTitle.setText(newTitle);
+
+        task = new CompareTask(oldText, newText, leftView, rightView, changes);
+        status.textProperty().bind(task.messageProperty());
+        progress.progressProperty().bind(task.progressProperty());
+        progress.visibleProperty().bind(task.runningProperty());
+
+        CompareTask started = task;
+        task.setOnFailed(e -> {
+            status.textProperty().unbind();
+            status.setText("Could not compare the texts: " + started.getException().getMessage());
+        });
+
+        show();
+        toFront();
+        task.start();
+    }
+
+
+    /**
+     * Removes the texts and changes of the last comparison.
+     */
+    private void clear() {
+        status.textProperty().unbind();
+        status.setText("");
+        currentChange = -1;
+        changes.clear();
+        for(EditingArea view : new EditingArea[] {leftView, rightView}) {
+            view.clearMatches();
+            view.clear();
+            view.setScrollPosition(0);
+        }
+    }
+
+
+    /**
+     * Scrolls both views to a change.
+     *
+     * @param index The index of the change, which is kept within the changes
+     *              found so far.
+     */
+    private void goToChange(int index) {
+        if(changes.isEmpty()) {
+            return;
+        }
+        currentChange = Math.max(0, Math.min(index, changes.size() - 1));
+        leftView.goToLine(changes.get(currentChange));
+        rightView.goToLine(changes.get(currentChange));
+    }
+
+
+    /**
+     * Creates one side of the window: a view with the name of its text above
+     * it. The view is read-only, and does not wrap lines so the lines of both
+     * sides stay next to each other.
+     *
+     * @param title The label naming the text.
+     * @param view  The view.
+     * @return  The side.
+     */
+    private static VBox createSide(Label title, EditingArea view) {
+        view.setEditable(false);
+        view.setWrapText(false);
+        VBox.setVgrow(view, Priority.ALWAYS);
+
+        title.setMaxWidth(Double.MAX_VALUE);
+        VBox side = new VBox(4, title, view);
+        side.setPrefWidth(0);
+        return side;
+    }
+
+
+    /**
+     * Scrolls one view along with another.
+     *
+     * @param from  The view that is scrolled.
+     * @param to    The view that follows it.
+     */
+    private void syncScrolling(EditingArea from, EditingArea to) {
+        from.scrollPositionProperty().addListener((observable, oldValue, newValue) -> {
+            if(!syncingScroll) {
+                syncingScroll = true;
+                to.setScrollPosition(newValue.doubleValue());
+                syncingScroll = false;
+            }
+        });
+    }
+}
@@ -0,0 +1,144 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+
+/**
+ * The ways a file can be compressed. A compressed file is decompressed as it is
+ * read and compressed again as it is written, so it is opened like any other
+ * file and saved in the format it was read in.
+ *
+ * Gzip files are recognized by the bytes they start with, whatever they are
+ * called. A deflate file starts with a two byte zlib header that plain text can
+ * start with too, so it is only recognized if its name says it is compressed.
+ */
+public enum Compression {
+
+
+    /**
+     * The file is not compressed.
+     */
+    NONE,
+
+
+    /**
+     * The file is in the gzip format, as written by gzip and logrotate. A file
+     * of several gzip members one after another is read as one.
+     */
+    GZIP,
+
+
+    /**
+     * The file is a zlib stream of deflated data.
+     */
+    DEFLATE;
+
+
+    /**
+     * How many times larger than their compressed size files are guessed to be
+     * when their size is not recorded in them. Text usually compresses better
+     * than this.
+     */
+    private static final int GUESSED_RATIO = 4;
+
+
+    /**
+     * Works out how a file is compressed from the bytes it starts with and its
+     * name.
+     *
+     * @param file  The file.
+     * @return  How the file is compressed.
+     * @throws IOException  If the file could not be read.
+     */
+    public static Compression detect(File file) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(3);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while(bytes.hasRemaining() && channel.read(bytes) != -1) {
+                // Keep reading until the header is read or the file ends.
+            }
+        }
+        bytes.flip();
+
+        if(bytes.remaining() == 3 && (bytes.get(0) & 0xFF) == 0x1F && (bytes.get(1) & 0xFF) == 0x8B
+                && bytes.get(2) == 8) {
+            return GZIP;
+        } else if(bytes.remaining() >= 2 && forName(file.getName()) == DEFLATE) {
+            int header = (bytes.get(0) & 0xFF) << 8 | bytes.get(1) & 0xFF;
+            if((header & 0x0F00) == 0x0800 && header % 31 == 0) {
+                return DEFLATE;
+            }
+        }
+        return NONE;
+    }
+
+
+    /**
+     * Works out how a file is meant to be compressed from its name, for files
+     * that are saved under a new name.
+     *
+     * @param name  The name of the file.
+     * @return  How a file with the name is compressed.
+     */
+    public static Compression forName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if(lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+            return GZIP;
+        } else if(lower.endsWith(".zz") || lower.endsWith(".zlib") || lower.endsWith(".deflate")) {
+            return DEFLATE;
+        }
+        return NONE;
+    }
+
+
+    /**
+     * Opens a file compressed this way for reading. The channel gives the
+     * decompressed bytes, which are decompressed on a background thread while
+     * the channel is read.
+     *
+     * @param file  The file to open.
+     * @return  The channel to read the file from, which is an InflatingChannel
+     *          if the file is compressed.
+     * @throws IOException  If the file could not be opened.
+     */
+    public SeekableByteChannel open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        return this == NONE ? channel : new InflatingChannel(channel, this);
+    }
+
+
+    /**
+     * Guesses how many bytes a file compressed this way is once it is
+     * decompressed. A gzip file records the size of its last member, modulo
+     * 4 GB, in its last four bytes, so it is only trusted if it is at least the
+     * guess made from the size of the file.
+     *
+     * @param file  The file.
+     * @return  The guessed size of the decompressed file.
+     * @throws IOException  If the file could not be read.
+     */
+    public long guessSize(File file) throws IOException {
+        long length = file.length();
+        if(this == NONE) {
+            return length;
+        }
+
+        long guess = length * GUESSED_RATIO;
+        if(this == GZIP && length >= 4) {
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while(trailer.hasRemaining() && channel.read(trailer, length - 4 + trailer.position()) > 0) {
+                    // Keep reading until the size is read.
+                }
+            }
+            guess = Math.max(guess, trailer.getInt(0) & 0xFFFFFFFFL);
+        }
+        return guess;
+    }
+}
@@ -0,0 +1,184 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * A channel that compresses the bytes written to it in the gzip or deflate
+ * format before writing them to another channel. The bytes are compressed
+ * straight from the buffers they are written from into a pooled buffer, so no
+ * bytes are copied onto the heap.
+ *
+ * Closing the channel writes the end of the compressed data, but leaves the
+ * channel it writes to open, so that it can be forced to the disk.
+ */
+public class DeflatingChannel implements WritableByteChannel {
+
+
+    /**
+     * The header of a gzip member without a file name or modification time.
+     */
+    private static final byte[] GZIP_HEADER = { 0x1F, (byte)0x8B, 8, 0, 0, 0, 0, 0, 0, (byte)0xFF };
+
+
+    /**
+     * The input the deflater is left with between writes.
+     */
+    private static final byte[] NO_INPUT = new byte[0];
+
+
+    /**
+     * The channel the compressed bytes are written to.
+     */
+    private final WritableByteChannel channel;
+
+
+    /**
+     * Whether or not the bytes are written in the gzip format.
+     */
+    private final boolean gzip;
+
+
+    /**
+     * Compresses the bytes.
+     */
+    private final Deflater deflater;
+
+
+    /**
+     * The checksum of the bytes written, for the gzip trailer.
+     */
+    private final CRC32 crc = new CRC32();
+
+
+    /**
+     * The amount of bytes written, for the gzip trailer.
+     */
+    private long length = 0;
+
+
+    /**
+     * The compressed bytes that have not been written to the channel.
+     */
+    private ByteBuffer out = BufferPool.acquire();
+
+
+    /**
+     * Creates a DeflatingChannel.
+     *
+     * @param channel       The channel to write the compressed bytes to.
+     * @param compression   How to compress the bytes, which must not be NONE.
+     */
+    public DeflatingChannel(WritableByteChannel channel, Compression compression) {
+        this.channel = channel;
+        this.gzip = compression == Compression.GZIP;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+
+        if(gzip) {
+            out.put(GZIP_HEADER);
+        }
+    }
+
+
+    /*
+     * Compresses the bytes, writing the compressed bytes to the channel each
+     * time the buffer fills up.
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if(out == null) {
+            throw new ClosedChannelException();
+        }
+
+        int count = src.remaining();
+        if(gzip) {
+            crc.update(src.duplicate());
+        }
+        length += count;
+
+        deflater.setInput(src);
+        while(!deflater.needsInput()) {
+            deflate();
+        }
+
+        // The deflater keeps the buffer it was given, which the caller is
+        // free to fill again once this returns.
+        deflater.setInput(NO_INPUT);
+        return count;
+    }
+
+
+    /*
+     * Returns whether or not the channel is open.
+     */
+    @Override
+    public boolean isOpen() {
+        return out != null;
+    }
+
+
+    /*
+     * Writes the end of the compressed data and the gzip trailer, and gives
+     * the buffer back to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        if(out == null) {
+            return;
+        }
+
+        try {
+            deflater.finish();
+            while(!deflater.finished()) {
+                deflate();
+            }
+
+            if(gzip) {
+                if(out.remaining() < 8) {
+                    drain();
+                }
+                out.putInt(Integer.reverseBytes((int)crc.getValue()));
+                out.putInt(Integer.reverseBytes((int)length));
+            }
+            drain();
+        } finally {
+            deflater.end();
+            BufferPool.release(out);
+            out = null;
+        }
+    }
+
+
+    /**
+     * Compresses as many bytes as fit in the buffer, writing the buffer to the
+     * channel once it is full.
+     *
+     * @throws IOException  If the compressed bytes could not be written.
+     */
+    private void deflate() throws IOException {
+        if(!out.hasRemaining()) {
+            drain();
+        }
+        deflater.deflate(out);
+    }
+
+
+    /**
+     * Writes the compressed bytes in the buffer to the channel and empties the
+     * buffer.
+     *
+     * @throws IOException  If the bytes could not be written.
+     */
+    private void drain() throws IOException {
+        out.flip();
+        while(out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,90 @@
+package texteditor;
+
+
+/**
+ * A DocumentEvent describes a single edit made to a PieceTable. The event only
+ * carries the offset and the lengths of the edit, so listeners never have to
+ * look at the whole document to find out what changed.
+ */
+public class DocumentEvent {
+
+
+    /**
+     * The document that was changed.
+     */
+    private final PieceTable document;
+
+
+    /**
+     * The offset in the document where the change started.
+     */
+    private final int offset;
+
+
+    /**
+     * The amount of characters that were removed at the offset.
+     */
+    private final int removedLength;
+
+
+    /**
+     * The amount of characters that were inserted at the offset.
+     */
+    private final int insertedLength;
+
+
+    /**
+     * Creates a new DocumentEvent.
+     *
+     * @param document          The document that was changed.
+     * @param offset            The offset where the change started.
+     * @param removedLength     The amount of characters removed.
+     * @param insertedLength    The amount of characters inserted.
+     */
+    public DocumentEvent(PieceTable document, int offset, int removedLength, int insertedLength) {
+        this.document = document;
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.insertedLength = insertedLength;
+    }
+
+
+    /**
+     * Returns the document that was changed.
+     *
+     * @return  The document that was changed.
+     */
+    public PieceTable getDocument() {
+        return document;
+    }
+
+
+    /**
+     * Returns the offset where the change started.
+     *
+     * @return  The offset where the change started.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+
+    /**
+     * Returns the amount of characters that were removed.
+     *
+     * @return  The amount of characters that were removed.
+     */
+    public int getRemovedLength() {
+        return removedLength;
+    }
+
+
+    /**
+     * Returns the amount of characters that were inserted.
+     *
+     * @return  The amount of characters that were inserted.
+     */
+    public int getInsertedLength() {
+        return insertedLength;
+    }
+}
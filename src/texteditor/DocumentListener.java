@@ -0,0 +1,17 @@
+package texteditor;
+
+
+/**
+ * A DocumentListener is notified every time the text of a PieceTable changes.
+ */
+public interface DocumentListener {
+
+
+    /**
+     * Called after the document has been changed.
+     *
+     * @param e     The event describing where the document changed and by how
+     *              much.
+     */
+    void documentChanged(DocumentEvent e);
+}
@@ -0,0 +1,226 @@
+package texteditor;
+
+
+/**
+ * A DocumentSnapshot is a read-only copy of the text of a PieceTable at one point
+ * in time. Only the list of pieces is copied, not the text, since the buffers
+ * the pieces point into are never changed. This makes a snapshot cheap to take
+ * and safe to read on another thread while the document keeps being edited.
+ * A snapshot of a compacted document in Latin-1 reads its bytes instead.
+ */
+public class DocumentSnapshot {
+
+
+    /**
+     * The buffer of each piece.
+     */
+    private final char[][] buffers;
+
+
+    /**
+     * The index of the first character of each piece in its buffer.
+     */
+    private final int[] starts;
+
+
+    /**
+     * The offset in the document of the first character of each piece, with one
+     * extra entry holding the length of the document.
+     */
+    private final int[] offsets;
+
+
+    /**
+     * The text as Latin-1 bytes, or null if it is read from the pieces.
+     */
+    private final byte[] latin1;
+
+
+    /**
+     * Creates a snapshot from the pieces of a document, in document order.
+     *
+     * @param buffers   The buffer of each piece.
+     * @param starts    The start of each piece in its buffer.
+     * @param lengths   The length of each piece.
+     * @param count     The amount of pieces.
+     */
+    DocumentSnapshot(char[][] buffers, int[] starts, int[] lengths, int count) {
+        this.buffers = new char[count][];
+        this.starts = new int[count];
+        this.offsets = new int[count + 1];
+
+        this.latin1 = null;
+
+        System.arraycopy(buffers, 0, this.buffers, 0, count);
+        System.arraycopy(starts, 0, this.starts, 0, count);
+        for(int i = 0; i < count; i++) {
+            offsets[i + 1] = offsets[i] + lengths[i];
+        }
+    }
+
+
+    /**
+     * Creates a snapshot that reads text kept as Latin-1 bytes. The bytes are
+     * not copied, so they must never be changed.
+     *
+     * @param latin1    The text.
+     */
+    DocumentSnapshot(byte[] latin1) {
+        this.buffers = new char[0][];
+        this.starts = new int[0];
+        this.offsets = new int[] { latin1.length };
+        this.latin1 = latin1;
+    }
+
+
+    /**
+     * Returns the amount of characters in the snapshot.
+     *
+     * @return  The length of the snapshot.
+     */
+    public int length() {
+        return offsets[offsets.length - 1];
+    }
+
+
+    /**
+     * Copies a range of the snapshot into an array.
+     *
+     * @param offset    The offset of the first character to copy.
+     * @param length    The amount of characters to copy.
+     * @param dest      The array to copy into.
+     * @param destPos   The position in dest to start copying to.
+     */
+    public void getChars(int offset, int length, char[] dest, int destPos) {
+        if(offset < 0 || length < 0 || offset + length > length()) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length)
+                    + ") is outside of the snapshot of length " + length() + ".");
+        }
+        if(latin1 != null) {
+            for(int i = 0; i < length; i++) {
+                dest[destPos + i] = (char)(latin1[offset + i] & 0xff);
+            }
+            return;
+        }
+
+        int piece = findPiece(offset);
+        while(length > 0) {
+            int inPiece = offset - offsets[piece];
+            int count = Math.min(length, offsets[piece + 1] - offset);
+            System.arraycopy(buffers[piece], starts[piece] + inPiece, dest, destPos, count);
+
+            offset += count;
+            destPos += count;
+            length -= count;
+            piece++;
+        }
+    }
+
+
+    /**
+     * Returns a range of the snapshot as a String.
+     *
+     * @param offset    The offset of the first character.
+     * @param length    The amount of characters.
+     * @return  The text in the range.
+     */
+    public String getText(int offset, int length) {
+        char[] text = new char[length];
+        getChars(offset, length, text, 0);
+        return new String(text);
+    }
+
+
+    /**
+     * Returns a CharSequence that reads the snapshot without copying it, so that
+     * it can be searched with a regular expression. Each view remembers the
+     * piece it last read from, so reading in order does not search for the
+     * piece of every character. A view should only be used by one thread.
+     *
+     * @return  A view of the snapshot.
+     */
+    public CharSequence asCharSequence() {
+        return new View();
+    }
+
+
+    /**
+     * Returns the index of the piece containing an offset.
+     *
+     * @param offset    The offset to find.
+     * @return  The index of the piece.
+     */
+    private int findPiece(int offset) {
+        int low = 0;
+        int high = buffers.length - 1;
+
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(offsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * A CharSequence over the snapshot.
+     */
+    private class View implements CharSequence {
+
+
+        /**
+         * The piece the last character was read from.
+         */
+        private int piece = 0;
+
+
+        /*
+         * Returns the amount of characters in the snapshot.
+         */
+        @Override
+        public int length() {
+            return DocumentSnapshot.this.length();
+        }
+
+
+        /*
+         * Returns a character, looking for its piece only when it is not in the
+         * piece the last character was read from.
+         */
+        @Override
+        public char charAt(int index) {
+            if(index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of the snapshot.");
+            }
+            if(latin1 != null) {
+                return (char)(latin1[index] & 0xff);
+            }
+            if(index < offsets[piece] || index >= offsets[piece + 1]) {
+                piece = findPiece(index);
+            }
+            return buffers[piece][starts[piece] + index - offsets[piece]];
+        }
+
+
+        /*
+         * Returns a copy of a range of the snapshot.
+         */
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return getText(start, end - start);
+        }
+
+
+        /*
+         * Returns a copy of the whole snapshot.
+         */
+        @Override
+        public String toString() {
+            return getText(0, length());
+        }
+    }
+}
@@ -1,104 +1,1372 @@
 package texteditor;
 
 import java.io.File;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
+import java.nio.charset.Charset;
+import java.util.List;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.control.Control;
 import javafx.scene.control.ContextMenu;
-import javafx.scene.control.TextArea;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.Skin;
+import javafx.scene.control.SkinBase;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.text.Font;
 
 
 /**
- * The EditingArea is a TextArea that the user can type in.
+ * The EditingArea is a text area that the user can type in. The text is kept in
+ * a PieceTable and is drawn by an EditingAreaSkin, which only lays out the lines
+ * that are on screen.
  *
  * @author Jordan Hartwick
  * Jul 2, 2016
  */
-public class EditingArea extends TextArea {
-    
-    
+public class EditingArea extends Control {
+
+
+    /**
+     * Lines longer than this many characters are long lines. The skin lays a
+     * long line out in LineSegments, so typing in it does not lay out all of
+     * it, and long lines are neither highlighted nor spell checked.
+     */
+    public static final int LONG_LINE = 16 * 1024;
+
+
     /**
-     * A boolean containing whether or not this TextArea has been edited or not.
+     * A boolean containing whether or not this EditingArea has been edited or not.
      */
     private boolean hasBeenEdited = false;
-    
-    
+
+
+    /**
+     * The amount of edits made to the document. A save only marks the area as
+     * unedited if no edits were made while it was writing.
+     */
+    private long editCount = 0;
+
+
+    /**
+     * The text the document had when it was last loaded or saved, taken just
+     * before the first edit after that, or null if it has not been edited
+     * since. It shares its text with the document, so it costs next to nothing
+     * until the document is compacted.
+     */
+    private DocumentSnapshot savedText = null;
+
+
     /**
-     * The current file associated with this TextArea.
+     * The current file associated with this EditingArea.
      */
     private File currentFile = null;
-    
-    
+
+
+    /**
+     * The highlighter that finds the tokens of the lines, or null if the text
+     * is not highlighted.
+     */
+    private SyntaxHighlighter highlighter = null;
+
+
+    /**
+     * The checker that finds the misspelled words of the lines on screen.
+     */
+    private final SpellChecker spellChecker;
+
+
+    /**
+     * The charset the current file is read and written in.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+
+    /**
+     * Whether or not the current file starts with a byte order mark.
+     */
+    private boolean byteOrderMark = false;
+
+
+    /**
+     * The line ending the current file is written with.
+     */
+    private LineEnding lineEnding = LineEnding.getDefault();
+
+
+    /**
+     * How the current file is compressed.
+     */
+    private Compression compression = Compression.NONE;
+
+
+    /**
+     * The document that holds the text of this EditingArea. Every edit is made
+     * to the document, which tells its listeners where the edit happened instead
+     * of handing them the whole text.
+     */
+    private final PieceTable document = new PieceTable();
+
+
+    /**
+     * The offsets of the lines in the document.
+     */
+    private final LineIndex lineIndex = new LineIndex(document);
+
+
+    /**
+     * The matches of the last search, which the skin highlights.
+     */
+    private final MatchList matches = new MatchList();
+
+
+    /**
+     * The amount of search matches in this EditingArea.
+     */
+    private final ReadOnlyIntegerWrapper matchCount = new ReadOnlyIntegerWrapper(this, "matchCount", 0);
+
+
+    /**
+     * The amount of lines in this EditingArea.
+     */
+    private final ReadOnlyIntegerWrapper lineCount = new ReadOnlyIntegerWrapper(this, "lineCount", 1);
+
+
+    /**
+     * The offset of the caret.
+     */
+    private final ReadOnlyIntegerWrapper caretPosition = new ReadOnlyIntegerWrapper(this, "caretPosition", 0);
+
+
+    /**
+     * The offset of the end of the selection that does not move with the caret.
+     */
+    private final ReadOnlyIntegerWrapper anchor = new ReadOnlyIntegerWrapper(this, "anchor", 0);
+
+
+    /**
+     * Whether or not the user can edit the text.
+     */
+    private final BooleanProperty editable = new SimpleBooleanProperty(this, "editable", true);
+
+
+    /**
+     * Whether or not lines that are wider than the area are wrapped.
+     */
+    private final BooleanProperty wrapText = new SimpleBooleanProperty(this, "wrapText", false);
+
+
+    /**
+     * Whether or not the numbers of the lines are shown along the left side.
+     */
+    private final BooleanProperty showLineNumbers = new SimpleBooleanProperty(this, "showLineNumbers", true);
+
+
+    /**
+     * The font the text is drawn in.
+     */
+    private final ObjectProperty<Font> font = new SimpleObjectProperty<>(this, "font", Font.getDefault());
+
+
+    /**
+     * The edits that can be undone and redone.
+     */
+    private final UndoJournal undoJournal = new UndoJournal();
+
+
+    /**
+     * Whether or not an undo or redo is being applied, in which case the edit is
+     * not recorded again.
+     */
+    private boolean applyingUndo = false;
+
+
+    /**
+     * The line the skin should scroll to on its next layout, or -1 if there is
+     * none.
+     */
+    private int scrollRequest = -1;
+
+
+    /**
+     * The line at the top of the viewport, plus the part of it that is
+     * scrolled out of view. It is kept here so it outlasts the skin.
+     */
+    private final ReadOnlyDoubleWrapper scrollPosition = new ReadOnlyDoubleWrapper(this, "scrollPosition", 0);
+
+
+    /**
+     * Whether or not the skin should scroll to scrollPosition on its next
+     * layout.
+     */
+    private boolean scrollPositionRequested = false;
+
+
+    /**
+     * Whether or not the last line was in view the last time the skin
+     * scrolled.
+     */
+    private boolean scrolledToEnd = true;
+
+
+    /**
+     * Whether or not the area has dropped its skin and compacted its text
+     * because it has not been used in a while.
+     */
+    private boolean hibernating = false;
+
+
+    /**
+     * The memory limit of the undo history before the area started
+     * hibernating.
+     */
+    private long awakeUndoMemoryLimit;
+
+
     /**
      * Constructor for the EditingArea sets all needed settings and adds all needed
      * event filters.
      */
     public EditingArea() {
-        setPrefRowCount(20);
-        setPrefColumnCount(75);
+        getStyleClass().add("editing-area");
+        setFocusTraversable(true);
         setWrapText(true);
         setFont(new Font("Arial", 12));
-        
+
         ContextMenu contextMenu = new ContextMenu();
-        
+
+        // The line index has to be up to date before anything else hears about
+        // an edit, so it is the first listener added.
+        document.addDocumentListener(lineIndex);
+        document.addDocumentListener(matches);
+
         /*
-         * A listener for if the document associated with this text area has been
-         * edited.
+         * A listener for if the document associated with this editing area has
+         * been edited.
          */
-        this.textProperty().addListener((final ObservableValue<? extends String> observable, 
-                                        final String oldValue, 
-                                        final String newValue) -> {
+        document.addDocumentListener((DocumentEvent e) -> {
             hasBeenEdited = true;
+            editCount++;
+            lineCount.set(lineIndex.getLineCount());
+            matchCount.set(matches.size());
         });
-        
+        spellChecker = new SpellChecker(this);
+
         /*
-         * Listen for mouse clicks within this text area and if the click is the
-         * secondary mouse button (right click), display the context menu.
+         * Listen for mouse clicks within this editing area and if the click is the
+         * secondary mouse button (right click), display the context menu with
+         * the suggestions for the misspelled word under the caret.
          */
         addEventFilter(MouseEvent.MOUSE_CLICKED, (MouseEvent e) -> {
             if(e.getButton() == MouseButton.SECONDARY) {
-                contextMenu.show(this, e.getX(), e.getY());
+                contextMenu.getItems().setAll(createSpellingItems());
+                if(!contextMenu.getItems().isEmpty()) {
+                    contextMenu.show(this, e.getScreenX(), e.getScreenY());
+                }
             }
         });
     }
-    
-    
+
+
+    /*
+     * Editing areas are drawn by a skin that only lays out the visible lines.
+     * A hibernating area gets an empty skin, so it is not laid out at all.
+     */
+    @Override
+    protected Skin<?> createDefaultSkin() {
+        if(hibernating) {
+            return new SkinBase<EditingArea>(this) {};
+        }
+        return new EditingAreaSkin(this);
+    }
+
+
+    /**
+     * Returns the document that holds the text of this EditingArea.
+     *
+     * @return  The document of this EditingArea.
+     */
+    public PieceTable getDocument() {
+        return document;
+    }
+
+
     /**
-     * Sets the current file for this TextArea.
-     * 
-     * @param file  The active file for this TextArea.
+     * Returns the index of the lines in the document.
+     *
+     * @return  The line index of this EditingArea.
      */
-    public void setCurrentFile(File file) {
-        currentFile = file;
+    public LineIndex getLineIndex() {
+        return lineIndex;
     }
-    
-    
+
+
     /**
-     * Returns the current file for this text area.
-     * 
-     * @return  The current file for this text area.
+     * Returns the whole text of this EditingArea. The text is only built when it
+     * is asked for, so this should be avoided on hot paths.
+     *
+     * @return  The text of this EditingArea.
      */
-    public File getCurrentFile() {
-        return currentFile;
+    public String getText() {
+        return document.getText();
     }
-    
-    
+
+
     /**
-     * Returns whether or not this text area has been edited.
-     * 
-     * @return  Whether or not this text area has been edited.
+     * Returns the amount of characters in this EditingArea.
+     *
+     * @return  The length of the text.
      */
-    public boolean getHasBeenEdited() {
-        return hasBeenEdited;
+    public int getLength() {
+        return document.length();
+    }
+
+
+    /**
+     * Returns the amount of lines in this EditingArea.
+     *
+     * @return  The amount of lines.
+     */
+    public int getLineCount() {
+        return lineCount.get();
     }
-    
-    
+
+
     /**
-     * Sets the hasBeenEdited variable in this text area to false.
+     * Returns the property holding the amount of lines in this EditingArea.
+     *
+     * @return  The line count property.
      */
-    public void resetHasBeenEdited() {
-        hasBeenEdited = false;
+    public ReadOnlyIntegerProperty lineCountProperty() {
+        return lineCount.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Sets the amount of lines in this EditingArea. This is used by subclasses
+     * that do not keep their text in the document.
+     *
+     * @param count The amount of lines.
+     */
+    protected void setLineCount(int count) {
+        lineCount.set(count);
+    }
+
+
+    /**
+     * Returns the text of a line, without the '\n' at the end of it.
+     *
+     * @param line  The index of the line.
+     * @return  The text of the line.
+     */
+    public String getLine(int line) {
+        int start = lineIndex.getLineStart(line);
+        int end = line + 1 < lineIndex.getLineCount()
+                ? lineIndex.getLineStart(line + 1) - 1
+                : document.length();
+        return document.getText(start, end - start);
+    }
+
+
+    /**
+     * Returns the amount of characters in a line, without the '\n' at the end
+     * of it.
+     *
+     * @param line  The index of the line.
+     * @return  The length of the line.
+     */
+    public int getLineLength(int line) {
+        int end = line + 1 < lineIndex.getLineCount()
+                ? lineIndex.getLineStart(line + 1) - 1
+                : document.length();
+        return end - lineIndex.getLineStart(line);
+    }
+
+
+    /**
+     * Returns part of the text of a line, without building the whole line.
+     *
+     * @param line  The index of the line.
+     * @param start The column of the first character to return.
+     * @param end   The column after the last character to return.
+     * @return  The text between the columns.
+     */
+    public String getLinePart(int line, int start, int end) {
+        return document.getText(lineIndex.getLineStart(line) + start, end - start);
+    }
+
+
+    /**
+     * Returns the first line that is longer than LONG_LINE.
+     *
+     * @return  The index of the line, or -1 if there is none.
+     */
+    public int findLongLine() {
+        int lineCount = getLineCount();
+        for(int line = 0; line < lineCount; line++) {
+            if(getLineLength(line) > LONG_LINE) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the offset of the first character of a line.
+     *
+     * @param line  The index of the line.
+     * @return  The offset the line starts at.
+     */
+    public int getLineStart(int line) {
+        return lineIndex.getLineStart(line);
+    }
+
+
+    /**
+     * Returns the line that contains an offset.
+     *
+     * @param offset    The offset to find the line of.
+     * @return  The index of the line.
+     */
+    public int getLineOfOffset(int offset) {
+        return lineIndex.getLineOfOffset(offset);
+    }
+
+
+    /**
+     * Replaces a range of the text in this EditingArea. Typing, pasting, deleting
+     * and appending all end up here. The caret is placed after the inserted text.
+     *
+     * @param start The offset of the first character to replace.
+     * @param end   The offset after the last character to replace.
+     * @param text  The text to put in place of the range.
+     */
+    public void replaceText(int start, int end, String text) {
+        if(start > end) {
+            throw new IllegalArgumentException("The start of the range is after its end.");
+        }
+
+        if(isEditable() && !applyingUndo) {
+            undoJournal.record(start, document.getText(start, end - start), text);
+        }
+        if(isEditable() && !hasBeenEdited && savedText == null) {
+            savedText = document.snapshot();
+        }
+
+        document.replace(start, end - start, text);
+        selectRange(start + text.length(), start + text.length());
+    }
+
+
+    /**
+     * Replaces the selected text with the given text.
+     *
+     * @param text  The text to put in place of the selection.
+     */
+    public void replaceSelection(String text) {
+        IndexRange selection = getSelection();
+        replaceText(selection.getStart(), selection.getEnd(), text);
+    }
+
+
+    /**
+     * Inserts text at an offset.
+     *
+     * @param index The offset to insert the text at.
+     * @param text  The text to insert.
+     */
+    public void insertText(int index, String text) {
+        replaceText(index, index, text);
+    }
+
+
+    /**
+     * Adds text to the end of this EditingArea.
+     *
+     * @param text  The text to add.
+     */
+    public void appendText(String text) {
+        int caret = getCaretPosition();
+        int anchorPosition = getAnchor();
+
+        insertText(getLength(), text);
+
+        // Appending should not move the caret away from where the user left it.
+        selectRange(anchorPosition, caret);
+    }
+
+
+    /**
+     * Removes a range of text.
+     *
+     * @param start The offset of the first character to remove.
+     * @param end   The offset after the last character to remove.
+     */
+    public void deleteText(int start, int end) {
+        replaceText(start, end, "");
+    }
+
+
+    /**
+     * Removes the whole text of this EditingArea.
+     */
+    public void clear() {
+        deleteText(0, getLength());
+    }
+
+
+    /**
+     * Returns the offset of the caret.
+     *
+     * @return  The offset of the caret.
+     */
+    public int getCaretPosition() {
+        return caretPosition.get();
+    }
+
+
+    /**
+     * Returns the property holding the offset of the caret.
+     *
+     * @return  The caret position property.
+     */
+    public ReadOnlyIntegerProperty caretPositionProperty() {
+        return caretPosition.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Returns the offset of the end of the selection that does not move with the
+     * caret.
+     *
+     * @return  The offset of the anchor.
+     */
+    public int getAnchor() {
+        return anchor.get();
+    }
+
+
+    /**
+     * Returns the property holding the offset of the anchor.
+     *
+     * @return  The anchor property.
+     */
+    public ReadOnlyIntegerProperty anchorProperty() {
+        return anchor.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Returns the range of the selected text.
+     *
+     * @return  The selected range.
+     */
+    public IndexRange getSelection() {
+        return IndexRange.normalize(getAnchor(), getCaretPosition());
+    }
+
+
+    /**
+     * Returns the selected text.
+     *
+     * @return  The selected text.
+     */
+    public String getSelectedText() {
+        IndexRange selection = getSelection();
+        return document.getText(selection.getStart(), selection.getLength());
+    }
+
+
+    /**
+     * Selects a range of text. Both offsets are kept inside of the document.
+     *
+     * @param anchorPosition    The offset of the end of the selection that does
+     *                          not move with the caret.
+     * @param caret             The offset of the caret.
+     */
+    public void selectRange(int anchorPosition, int caret) {
+        int length = getLength();
+        anchor.set(Math.max(0, Math.min(length, anchorPosition)));
+        caretPosition.set(Math.max(0, Math.min(length, caret)));
+    }
+
+
+    /**
+     * Moves the caret to an offset and clears the selection.
+     *
+     * @param position  The offset to move the caret to.
+     */
+    public void positionCaret(int position) {
+        selectRange(position, position);
+    }
+
+
+    /**
+     * Moves the caret to an offset and selects the text between the anchor and
+     * the new caret position.
+     *
+     * @param position  The offset to move the caret to.
+     */
+    public void selectPositionCaret(int position) {
+        selectRange(getAnchor(), position);
+    }
+
+
+    /**
+     * Selects the whole text.
+     */
+    public void selectAll() {
+        selectRange(0, getLength());
+    }
+
+
+    /**
+     * Clears the selection without moving the caret.
+     */
+    public void deselect() {
+        positionCaret(getCaretPosition());
+    }
+
+
+    /**
+     * Returns the matches of the last search.
+     *
+     * @return  The search matches.
+     */
+    public MatchList getMatches() {
+        return matches;
+    }
+
+
+    /**
+     * Adds search matches after the ones already found.
+     *
+     * @param starts    The starts of the matches.
+     * @param ends      The ends of the matches.
+     * @param count     The amount of matches to add.
+     */
+    public void addMatches(int[] starts, int[] ends, int count) {
+        matches.addAll(starts, ends, count);
+        matchCount.set(matches.size());
+    }
+
+
+    /**
+     * Removes every search match.
+     */
+    public void clearMatches() {
+        matches.clear();
+        matchCount.set(0);
+    }
+
+
+    /**
+     * Sets the amount of search matches, for EditingAreas that keep their
+     * matches somewhere other than the MatchList.
+     *
+     * @param count The amount of matches.
+     */
+    protected void setMatchCount(int count) {
+        matchCount.set(count);
+    }
+
+
+    /**
+     * Returns the index of the match after the selection, or of the one before
+     * it.
+     *
+     * @param forward   Whether to look after the selection or before it.
+     * @return  The index of the match, which is -1 or getMatchCount() if there
+     *          is no match in that direction.
+     */
+    public int getNextMatch(boolean forward) {
+        IndexRange selection = getSelection();
+        return forward ? matches.indexOfStart(selection.getEnd())
+                       : matches.indexOfStart(selection.getStart()) - 1;
+    }
+
+
+    /**
+     * Selects a search match.
+     *
+     * @param index The index of the match.
+     */
+    public void selectMatch(int index) {
+        selectRange(matches.getStart(index), matches.getEnd(index));
+    }
+
+
+    /**
+     * Returns the amount of search matches.
+     *
+     * @return  The amount of matches.
+     */
+    public int getMatchCount() {
+        return matchCount.get();
+    }
+
+
+    /**
+     * Returns the property holding the amount of search matches.
+     *
+     * @return  The match count property.
+     */
+    public ReadOnlyIntegerProperty matchCountProperty() {
+        return matchCount.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Scrolls to a line and, if the text is editable, moves the caret to the
+     * start of it. Lines past the end of the document go to the last line.
+     *
+     * @param line  The index of the line.
+     */
+    public void goToLine(int line) {
+        line = Math.max(0, Math.min(line, getLineCount() - 1));
+        if(isEditable()) {
+            positionCaret(getLineStart(line));
+        }
+
+        scrollRequest = line;
+        requestLayout();
+    }
+
+
+    /**
+     * Returns the line that goToLine asked the skin to scroll to, and forgets it.
+     *
+     * @return  The line to scroll to, or -1 if there is none.
+     */
+    int takeScrollRequest() {
+        int line = scrollRequest;
+        scrollRequest = -1;
+        return line;
+    }
+
+
+    /**
+     * Returns the line at the top of the viewport. The fraction is the part of
+     * that line that is scrolled out of view.
+     *
+     * @return  The scroll position in lines.
+     */
+    public double getScrollPosition() {
+        return scrollPosition.get();
+    }
+
+
+    /**
+     * Returns the property holding the scroll position, which changes as the
+     * area is scrolled.
+     *
+     * @return  The scroll position property.
+     */
+    public ReadOnlyDoubleProperty scrollPositionProperty() {
+        return scrollPosition.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Scrolls so that a line is at the top of the viewport.
+     *
+     * @param position  The scroll position in lines.
+     */
+    public void setScrollPosition(double position) {
+        scrollPosition.set(position);
+        scrollPositionRequested = true;
+        requestLayout();
+    }
+
+
+    /**
+     * Scrolls so that the last line is at the bottom of the viewport.
+     */
+    public void scrollToEnd() {
+        setScrollPosition(Double.MAX_VALUE);
+    }
+
+
+    /**
+     * Returns whether or not the last line was in view the last time the area
+     * was scrolled. Text added to the end does not change it, so an area that
+     * is kept scrolled to the end with scrollToEnd stays that way until the
+     * user scrolls up.
+     *
+     * @return  true if the area is scrolled to the end; false if not.
+     */
+    public boolean isScrolledToEnd() {
+        return scrolledToEnd;
+    }
+
+
+    /**
+     * Records the scroll position as the skin scrolls. A position that has
+     * been asked for but not scrolled to yet is not lost if the skin scrolls
+     * on its own first, say because the viewport was resized.
+     *
+     * @param position  The scroll position in lines.
+     * @param atEnd     Whether or not the last line is in view.
+     */
+    void updateScrollPosition(double position, boolean atEnd) {
+        if(scrollPositionRequested) {
+            return;
+        }
+        scrollPosition.set(position);
+        scrolledToEnd = atEnd;
+    }
+
+
+    /**
+     * Returns whether the skin should scroll to the scroll position, and
+     * forgets the request.
+     *
+     * @return  true if the skin should scroll; false if not.
+     */
+    boolean takeScrollPositionRequest() {
+        boolean requested = scrollPositionRequested;
+        scrollPositionRequested = false;
+        return requested;
+    }
+
+
+    /**
+     * Frees as much memory as possible while the area is not shown. The skin
+     * is replaced with an empty one, the text is compacted and the undo
+     * history is written out to its file. Reading or changing the text still
+     * works; wake brings the rest back and expands the text again.
+     */
+    public void hibernate() {
+        if(!hibernating) {
+            hibernating = true;
+            awakeUndoMemoryLimit = undoJournal.getMemoryLimit();
+            undoJournal.setMemoryLimit(0);
+            setSkin(createDefaultSkin());
+        }
+        document.compact();
+    }
+
+
+    /**
+     * Brings back the skin and undo history of a hibernating area, with the
+     * view scrolled to where it was left.
+     */
+    public void wake() {
+        if(hibernating) {
+            hibernating = false;
+            document.expand();
+            undoJournal.setMemoryLimit(awakeUndoMemoryLimit);
+            scrollPositionRequested = true;
+            setSkin(createDefaultSkin());
+            if(highlighter != null) {
+                highlighter.scheduleRead();
+            }
+        }
+    }
+
+
+    /**
+     * Returns whether or not the area is hibernating.
+     *
+     * @return  true if the area is hibernating; false if not.
+     */
+    public boolean isHibernating() {
+        return hibernating;
+    }
+
+
+    /**
+     * Returns about how much memory the text, line index and undo history of
+     * the area use.
+     *
+     * @return  The memory used in bytes.
+     */
+    public long getMemoryUsed() {
+        return document.getMemoryUsed() + lineIndex.getLineCount() * 4L + undoJournal.getMemoryUsed();
+    }
+
+
+    /**
+     * Copies the selected text to the system clipboard.
+     */
+    public void copy() {
+        IndexRange selection = getSelection();
+        if(selection.getLength() > 0) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(getSelectedText());
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+
+    /**
+     * Copies the selected text to the system clipboard and removes it.
+     */
+    public void cut() {
+        if(isEditable() && getSelection().getLength() > 0) {
+            copy();
+            replaceSelection("");
+        }
+    }
+
+
+    /**
+     * Replaces the selection with the text on the system clipboard. Line endings
+     * are turned into "\n" on the way in.
+     */
+    public void paste() {
+        Clipboard clipboard = Clipboard.getSystemClipboard();
+        if(isEditable() && clipboard.hasString()) {
+            replaceSelection(clipboard.getString().replace("\r\n", "\n").replace('\r', '\n'));
+        }
+    }
+
+
+    /**
+     * Returns whether or not there is an edit that can be undone.
+     *
+     * @return  true if there is an edit to undo; false if not.
+     */
+    public boolean isUndoable() {
+        return undoJournal.canUndo();
+    }
+
+
+    /**
+     * Returns whether or not there is an edit that can be redone.
+     *
+     * @return  true if there is an edit to redo; false if not.
+     */
+    public boolean isRedoable() {
+        return undoJournal.canRedo();
+    }
+
+
+    /**
+     * Undoes the most recent edit.
+     */
+    public void undo() {
+        UndoJournal.Edit edit = undoJournal.undo();
+        if(edit != null) {
+            applyingUndo = true;
+            try {
+                replaceText(edit.offset, edit.offset + edit.inserted.length(), edit.removed);
+            } finally {
+                applyingUndo = false;
+            }
+        }
+    }
+
+
+    /**
+     * Redoes the most recently undone edit.
+     */
+    public void redo() {
+        UndoJournal.Edit edit = undoJournal.redo();
+        if(edit != null) {
+            applyingUndo = true;
+            try {
+                replaceText(edit.offset, edit.offset + edit.removed.length(), edit.inserted);
+            } finally {
+                applyingUndo = false;
+            }
+        }
+    }
+
+
+    /**
+     * Forgets every edit that could be undone or redone.
+     */
+    public void clearUndoHistory() {
+        undoJournal.clear();
+    }
+
+
+    /**
+     * Returns the undo history, which can be used to see and change how much
+     * memory it uses.
+     *
+     * @return  The undo journal.
+     */
+    public UndoJournal getUndoJournal() {
+        return undoJournal;
+    }
+
+
+    /**
+     * Returns whether or not the user can edit the text.
+     *
+     * @return  Whether or not the text is editable.
+     */
+    public final boolean isEditable() {
+        return editable.get();
+    }
+
+
+    /**
+     * Sets whether or not the user can edit the text.
+     *
+     * @param value Whether or not the text is editable.
+     */
+    public final void setEditable(boolean value) {
+        editable.set(value);
+    }
+
+
+    /**
+     * Returns the property holding whether or not the text is editable.
+     *
+     * @return  The editable property.
+     */
+    public final BooleanProperty editableProperty() {
+        return editable;
+    }
+
+
+    /**
+     * Returns whether or not long lines are wrapped.
+     *
+     * @return  Whether or not long lines are wrapped.
+     */
+    public final boolean isWrapText() {
+        return wrapText.get();
+    }
+
+
+    /**
+     * Sets whether or not long lines are wrapped.
+     *
+     * @param value Whether or not long lines are wrapped.
+     */
+    public final void setWrapText(boolean value) {
+        wrapText.set(value);
+    }
+
+
+    /**
+     * Returns the property holding whether or not long lines are wrapped.
+     *
+     * @return  The wrap text property.
+     */
+    public final BooleanProperty wrapTextProperty() {
+        return wrapText;
+    }
+
+
+    /**
+     * Returns whether or not the line numbers are shown.
+     *
+     * @return  Whether or not the line numbers are shown.
+     */
+    public final boolean isShowLineNumbers() {
+        return showLineNumbers.get();
+    }
+
+
+    /**
+     * Sets whether or not the line numbers are shown.
+     *
+     * @param value Whether or not the line numbers are shown.
+     */
+    public final void setShowLineNumbers(boolean value) {
+        showLineNumbers.set(value);
+    }
+
+
+    /**
+     * Returns the property holding whether or not the line numbers are shown.
+     *
+     * @return  The show line numbers property.
+     */
+    public final BooleanProperty showLineNumbersProperty() {
+        return showLineNumbers;
+    }
+
+
+    /**
+     * Returns the font the text is drawn in.
+     *
+     * @return  The font of the text.
+     */
+    public final Font getFont() {
+        return font.get();
+    }
+
+
+    /**
+     * Sets the font the text is drawn in.
+     *
+     * @param value The font of the text.
+     */
+    public final void setFont(Font value) {
+        font.set(value);
+    }
+
+
+    /**
+     * Returns the property holding the font the text is drawn in.
+     *
+     * @return  The font property.
+     */
+    public final ObjectProperty<Font> fontProperty() {
+        return font;
+    }
+
+
+    /**
+     * Sets the current file for this EditingArea, and highlights the text with
+     * the lexer for the file's extension.
+     *
+     * @param file  The active file for this EditingArea.
+     */
+    public void setCurrentFile(File file) {
+        currentFile = file;
+        setLexer(Lexers.forFile(file));
+    }
+
+
+    /**
+     * Sets the lexer the text is highlighted with. The lines are read again
+     * from the start on a background thread.
+     *
+     * @param lexer The lexer, or null to show the text without highlighting.
+     */
+    public void setLexer(Lexer lexer) {
+        if(lexer == getLexer()) {
+            return;
+        }
+
+        if(highlighter != null) {
+            highlighter.stop();
+            highlighter = null;
+        }
+        if(lexer != null) {
+            highlighter = new SyntaxHighlighter(this, lexer);
+        }
+        requestLayout();
+    }
+
+
+    /**
+     * Returns the lexer the text is highlighted with.
+     *
+     * @return  The lexer, or null if the text is not highlighted.
+     */
+    public Lexer getLexer() {
+        return highlighter == null ? null : highlighter.getLexer();
+    }
+
+
+    /**
+     * Returns the checker that finds the misspelled words of the lines on
+     * screen.
+     *
+     * @return  The spell checker.
+     */
+    public SpellChecker getSpellChecker() {
+        return spellChecker;
+    }
+
+
+    /**
+     * Creates the menu items that replace the misspelled word under the caret
+     * with each of its suggestions.
+     *
+     * @return  The menu items, which are empty if the word under the caret is
+     *          not misspelled.
+     */
+    private List<MenuItem> createSpellingItems() {
+        int[] word = spellChecker.isActive() ? spellChecker.getMisspellingAt(getCaretPosition()) : null;
+        if(word == null) {
+            return List.of();
+        }
+
+        List<String> suggestions = spellChecker.getSuggestions(document.getText(word[0], word[1] - word[0]));
+        if(suggestions.isEmpty()) {
+            MenuItem none = new MenuItem("No Suggestions");
+            none.setDisable(true);
+            return List.of(none);
+        }
+
+        MenuItem[] items = new MenuItem[suggestions.size()];
+        for(int i = 0; i < items.length; i++) {
+            String suggestion = suggestions.get(i);
+            items[i] = new MenuItem(suggestion);
+            items[i].setOnAction(e -> replaceText(word[0], word[1], suggestion));
+        }
+        return List.of(items);
+    }
+
+
+    /**
+     * Returns the highlighter that finds the tokens of the lines.
+     *
+     * @return  The highlighter, or null if the text is not highlighted.
+     */
+    public SyntaxHighlighter getHighlighter() {
+        return highlighter;
+    }
+
+
+    /**
+     * Returns the current file for this editing area.
+     *
+     * @return  The current file for this editing area.
+     */
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+
+    /**
+     * Sets the charset the current file is read and written in.
+     *
+     * @param charset   The charset of the file.
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+
+    /**
+     * Returns the charset the current file is read and written in.
+     *
+     * @return  The charset of the file.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+
+    /**
+     * Sets whether or not the current file starts with a byte order mark.
+     *
+     * @param byteOrderMark Whether or not the file has a byte order mark.
+     */
+    public void setByteOrderMark(boolean byteOrderMark) {
+        this.byteOrderMark = byteOrderMark;
+    }
+
+
+    /**
+     * Returns whether or not the current file starts with a byte order mark.
+     *
+     * @return  Whether or not the file has a byte order mark.
+     */
+    public boolean hasByteOrderMark() {
+        return byteOrderMark;
+    }
+
+
+    /**
+     * Sets how the current file is compressed.
+     *
+     * @param compression   How the file is compressed.
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+
+    /**
+     * Returns how the current file is compressed.
+     *
+     * @return  How the file is compressed.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+
+    /**
+     * Sets the line ending the current file is written with.
+     *
+     * @param lineEnding    The line ending of the file.
+     */
+    public void setLineEnding(LineEnding lineEnding) {
+        this.lineEnding = lineEnding;
+    }
+
+
+    /**
+     * Returns the line ending the current file is written with.
+     *
+     * @return  The line ending of the file.
+     */
+    public LineEnding getLineEnding() {
+        return lineEnding;
+    }
+
+
+    /**
+     * Returns whether or not this editing area has been edited.
+     *
+     * @return  Whether or not this editing area has been edited.
+     */
+    public boolean getHasBeenEdited() {
+        return hasBeenEdited;
+    }
+
+
+    /**
+     * Sets the hasBeenEdited variable in this editing area to true, for text
+     * that was put in the area without the user typing it but still has to be
+     * saved.
+     */
+    public void markHasBeenEdited() {
+        hasBeenEdited = true;
+    }
+
+
+    /**
+     * Sets the hasBeenEdited variable in this editing area to false.
+     */
+    public void resetHasBeenEdited() {
+        hasBeenEdited = false;
+        savedText = null;
+    }
+
+
+    /**
+     * Returns the text the document had when it was last loaded or saved, so
+     * that changes made to the file since can be merged with the edits made
+     * in the area.
+     *
+     * @return  The saved text, or null if the area has not been edited since.
+     */
+    public DocumentSnapshot getSavedText() {
+        return savedText;
+    }
+
+
+    /**
+     * Sets the text the file was last saved with, for a save that finished
+     * after more edits were made. The area is still edited, but changes made
+     * to the file since have to be merged from what was saved rather than from
+     * what was there before.
+     *
+     * @param savedText The text that was saved.
+     */
+    public void setSavedText(DocumentSnapshot savedText) {
+        this.savedText = savedText;
+    }
+
+
+    /**
+     * Returns the amount of edits that have been made to the document.
+     *
+     * @return  The amount of edits made.
+     */
+    public long getEditCount() {
+        return editCount;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,2350 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.event.EventType;
+import javafx.geometry.Bounds;
+import javafx.geometry.Orientation;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.Cursor;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.SkinBase;
+import javafx.scene.input.InputMethodEvent;
+import javafx.scene.input.InputMethodRequests;
+import javafx.scene.input.InputMethodTextRun;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+
+/**
+ * The skin of an EditingArea. Instead of laying out the whole document, the skin
+ * keeps a pool of Text nodes, one for each line on screen plus a few extra, and
+ * fills them with the lines at the current scroll position. The vertical scroll
+ * bar is measured in lines, so scrolling and typing only ever touch the lines
+ * that are visible, no matter how long the document is.
+ *
+ * All of the work is done in layoutChildren, so any number of edits and caret
+ * moves between two pulses only cost one pass over the visible lines.
+ */
+public class EditingAreaSkin extends SkinBase<EditingArea> {
+
+
+    /**
+     * The amount of lines that are laid out below the bottom of the viewport.
+     */
+    private static final int OVERSCAN = 2;
+
+
+    /**
+     * The size of the area in lines and columns when it has room to grow.
+     */
+    private static final int PREF_ROW_COUNT = 20, PREF_COLUMN_COUNT = 75;
+
+
+    /**
+     * The color behind selected text.
+     */
+    private static final Color SELECTION_COLOR = Color.web("#b3d7ff");
+
+
+    /**
+     * The color behind search matches.
+     */
+    private static final Color MATCH_COLOR = Color.web("#ffe97a");
+
+
+    /**
+     * The color of the line under misspelled words.
+     */
+    private static final Color MISSPELLING_COLOR = Color.web("#e0301e");
+
+
+    /**
+     * The width and height of each zig of the line under misspelled words.
+     */
+    private static final double SQUIGGLE_SIZE = 2;
+
+
+    /**
+     * The colors of the line number gutter and of the numbers in it.
+     */
+    private static final Color GUTTER_COLOR = Color.web("#f4f4f4"), LINE_NUMBER_COLOR = Color.web("#999999");
+
+
+    /**
+     * The space on each side of the line numbers.
+     */
+    private static final double GUTTER_PADDING = 6;
+
+
+    /**
+     * The least amount of digits the gutter has room for, so that it does not
+     * change width while the first lines are typed.
+     */
+    private static final int MIN_GUTTER_DIGITS = 2;
+
+
+    /**
+     * The longest line that is highlighted. Longer lines are drawn plainly, so
+     * that laying them out is not multiplied by the amount of colors in them.
+     */
+    private static final int MAX_HIGHLIGHTED_LINE = 10 * 1024;
+
+
+    /**
+     * The most long lines whose segments are kept.
+     */
+    private static final int MAX_SEGMENTED_LINES = 16;
+
+
+    /**
+     * The pane that holds the visible lines, the selection and the caret.
+     */
+    private final Pane viewport = new Pane();
+
+
+    /**
+     * The clip that keeps everything inside of the viewport.
+     */
+    private final Rectangle clip = new Rectangle();
+
+
+    /**
+     * The pane along the left side of the viewport that shows the line numbers.
+     */
+    private final Pane gutter = new Pane();
+
+
+    /**
+     * The clip that keeps the line numbers inside of the gutter.
+     */
+    private final Rectangle gutterClip = new Rectangle();
+
+
+    /**
+     * The group holding the shapes drawn behind search matches.
+     */
+    private final Group matchGroup = new Group();
+
+
+    /**
+     * The group holding the shapes drawn behind selected text.
+     */
+    private final Group selectionGroup = new Group();
+
+
+    /**
+     * The group holding the Text nodes of the visible lines.
+     */
+    private final Group cellGroup = new Group();
+
+
+    /**
+     * The highlighted copies of the cells, drawn over them.
+     */
+    private final Group styleGroup = new Group();
+
+
+    /**
+     * The lines drawn under misspelled words, one shape for each line of text.
+     */
+    private final Group spellingGroup = new Group();
+
+
+    /**
+     * The caret.
+     */
+    private final Path caret = new Path();
+
+
+    /**
+     * The text an input method is composing, drawn underlined at the caret
+     * over a background that hides the text behind it. The text only goes into
+     * the document once the input method commits it.
+     */
+    private final Text composition = new Text();
+    private final Rectangle compositionBackground = new Rectangle();
+
+
+    /**
+     * The scroll bars of the area. The value of the vertical scroll bar is the
+     * index of the first visible line, plus the fraction of that line that is
+     * scrolled out of view.
+     */
+    private final ScrollBar vbar = new ScrollBar(), hbar = new ScrollBar();
+
+
+    /**
+     * The Text nodes that show the visible lines. The nodes are reused as the
+     * user scrolls.
+     */
+    private final List<Text> cells = new ArrayList<>();
+
+
+    /**
+     * The Text nodes that show the line numbers, one for each cell.
+     */
+    private final List<Text> numbers = new ArrayList<>();
+
+
+    /**
+     * For each cell, a group with a copy of the cell for every color in its
+     * line, each clipped to the characters of that color.
+     */
+    private final List<Group> styles = new ArrayList<>();
+
+
+    /**
+     * For each cell, the line, state, text and wrapping width its styles were
+     * made for, so they are only made again when one of them changes.
+     */
+    private int[] styledLines = new int[0], styledStates = new int[0];
+    private String[] styledTexts = new String[0];
+    private double[] styledWidths = new double[0];
+
+
+    /**
+     * The tokens of the line being styled.
+     */
+    private int[] tokenStarts = new int[64], tokenEnds = new int[64];
+    private TokenType[] tokenTypes = new TokenType[64];
+    private int tokenCount = 0;
+
+
+    /**
+     * The line shown by each cell, or -1 if the cell is not in use.
+     */
+    private int[] cellLines = new int[0];
+
+
+    /**
+     * The column of its line that the text of each cell starts at, which is 0
+     * unless the cell shows a segment of a long line.
+     */
+    private int[] cellStarts = new int[0];
+
+
+    /**
+     * The amount of cells that are in use.
+     */
+    private int usedCells = 0;
+
+
+    /**
+     * The segments of the long lines that have been laid out, oldest first.
+     */
+    private final List<LineSegments> segmentedLines = new ArrayList<>();
+
+
+    /**
+     * The amount of lines in the document before the last edit, so that the
+     * segments know how far an edit moved their lines.
+     */
+    private int documentLineCount;
+
+
+    /**
+     * A Text node that is never shown, used to measure lines that are not on
+     * screen.
+     */
+    private final Text measurer = new Text();
+
+
+    /**
+     * The timeline that makes the caret blink.
+     */
+    private final Timeline caretBlink;
+
+
+    /**
+     * The height of a single row of text.
+     */
+    private double lineHeight;
+
+
+    /**
+     * The width of the widest digit in the current font.
+     */
+    private double digitWidth;
+
+
+    /**
+     * The width of the widest line that has been laid out.
+     */
+    private double widestLine = 0;
+
+
+    /**
+     * The x position the caret tries to stay at while moving up and down, or -1
+     * if it should use its current x position.
+     */
+    private double preferredX = -1;
+
+
+    /**
+     * Whether or not the caret should be scrolled into view on the next layout.
+     */
+    private boolean scrollToCaret = false;
+
+
+    /**
+     * Whether or not the caret was moved from the keyboard since the last
+     * layout. A read-only area is only scrolled to its caret then, so text
+     * added while a file loads or is followed does not move the view.
+     */
+    private boolean caretMoved = false;
+
+
+    /**
+     * Whether or not the skin is in the middle of laying out the lines.
+     */
+    private boolean layingOut = false;
+
+
+    /**
+     * Whether or not the user is selecting text by dragging the mouse.
+     */
+    private boolean dragSelecting = false;
+
+
+    /**
+     * The first of the lines at the end of the document that were measured to
+     * find the range of the vertical scroll bar.
+     */
+    private int rangeFirstLine = 0;
+
+
+    /**
+     * Whether or not the range of the vertical scroll bar has to be measured
+     * again, because the end of the document or the size of the area changed.
+     */
+    private boolean rangeDirty = true;
+
+
+    /**
+     * The line count the range of the vertical scroll bar was last measured for.
+     */
+    private int rangeLineCount = -1;
+
+
+    /**
+     * The viewport size the range of the vertical scroll bar was last measured
+     * for.
+     */
+    private double rangeWidth = -1, rangeHeight = -1;
+
+
+    /**
+     * The listener that redraws the area when its document changes.
+     */
+    private final DocumentListener documentListener = (DocumentEvent e) -> {
+        if(getSkinnable().getLineOfOffset(e.getOffset()) >= rangeFirstLine - 1) {
+            rangeDirty = true;
+        }
+        updateSegments(e);
+        requestLayout();
+    };
+
+
+    /**
+     * Removes each listener and handler the skin added to its area, so that a
+     * disposed skin no longer reacts to the area and can be collected.
+     */
+    private final List<Runnable> disposers = new ArrayList<>();
+
+
+    /**
+     * Creates the skin for an EditingArea.
+     *
+     * @param area  The area the skin is for.
+     */
+    public EditingAreaSkin(EditingArea area) {
+        super(area);
+
+        vbar.setOrientation(Orientation.VERTICAL);
+        vbar.setUnitIncrement(1);
+        hbar.setUnitIncrement(20);
+
+        viewport.setBackground(new Background(new BackgroundFill(Color.WHITE, null, null)));
+        viewport.setClip(clip);
+        viewport.setCursor(Cursor.TEXT);
+
+        gutter.setBackground(new Background(new BackgroundFill(GUTTER_COLOR, null, null)));
+        gutter.setClip(gutterClip);
+
+        matchGroup.setManaged(false);
+        selectionGroup.setManaged(false);
+        cellGroup.setManaged(false);
+        styleGroup.setManaged(false);
+        spellingGroup.setManaged(false);
+        caret.setManaged(false);
+        caret.setStrokeWidth(1);
+        caret.setStroke(Color.BLACK);
+        composition.setManaged(false);
+        composition.setUnderline(true);
+        composition.setTextOrigin(VPos.TOP);
+        compositionBackground.setManaged(false);
+        compositionBackground.setFill(Color.WHITE);
+
+        measurer.setTextOrigin(VPos.TOP);
+        for(int i = 0; i < PREF_ROW_COUNT; i++) {
+            addCell();
+        }
+
+        viewport.getChildren().addAll(matchGroup, selectionGroup, cellGroup, styleGroup, spellingGroup,
+                compositionBackground, composition, caret);
+        getChildren().addAll(gutter, viewport, vbar, hbar);
+
+        measureFont();
+
+        caretBlink = new Timeline(new KeyFrame(Duration.millis(500), e -> {
+            caret.setVisible(!caret.isVisible() && isCaretShown());
+        }));
+        caretBlink.setCycleCount(Timeline.INDEFINITE);
+
+        documentLineCount = area.getLineIndex().getLineCount();
+        area.getDocument().addDocumentListener(documentListener);
+
+        vbar.valueProperty().addListener((observable, oldValue, newValue) -> {
+            area.updateScrollPosition(newValue.doubleValue(), newValue.doubleValue() >= vbar.getMax());
+            requestLayout();
+        });
+
+        hbar.valueProperty().addListener((observable, oldValue, newValue) -> {
+            requestLayout();
+        });
+
+        listen(area.lineCountProperty(), (observable, oldValue, newValue) -> {
+            requestLayout();
+        });
+
+        listen(area.caretPositionProperty(), (observable, oldValue, newValue) -> {
+            scrollToCaret = true;
+            restartCaretBlink();
+            requestLayout();
+        });
+
+        listen(area.anchorProperty(), (observable, oldValue, newValue) -> {
+            requestLayout();
+        });
+
+        listen(area.matchCountProperty(), (observable, oldValue, newValue) -> {
+            requestLayout();
+        });
+
+        listen(area.fontProperty(), (observable, oldValue, newValue) -> {
+            measureFont();
+            widestLine = 0;
+            rangeDirty = true;
+            area.requestLayout();
+        });
+
+        listen(area.wrapTextProperty(), (observable, oldValue, newValue) -> {
+            widestLine = 0;
+            rangeDirty = true;
+            hbar.setValue(0);
+            area.requestLayout();
+        });
+
+        listen(area.showLineNumbersProperty(), (observable, oldValue, newValue) -> {
+            area.requestLayout();
+        });
+
+        listen(area.focusedProperty(), (observable, oldValue, newValue) -> {
+            restartCaretBlink();
+        });
+
+        listen(area.editableProperty(), (observable, oldValue, newValue) -> {
+            restartCaretBlink();
+        });
+
+        handle(ScrollEvent.SCROLL, (ScrollEvent e) -> {
+            scrollByPixels(-e.getDeltaY());
+            if(!area.isWrapText()) {
+                hbar.setValue(clamp(hbar, hbar.getValue() - e.getDeltaX()));
+            }
+            e.consume();
+        });
+
+        handle(KeyEvent.KEY_PRESSED, this::handleKeyPressed);
+        handle(KeyEvent.KEY_TYPED, this::handleKeyTyped);
+        handle(InputMethodEvent.INPUT_METHOD_TEXT_CHANGED, this::handleInputMethodTextChanged);
+        area.setInputMethodRequests(new InputMethod());
+        disposers.add(() -> area.setInputMethodRequests(null));
+        handle(MouseEvent.MOUSE_PRESSED, this::handleMousePressed);
+        handle(MouseEvent.MOUSE_DRAGGED, this::handleMouseDragged);
+        handle(MouseEvent.MOUSE_RELEASED, (MouseEvent e) -> {
+            dragSelecting = false;
+        });
+    }
+
+
+    /**
+     * Stops listening to the area when the skin is replaced.
+     */
+    @Override
+    public void dispose() {
+        caretBlink.stop();
+        getSkinnable().getDocument().removeDocumentListener(documentListener);
+        for(Runnable disposer : disposers) {
+            disposer.run();
+        }
+        disposers.clear();
+        super.dispose();
+    }
+
+
+    /**
+     * Adds a listener to a property of the area, to be removed when the skin
+     * is disposed.
+     *
+     * @param <T>       The type of the property.
+     * @param property  The property to listen to.
+     * @param listener  The listener.
+     */
+    private <T> void listen(ObservableValue<T> property, ChangeListener<? super T> listener) {
+        property.addListener(listener);
+        disposers.add(() -> property.removeListener(listener));
+    }
+
+
+    /**
+     * Adds an event handler to the area, to be removed when the skin is
+     * disposed.
+     *
+     * @param <T>       The type of the events.
+     * @param type      The type of the events to handle.
+     * @param handler   The handler.
+     */
+    private <T extends Event> void handle(EventType<T> type, EventHandler<? super T> handler) {
+        EditingArea area = getSkinnable();
+        area.addEventHandler(type, handler);
+        disposers.add(() -> area.removeEventHandler(type, handler));
+    }
+
+
+    /**
+     * Asks for the area to be laid out again on the next pulse.
+     */
+    private void requestLayout() {
+        if(!layingOut) {
+            getSkinnable().requestLayout();
+        }
+    }
+
+
+    /**
+     * Measures the height of a row of text and the width of a digit in the
+     * current font.
+     */
+    private void measureFont() {
+        measurer.setFont(getSkinnable().getFont());
+        measurer.setWrappingWidth(0);
+        measurer.setText("Xg");
+        lineHeight = Math.ceil(measurer.getLayoutBounds().getHeight());
+
+        digitWidth = 0;
+        for(char digit = '0'; digit <= '9'; digit++) {
+            measurer.setText(String.valueOf(digit));
+            digitWidth = Math.max(digitWidth, measurer.getLayoutBounds().getWidth());
+        }
+    }
+
+
+    /**
+     * Adds a new cell to the pool.
+     */
+    private void addCell() {
+        Text cell = new Text();
+        cell.setTextOrigin(VPos.TOP);
+        cell.fontProperty().bind(getSkinnable().fontProperty());
+        cell.setVisible(false);
+        cells.add(cell);
+        cellGroup.getChildren().add(cell);
+
+        Text number = new Text();
+        number.setTextOrigin(VPos.TOP);
+        number.setTextAlignment(TextAlignment.RIGHT);
+        number.fontProperty().bind(getSkinnable().fontProperty());
+        number.setFill(LINE_NUMBER_COLOR);
+        number.setManaged(false);
+        number.setVisible(false);
+        numbers.add(number);
+        gutter.getChildren().add(number);
+
+        Group style = new Group();
+        style.setVisible(false);
+        styles.add(style);
+        styleGroup.getChildren().add(style);
+
+        int[] grown = new int[cells.size()];
+        System.arraycopy(cellLines, 0, grown, 0, cellLines.length);
+        grown[cells.size() - 1] = -1;
+        cellLines = grown;
+        cellStarts = Arrays.copyOf(cellStarts, cells.size());
+
+        styledLines = Arrays.copyOf(styledLines, cells.size());
+        styledStates = Arrays.copyOf(styledStates, cells.size());
+        styledTexts = Arrays.copyOf(styledTexts, cells.size());
+        styledWidths = Arrays.copyOf(styledWidths, cells.size());
+        styledStates[cells.size() - 1] = -1;
+    }
+
+
+    /*
+     * The preferred size fits PREF_COLUMN_COUNT columns and PREF_ROW_COUNT rows.
+     */
+    @Override
+    protected double computePrefWidth(double height, double topInset, double rightInset,
+                                      double bottomInset, double leftInset) {
+        measurer.setWrappingWidth(0);
+        measurer.setText("W");
+        return leftInset + getGutterWidth() + measurer.getLayoutBounds().getWidth() * PREF_COLUMN_COUNT
+                + vbar.prefWidth(-1) + rightInset;
+    }
+
+
+    /*
+     * The preferred size fits PREF_COLUMN_COUNT columns and PREF_ROW_COUNT rows.
+     */
+    @Override
+    protected double computePrefHeight(double width, double topInset, double rightInset,
+                                       double bottomInset, double leftInset) {
+        return topInset + lineHeight * PREF_ROW_COUNT + hbar.prefHeight(-1) + bottomInset;
+    }
+
+
+    /*
+     * Places the gutter, the viewport and the scroll bars, then fills the cells
+     * with the lines at the current scroll position and draws the line numbers,
+     * the caret and the selection.
+     */
+    @Override
+    protected void layoutChildren(double x, double y, double w, double h) {
+        layingOut = true;
+        try {
+            EditingArea area = getSkinnable();
+
+            double gutterWidth = getGutterWidth();
+            double vbarWidth = vbar.prefWidth(-1);
+            double hbarHeight = area.isWrapText() ? 0 : hbar.prefHeight(-1);
+            double viewWidth = Math.max(0, w - gutterWidth - vbarWidth);
+            double viewHeight = Math.max(0, h - hbarHeight);
+
+            gutter.setVisible(gutterWidth > 0);
+            gutter.resizeRelocate(x, y, gutterWidth, viewHeight);
+            gutterClip.setWidth(gutterWidth);
+            gutterClip.setHeight(viewHeight);
+            viewport.resizeRelocate(x + gutterWidth, y, viewWidth, viewHeight);
+            clip.setWidth(viewWidth);
+            clip.setHeight(viewHeight);
+            vbar.resizeRelocate(x + gutterWidth + viewWidth, y, vbarWidth, viewHeight);
+            hbar.setVisible(!area.isWrapText());
+            hbar.resizeRelocate(x + gutterWidth, y + viewHeight, viewWidth, hbarHeight);
+
+            measurer.setWrappingWidth(getWrappingWidth());
+
+            updateVerticalRange();
+
+            if(scrollToCaret) {
+                scrollToCaret = false;
+                if(area.isEditable() || caretMoved) {
+                    revealCaret();
+                }
+            }
+            caretMoved = false;
+
+            // Go To Line puts the line in the middle of the viewport.
+            int requestedLine = area.takeScrollRequest();
+            if(requestedLine >= 0) {
+                int rows = Math.max(1, (int)(viewHeight / lineHeight));
+                vbar.setValue(clamp(vbar, requestedLine - rows / 2));
+            }
+
+            // A new skin, or a restored session, starts where the area was left.
+            if(area.takeScrollPositionRequest()) {
+                vbar.setValue(clamp(vbar, area.getScrollPosition()));
+            }
+
+            fillCells();
+            drawLineNumbers(gutterWidth);
+            updateHorizontalRange();
+            drawMatches();
+            drawSpelling();
+            drawSelection();
+            drawCaret();
+            drawComposition();
+        } finally {
+            layingOut = false;
+        }
+    }
+
+
+    /**
+     * Returns the width lines are wrapped at, or 0 if lines are not wrapped.
+     *
+     * @return  The wrapping width of the lines.
+     */
+    private double getWrappingWidth() {
+        return getSkinnable().isWrapText() ? Math.max(1, viewport.getWidth() - 2) : 0;
+    }
+
+
+    /**
+     * Fills the cells with the lines starting at the first visible line, until
+     * the viewport plus the overscan is filled. A long line takes a cell for
+     * each of its segments that is in view.
+     */
+    private void fillCells() {
+        EditingArea area = getSkinnable();
+        int lineCount = area.getLineCount();
+        double viewHeight = viewport.getHeight();
+        double wrappingWidth = getWrappingWidth();
+        double offsetX = area.isWrapText() ? 1 : 1 - hbar.getValue();
+
+        int firstLine = Math.min((int)vbar.getValue(), lineCount - 1);
+        double fraction = vbar.getValue() - firstLine;
+
+        // A long line at the top starts at the segment the scroll position is
+        // in, and the part of that segment scrolled out of view is kept.
+        LineSegments firstSegments = getSegments(firstLine);
+        int firstSegment = 0;
+        double scrolledOut = 0;
+        if(firstSegments != null) {
+            double offset = fraction * firstSegments.getHeight();
+            firstSegment = firstSegments.getSegmentAt(offset);
+            scrolledOut = offset - firstSegments.getSegmentTop(firstSegment);
+        }
+
+        double cellY = -scrolledOut;
+        int extra = 0;
+        int index = 0;
+
+        for(int line = firstLine; line < lineCount && extra < OVERSCAN; line++) {
+            LineSegments segments = line == firstLine ? firstSegments : getSegments(line);
+            int segmentCount = segments == null ? 1 : segments.getSegmentCount();
+            double lineHeightBefore = segments == null ? 0 : segments.getHeight();
+
+            for(int segment = line == firstLine ? firstSegment : 0;
+                    segment < segmentCount && extra < OVERSCAN; segment++, index++) {
+                if(index == cells.size()) {
+                    addCell();
+                }
+
+                Text cell = cells.get(index);
+                int start = segments == null ? 0 : segments.getSegmentStart(segment);
+                String text = segments == null ? area.getLine(line)
+                        : area.getLinePart(line, start, segments.getSegmentEnd(segment));
+                if(!text.equals(cell.getText())) {
+                    cell.setText(text);
+                }
+                cell.setWrappingWidth(wrappingWidth);
+                cell.setVisible(true);
+                cellLines[index] = line;
+                cellStarts[index] = start;
+
+                double height = getCellHeight(cell);
+                if(segments != null) {
+                    segments.setSegmentHeight(segment, height);
+                } else if(index == 0) {
+                    cellY = -fraction * height;
+                }
+
+                cell.setLayoutX(offsetX);
+                cell.setLayoutY(cellY);
+                styleCell(index, line, wrappingWidth);
+                cellY += height;
+
+                if(!area.isWrapText()) {
+                    widestLine = Math.max(widestLine, cell.getLayoutBounds().getWidth() + 2);
+                }
+
+                if(cellY >= viewHeight) {
+                    extra++;
+                }
+            }
+
+            // Measuring the segments may change the height the end of the
+            // document was measured with.
+            if(segments != null && line >= rangeFirstLine - 1 && segments.getHeight() != lineHeightBefore) {
+                rangeDirty = true;
+            }
+        }
+
+        // The scroll position is a fraction of the height of the first line,
+        // which changes as its segments are measured, so it is moved to keep
+        // the lines where they were drawn.
+        if(firstSegments != null) {
+            double offset = firstSegments.getSegmentTop(firstSegment) + scrolledOut;
+            double value = firstLine + offset / firstSegments.getHeight();
+            if(value != vbar.getValue() && value <= vbar.getMax()) {
+                vbar.setValue(value);
+            }
+        }
+
+        usedCells = index;
+        for(; index < cells.size(); index++) {
+            cells.get(index).setVisible(false);
+            styles.get(index).setVisible(false);
+            cellLines[index] = -1;
+        }
+    }
+
+
+    /**
+     * Draws a cell in the colors of its tokens, if the area is highlighted and
+     * the state its line starts in is known. The cell itself is made
+     * transparent and a copy of it is drawn over it for every color in the
+     * line, clipped to the characters of that color, so the cell is still what
+     * the caret, the selection and the mouse are measured against.
+     *
+     * @param index         The index of the cell.
+     * @param line          The line the cell shows.
+     * @param wrappingWidth The width the cell is wrapped at.
+     */
+    private void styleCell(int index, int line, double wrappingWidth) {
+        Text cell = cells.get(index);
+        Group style = styles.get(index);
+        String text = cell.getText();
+        SyntaxHighlighter highlighter = getSkinnable().getHighlighter();
+
+        int state = highlighter == null || getSkinnable().getLineLength(line) > MAX_HIGHLIGHTED_LINE
+                ? -1 : highlighter.getLineState(line);
+        if(state < 0) {
+            style.setVisible(false);
+            cell.setFill(Color.BLACK);
+            styledStates[index] = -1;
+            return;
+        }
+
+        style.setLayoutX(cell.getLayoutX());
+        style.setLayoutY(cell.getLayoutY());
+        if(styledStates[index] == state && styledLines[index] == line && styledWidths[index] == wrappingWidth
+                && text.equals(styledTexts[index])) {
+            return;
+        }
+        styledLines[index] = line;
+        styledStates[index] = state;
+        styledTexts[index] = text;
+        styledWidths[index] = wrappingWidth;
+
+        tokenCount = 0;
+        highlighter.getLexer().tokenize(text, 0, text.length(), state, this::addToken);
+        if(tokenCount == 0) {
+            style.setVisible(false);
+            cell.setFill(Color.BLACK);
+            return;
+        }
+
+        // Each color gets one copy of the line. The text between the tokens is
+        // drawn in the color of plain text.
+        ObservableList<Node> copies = style.getChildren();
+        int used = 0;
+        Path plain = new Path();
+        int from = 0;
+        for(int i = 0; i < tokenCount; i++) {
+            if(tokenStarts[i] > from) {
+                plain.getElements().addAll(cell.rangeShape(from, tokenStarts[i]));
+            }
+            from = Math.max(from, tokenEnds[i]);
+        }
+        if(from < text.length()) {
+            plain.getElements().addAll(cell.rangeShape(from, text.length()));
+        }
+        if(!plain.getElements().isEmpty()) {
+            setCopy(copies, used++, text, wrappingWidth, Color.BLACK, plain);
+        }
+
+        for(TokenType type : TokenType.values()) {
+            Path clip = null;
+            for(int i = 0; i < tokenCount; i++) {
+                if(tokenTypes[i] == type) {
+                    if(clip == null) {
+                        clip = new Path();
+                    }
+                    clip.getElements().addAll(cell.rangeShape(tokenStarts[i], tokenEnds[i]));
+                }
+            }
+            if(clip != null) {
+                setCopy(copies, used++, text, wrappingWidth, type.getColor(), clip);
+            }
+        }
+
+        if(used < copies.size()) {
+            copies.remove(used, copies.size());
+        }
+        cell.setFill(Color.TRANSPARENT);
+        style.setVisible(true);
+    }
+
+
+    /**
+     * Adds a token of the line being styled. Empty tokens and tokens past the
+     * end of the line are left out.
+     *
+     * @param start The offset of the first character of the token.
+     * @param end   The offset just past the last character of the token.
+     * @param type  The type of the token.
+     */
+    private void addToken(int start, int end, TokenType type) {
+        if(start >= end) {
+            return;
+        }
+        if(tokenCount == tokenStarts.length) {
+            tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+            tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+            tokenTypes = Arrays.copyOf(tokenTypes, tokenCount * 2);
+        }
+        tokenStarts[tokenCount] = start;
+        tokenEnds[tokenCount] = end;
+        tokenTypes[tokenCount] = type;
+        tokenCount++;
+    }
+
+
+    /**
+     * Sets up one of the colored copies of a cell, adding it if the cell does
+     * not have that many copies yet.
+     *
+     * @param copies        The copies of the cell.
+     * @param index         The index of the copy.
+     * @param text          The text of the cell.
+     * @param wrappingWidth The width the cell is wrapped at.
+     * @param color         The color of the copy.
+     * @param clip          The shape of the characters in that color.
+     */
+    private void setCopy(ObservableList<Node> copies, int index, String text, double wrappingWidth, Color color, Path clip) {
+        Text copy;
+        if(index < copies.size()) {
+            copy = (Text)copies.get(index);
+        } else {
+            copy = new Text();
+            copy.setTextOrigin(VPos.TOP);
+            copy.fontProperty().bind(getSkinnable().fontProperty());
+            copy.setManaged(false);
+            copies.add(copy);
+        }
+
+        if(!text.equals(copy.getText())) {
+            copy.setText(text);
+        }
+        copy.setWrappingWidth(wrappingWidth);
+        copy.setFill(color);
+
+        // A clip masks by what it would draw, so the shape has to be filled.
+        clip.setFill(Color.BLACK);
+        clip.setStroke(null);
+        copy.setClip(clip);
+    }
+
+
+    /**
+     * Returns the width of the gutter, which has room for the number of the last
+     * line, or 0 if the line numbers are not shown.
+     *
+     * @return  The width of the gutter.
+     */
+    private double getGutterWidth() {
+        EditingArea area = getSkinnable();
+        if(!area.isShowLineNumbers()) {
+            return 0;
+        }
+
+        int digits = Math.max(MIN_GUTTER_DIGITS, Integer.toString(area.getLineCount()).length());
+        return Math.ceil(digitWidth * digits) + GUTTER_PADDING * 2;
+    }
+
+
+    /**
+     * Shows the number of each visible line next to the top of its cell, or of
+     * its first segment if it is a long line.
+     *
+     * @param gutterWidth   The width of the gutter.
+     */
+    private void drawLineNumbers(double gutterWidth) {
+        for(int i = 0; i < numbers.size(); i++) {
+            Text number = numbers.get(i);
+            if(i >= usedCells || gutterWidth == 0 || cellStarts[i] > 0) {
+                number.setVisible(false);
+                continue;
+            }
+
+            String text = Integer.toString(cellLines[i] + 1);
+            if(!text.equals(number.getText())) {
+                number.setText(text);
+            }
+            number.setWrappingWidth(gutterWidth - GUTTER_PADDING * 2);
+            number.setLayoutX(GUTTER_PADDING);
+            number.setLayoutY(cells.get(i).getLayoutY());
+            number.setVisible(true);
+        }
+    }
+
+
+    /**
+     * Returns the height of a cell, which is never less than one row.
+     *
+     * @param cell  The cell to measure.
+     * @return  The height of the cell.
+     */
+    private double getCellHeight(Text cell) {
+        return Math.max(lineHeight, cell.getLayoutBounds().getHeight());
+    }
+
+
+    /**
+     * Returns the height of a line, using the cell showing it if there is one.
+     * The height of a long line is added up from its segments.
+     *
+     * @param line  The index of the line.
+     * @return  The height of the line.
+     */
+    private double getLineHeight(int line) {
+        LineSegments segments = getSegments(line);
+        if(segments != null) {
+            return segments.getHeight();
+        }
+
+        int index = findCell(line);
+        if(index >= 0) {
+            return getCellHeight(cells.get(index));
+        }
+
+        if(!getSkinnable().isWrapText()) {
+            return lineHeight;
+        }
+
+        measurer.setText(getSkinnable().getLine(line));
+        return Math.max(lineHeight, measurer.getLayoutBounds().getHeight());
+    }
+
+
+    /**
+     * Returns the index of the cell showing a line, or -1 if it is not shown.
+     *
+     * @param line  The index of the line.
+     * @return  The index of the cell.
+     */
+    private int findCell(int line) {
+        return findCell(line, 0);
+    }
+
+
+    /**
+     * Returns the index of the cell showing the part of a line that starts at
+     * a column, or -1 if it is not shown.
+     *
+     * @param line  The index of the line.
+     * @param start The column the text of the cell starts at.
+     * @return  The index of the cell.
+     */
+    private int findCell(int line, int start) {
+        for(int i = 0; i < usedCells; i++) {
+            if(cellLines[i] == line && cellStarts[i] == start) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns a Text node laid out with a line, either the cell showing it or the
+     * measurer.
+     *
+     * @param line  The index of the line.
+     * @return  A Text node holding the line.
+     */
+    private Text layoutLine(int line) {
+        int index = findCell(line);
+        if(index >= 0) {
+            return cells.get(index);
+        }
+
+        measurer.setText(getSkinnable().getLine(line));
+        return measurer;
+    }
+
+
+    /**
+     * Returns a Text node laid out with a segment of a long line, either the
+     * cell showing it or the measurer. The height of the segment is kept.
+     *
+     * @param line      The index of the line.
+     * @param segments  The segments of the line.
+     * @param segment   The index of the segment.
+     * @return  A Text node holding the segment.
+     */
+    private Text layoutSegment(int line, LineSegments segments, int segment) {
+        int start = segments.getSegmentStart(segment);
+        int index = findCell(line, start);
+        if(index >= 0) {
+            return cells.get(index);
+        }
+
+        measurer.setText(getSkinnable().getLinePart(line, start, segments.getSegmentEnd(segment)));
+        segments.setSegmentHeight(segment, Math.max(lineHeight, measurer.getLayoutBounds().getHeight()));
+        return measurer;
+    }
+
+
+    /**
+     * Returns the segments of a line if it is a long line, breaking it into
+     * segments the first time it is asked for. Only the segments of the last
+     * MAX_SEGMENTED_LINES long lines are kept.
+     *
+     * @param line  The index of the line.
+     * @return  The segments of the line, or null if it is not a long line.
+     */
+    private LineSegments getSegments(int line) {
+        EditingArea area = getSkinnable();
+        boolean longLine = area.getLineLength(line) > EditingArea.LONG_LINE;
+
+        LineSegments segments = null;
+        for(int i = 0; i < segmentedLines.size(); i++) {
+            if(segmentedLines.get(i).getLine() == line) {
+                segments = longLine ? segmentedLines.get(i) : segmentedLines.remove(i);
+                break;
+            }
+        }
+        if(!longLine) {
+            return null;
+        }
+
+        if(segments == null) {
+            if(segmentedLines.size() == MAX_SEGMENTED_LINES) {
+                segmentedLines.remove(0);
+            }
+            segments = new LineSegments(area, line);
+            segmentedLines.add(segments);
+        }
+        segments.setMetrics(getWrappingWidth(), lineHeight, digitWidth);
+        return segments;
+    }
+
+
+    /**
+     * Moves the segments of the long lines along with an edit, and forgets the
+     * segments of lines that a line break was typed into or taken out of.
+     *
+     * @param e The edit.
+     */
+    private void updateSegments(DocumentEvent e) {
+        EditingArea area = getSkinnable();
+        int newCount = area.getLineIndex().getLineCount();
+        int lineDelta = newCount - documentLineCount;
+        documentLineCount = newCount;
+        if(segmentedLines.isEmpty()) {
+            return;
+        }
+
+        int startLine = area.getLineOfOffset(e.getOffset());
+        int oldEndLine = area.getLineOfOffset(e.getOffset() + e.getInsertedLength()) - lineDelta;
+        segmentedLines.removeIf(segments -> !segments.update(area, startLine, oldEndLine, lineDelta, e));
+    }
+
+
+    /**
+     * Updates the range of the vertical scroll bar so that the last line can be
+     * scrolled to the bottom of the viewport.
+     */
+    private void updateVerticalRange() {
+        int lineCount = getSkinnable().getLineCount();
+        double viewHeight = viewport.getHeight();
+        double max = vbar.getMax();
+
+        if(rangeDirty || lineCount != rangeLineCount
+                || viewport.getWidth() != rangeWidth || viewHeight != rangeHeight) {
+
+            // Walk up from the last line until the viewport is full.
+            double remaining = viewHeight;
+            int line = lineCount - 1;
+            max = 0;
+            while(line >= 0) {
+                double height = getLineHeight(line);
+                if(height >= remaining) {
+                    max = line + (height - remaining) / height;
+                    break;
+                }
+                remaining -= height;
+                line--;
+            }
+
+            rangeFirstLine = Math.max(0, line);
+            rangeLineCount = lineCount;
+            rangeWidth = viewport.getWidth();
+            rangeHeight = viewHeight;
+            rangeDirty = false;
+        }
+
+        int rows = Math.max(1, (int)(viewHeight / lineHeight));
+        vbar.setMin(0);
+        vbar.setMax(max);
+        vbar.setVisibleAmount(Math.min(rows, lineCount));
+        vbar.setBlockIncrement(Math.max(1, rows - 1));
+        if(vbar.getValue() > max) {
+            vbar.setValue(max);
+        }
+    }
+
+
+    /**
+     * Updates the range of the horizontal scroll bar to the widest line that has
+     * been laid out.
+     */
+    private void updateHorizontalRange() {
+        double viewWidth = viewport.getWidth();
+        hbar.setMin(0);
+        hbar.setMax(Math.max(0, widestLine - viewWidth));
+        hbar.setVisibleAmount(viewWidth);
+        hbar.setBlockIncrement(viewWidth);
+    }
+
+
+    /**
+     * Scrolls by an amount of pixels, walking over the lines so that wrapped
+     * lines scroll smoothly.
+     *
+     * @param pixels    The amount of pixels to scroll. Positive values scroll
+     *                  down.
+     */
+    private void scrollByPixels(double pixels) {
+        double value = vbar.getValue();
+        int line = (int)value;
+        double offset = (value - line) * getLineHeight(line) + pixels;
+
+        while(offset < 0 && line > 0) {
+            line--;
+            offset += getLineHeight(line);
+        }
+
+        int lineCount = getSkinnable().getLineCount();
+        double height = getLineHeight(line);
+        while(offset >= height && line < lineCount - 1) {
+            offset -= height;
+            line++;
+            height = getLineHeight(line);
+        }
+
+        vbar.setValue(clamp(vbar, line + Math.max(0, offset) / height));
+    }
+
+
+    /**
+     * Scrolls the least amount needed for the caret to be fully visible.
+     */
+    private void revealCaret() {
+        EditingArea area = getSkinnable();
+        int caretPosition = area.getCaretPosition();
+        int line = area.getLineOfOffset(caretPosition);
+
+        double[] caretBounds = getLineCaretBounds(line, caretPosition - area.getLineStart(line));
+        double caretTop = caretBounds[1];
+        double caretBottom = caretBounds[2];
+        double viewHeight = viewport.getHeight();
+
+        int firstLine = (int)vbar.getValue();
+        double firstOffset = (vbar.getValue() - firstLine) * getLineHeight(firstLine);
+
+        if(line < firstLine || (line == firstLine && caretTop < firstOffset)) {
+            vbar.setValue(line + caretTop / getLineHeight(line));
+        } else {
+            // Find how far down the viewport the line starts.
+            double y = -firstOffset;
+            int current = firstLine;
+            while(current < line && y <= viewHeight) {
+                y += getLineHeight(current);
+                current++;
+            }
+
+            if(current != line || y + caretBottom > viewHeight) {
+                // Put the bottom of the caret at the bottom of the viewport.
+                double remaining = viewHeight - caretBottom;
+                double value = 0;
+                if(remaining <= 0) {
+                    value = line + -remaining / getLineHeight(line);
+                } else {
+                    current = line;
+                    while(current > 0) {
+                        current--;
+                        double height = getLineHeight(current);
+                        if(height >= remaining) {
+                            value = current + (height - remaining) / height;
+                            break;
+                        }
+                        remaining -= height;
+                    }
+                }
+                vbar.setValue(clamp(vbar, value));
+            }
+        }
+
+        if(!area.isWrapText()) {
+            double caretX = caretBounds[0];
+            double viewWidth = viewport.getWidth();
+            widestLine = Math.max(widestLine, caretX + 2);
+            updateHorizontalRange();
+
+            if(caretX < hbar.getValue()) {
+                hbar.setValue(caretX);
+            } else if(caretX > hbar.getValue() + viewWidth - 2) {
+                hbar.setValue(clamp(hbar, caretX - viewWidth + 2));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the x position, the top and the bottom of the caret at a column of
+     * a laid out line, relative to the line.
+     *
+     * @param text      The Text node the line is laid out in.
+     * @param column    The column of the caret.
+     * @return  An array holding the x, top and bottom of the caret.
+     */
+    private double[] getCaretBounds(Text text, int column) {
+        PathElement[] shape = text.caretShape(Math.min(column, text.getText().length()), true);
+        double x = 0, top = 0, bottom = lineHeight;
+
+        if(shape.length >= 2 && shape[0] instanceof MoveTo && shape[1] instanceof LineTo) {
+            x = ((MoveTo)shape[0]).getX();
+            top = ((MoveTo)shape[0]).getY();
+            bottom = ((LineTo)shape[1]).getY();
+        }
+        return new double[] { x, top, bottom };
+    }
+
+
+    /**
+     * Returns the x position, the top and the bottom of the caret at a column of
+     * a line, relative to the top of the line. Only the segment holding the
+     * column is laid out if the line is a long line.
+     *
+     * @param line      The index of the line.
+     * @param column    The column of the caret.
+     * @return  An array holding the x, top and bottom of the caret.
+     */
+    private double[] getLineCaretBounds(int line, int column) {
+        LineSegments segments = getSegments(line);
+        if(segments == null) {
+            return getCaretBounds(layoutLine(line), column);
+        }
+
+        int segment = segments.getSegmentOf(column);
+        Text text = layoutSegment(line, segments, segment);
+        double[] bounds = getCaretBounds(text, column - segments.getSegmentStart(segment));
+        double top = segments.getSegmentTop(segment);
+        bounds[1] += top;
+        bounds[2] += top;
+        return bounds;
+    }
+
+
+    /**
+     * Draws the shapes behind the search matches in the visible lines. Only the
+     * matches between the first and last visible line are looked at, so the
+     * amount of matches in the rest of the document does not matter.
+     */
+    private void drawMatches() {
+        EditingArea area = getSkinnable();
+        if(area instanceof LargeFileArea) {
+            drawLineMatches((LargeFileArea)area);
+            return;
+        }
+
+        MatchList matches = area.getMatches();
+        int shapeCount = 0;
+
+        if(matches.size() > 0 && usedCells > 0) {
+            int index = matches.indexOfEnd(area.getLineStart(cellLines[0]) + cellStarts[0]);
+
+            for(int i = 0; i < usedCells && index < matches.size(); i++) {
+                Text cell = cells.get(i);
+                int lineStart = area.getLineStart(cellLines[i]) + cellStarts[i];
+                int lineEnd = lineStart + cell.getText().length();
+
+                // Draw each match that touches this line, then move on to the
+                // next line without passing a match that carries on into it.
+                for(int m = index; m < matches.size() && matches.getStart(m) < lineEnd; m++) {
+                    int from = Math.max(0, matches.getStart(m) - lineStart);
+                    int to = Math.min(lineEnd, matches.getEnd(m)) - lineStart;
+                    if(from < to) {
+                        Path path = getShape(matchGroup, shapeCount++, MATCH_COLOR);
+                        path.getElements().setAll(cell.rangeShape(from, to));
+                        path.setLayoutX(cell.getLayoutX());
+                        path.setLayoutY(cell.getLayoutY());
+                    }
+                }
+                while(index < matches.size() && matches.getEnd(index) <= lineEnd) {
+                    index++;
+                }
+            }
+        }
+
+        matchGroup.getChildren().remove(shapeCount, matchGroup.getChildren().size());
+    }
+
+
+    /**
+     * Draws the shapes behind the search matches in the visible lines of a
+     * large file, whose matches are kept by line. The match that was selected
+     * last is drawn as selected, since the text of a large file can not be.
+     *
+     * @param area  The LargeFileArea.
+     */
+    private void drawLineMatches(LargeFileArea area) {
+        LineMatches matches = area.getLineMatches();
+        int selected = area.getSelectedMatch();
+        int shapeCount = 0;
+
+        for(int i = 0; i < usedCells && matches.size() > 0; i++) {
+            Text cell = cells.get(i);
+            int line = cellLines[i];
+            int cellEnd = cellStarts[i] + cell.getText().length();
+
+            for(int m = matches.indexOf(line, cellStarts[i]);
+                    m < matches.size() && matches.getLine(m) == line && matches.getStart(m) < cellEnd; m++) {
+                int from = Math.max(0, matches.getStart(m) - cellStarts[i]);
+                int to = Math.min(cellEnd, matches.getEnd(m)) - cellStarts[i];
+                Path path = getShape(matchGroup, shapeCount++, MATCH_COLOR);
+                path.setFill(m == selected ? SELECTION_COLOR : MATCH_COLOR);
+                path.getElements().setAll(cell.rangeShape(from, to));
+                path.setLayoutX(cell.getLayoutX());
+                path.setLayoutY(cell.getLayoutY());
+            }
+        }
+
+        matchGroup.getChildren().remove(shapeCount, matchGroup.getChildren().size());
+    }
+
+
+    /**
+     * Returns a shape from a group of highlight shapes, adding it if the group
+     * does not have that many shapes yet.
+     *
+     * @param group The group of shapes.
+     * @param index The index of the shape.
+     * @param color The color the shape is filled with.
+     * @return  The shape.
+     */
+    private static Path getShape(Group group, int index, Color color) {
+        if(index < group.getChildren().size()) {
+            return (Path)group.getChildren().get(index);
+        }
+
+        Path path = new Path();
+        path.setFill(color);
+        path.setStroke(null);
+        group.getChildren().add(path);
+        return path;
+    }
+
+
+    /**
+     * Draws a zigzag line under the misspelled words in the visible lines. The
+     * spell checker is only asked about the visible lines, and checks the ones
+     * it has not seen in the background, so they are drawn on a later layout.
+     * Long lines are not checked, since every edit would check all of it again.
+     */
+    private void drawSpelling() {
+        EditingArea area = getSkinnable();
+        SpellChecker spellChecker = area.getSpellChecker();
+        int shapeCount = 0;
+
+        if(spellChecker.isActive()) {
+            List<PathElement> elements = new ArrayList<>();
+            for(int i = 0; i < usedCells; i++) {
+                if(area.getLineLength(cellLines[i]) > EditingArea.LONG_LINE) {
+                    continue;
+                }
+                int[] words = spellChecker.getMisspellings(cellLines[i]);
+                if(words == null || words.length == 0) {
+                    continue;
+                }
+
+                Text cell = cells.get(i);
+                int lineLength = cell.getText().length();
+                elements.clear();
+                for(int w = 0; w < words.length && words[w + 1] <= lineLength; w += 2) {
+                    addSquiggles(elements, cell.rangeShape(words[w], words[w + 1]));
+                }
+
+                Path path = getShape(spellingGroup, shapeCount++, null);
+                path.setStroke(MISSPELLING_COLOR);
+                path.getElements().setAll(elements);
+                path.setLayoutX(cell.getLayoutX());
+                path.setLayoutY(cell.getLayoutY());
+            }
+        }
+
+        spellingGroup.getChildren().remove(shapeCount, spellingGroup.getChildren().size());
+    }
+
+
+    /**
+     * Adds a zigzag line along the bottom of each rectangle of the shape of a
+     * range of text. A word that wraps onto the next row has one rectangle on
+     * each row.
+     *
+     * @param elements  The elements to add the lines to.
+     * @param shape     The shape of the range, made of a MoveTo followed by
+     *                  LineTos for each rectangle.
+     */
+    private static void addSquiggles(List<PathElement> elements, PathElement[] shape) {
+        for(int i = 0; i < shape.length; i++) {
+            if(!(shape[i] instanceof MoveTo)) {
+                continue;
+            }
+
+            double left = ((MoveTo)shape[i]).getX(), right = left, bottom = ((MoveTo)shape[i]).getY();
+            for(int j = i + 1; j < shape.length && shape[j] instanceof LineTo; j++) {
+                LineTo corner = (LineTo)shape[j];
+                left = Math.min(left, corner.getX());
+                right = Math.max(right, corner.getX());
+                bottom = Math.max(bottom, corner.getY());
+            }
+
+            double y = bottom - SQUIGGLE_SIZE;
+            elements.add(new MoveTo(left, y));
+            boolean down = true;
+            for(double x = left + SQUIGGLE_SIZE; x < right + SQUIGGLE_SIZE; x += SQUIGGLE_SIZE) {
+                elements.add(new LineTo(Math.min(x, right), down ? y + SQUIGGLE_SIZE : y));
+                down = !down;
+            }
+        }
+    }
+
+
+    /**
+     * Draws the shapes behind the selected text in the visible lines.
+     */
+    private void drawSelection() {
+        EditingArea area = getSkinnable();
+        int[] selection = getSelectedLines();
+        int shapeCount = 0;
+
+        if(selection != null) {
+            int startLine = selection[0];
+            int endLine = selection[2];
+
+            for(int i = 0; i < usedCells; i++) {
+                int line = cellLines[i];
+                if(line < startLine || line > endLine) {
+                    continue;
+                }
+
+                Text cell = cells.get(i);
+                int cellLength = cell.getText().length();
+                int from = line == startLine ? Math.min(cellLength, Math.max(0, selection[1] - cellStarts[i])) : 0;
+                int to = line == endLine ? Math.min(cellLength, selection[3] - cellStarts[i]) : cellLength;
+                boolean lineEnd = cellStarts[i] + cellLength == area.getLineLength(line);
+
+                PathElement[] shape;
+                if(from < to) {
+                    shape = cell.rangeShape(from, to);
+                } else if(line < endLine && lineEnd) {
+                    // Show that the line break at the end of the line is selected.
+                    double[] bounds = getCaretBounds(cell, from);
+                    double width = lineHeight / 3;
+                    shape = new PathElement[] {
+                        new MoveTo(bounds[0], bounds[1]), new LineTo(bounds[0] + width, bounds[1]),
+                        new LineTo(bounds[0] + width, bounds[2]), new LineTo(bounds[0], bounds[2])
+                    };
+                } else {
+                    continue;
+                }
+
+                Path path = getShape(selectionGroup, shapeCount, SELECTION_COLOR);
+                path.getElements().setAll(shape);
+                path.setLayoutX(cell.getLayoutX());
+                path.setLayoutY(cell.getLayoutY());
+                shapeCount++;
+            }
+        }
+
+        selectionGroup.getChildren().remove(shapeCount, selectionGroup.getChildren().size());
+    }
+
+
+    /**
+     * Returns where the selection starts and ends, as lines and columns. A
+     * LargeFileArea keeps its selection that way, since its document is empty.
+     *
+     * @return  The line and column the selection starts at followed by the
+     *          line and column it ends at, or null if nothing is selected.
+     */
+    private int[] getSelectedLines() {
+        EditingArea area = getSkinnable();
+        if(area instanceof LargeFileArea) {
+            int[] selection = ((LargeFileArea)area).getLineSelection();
+            return selection[0] == selection[2] && selection[1] == selection[3] ? null : selection;
+        }
+
+        IndexRange selection = area.getSelection();
+        if(selection.getLength() == 0) {
+            return null;
+        }
+        int startLine = area.getLineOfOffset(selection.getStart());
+        int endLine = area.getLineOfOffset(selection.getEnd());
+        return new int[] {
+            startLine, selection.getStart() - area.getLineStart(startLine),
+            endLine, selection.getEnd() - area.getLineStart(endLine)
+        };
+    }
+
+
+    /**
+     * Draws the caret in the line that holds it, if that line is visible.
+     */
+    private void drawCaret() {
+        EditingArea area = getSkinnable();
+        caret.getElements().clear();
+
+        if(!isCaretShown()) {
+            return;
+        }
+
+        int caretPosition = area.getCaretPosition();
+        int line = area.getLineOfOffset(caretPosition);
+        int column = caretPosition - area.getLineStart(line);
+        LineSegments segments = getSegments(line);
+        int start = segments == null ? 0 : segments.getSegmentStart(segments.getSegmentOf(column));
+        int index = findCell(line, start);
+
+        if(index >= 0) {
+            Text cell = cells.get(index);
+            column = Math.min(column - start, cell.getText().length());
+            caret.getElements().setAll(cell.caretShape(column, true));
+            caret.setLayoutX(cell.getLayoutX());
+            caret.setLayoutY(cell.getLayoutY());
+        }
+    }
+
+
+    /**
+     * Draws the text the input method is composing at the caret, or hides it
+     * if nothing is being composed.
+     */
+    private void drawComposition() {
+        boolean shown = !composition.getText().isEmpty() && !caret.getElements().isEmpty();
+        composition.setVisible(shown);
+        compositionBackground.setVisible(shown);
+        if(!shown) {
+            return;
+        }
+
+        Bounds caretBounds = caret.getBoundsInParent();
+        composition.setFont(getSkinnable().getFont());
+        composition.setLayoutX(caretBounds.getMinX());
+        composition.setLayoutY(caretBounds.getMinY());
+
+        Bounds textBounds = composition.getLayoutBounds();
+        compositionBackground.setX(caretBounds.getMinX());
+        compositionBackground.setY(caretBounds.getMinY());
+        compositionBackground.setWidth(textBounds.getWidth());
+        compositionBackground.setHeight(Math.max(textBounds.getHeight(), caretBounds.getHeight()));
+    }
+
+
+    /**
+     * Returns whether or not the caret should be drawn.
+     *
+     * @return  true if the caret should be drawn; false if not.
+     */
+    private boolean isCaretShown() {
+        return getSkinnable().isEditable() && getSkinnable().isFocused();
+    }
+
+
+    /**
+     * Shows the caret and starts it blinking again, so that it does not blink
+     * while the user is typing or moving it.
+     */
+    private void restartCaretBlink() {
+        caretBlink.stop();
+        caret.setVisible(isCaretShown());
+        if(isCaretShown()) {
+            caretBlink.play();
+        }
+    }
+
+
+    /**
+     * Returns the offset of the character boundary closest to a point in the
+     * viewport.
+     *
+     * @param x The x position in the viewport.
+     * @param y The y position in the viewport.
+     * @return  The offset closest to the point.
+     */
+    private int getOffsetAt(double x, double y) {
+        int[] position = getPositionAt(x, y);
+        return getSkinnable().getLineStart(position[0]) + position[1];
+    }
+
+
+    /**
+     * Returns the line and column of the character boundary closest to a
+     * point in the viewport.
+     *
+     * @param x The x position in the viewport.
+     * @param y The y position in the viewport.
+     * @return  The line and the column in it closest to the point.
+     */
+    private int[] getPositionAt(double x, double y) {
+        if(usedCells == 0) {
+            return new int[] { 0, hitColumn(0, x, 0) };
+        }
+
+        int i = 0;
+        while(i < usedCells - 1 && y >= cells.get(i).getLayoutY() + getCellHeight(cells.get(i))) {
+            i++;
+        }
+
+        // Above the first cell is its first row.
+        Text cell = cells.get(i);
+        int column = cell.hitTest(new Point2D(x - cell.getLayoutX(), Math.max(0, y - cell.getLayoutY())))
+                .getInsertionIndex();
+        return new int[] { cellLines[i], cellStarts[i] + Math.min(cell.getText().length(), column) };
+    }
+
+
+    /**
+     * Returns the offset closest to a point inside of a line.
+     *
+     * @param line  The index of the line.
+     * @param x     The x position relative to the line.
+     * @param y     The y position relative to the top of the line.
+     * @return  The offset closest to the point.
+     */
+    private int hitLine(int line, double x, double y) {
+        return getSkinnable().getLineStart(line) + hitColumn(line, x, y);
+    }
+
+
+    /**
+     * Returns the column closest to a point inside of a line.
+     *
+     * @param line  The index of the line.
+     * @param x     The x position relative to the line.
+     * @param y     The y position relative to the top of the line.
+     * @return  The column closest to the point.
+     */
+    private int hitColumn(int line, double x, double y) {
+        LineSegments segments = getSegments(line);
+        if(segments != null) {
+            int segment = segments.getSegmentAt(y);
+            double top = segments.getSegmentTop(segment);
+            Text text = layoutSegment(line, segments, segment);
+            int column = text.hitTest(new Point2D(x, y - top)).getInsertionIndex();
+            return segments.getSegmentStart(segment) + Math.min(column, text.getText().length());
+        }
+
+        Text text = layoutLine(line);
+        int column = text.hitTest(new Point2D(x, y)).getInsertionIndex();
+        return Math.min(column, text.getText().length());
+    }
+
+
+    /**
+     * Moves the caret up or down by one row, keeping its x position.
+     *
+     * @param down  Whether to move down instead of up.
+     * @param extend Whether or not the selection should be extended.
+     */
+    private void moveCaretVertically(boolean down, boolean extend) {
+        EditingArea area = getSkinnable();
+        int caretPosition = area.getCaretPosition();
+        int line = area.getLineOfOffset(caretPosition);
+        double[] bounds = getLineCaretBounds(line, caretPosition - area.getLineStart(line));
+
+        if(preferredX < 0) {
+            preferredX = bounds[0];
+        }
+        double x = preferredX;
+        double lineBottom = getLineHeight(line);
+
+        int target;
+        if(!down && bounds[1] - lineHeight / 2 >= 0) {
+            target = hitLine(line, x, bounds[1] - lineHeight / 2);
+        } else if(down && bounds[2] + lineHeight / 2 < lineBottom) {
+            target = hitLine(line, x, bounds[2] + lineHeight / 2);
+        } else if(!down) {
+            target = line == 0 ? 0 : hitLine(line - 1, x, getLineHeight(line - 1) - lineHeight / 2);
+        } else {
+            target = line == area.getLineCount() - 1 ? area.getLength() : hitLine(line + 1, x, lineHeight / 2);
+        }
+
+        moveCaret(target, extend, true);
+    }
+
+
+    /**
+     * Moves the caret to an offset.
+     *
+     * @param position          The offset to move to.
+     * @param extend            Whether or not the selection should be extended.
+     * @param keepPreferredX    Whether or not to keep the x position used for
+     *                          moving up and down.
+     */
+    private void moveCaret(int position, boolean extend, boolean keepPreferredX) {
+        if(!keepPreferredX) {
+            preferredX = -1;
+        }
+
+        EditingArea area = getSkinnable();
+        if(extend) {
+            area.selectPositionCaret(position);
+        } else {
+            area.positionCaret(position);
+        }
+        scrollToCaret = true;
+        caretMoved = true;
+        requestLayout();
+    }
+
+
+    /**
+     * Returns the offset of the start of the word before an offset.
+     *
+     * @param offset    The offset to start from.
+     * @return  The offset of the start of the previous word.
+     */
+    private int previousWord(int offset) {
+        EditingArea area = getSkinnable();
+        int line = area.getLineOfOffset(offset);
+        int lineStart = area.getLineStart(line);
+        if(offset == lineStart) {
+            return Math.max(0, offset - 1);
+        }
+
+        String text = area.getLine(line);
+        int column = offset - lineStart;
+        while(column > 0 && !Character.isLetterOrDigit(text.charAt(column - 1))) {
+            column--;
+        }
+        while(column > 0 && Character.isLetterOrDigit(text.charAt(column - 1))) {
+            column--;
+        }
+        return lineStart + column;
+    }
+
+
+    /**
+     * Returns the offset of the end of the word after an offset.
+     *
+     * @param offset    The offset to start from.
+     * @return  The offset of the end of the next word.
+     */
+    private int nextWord(int offset) {
+        EditingArea area = getSkinnable();
+        int line = area.getLineOfOffset(offset);
+        int lineStart = area.getLineStart(line);
+        String text = area.getLine(line);
+        int column = offset - lineStart;
+        if(column == text.length()) {
+            return Math.min(area.getLength(), offset + 1);
+        }
+
+        while(column < text.length() && !Character.isLetterOrDigit(text.charAt(column))) {
+            column++;
+        }
+        while(column < text.length() && Character.isLetterOrDigit(text.charAt(column))) {
+            column++;
+        }
+        return lineStart + column;
+    }
+
+
+    /**
+     * Selects the word around an offset.
+     *
+     * @param offset    The offset inside of the word.
+     */
+    private void selectWord(int offset) {
+        EditingArea area = getSkinnable();
+        int line = area.getLineOfOffset(offset);
+        int lineStart = area.getLineStart(line);
+        int[] word = findWord(area.getLine(line), offset - lineStart);
+        area.selectRange(lineStart + word[0], lineStart + word[1]);
+    }
+
+
+    /**
+     * Finds the word around a column of a line.
+     *
+     * @param text      The text of the line.
+     * @param column    The column inside of the word.
+     * @return  The columns the word starts and ends at.
+     */
+    private static int[] findWord(String text, int column) {
+        int start = column;
+        int end = column;
+        while(start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            start--;
+        }
+        while(end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+            end++;
+        }
+        return new int[] { start, end };
+    }
+
+
+    /**
+     * Handles the keys that move the caret, edit the text and use the clipboard.
+     * When the area is not editable the keys that edit are left alone, but the
+     * caret can still be moved and the text selected and copied.
+     *
+     * @param e The key event.
+     */
+    private void handleKeyPressed(KeyEvent e) {
+        EditingArea area = getSkinnable();
+
+        if(area instanceof LargeFileArea) {
+            handleLargeFileKeyPressed((LargeFileArea)area, e);
+            return;
+        }
+
+        boolean editable = area.isEditable();
+        boolean shift = e.isShiftDown();
+        boolean shortcut = e.isShortcutDown();
+        IndexRange selection = area.getSelection();
+        int caretPosition = area.getCaretPosition();
+        int rows = Math.max(1, (int)(viewport.getHeight() / lineHeight) - 1);
+
+        switch(e.getCode()) {
+            case LEFT:
+                if(selection.getLength() > 0 && !shift) {
+                    moveCaret(selection.getStart(), false, false);
+                } else {
+                    moveCaret(shortcut ? previousWord(caretPosition) : Math.max(0, caretPosition - 1), shift, false);
+                }
+                break;
+            case RIGHT:
+                if(selection.getLength() > 0 && !shift) {
+                    moveCaret(selection.getEnd(), false, false);
+                } else {
+                    moveCaret(shortcut ? nextWord(caretPosition)
+                            : Math.min(area.getLength(), caretPosition + 1), shift, false);
+                }
+                break;
+            case UP:
+                moveCaretVertically(false, shift);
+                break;
+            case DOWN:
+                moveCaretVertically(true, shift);
+                break;
+            case PAGE_UP:
+                for(int i = 0; i < rows; i++) {
+                    moveCaretVertically(false, shift);
+                }
+                scrollByPixels(-rows * lineHeight);
+                break;
+            case PAGE_DOWN:
+                for(int i = 0; i < rows; i++) {
+                    moveCaretVertically(true, shift);
+                }
+                scrollByPixels(rows * lineHeight);
+                break;
+            case HOME:
+                moveCaret(shortcut ? 0 : area.getLineStart(area.getLineOfOffset(caretPosition)), shift, false);
+                break;
+            case END:
+                if(shortcut) {
+                    moveCaret(area.getLength(), shift, false);
+                } else {
+                    int line = area.getLineOfOffset(caretPosition);
+                    moveCaret(area.getLineStart(line) + area.getLineLength(line), shift, false);
+                }
+                break;
+            case BACK_SPACE:
+                if(!editable) {
+                    return;
+                }
+                if(selection.getLength() > 0) {
+                    area.replaceSelection("");
+                } else if(caretPosition > 0) {
+                    area.deleteText(shortcut ? previousWord(caretPosition) : caretPosition - 1, caretPosition);
+                }
+                preferredX = -1;
+                break;
+            case DELETE:
+                if(!editable) {
+                    return;
+                }
+                if(selection.getLength() > 0) {
+                    area.replaceSelection("");
+                } else if(caretPosition < area.getLength()) {
+                    area.deleteText(caretPosition, shortcut ? nextWord(caretPosition) : caretPosition + 1);
+                }
+                preferredX = -1;
+                break;
+            case ENTER:
+                if(!editable) {
+                    return;
+                }
+                area.replaceSelection("\n");
+                preferredX = -1;
+                break;
+            case TAB:
+                if(shortcut || !editable) {
+                    return;
+                }
+                area.replaceSelection("\t");
+                preferredX = -1;
+                break;
+            case A:
+                if(!shortcut) {
+                    return;
+                }
+                area.selectAll();
+                break;
+            case C:
+                if(!shortcut) {
+                    return;
+                }
+                area.copy();
+                break;
+            case X:
+                if(!shortcut || !editable) {
+                    return;
+                }
+                area.cut();
+                break;
+            case V:
+                if(!shortcut || !editable) {
+                    return;
+                }
+                area.paste();
+                break;
+            case Z:
+                if(!shortcut || !editable) {
+                    return;
+                }
+                if(shift) {
+                    area.redo();
+                } else {
+                    area.undo();
+                }
+                break;
+            case Y:
+                if(!shortcut || !editable) {
+                    return;
+                }
+                area.redo();
+                break;
+            default:
+                return;
+        }
+        e.consume();
+    }
+
+
+    /**
+     * Scrolls a large file with the arrow, page and home/end keys, which have
+     * no caret to move, and selects all of it or copies the selection.
+     *
+     * @param area  The area the key was pressed in.
+     * @param e     The key event.
+     */
+    private void handleLargeFileKeyPressed(LargeFileArea area, KeyEvent e) {
+        double page = Math.max(1, (int)(viewport.getHeight() / lineHeight) - 1) * lineHeight;
+
+        switch(e.getCode()) {
+            case UP:
+                scrollByPixels(-lineHeight);
+                break;
+            case DOWN:
+                scrollByPixels(lineHeight);
+                break;
+            case PAGE_UP:
+                scrollByPixels(-page);
+                break;
+            case PAGE_DOWN:
+                scrollByPixels(page);
+                break;
+            case HOME:
+                vbar.setValue(vbar.getMin());
+                break;
+            case END:
+                vbar.setValue(vbar.getMax());
+                break;
+            case LEFT:
+                hbar.decrement();
+                break;
+            case RIGHT:
+                hbar.increment();
+                break;
+            case A:
+                if(!e.isShortcutDown()) {
+                    return;
+                }
+                area.selectAll();
+                break;
+            case C:
+                if(!e.isShortcutDown()) {
+                    return;
+                }
+                area.copy();
+                break;
+            default:
+                return;
+        }
+        e.consume();
+    }
+
+
+    /**
+     * Inserts the characters the user types.
+     *
+     * @param e The key event.
+     */
+    private void handleKeyTyped(KeyEvent e) {
+        EditingArea area = getSkinnable();
+        String character = e.getCharacter();
+
+        if(!area.isEditable() || character.isEmpty() || character.equals(KeyEvent.CHAR_UNDEFINED)
+                || (e.isControlDown() && !e.isAltDown()) || e.isMetaDown()) {
+            return;
+        }
+
+        char c = character.charAt(0);
+        if(c < 0x20 || c == 0x7F) {
+            return;
+        }
+
+        area.replaceSelection(character);
+        preferredX = -1;
+        e.consume();
+    }
+
+
+    /**
+     * Takes the text of an input method, which is how characters that take
+     * more than one key, like CJK text or accents typed with dead keys, are
+     * typed. Committed text replaces the selection; the text still being
+     * composed is only drawn.
+     *
+     * @param e The input method event.
+     */
+    private void handleInputMethodTextChanged(InputMethodEvent e) {
+        EditingArea area = getSkinnable();
+        if(!area.isEditable()) {
+            composition.setText("");
+            return;
+        }
+
+        String committed = e.getCommitted();
+        if(!committed.isEmpty()) {
+            IndexRange selection = area.getSelection();
+            area.replaceText(selection.getStart(), selection.getEnd(), committed);
+            preferredX = -1;
+        }
+
+        StringBuilder composed = new StringBuilder();
+        for(InputMethodTextRun run : e.getComposed()) {
+            composed.append(run.getText());
+        }
+        composition.setText(composed.toString());
+        requestLayout();
+        e.consume();
+    }
+
+
+    /**
+     * Moves the caret to where the user clicked. Double clicking selects a word.
+     * Right clicking outside of the selection moves the caret as well, so the
+     * context menu is about the word that was clicked. Read-only areas can be
+     * selected the same way.
+     *
+     * @param e The mouse event.
+     */
+    private void handleMousePressed(MouseEvent e) {
+        EditingArea area = getSkinnable();
+        area.requestFocus();
+
+        if(e.getButton() != MouseButton.PRIMARY && e.getButton() != MouseButton.SECONDARY) {
+            return;
+        }
+
+        Point2D point = viewport.sceneToLocal(e.getSceneX(), e.getSceneY());
+        if(point.getX() < 0 || point.getY() < 0
+                || point.getX() > viewport.getWidth() || point.getY() > viewport.getHeight()) {
+            return;
+        }
+
+        if(area instanceof LargeFileArea) {
+            if(e.getButton() == MouseButton.PRIMARY) {
+                selectInLargeFile((LargeFileArea)area, point, e);
+                e.consume();
+            }
+            return;
+        }
+
+        int offset = getOffsetAt(point.getX(), point.getY());
+        if(e.getButton() == MouseButton.SECONDARY) {
+            // The context menu is for the word that was clicked, unless it was
+            // clicked inside of the selection.
+            IndexRange selection = area.getSelection();
+            if(offset < selection.getStart() || offset > selection.getEnd()) {
+                moveCaret(offset, false, false);
+            }
+            e.consume();
+            return;
+        }
+
+        dragSelecting = true;
+        if(e.getClickCount() == 2) {
+            selectWord(offset);
+        } else if(e.getClickCount() >= 3) {
+            int line = area.getLineOfOffset(offset);
+            area.selectRange(area.getLineStart(line), area.getLineStart(line) + area.getLineLength(line));
+        } else {
+            moveCaret(offset, e.isShiftDown(), false);
+        }
+        e.consume();
+    }
+
+
+    /**
+     * Extends the selection to where the mouse is dragged, scrolling when the
+     * mouse leaves the top or bottom of the viewport.
+     *
+     * @param e The mouse event.
+     */
+    private void handleMouseDragged(MouseEvent e) {
+        if(!dragSelecting) {
+            return;
+        }
+
+        Point2D point = viewport.sceneToLocal(e.getSceneX(), e.getSceneY());
+        if(point.getY() < 0) {
+            scrollByPixels(-lineHeight);
+        } else if(point.getY() > viewport.getHeight()) {
+            scrollByPixels(lineHeight);
+        }
+
+        EditingArea area = getSkinnable();
+        if(area instanceof LargeFileArea) {
+            int[] position = getPositionAt(point.getX(), point.getY());
+            ((LargeFileArea)area).selectLinePosition(position[0], position[1], true);
+        } else {
+            moveCaret(getOffsetAt(point.getX(), point.getY()), true, false);
+        }
+        e.consume();
+    }
+
+
+    /**
+     * Selects the text of a large file where the user clicked: the position
+     * clicked, the word on a double click or the line on a triple click.
+     *
+     * @param area  The area that was clicked.
+     * @param point The point clicked in the viewport.
+     * @param e     The mouse event.
+     */
+    private void selectInLargeFile(LargeFileArea area, Point2D point, MouseEvent e) {
+        int[] position = getPositionAt(point.getX(), point.getY());
+        int line = position[0];
+
+        dragSelecting = true;
+        if(e.getClickCount() == 2) {
+            int[] word = findWord(area.getLine(line), position[1]);
+            area.selectLines(line, word[0], line, word[1]);
+        } else if(e.getClickCount() >= 3) {
+            area.selectLines(line, 0, line, area.getLineLength(line));
+        } else {
+            area.selectLinePosition(line, position[1], e.isShiftDown());
+        }
+    }
+
+
+    /**
+     * Tells input methods where the caret is, so that their windows open next
+     * to it, and what is selected.
+     */
+    private class InputMethod implements InputMethodRequests {
+
+
+        /*
+         * Returns the point on the screen below the caret, or the top left of
+         * the viewport if the caret is not drawn.
+         */
+        @Override
+        public Point2D getTextLocation(int offset) {
+            if(caret.getElements().isEmpty()) {
+                Point2D corner = viewport.localToScreen(0, 0);
+                return corner != null ? corner : Point2D.ZERO;
+            }
+
+            Bounds bounds = caret.localToScreen(caret.getBoundsInLocal());
+            return bounds != null ? new Point2D(bounds.getMinX(), bounds.getMaxY()) : Point2D.ZERO;
+        }
+
+
+        /*
+         * Returns the index of the character of the composed text at a point
+         * on the screen.
+         */
+        @Override
+        public int getLocationOffset(int x, int y) {
+            Point2D point = composition.screenToLocal(x, y);
+            return point != null ? composition.hitTest(point).getCharIndex() : 0;
+        }
+
+
+        /*
+         * Committed text is edited like typed text, so it is undone instead.
+         */
+        @Override
+        public void cancelLatestCommittedText() {
+        }
+
+
+        /*
+         * Returns the selected text.
+         */
+        @Override
+        public String getSelectedText() {
+            return getSkinnable().getSelectedText();
+        }
+    }
+
+
+    /**
+     * Keeps a value inside of the range of a scroll bar.
+     *
+     * @param bar   The scroll bar.
+     * @param value The value to keep in range.
+     * @return  The value, moved into the range of the scroll bar.
+     */
+    private static double clamp(ScrollBar bar, double value) {
+        return Math.max(bar.getMin(), Math.min(bar.getMax(), value));
+    }
+}
@@ -0,0 +1,355 @@
+package texteditor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Measures where the editor spends its time: how long keystrokes take to
+ * reach the screen, how long pulses take, and how long opening, saving and
+ * printing take and how much they get through. The measurements are kept in
+ * LatencyHistograms, so recording them never allocates, and are shown to JMX
+ * clients under texteditor:type=EditorMetrics along with an estimate of the
+ * memory used by each tab.
+ *
+ * If the texteditor.metrics.dump system property names a file, the
+ * measurements are also appended to it every texteditor.metrics.interval
+ * seconds, 60 by default, and once more when the editor exits.
+ */
+public class EditorMetrics implements EditorMetricsMXBean {
+
+
+    /**
+     * The name the metrics are registered under.
+     */
+    public static final String OBJECT_NAME = "texteditor:type=EditorMetrics";
+
+
+    /**
+     * The file the measurements are appended to, or null if they are not
+     * dumped.
+     */
+    private static final String DUMP_FILE = System.getProperty("texteditor.metrics.dump");
+
+
+    /**
+     * The amount of seconds between dumps.
+     */
+    private static final long DUMP_INTERVAL = Long.getLong("texteditor.metrics.interval", 60);
+
+
+    /**
+     * The metrics of the editor.
+     */
+    private static final EditorMetrics INSTANCE = new EditorMetrics();
+
+
+    /**
+     * The time from a key being pressed to the end of the next layout pass.
+     */
+    private final LatencyHistogram keystrokeLatency = new LatencyHistogram();
+
+
+    /**
+     * The time the CSS and layout passes of each pulse took.
+     */
+    private final LatencyHistogram pulseDuration = new LatencyHistogram();
+
+
+    /**
+     * The time opening each file took, and the bytes read.
+     */
+    private final LatencyHistogram openDuration = new LatencyHistogram();
+
+
+    /**
+     * The time saving each file took, and the bytes written.
+     */
+    private final LatencyHistogram saveDuration = new LatencyHistogram();
+
+
+    /**
+     * The time printing each document took, and the pages printed.
+     */
+    private final LatencyHistogram printDuration = new LatencyHistogram();
+
+
+    /**
+     * Gives the memory used by each tab. This is called on the JavaFX thread.
+     */
+    private volatile Supplier<Map<String, Long>> tabMemory = Collections::emptyMap;
+
+
+    /**
+     * When the oldest key press that has not reached a pulse yet happened, or
+     * 0 if there is none. This is only used on the JavaFX thread.
+     */
+    private long keyPressed = 0;
+
+
+    /**
+     * When the pulse that is running started. This is only used on the JavaFX
+     * thread.
+     */
+    private long pulseStarted = 0;
+
+
+    /**
+     * The thread the measurements are dumped on, or null if they are not.
+     */
+    private ScheduledExecutorService dumper;
+
+
+    /**
+     * EditorMetrics is created once, by the class itself.
+     */
+    private EditorMetrics() {
+    }
+
+
+    /**
+     * Returns the metrics of the editor.
+     *
+     * @return  The EditorMetrics.
+     */
+    public static EditorMetrics get() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * Registers the metrics with the platform MBean server and starts dumping
+     * them if a dump file was given. Failing to do either does not stop the
+     * editor.
+     */
+    public synchronized void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch(JMException e) {
+            // The metrics are already registered, or JMX is not available.
+        }
+
+        if(DUMP_FILE != null && dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleWithFixedDelay(this::dump, DUMP_INTERVAL, DUMP_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * Stops dumping the measurements, after dumping them one last time. This is
+     * called when the editor exits.
+     */
+    public synchronized void shutdown() {
+        if(dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+            dump();
+        }
+    }
+
+
+    /**
+     * Starts measuring the keystrokes and pulses of a scene.
+     *
+     * @param scene The scene.
+     */
+    public void monitor(Scene scene) {
+        EventHandler<KeyEvent> keyHandler = e -> {
+            if(keyPressed == 0) {
+                keyPressed = System.nanoTime();
+            }
+        };
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, keyHandler);
+        scene.addEventFilter(KeyEvent.KEY_TYPED, keyHandler);
+
+        scene.addPreLayoutPulseListener(() -> {
+            pulseStarted = System.nanoTime();
+        });
+        scene.addPostLayoutPulseListener(() -> {
+            long now = System.nanoTime();
+            pulseDuration.record(now - pulseStarted);
+            if(keyPressed != 0) {
+                keystrokeLatency.record(now - keyPressed);
+                keyPressed = 0;
+            }
+        });
+    }
+
+
+    /**
+     * Sets what gives the memory used by each tab.
+     *
+     * @param tabMemory Gives the bytes used by the title of each tab. It is
+     *                  called on the JavaFX thread.
+     */
+    public void setTabMemory(Supplier<Map<String, Long>> tabMemory) {
+        this.tabMemory = tabMemory;
+    }
+
+
+    /**
+     * Records the opening of a file.
+     *
+     * @param nanos The time it took.
+     * @param bytes The size of the file.
+     */
+    public void recordOpen(long nanos, long bytes) {
+        openDuration.record(nanos, bytes);
+    }
+
+
+    /**
+     * Records the saving of a file.
+     *
+     * @param nanos The time it took.
+     * @param bytes The size of the file written.
+     */
+    public void recordSave(long nanos, long bytes) {
+        saveDuration.record(nanos, bytes);
+    }
+
+
+    /**
+     * Records the printing of a document.
+     *
+     * @param nanos The time it took.
+     * @param pages The amount of pages printed.
+     */
+    public void recordPrint(long nanos, int pages) {
+        printDuration.record(nanos, pages);
+    }
+
+
+    /*
+     * Returns the keystroke latencies.
+     */
+    @Override
+    public LatencyHistogram.Snapshot getKeystrokeLatency() {
+        return keystrokeLatency.snapshot();
+    }
+
+
+    /*
+     * Returns the pulse durations.
+     */
+    @Override
+    public LatencyHistogram.Snapshot getPulseDuration() {
+        return pulseDuration.snapshot();
+    }
+
+
+    /*
+     * Returns the open durations.
+     */
+    @Override
+    public LatencyHistogram.Snapshot getOpenDuration() {
+        return openDuration.snapshot();
+    }
+
+
+    /*
+     * Returns the save durations.
+     */
+    @Override
+    public LatencyHistogram.Snapshot getSaveDuration() {
+        return saveDuration.snapshot();
+    }
+
+
+    /*
+     * Returns the print durations.
+     */
+    @Override
+    public LatencyHistogram.Snapshot getPrintDuration() {
+        return printDuration.snapshot();
+    }
+
+
+    /*
+     * Asks the JavaFX thread for the memory used by each tab, since the tabs
+     * may only be looked at there. An empty map is returned if the JavaFX
+     * thread is too busy to answer within a second.
+     */
+    @Override
+    public Map<String, Long> getTabMemory() {
+        if(Platform.isFxApplicationThread()) {
+            return tabMemory.get();
+        }
+
+        FutureTask<Map<String, Long>> task = new FutureTask<>(() -> tabMemory.get());
+        Platform.runLater(task);
+        try {
+            return task.get(1, TimeUnit.SECONDS);
+        } catch(Exception e) {
+            task.cancel(false);
+            return Collections.emptyMap();
+        }
+    }
+
+
+    /*
+     * Forgets everything recorded so far.
+     */
+    @Override
+    public void reset() {
+        keystrokeLatency.reset();
+        pulseDuration.reset();
+        openDuration.reset();
+        saveDuration.reset();
+        printDuration.reset();
+    }
+
+
+    /**
+     * Appends the measurements to the dump file.
+     */
+    private void dump() {
+        Map<String, Object> lines = new LinkedHashMap<>();
+        lines.put("keystrokeLatency", getKeystrokeLatency());
+        lines.put("pulseDuration", getPulseDuration());
+        lines.put("openDuration", getOpenDuration());
+        lines.put("saveDuration", getSaveDuration());
+        lines.put("printDuration", getPrintDuration());
+        for(Map.Entry<String, Long> tab : getTabMemory().entrySet()) {
+            lines.put("tabMemory[" + tab.getKey() + "]", tab.getValue() + " bytes");
+        }
+
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(DUMP_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write("# " + Instant.now());
+            writer.newLine();
+            for(Map.Entry<String, Object> line : lines.entrySet()) {
+                writer.write(line.getKey() + " " + line.getValue());
+                writer.newLine();
+            }
+            writer.newLine();
+        } catch(IOException e) {
+            // The next dump will try again.
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package texteditor;
+
+import java.util.Map;
+
+
+/**
+ * The management interface of EditorMetrics, which JMX clients like JConsole
+ * or VisualVM show under texteditor:type=EditorMetrics. Durations are given in
+ * milliseconds.
+ */
+public interface EditorMetricsMXBean {
+
+
+    /**
+     * Returns the time from a key being pressed to the end of the layout pass
+     * of the next pulse, which is when its effect is ready to be drawn.
+     *
+     * @return  The keystroke latencies.
+     */
+    LatencyHistogram.Snapshot getKeystrokeLatency();
+
+
+    /**
+     * Returns how long the CSS and layout passes of each pulse took.
+     *
+     * @return  The pulse durations.
+     */
+    LatencyHistogram.Snapshot getPulseDuration();
+
+
+    /**
+     * Returns how long opening files took, with the throughput in bytes per
+     * second.
+     *
+     * @return  The open durations.
+     */
+    LatencyHistogram.Snapshot getOpenDuration();
+
+
+    /**
+     * Returns how long saving files took, with the throughput in bytes per
+     * second.
+     *
+     * @return  The save durations.
+     */
+    LatencyHistogram.Snapshot getSaveDuration();
+
+
+    /**
+     * Returns how long printing documents took, with the throughput in pages
+     * per second.
+     *
+     * @return  The print durations.
+     */
+    LatencyHistogram.Snapshot getPrintDuration();
+
+
+    /**
+     * Returns an estimate of the memory used by the document of each tab.
+     *
+     * @return  The bytes used, by the title of the tab.
+     */
+    Map<String, Long> getTabMemory();
+
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,531 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+
+
+/**
+ * Follows a file that is still being written, like a log, adding whatever is
+ * written to it to the end of an EditingArea the way tail -f does. The file is
+ * kept open, and every POLL_MILLIS the follower thread reads the bytes past the
+ * last offset it read up to, so a file that is written to all the time is
+ * followed as closely as one that is written to now and then. The text read is
+ * handed to the JavaFX thread in batches, so however fast the file grows, the
+ * area is only changed once per pulse.
+ *
+ * The area keeps at most a set amount of lines. Once it has a good deal more,
+ * the oldest lines are removed, which lets the document drop the buffers they
+ * were held in, so following a file for days does not use more memory than
+ * following it for a minute. The area is scrolled along with the new text
+ * unless the user has scrolled up to read something.
+ *
+ * A file that shrinks, or is replaced by a new file as logs are rotated, is
+ * followed again from its start.
+ */
+public class FileFollower {
+
+
+    /**
+     * The most lines kept in a followed area.
+     */
+    public static final int MAX_LINES = Integer.getInteger("texteditor.follow.maxLines", 100_000);
+
+
+    /**
+     * The amount of lines past MAX_LINES an area may have before the oldest
+     * lines are removed, so they are removed in batches rather than a few at
+     * every batch of new text.
+     */
+    private static final int SLACK_LINES = Math.max(1, MAX_LINES / 8);
+
+
+    /**
+     * The amount of milliseconds between looking at the file.
+     */
+    private static final long POLL_MILLIS = 100;
+
+
+    /**
+     * The amount of bytes read from the file at a time.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+
+    /**
+     * The most characters that may wait for the JavaFX thread before the
+     * follower stops reading and waits for it to catch up.
+     */
+    private static final int MAX_PENDING_CHARS = 4 * 1024 * 1024;
+
+
+    /**
+     * The thread the followed files are read on.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "File Follower");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The file being followed.
+     */
+    private final Path path;
+
+
+    /**
+     * The EditingArea the text is added to.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The charset the file is decoded in.
+     */
+    private final Charset charset;
+
+
+    /**
+     * The text read that has not been added to the area yet. It is also the
+     * lock that guards restart.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+
+    /**
+     * Whether or not the area is to be cleared before the pending text is
+     * added, because the file is being followed again from its start.
+     */
+    private boolean restart = false;
+
+
+    /**
+     * Whether or not a batch of text is already waiting to be added on the
+     * JavaFX thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * The file, or null if it is not open.
+     */
+    private FileChannel channel;
+
+
+    /**
+     * The identity of the open file, to tell when another file has taken its
+     * place.
+     */
+    private Object fileKey;
+
+
+    /**
+     * The offset of the first byte of the file that has not been read.
+     */
+    private long offset;
+
+
+    /**
+     * The bytes read that have not been decoded yet, because they do not make
+     * a whole character.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+
+
+    /**
+     * The decoder of the file.
+     */
+    private final CharsetDecoder decoder;
+
+
+    /**
+     * The characters decoded from the bytes.
+     */
+    private final CharBuffer chars;
+
+
+    /**
+     * Whether or not the last character decoded was a '\r'.
+     */
+    private boolean lastWasCR;
+
+
+    /**
+     * The task reading the file, or null if the follower is not running.
+     */
+    private ScheduledFuture<?> task;
+
+
+    /**
+     * Whether or not the area is missing lines from the start of the file, so
+     * it no longer holds the whole file.
+     */
+    private boolean droppedLines;
+
+
+    /**
+     * Creates a FileFollower.
+     *
+     * @param editingArea   The EditingArea to add the text to. Its current file
+     *                      is followed, and its charset is used.
+     * @param offset        The offset in the file the area's text ends at.
+     * @param wholeFile     Whether or not the area's text starts at the start
+     *                      of the file.
+     */
+    public FileFollower(EditingArea editingArea, long offset, boolean wholeFile) {
+        this.editingArea = editingArea;
+        this.path = editingArea.getCurrentFile().toPath().toAbsolutePath();
+        this.charset = editingArea.getCharset();
+        this.offset = offset;
+        this.droppedLines = !wholeFile;
+        this.decoder = CharsetDetector.newDecoder(charset, false);
+        this.chars = CharBuffer.allocate((int)(CHUNK_SIZE * (double)decoder.maxCharsPerByte()) + 1);
+    }
+
+
+    /**
+     * Returns the offset of the start of the last lines of a file, so that a
+     * file of any size can be followed from near its end. The lines are found
+     * by looking for the bytes of a '\n' from the end of the file backwards.
+     *
+     * @param file      The file.
+     * @param charset   The charset of the file.
+     * @param lines     The amount of lines to keep.
+     * @return  The offset of the first of the lines, which is after the byte
+     *          order mark if the file has fewer lines.
+     * @throws IOException  If the file could not be read.
+     */
+    public static long findLastLines(File file, Charset charset, int lines) throws IOException {
+        byte[] newline = "\n".getBytes(charset);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(4);
+            channel.read(start, 0);
+            start.flip();
+            Charset byteOrderMark = CharsetDetector.detectByteOrderMark(start);
+            long first = byteOrderMark == null ? 0 : CharsetDetector.getByteOrderMark(byteOrderMark).length;
+
+            // A '\n' at the very end ends the last line rather than starting
+            // an empty one.
+            long end = channel.size() - newline.length;
+            if(end < first) {
+                return first;
+            }
+            end -= (end - first) % newline.length;
+
+            ByteBuffer block = ByteBuffer.allocate(CHUNK_SIZE);
+            int found = 0;
+            long position = end - newline.length;
+            while(position >= first) {
+                long blockStart = Math.max(first, position + newline.length - CHUNK_SIZE);
+                blockStart += (position - blockStart) % newline.length;
+                block.clear().limit((int)(position + newline.length - blockStart));
+                while(block.hasRemaining() && channel.read(block, blockStart + block.position()) > 0) {
+                    // Keep reading until the block is full.
+                }
+
+                // Every character starts a whole amount of newlines from the
+                // start of the file, so only those offsets are compared.
+                for(int i = (int)(position - blockStart); i >= 0; i -= newline.length) {
+                    if(matches(block, i, newline) && ++found == lines) {
+                        return blockStart + i + newline.length;
+                    }
+                }
+                position = blockStart - newline.length;
+            }
+            return first;
+        }
+    }
+
+
+    /**
+     * Returns whether or not the bytes at an index of a buffer are the bytes
+     * of a newline.
+     *
+     * @param block     The buffer.
+     * @param index     The index.
+     * @param newline   The bytes of a newline.
+     * @return  true if they are the same; false if not.
+     */
+    private static boolean matches(ByteBuffer block, int index, byte[] newline) {
+        for(int i = 0; i < newline.length; i++) {
+            if(block.get(index + i) != newline[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Opens the file and starts following it. The area can not be edited while
+     * the file is followed.
+     *
+     * @throws IOException  If the file could not be opened.
+     */
+    public void start() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+
+        // A '\n' right after the offset may end a line the area already has.
+        byte[] cr = "\r".getBytes(charset);
+        if(offset >= cr.length) {
+            ByteBuffer before = ByteBuffer.allocate(cr.length);
+            channel.read(before, offset - cr.length);
+            lastWasCR = !before.hasRemaining() && matches(before, 0, cr);
+        }
+
+        editingArea.setEditable(false);
+        task = EXECUTOR.scheduleWithFixedDelay(this::read, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Stops following the file and closes it, after adding any text that was
+     * read to the area. If the area still holds the whole file, it can be
+     * edited again. This is called on the JavaFX thread.
+     */
+    public void stop() {
+        if(task == null) {
+            return;
+        }
+        task.cancel(false);
+        task = null;
+
+        // Wait for a read that is running to finish.
+        synchronized(this) {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // The file was only read.
+            }
+        }
+        addPendingText();
+        editingArea.setEditable(!droppedLines);
+    }
+
+
+    /**
+     * Returns whether or not the file is being followed.
+     *
+     * @return  true if the follower is running; false if not.
+     */
+    public boolean isFollowing() {
+        return task != null;
+    }
+
+
+    /**
+     * Returns whether or not lines have been removed from the start of the
+     * area, so it no longer holds the whole file.
+     *
+     * @return  true if lines were removed; false if not.
+     */
+    public boolean hasDroppedLines() {
+        return droppedLines;
+    }
+
+
+    /**
+     * Returns the offset in the file of the end of the text that has been
+     * read. Bytes that do not make a whole character yet are not counted.
+     *
+     * @return  The offset.
+     */
+    public synchronized long getOffset() {
+        return offset - bytes.position();
+    }
+
+
+    /**
+     * Reads what has been written to the file since it was last read. This
+     * runs on the follower thread.
+     */
+    private synchronized void read() {
+        try {
+            if(!channel.isOpen()) {
+                return;
+            }
+
+            // A file that shrank, or another file put in its place, is read
+            // from its start.
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if(!Objects.equals(attributes.fileKey(), fileKey) || attributes.size() < offset) {
+                reopen(attributes);
+            }
+
+            while(true) {
+                synchronized(pending) {
+                    if(pending.length() >= MAX_PENDING_CHARS) {
+                        break;
+                    }
+                }
+
+                int read = channel.read(bytes, offset);
+                if(read <= 0) {
+                    break;
+                }
+                offset += read;
+
+                bytes.flip();
+                decoder.decode(bytes, chars, false);
+                bytes.compact();
+                addChars();
+            }
+        } catch(IOException e) {
+            // The file is gone for now; it is looked for again next time.
+        }
+    }
+
+
+    /**
+     * Opens the file at the path again, and starts reading it from its start.
+     *
+     * @param attributes    The attributes of the file at the path.
+     * @throws IOException  If the file could not be opened.
+     */
+    private void reopen(BasicFileAttributes attributes) throws IOException {
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = attributes.fileKey();
+        offset = 0;
+        bytes.clear();
+        decoder.reset();
+        lastWasCR = false;
+
+        // Skip the byte order mark of the new file.
+        ByteBuffer start = ByteBuffer.allocate(4);
+        channel.read(start, 0);
+        start.flip();
+        Charset byteOrderMark = CharsetDetector.detectByteOrderMark(start);
+        if(byteOrderMark != null) {
+            offset = CharsetDetector.getByteOrderMark(byteOrderMark).length;
+        }
+
+        synchronized(pending) {
+            pending.setLength(0);
+            restart = true;
+        }
+    }
+
+
+    /**
+     * Turns the line endings in the decoded characters into "\n", the way
+     * FileLoader does, and queues the text to be added to the area.
+     */
+    private void addChars() {
+        chars.flip();
+        if(!chars.hasRemaining()) {
+            chars.clear();
+            return;
+        }
+
+        synchronized(pending) {
+            while(chars.hasRemaining()) {
+                char c = chars.get();
+                if(c == '\r') {
+                    pending.append('\n');
+                } else if(c != '\n' || !lastWasCR) {
+                    pending.append(c);
+                }
+                lastWasCR = c == '\r';
+            }
+        }
+        chars.clear();
+
+        if(batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingText);
+        }
+    }
+
+
+    /**
+     * Adds the text that is waiting to the end of the area, removes the oldest
+     * lines if there are too many, and keeps the end in view if it was in view
+     * before. This runs on the JavaFX thread.
+     */
+    private void addPendingText() {
+        batchScheduled.set(false);
+
+        String text;
+        boolean clear;
+        synchronized(pending) {
+            text = pending.toString();
+            clear = restart;
+            pending.setLength(0);
+            restart = false;
+        }
+        if(text.isEmpty() && !clear) {
+            return;
+        }
+
+        // Only the last lines of a large batch would be kept anyway.
+        int lines = 0;
+        for(int i = text.length() - 2; i >= 0; i--) {
+            if(text.charAt(i) == '\n' && ++lines == MAX_LINES) {
+                text = text.substring(i + 1);
+                clear = true;
+                droppedLines = true;
+                break;
+            }
+        }
+
+        boolean atEnd = editingArea.isScrolledToEnd();
+        boolean editable = editingArea.isEditable();
+        editingArea.setEditable(false);
+        if(clear) {
+            editingArea.clear();
+        }
+        editingArea.appendText(text);
+
+        int excess = editingArea.getLineCount() - MAX_LINES;
+        if(excess > SLACK_LINES) {
+            removeFirstLines(excess, atEnd);
+        }
+        editingArea.setEditable(editable);
+        editingArea.resetHasBeenEdited();
+
+        if(atEnd) {
+            editingArea.scrollToEnd();
+        }
+    }
+
+
+    /**
+     * Removes lines from the start of the area. The selection, and the scroll
+     * position if the end of the area is not being kept in view, stay on the
+     * same text.
+     *
+     * @param count The amount of lines to remove.
+     * @param atEnd Whether or not the end of the area is in view.
+     */
+    private void removeFirstLines(int count, boolean atEnd) {
+        int removed = editingArea.getLineStart(count);
+        int anchor = editingArea.getAnchor();
+        int caret = editingArea.getCaretPosition();
+        double scroll = editingArea.getScrollPosition();
+
+        editingArea.deleteText(0, removed);
+        editingArea.selectRange(Math.max(0, anchor - removed), Math.max(0, caret - removed));
+        if(!atEnd) {
+            editingArea.setScrollPosition(Math.max(0, scroll - count));
+        }
+        droppedLines = true;
+    }
+}
@@ -0,0 +1,254 @@
+package texteditor;
+
+import java.io.File;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+
+
+/**
+ * Loads a file into an EditingArea on a background thread. The file is decoded in
+ * large chunks by a TextDecoder, and the chunks are handed to the JavaFX thread
+ * in batches so that the window stays responsive while a large file loads.
+ *
+ * The charset and line ending of the file are worked out while it is decoded,
+ * and are stored in the EditingArea so that saving writes them back. The same
+ * goes for how the file is compressed; a compressed file is decompressed on
+ * another thread while it is decoded.
+ */
+public class FileLoader extends Task<Void> {
+
+
+    /**
+     * The amount of decoded chunks that may wait for the JavaFX thread before
+     * the loader stops reading and waits for it to catch up.
+     */
+    private static final int MAX_PENDING_CHUNKS = 16;
+
+
+    /**
+     * The chunk put in the queue when the file has to be read again in another
+     * charset. The text added so far is removed when it is reached.
+     */
+    private static final String RESTART = new String("");
+
+
+    /**
+     * The threads that files are loaded on. Opening several files at once loads
+     * them in parallel.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+                Thread thread = new Thread(r, "File Loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    /**
+     * The file to load.
+     */
+    private final File file;
+
+
+    /**
+     * The EditingArea the file is loaded into.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The chunks that have been decoded but not yet added to the EditingArea.
+     */
+    private final BlockingQueue<String> pendingChunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+
+
+    /**
+     * Whether or not a batch of chunks is already waiting to be added on the
+     * JavaFX thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * Decodes the file and queues the chunks to be added to the EditingArea.
+     */
+    private final TextDecoder decoder = new TextDecoder(new TextDecoder.Sink() {
+
+        /*
+         * Queues the chunk.
+         */
+        @Override
+        public void append(CharSequence chunk) throws InterruptedException {
+            addChunk(chunk.toString());
+        }
+
+
+        /*
+         * Queues the marker that removes the text added so far.
+         */
+        @Override
+        public void restart() throws InterruptedException {
+            addChunk(RESTART);
+        }
+
+
+        /*
+         * Shows how much of the file has been read.
+         */
+        @Override
+        public void progress(long read, long size) {
+            updateProgress(read, size);
+        }
+
+
+        /*
+         * Stops reading once the loader is cancelled.
+         */
+        @Override
+        public boolean isCancelled() {
+            return FileLoader.this.isCancelled();
+        }
+    });
+
+
+    /**
+     * How the file is compressed.
+     */
+    private Compression compression = Compression.NONE;
+
+
+    /**
+     * When the loader was started, for the metrics.
+     */
+    private long startTime;
+
+
+    /**
+     * Creates a FileLoader.
+     *
+     * @param file          The file to load.
+     * @param editingArea   The EditingArea to load the file into.
+     */
+    public FileLoader(File file, EditingArea editingArea) {
+        this.file = file;
+        this.editingArea = editingArea;
+
+        // This handler is added before any other, so the document is complete
+        // by the time the handlers of whoever started the loader are run.
+        addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+            finish();
+        });
+    }
+
+
+    /**
+     * Returns the EditingArea the file is loaded into.
+     *
+     * @return  The EditingArea.
+     */
+    public EditingArea getEditingArea() {
+        return editingArea;
+    }
+
+
+    /**
+     * Starts loading the file on one of the loader threads.
+     */
+    public void start() {
+        editingArea.setEditable(false);
+        startTime = System.nanoTime();
+        EXECUTOR.execute(this);
+    }
+
+
+    /*
+     * Reads the file until the end of the file is reached or the task is
+     * cancelled.
+     */
+    @Override
+    protected Void call() throws Exception {
+        compression = Compression.detect(file);
+        try(SeekableByteChannel channel = compression.open(file)) {
+            decoder.read(channel);
+        }
+        return null;
+    }
+
+
+    /**
+     * Queues a chunk of text to be added to the EditingArea.
+     *
+     * @param chunk The text, or RESTART to remove the text added so far.
+     * @throws InterruptedException If the task was stopped while waiting for
+     *                              room in the queue.
+     */
+    private void addChunk(String chunk) throws InterruptedException {
+        pendingChunks.put(chunk);
+        if(batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingChunks);
+        }
+    }
+
+
+    /**
+     * Adds the rest of the text and lets the user edit the document once all of
+     * it has been loaded.
+     */
+    private void finish() {
+        addPendingChunks();
+        editingArea.setCharset(decoder.getCharset());
+        editingArea.setByteOrderMark(decoder.hasByteOrderMark());
+        editingArea.setLineEnding(decoder.getLineEnding(editingArea.getLineEnding()));
+        editingArea.setCompression(compression);
+        editingArea.setEditable(true);
+        editingArea.positionCaret(0);
+        editingArea.resetHasBeenEdited();
+        EditorMetrics.get().recordOpen(System.nanoTime() - startTime, file.length());
+    }
+
+
+    /*
+     * Stops adding chunks to the document once the task is cancelled.
+     */
+    @Override
+    protected void cancelled() {
+        pendingChunks.clear();
+    }
+
+
+    /**
+     * Adds every chunk that is waiting to the end of the EditingArea as a
+     * single edit. This runs on the JavaFX thread.
+     */
+    private void addPendingChunks() {
+        batchScheduled.set(false);
+
+        if(isCancelled() || pendingChunks.isEmpty()) {
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder();
+        String chunk;
+        while((chunk = pendingChunks.poll()) != null) {
+            if(chunk == RESTART) {
+                // The file is being read again in another charset.
+                batch.setLength(0);
+                editingArea.clear();
+            } else {
+                batch.append(chunk);
+            }
+        }
+
+        editingArea.appendText(batch.toString());
+
+        // Text added by the loader is not an edit made by the user.
+        editingArea.resetHasBeenEdited();
+    }
+}
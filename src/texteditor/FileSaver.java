@@ -0,0 +1,200 @@
+package texteditor;
+
+import java.io.File;
+import java.nio.charset.CharacterCodingException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+
+
+/**
+ * Saves the text of an EditingArea to a file on a background thread. The text is
+ * taken from a snapshot of the document, so the user can keep editing while the
+ * file is written. A TextEncoder writes the text to a temporary file next to
+ * the file, which is forced to the disk and then moved over the file, so the
+ * file is never left half written.
+ *
+ * The file is written in the charset, byte order mark, line ending and
+ * compression stored in the EditingArea, so a file that was opened is saved
+ * the way it was read. If the charset can not hold the text, the save fails
+ * and the file is left as it was, instead of being written with the characters
+ * it can not hold replaced by '?'.
+ *
+ * A save that finishes after more edits were made leaves the EditingArea
+ * edited, but makes the snapshot the text changes to the file are merged from.
+ */
+public class FileSaver extends Task<Void> {
+
+
+    /**
+     * The thread that files are saved on. Saves are written one after another,
+     * so two saves of the same file can not overtake each other.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "File Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The file to save to.
+     */
+    private final File file;
+
+
+    /**
+     * The EditingArea being saved.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The text of the document when the save was started.
+     */
+    private final DocumentSnapshot snapshot;
+
+
+    /**
+     * The edit count of the EditingArea when the save was started.
+     */
+    private final long editCount;
+
+
+    /**
+     * Writes the file in the charset, byte order mark, line ending and
+     * compression of the EditingArea.
+     */
+    private final TextEncoder encoder;
+
+
+    /**
+     * The text of the snapshot, as the encoder reads it.
+     */
+    private final TextEncoder.Source source = new TextEncoder.Source() {
+
+        /*
+         * Returns the length of the snapshot.
+         */
+        @Override
+        public int length() {
+            return snapshot.length();
+        }
+
+
+        /*
+         * Copies part of the snapshot.
+         */
+        @Override
+        public void getChars(int offset, int length, char[] dest, int destPos) {
+            snapshot.getChars(offset, length, dest, destPos);
+        }
+
+
+        /*
+         * Shows how much of the file has been written.
+         */
+        @Override
+        public void progress(long written, long length) {
+            updateProgress(written, length);
+        }
+
+
+        /*
+         * Stops writing once the save is cancelled.
+         */
+        @Override
+        public boolean isCancelled() {
+            return FileSaver.this.isCancelled();
+        }
+    };
+
+
+    /**
+     * When the save was started, for the metrics.
+     */
+    private long startTime;
+
+
+    /**
+     * Creates a FileSaver. This must be called on the JavaFX thread, since it
+     * takes the snapshot of the document that is saved.
+     *
+     * @param file          The file to save to.
+     * @param editingArea   The EditingArea to save.
+     */
+    public FileSaver(File file, EditingArea editingArea) {
+        this.file = file;
+        this.editingArea = editingArea;
+        this.snapshot = editingArea.getDocument().snapshot();
+        this.editCount = editingArea.getEditCount();
+        this.encoder = new TextEncoder(editingArea.getCharset(), editingArea.hasByteOrderMark(),
+                editingArea.getLineEnding(), editingArea.getCompression());
+
+        // This handler is added before any other, so the EditingArea is marked as
+        // saved before the handlers of whoever started the save are run.
+        addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+            if(file.equals(editingArea.getCurrentFile())) {
+                if(editingArea.getEditCount() == editCount) {
+                    editingArea.resetHasBeenEdited();
+                } else {
+                    // The edits made while the file was written are still
+                    // unsaved, but the file now holds the snapshot.
+                    editingArea.setSavedText(snapshot);
+                }
+            }
+            EditorMetrics.get().recordSave(System.nanoTime() - startTime, file.length());
+        });
+    }
+
+
+    /**
+     * Starts saving the file on the saver thread.
+     */
+    public void start() {
+        startTime = System.nanoTime();
+        EXECUTOR.execute(this);
+    }
+
+
+    /**
+     * Returns whether or not the save failed because the charset of the
+     * EditingArea can not hold some of the characters of the document.
+     *
+     * @return  true if the text could not be encoded; false if not.
+     */
+    public boolean failedToEncode() {
+        return getException() instanceof CharacterCodingException;
+    }
+
+
+    /**
+     * Waits for the saves that have been started to finish. This is called
+     * before the program exits so that no save is cut short.
+     *
+     * @param timeout   The amount of seconds to wait at most.
+     */
+    public static void awaitPendingSaves(long timeout) {
+        EXECUTOR.shutdown();
+        try {
+            EXECUTOR.awaitTermination(timeout, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /*
+     * Writes the snapshot to a temporary file, forces it to the disk, and moves
+     * it over the file.
+     */
+    @Override
+    protected Void call() throws Exception {
+        if(encoder.save(file.toPath(), source)) {
+            updateProgress(1, 1);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,264 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+
+/**
+ * Notices when another program changes the files open in the editor. A single
+ * thread watches the folders of every WatchedFile with one WatchService, so
+ * the files are never looked at unless the operating system says something
+ * happened to them.
+ *
+ * Programs often write a file in several steps, so the events of a file are
+ * debounced: a file is only examined once nothing has happened to it for a
+ * short while, and the changes found are handed to the JavaFX thread.
+ */
+public class FileWatcher {
+
+
+    /**
+     * The amount of milliseconds a file has to stay untouched before it is
+     * examined.
+     */
+    private static final long DEBOUNCE_MILLIS = 250;
+
+
+    /**
+     * The watch service, or null if the platform does not have one.
+     */
+    private final WatchService service;
+
+
+    /**
+     * Is given the changes found, on the JavaFX thread.
+     */
+    private final Consumer<WatchedFile.Change> listener;
+
+
+    /**
+     * The files being watched, by their path. Guarded by the watcher's lock.
+     */
+    private final Map<Path, List<WatchedFile>> files = new HashMap<>();
+
+
+    /**
+     * The key of each folder being watched. Guarded by the watcher's lock.
+     */
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+
+
+    /**
+     * The files something has happened to, and when they are to be examined.
+     * This is only used on the watcher thread.
+     */
+    private final Map<Path, Long> pending = new HashMap<>();
+
+
+    /**
+     * Creates a FileWatcher and starts its thread. If the platform can not
+     * watch files, nothing is ever reported.
+     *
+     * @param listener  Is given the changes found, on the JavaFX thread.
+     */
+    public FileWatcher(Consumer<WatchedFile.Change> listener) {
+        this.listener = listener;
+
+        WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch(IOException | UnsupportedOperationException e) {
+            watchService = null;
+        }
+        service = watchService;
+
+        if(service != null) {
+            Thread thread = new Thread(this::run, "File Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+
+    /**
+     * Starts watching a file. Its folder is watched until no file in it is.
+     *
+     * @param watchedFile   The file to watch.
+     */
+    public synchronized void watch(WatchedFile watchedFile) {
+        if(service == null) {
+            return;
+        }
+
+        Path path = watchedFile.getPath();
+        Path directory = path.getParent();
+        if(directory == null) {
+            return;
+        }
+
+        if(!keys.containsKey(directory)) {
+            try {
+                keys.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+            } catch(IOException e) {
+                // The folder is gone or can not be watched, so neither can the
+                // file.
+                return;
+            }
+        }
+        files.computeIfAbsent(path, p -> new ArrayList<>()).add(watchedFile);
+    }
+
+
+    /**
+     * Stops watching a file. Its folder stops being watched once no file in it
+     * is.
+     *
+     * @param watchedFile   The file to stop watching.
+     */
+    public synchronized void unwatch(WatchedFile watchedFile) {
+        Path path = watchedFile.getPath();
+        List<WatchedFile> watched = files.get(path);
+        if(watched == null || !watched.remove(watchedFile)) {
+            return;
+        }
+        if(!watched.isEmpty()) {
+            return;
+        }
+        files.remove(path);
+
+        Path directory = path.getParent();
+        for(Path other : files.keySet()) {
+            if(directory.equals(other.getParent())) {
+                return;
+            }
+        }
+        WatchKey key = keys.remove(directory);
+        if(key != null) {
+            key.cancel();
+        }
+    }
+
+
+    /**
+     * Waits for events and examines the files they were about once they have
+     * settled, until the watch service is closed. This runs on the watcher
+     * thread.
+     */
+    private void run() {
+        try {
+            while(true) {
+                WatchKey key;
+                if(pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    long wait = TimeUnit.NANOSECONDS.toMillis(earliestDeadline() - System.nanoTime());
+                    key = service.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+                }
+
+                // Take every event that has arrived before examining anything.
+                while(key != null) {
+                    queueEvents(key);
+                    key = service.poll();
+                }
+                examineSettledFiles();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // The editor is exiting.
+        }
+    }
+
+
+    /**
+     * Puts off examining the watched files that events of a key were about.
+     *
+     * @param key   The key of a folder that has events.
+     */
+    private void queueEvents(WatchKey key) {
+        Path directory = (Path)key.watchable();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS);
+        boolean overflow = false;
+
+        synchronized(this) {
+            for(WatchEvent<?> event : key.pollEvents()) {
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                Path path = directory.resolve((Path)event.context());
+                if(files.containsKey(path)) {
+                    pending.put(path, deadline);
+                }
+            }
+
+            // Events were lost, or the folder itself is gone, so any file in
+            // it may have changed.
+            if(!key.reset() || overflow) {
+                for(Path path : files.keySet()) {
+                    if(directory.equals(path.getParent())) {
+                        pending.put(path, deadline);
+                    }
+                }
+                if(!key.isValid()) {
+                    keys.remove(directory, key);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns when the next pending file is to be examined.
+     *
+     * @return  The deadline in System.nanoTime() terms.
+     */
+    private long earliestDeadline() {
+        long earliest = Long.MAX_VALUE;
+        for(long deadline : pending.values()) {
+            earliest = Math.min(earliest, deadline);
+        }
+        return earliest;
+    }
+
+
+    /**
+     * Examines the files that have not been touched for the debounce time, and
+     * hands what changed to the JavaFX thread.
+     */
+    private void examineSettledFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator();
+        while(entries.hasNext()) {
+            Map.Entry<Path, Long> entry = entries.next();
+            if(entry.getValue() - now > 0) {
+                continue;
+            }
+            entries.remove();
+
+            List<WatchedFile> watched;
+            synchronized(this) {
+                watched = new ArrayList<>(files.getOrDefault(entry.getKey(), new ArrayList<>()));
+            }
+            for(WatchedFile watchedFile : watched) {
+                WatchedFile.Change change = watchedFile.examine();
+                if(change.getKind() != WatchedFile.Kind.UNCHANGED) {
+                    Platform.runLater(() -> listener.accept(change));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+import javafx.beans.InvalidationListener;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+
+/**
+ * The bar shown under the tool bar for finding and replacing text. The search
+ * is run again on a background thread whenever the text or the options change,
+ * and the matches are highlighted as they are found. The bar can search the
+ * selected tab or every tab at once, in which case the tabs are searched in
+ * parallel.
+ */
+public class FindBar extends VBox {
+
+
+    /**
+     * The TabPane holding the documents that are searched.
+     */
+    private final TabPane tabPane;
+
+
+    /**
+     * The fields for the text to find and the text to replace it with.
+     */
+    private final TextField findField, replaceField;
+
+
+    /**
+     * The search options.
+     */
+    private final CheckBox regex, matchCase, allTabs;
+
+
+    /**
+     * The label showing the amount of matches, or what is wrong with the
+     * regular expression.
+     */
+    private final Label count;
+
+
+    /**
+     * The row holding the replace field and buttons.
+     */
+    private final HBox replaceRow;
+
+
+    /**
+     * The query of the last search, or null if there is nothing to search for.
+     */
+    private SearchQuery query;
+
+
+    /**
+     * The EditingAreas searched by the last search.
+     */
+    private final List<EditingArea> targets = new ArrayList<>();
+
+
+    /**
+     * The searches and replacements that are running.
+     */
+    private final List<SearchTask> tasks = new ArrayList<>();
+
+
+    /**
+     * Updates the amount of matches shown when the matches of an EditingArea
+     * or the state of a search change.
+     */
+    private final InvalidationListener countListener = observable -> updateCount();
+
+
+    /**
+     * Creates a FindBar for the documents in a TabPane. The bar is hidden until
+     * show is called.
+     *
+     * @param tabPane   The TabPane holding the documents to search.
+     */
+    public FindBar(TabPane tabPane) {
+        this.tabPane = tabPane;
+
+        findField = new TextField();
+        findField.setPromptText("Find");
+        HBox.setHgrow(findField, Priority.ALWAYS);
+        findField.setOnAction(e -> findNext(true));
+
+        replaceField = new TextField();
+        replaceField.setPromptText("Replace");
+        HBox.setHgrow(replaceField, Priority.ALWAYS);
+        replaceField.setOnAction(e -> replace());
+
+        regex = new CheckBox("Regex");
+        matchCase = new CheckBox("Match Case");
+        allTabs = new CheckBox("All Tabs");
+
+        count = new Label();
+        count.setMinWidth(110);
+
+        Button previous = new Button("Previous");
+        previous.setOnAction(e -> findNext(false));
+
+        Button next = new Button("Next");
+        next.setOnAction(e -> findNext(true));
+
+        Button close = new Button("Close");
+        close.setOnAction(e -> hide());
+
+        Button replace = new Button("Replace");
+        replace.setOnAction(e -> replace());
+
+        Button replaceAll = new Button("Replace All");
+        replaceAll.setOnAction(e -> replaceAll());
+
+        HBox findRow = new HBox(6, findField, previous, next, regex, matchCase, allTabs, count, close);
+        findRow.setAlignment(Pos.CENTER_LEFT);
+
+        replaceRow = new HBox(6, replaceField, replace, replaceAll);
+        replaceRow.setAlignment(Pos.CENTER_LEFT);
+
+        getChildren().addAll(findRow, replaceRow);
+        setSpacing(4);
+        setPadding(new Insets(4, 6, 4, 6));
+        getStyleClass().add("find-bar");
+
+        setVisible(false);
+        setManaged(false);
+
+        // Search again whenever what is being searched for changes.
+        findField.textProperty().addListener(observable -> search());
+        regex.selectedProperty().addListener(observable -> search());
+        matchCase.selectedProperty().addListener(observable -> search());
+        allTabs.selectedProperty().addListener(observable -> search());
+
+        // Only the selected tab is searched unless every tab is, so the search
+        // follows the selection.
+        tabPane.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+            if(isVisible() && !allTabs.isSelected()) {
+                search();
+            }
+        });
+
+        addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ESCAPE) {
+                hide();
+                e.consume();
+            } else if(e.getCode() == KeyCode.ENTER && e.isShiftDown() && e.getTarget() == findField) {
+                findNext(false);
+                e.consume();
+            }
+        });
+    }
+
+
+    /**
+     * Shows the bar and searches for its text. The selected text of the active
+     * EditingArea is searched for if it is on one line.
+     *
+     * @param showReplace   Whether or not the replace row is shown.
+     */
+    public void show(boolean showReplace) {
+        replaceRow.setVisible(showReplace);
+        replaceRow.setManaged(showReplace);
+
+        EditingArea editingArea = getActiveEditingArea();
+        String selected = editingArea == null ? "" : editingArea.getSelectedText();
+        boolean wasVisible = isVisible();
+
+        setVisible(true);
+        setManaged(true);
+
+        if(!selected.isEmpty() && selected.indexOf('\n') < 0 && !selected.equals(findField.getText())) {
+            findField.setText(selected);
+        } else if(!wasVisible) {
+            search();
+        }
+
+        findField.requestFocus();
+        findField.selectAll();
+    }
+
+
+    /**
+     * Hides the bar, stops the search and removes the highlighted matches.
+     */
+    public void hide() {
+        cancelTasks();
+        clearTargets();
+        query = null;
+
+        setVisible(false);
+        setManaged(false);
+
+        EditingArea editingArea = getActiveEditingArea();
+        if(editingArea != null) {
+            editingArea.requestFocus();
+        }
+    }
+
+
+    /**
+     * Starts a new search for the text of the find field, stopping the last
+     * one.
+     */
+    public void search() {
+        cancelTasks();
+        clearTargets();
+        query = null;
+
+        if(findField.getText().isEmpty()) {
+            count.setText("");
+            return;
+        }
+
+        try {
+            query = new SearchQuery(findField.getText(), regex.isSelected(), matchCase.isSelected());
+        } catch(PatternSyntaxException e) {
+            count.setText(e.getDescription());
+            return;
+        }
+
+        targets.addAll(getSearchableAreas());
+        for(EditingArea editingArea : targets) {
+            editingArea.matchCountProperty().addListener(countListener);
+
+            SearchTask task = editingArea instanceof LargeFileArea
+                    ? new LargeFileSearchTask((LargeFileArea)editingArea, query)
+                    : new SearchTask(editingArea, query);
+            task.runningProperty().addListener(countListener);
+            tasks.add(task);
+            task.start();
+        }
+        updateCount();
+    }
+
+
+    /**
+     * Selects the next or previous match in the active EditingArea, going
+     * round to the start or the end of the document. When every tab is
+     * searched, the search goes on into the next tab with matches instead.
+     *
+     * @param forward   Whether to select the next match or the previous one.
+     */
+    public void findNext(boolean forward) {
+        EditingArea editingArea = getActiveEditingArea();
+        if(query == null || editingArea == null || !targets.contains(editingArea)) {
+            return;
+        }
+
+        int index = editingArea.getNextMatch(forward);
+
+        if(index < 0 || index >= editingArea.getMatchCount()) {
+            EditingArea nextArea = allTabs.isSelected() ? getNextTarget(editingArea, forward) : editingArea;
+            if(nextArea != editingArea) {
+                tabPane.getSelectionModel().select(getTab(nextArea));
+                editingArea = nextArea;
+            }
+            index = forward ? 0 : editingArea.getMatchCount() - 1;
+        }
+
+        if(editingArea.getMatchCount() > 0) {
+            editingArea.selectMatch(index);
+        }
+    }
+
+
+    /**
+     * Replaces the selected match in the active EditingArea and selects the
+     * next one. If the selection is not a match, the next match is selected.
+     */
+    public void replace() {
+        EditingArea editingArea = getActiveEditingArea();
+        if(query == null || editingArea == null || !editingArea.isEditable()) {
+            return;
+        }
+
+        MatchList matches = editingArea.getMatches();
+        IndexRange selection = editingArea.getSelection();
+        int index = matches.indexOfStart(selection.getStart());
+
+        if(index < matches.size() && matches.getStart(index) == selection.getStart()
+                && matches.getEnd(index) == selection.getEnd()) {
+            String replacement = query.getReplacement(editingArea.getDocument().snapshot().asCharSequence(),
+                    selection.getStart(), selection.getEnd(), replaceField.getText());
+            if(replacement != null) {
+                editingArea.replaceSelection(replacement);
+            }
+        }
+
+        findNext(true);
+    }
+
+
+    /**
+     * Replaces every match in the searched EditingAreas that can be edited.
+     * Each document is changed with a single edit, so it can be undone in one
+     * step.
+     */
+    public void replaceAll() {
+        if(query == null) {
+            return;
+        }
+
+        cancelTasks();
+
+        int[] replaced = { 0 };
+        for(EditingArea editingArea : targets) {
+            if(!editingArea.isEditable() || editingArea.getMatchCount() == 0) {
+                continue;
+            }
+
+            ReplaceTask task = new ReplaceTask(editingArea, query, replaceField.getText());
+            task.runningProperty().addListener(countListener);
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                if(task.isApplied()) {
+                    replaced[0] += task.getValue();
+                }
+                tasks.remove(task);
+                if(tasks.isEmpty()) {
+                    count.setText(String.format("Replaced %,d", replaced[0]));
+                }
+            });
+            tasks.add(task);
+            task.start();
+        }
+    }
+
+
+    /**
+     * Shows the amount of matches in the searched EditingAreas.
+     */
+    private void updateCount() {
+        if(query == null) {
+            return;
+        }
+
+        int matchCount = 0;
+        for(EditingArea editingArea : targets) {
+            matchCount += editingArea.getMatchCount();
+        }
+
+        boolean running = false;
+        for(SearchTask task : tasks) {
+            running |= task.isRunning();
+        }
+
+        if(running) {
+            count.setText(String.format("%,d matches...", matchCount));
+        } else if(matchCount == 1) {
+            count.setText("1 match");
+        } else if(matchCount == 0) {
+            count.setText("No matches");
+        } else {
+            count.setText(String.format("%,d matches", matchCount));
+        }
+    }
+
+
+    /**
+     * Stops the searches and replacements that are running.
+     */
+    private void cancelTasks() {
+        for(SearchTask task : tasks) {
+            task.runningProperty().removeListener(countListener);
+            task.cancel();
+        }
+        tasks.clear();
+    }
+
+
+    /**
+     * Removes the matches of the last search from the EditingAreas that were
+     * searched.
+     */
+    private void clearTargets() {
+        for(EditingArea editingArea : targets) {
+            editingArea.matchCountProperty().removeListener(countListener);
+            editingArea.clearMatches();
+        }
+        targets.clear();
+    }
+
+
+    /**
+     * Returns the EditingAreas to search. Large files are searched too, a batch
+     * of lines at a time from their mapped file, but can not be replaced in
+     * since they are read-only.
+     *
+     * @return  The EditingAreas to search.
+     */
+    private List<EditingArea> getSearchableAreas() {
+        List<EditingArea> areas = new ArrayList<>();
+
+        if(allTabs.isSelected()) {
+            for(Tab tab : tabPane.getTabs()) {
+                areas.add((EditingArea)tab.getContent());
+            }
+        } else if(getActiveEditingArea() != null) {
+            areas.add(getActiveEditingArea());
+        }
+
+        return areas;
+    }
+
+
+    /**
+     * Returns the next searched EditingArea, in the order of the tabs, that has
+     * matches.
+     *
+     * @param editingArea   The EditingArea to start from.
+     * @param forward       Whether to look at the tabs after it or before it.
+     * @return  The next EditingArea with matches, or the one given if there is
+     *          no other.
+     */
+    private EditingArea getNextTarget(EditingArea editingArea, boolean forward) {
+        List<Tab> tabs = tabPane.getTabs();
+        int start = tabs.indexOf(getTab(editingArea));
+        int step = forward ? 1 : tabs.size() - 1;
+
+        for(int i = (start + step) % tabs.size(); i != start; i = (i + step) % tabs.size()) {
+            EditingArea next = (EditingArea)tabs.get(i).getContent();
+            if(targets.contains(next) && next.getMatchCount() > 0) {
+                return next;
+            }
+        }
+        return editingArea;
+    }
+
+
+    /**
+     * Returns the tab that shows an EditingArea.
+     *
+     * @param editingArea   The EditingArea.
+     * @return  The tab, or null if the EditingArea is not in a tab.
+     */
+    private Tab getTab(EditingArea editingArea) {
+        for(Tab tab : tabPane.getTabs()) {
+            if(tab.getContent() == editingArea) {
+                return tab;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the EditingArea of the selected tab.
+     *
+     * @return  The selected EditingArea, or null if there are no tabs.
+     */
+    private EditingArea getActiveEditingArea() {
+        Tab tab = tabPane.getSelectionModel().getSelectedItem();
+        return tab == null ? null : (EditingArea)tab.getContent();
+    }
+}
@@ -0,0 +1,290 @@
+package texteditor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+import java.util.regex.PatternSyntaxException;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+
+/**
+ * The window for searching every file under a folder. The files are narrowed
+ * down with a trigram index of the folder before any of them are searched, and
+ * the lines found are listed as they come in. Opening a line shows its file in
+ * a tab at that line.
+ */
+public class FindInFilesDialog extends Stage {
+
+
+    /**
+     * The fields for the folder to search and the text to find.
+     */
+    private final TextField folderField, findField;
+
+
+    /**
+     * The search options.
+     */
+    private final CheckBox regex, matchCase;
+
+
+    /**
+     * The lines found by the last search.
+     */
+    private final ObservableList<FindInFilesTask.Result> results = FXCollections.observableArrayList();
+
+
+    /**
+     * The list showing the lines found.
+     */
+    private final ListView<FindInFilesTask.Result> resultList = new ListView<>(results);
+
+
+    /**
+     * The label showing what the search is doing.
+     */
+    private final Label status = new Label();
+
+
+    /**
+     * The bar showing how many of the files have been searched.
+     */
+    private final ProgressBar progress = new ProgressBar(0);
+
+
+    /**
+     * Called with the file and line of a result when it is opened.
+     */
+    private final BiConsumer<File, Integer> opener;
+
+
+    /**
+     * The index of the folder searched last. It is kept so the next search of
+     * the same folder does not read the index file again.
+     */
+    private TrigramIndex index;
+
+
+    /**
+     * The search that is running, or null.
+     */
+    private FindInFilesTask task;
+
+
+    /**
+     * Creates a FindInFilesDialog.
+     *
+     * @param owner     The window the dialog belongs to.
+     * @param opener    Called with the file and line of a result when the user
+     *                  opens it.
+     */
+    public FindInFilesDialog(Window owner, BiConsumer<File, Integer> opener) {
+        this.opener = opener;
+        initOwner(owner);
+        setTitle("Find in Files");
+
+        folderField = new TextField(System.getProperty("user.dir"));
+        HBox.setHgrow(folderField, Priority.ALWAYS);
+        folderField.setOnAction(e -> search());
+
+        Button browse = new Button("Browse...");
+        browse.setOnAction(e -> chooseFolder());
+
+        findField = new TextField();
+        findField.setPromptText("Find");
+        HBox.setHgrow(findField, Priority.ALWAYS);
+        findField.setOnAction(e -> search());
+
+        regex = new CheckBox("Regex");
+        matchCase = new CheckBox("Match Case");
+
+        Button find = new Button("Find");
+        find.setDefaultButton(true);
+        find.setOnAction(e -> search());
+
+        HBox folderRow = new HBox(6, new Label("Folder:"), folderField, browse);
+        folderRow.setAlignment(Pos.CENTER_LEFT);
+
+        HBox findRow = new HBox(6, new Label("Find:"), findField, regex, matchCase, find);
+        findRow.setAlignment(Pos.CENTER_LEFT);
+
+        resultList.setCellFactory(list -> new ResultCell());
+        resultList.setOnMouseClicked(e -> {
+            if(e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+        resultList.addEventHandler(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ENTER) {
+                openSelected();
+                e.consume();
+            }
+        });
+        VBox.setVgrow(resultList, Priority.ALWAYS);
+
+        progress.setMaxWidth(Double.MAX_VALUE);
+        progress.setVisible(false);
+        HBox.setHgrow(status, Priority.ALWAYS);
+        status.setMaxWidth(Double.MAX_VALUE);
+        HBox statusRow = new HBox(6, status, progress);
+        statusRow.setAlignment(Pos.CENTER_LEFT);
+        progress.setPrefWidth(150);
+
+        VBox root = new VBox(6, folderRow, findRow, resultList, statusRow);
+        root.setPadding(new Insets(8));
+
+        Scene scene = new Scene(root, 700, 450);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ESCAPE) {
+                hide();
+            }
+        });
+        setScene(scene);
+
+        setOnHidden(e -> {
+            if(task != null) {
+                task.cancel();
+            }
+        });
+    }
+
+
+    /**
+     * Shows the dialog with the find field ready for typing.
+     *
+     * @param text  The text to put in the find field, or null to keep the text
+     *              of the last search.
+     */
+    public void show(String text) {
+        if(text != null && !text.isEmpty()) {
+            findField.setText(text);
+        }
+        show();
+        toFront();
+        findField.requestFocus();
+        findField.selectAll();
+    }
+
+
+    /**
+     * Lets the user pick the folder to search.
+     */
+    private void chooseFolder() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Folder to Search");
+        File folder = new File(folderField.getText());
+        if(folder.isDirectory()) {
+            chooser.setInitialDirectory(folder);
+        }
+
+        folder = chooser.showDialog(this);
+        if(folder != null) {
+            folderField.setText(folder.getPath());
+        }
+    }
+
+
+    /**
+     * Starts a search of the folder, stopping the last one.
+     */
+    private void search() {
+        if(task != null) {
+            task.cancel();
+        }
+        results.clear();
+        status.textProperty().unbind();
+        status.setText("");
+
+        if(findField.getText().isEmpty()) {
+            return;
+        }
+
+        Path root = Paths.get(folderField.getText()).toAbsolutePath().normalize();
+        if(!Files.isDirectory(root)) {
+            status.setText(root + " is not a folder.");
+            return;
+        }
+
+        SearchQuery query;
+        try {
+            query = new SearchQuery(findField.getText(), regex.isSelected(), matchCase.isSelected());
+        } catch(PatternSyntaxException e) {
+            status.setText(e.getDescription());
+            return;
+        }
+
+        if(index == null || !index.getRoot().equals(root)) {
+            index = new TrigramIndex(root);
+        }
+
+        task = new FindInFilesTask(index, query, results);
+        status.textProperty().bind(task.messageProperty());
+        progress.progressProperty().bind(task.progressProperty());
+        progress.visibleProperty().bind(task.runningProperty());
+
+        FindInFilesTask started = task;
+        task.setOnFailed(e -> {
+            status.textProperty().unbind();
+            status.setText("Could not search " + root + ": " + started.getException().getMessage());
+        });
+
+        task.start();
+    }
+
+
+    /**
+     * Opens the file of the selected result at its line.
+     */
+    private void openSelected() {
+        FindInFilesTask.Result result = resultList.getSelectionModel().getSelectedItem();
+        if(result != null) {
+            opener.accept(result.getFile().toFile(), result.getLine());
+        }
+    }
+
+
+    /**
+     * Shows a result as its path relative to the searched folder, its line
+     * number and the text of the line.
+     */
+    private class ResultCell extends ListCell<FindInFilesTask.Result> {
+
+
+        /*
+         * Shows the result, or nothing for an empty cell.
+         */
+        @Override
+        protected void updateItem(FindInFilesTask.Result item, boolean empty) {
+            super.updateItem(item, empty);
+
+            if(empty || item == null) {
+                setText(null);
+            } else {
+                setText(index.getRoot().relativize(item.getFile()) + ":" + (item.getLine() + 1) + ":  "
+                        + item.getText().trim());
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+
+/**
+ * Searches the files under a directory. The trigram index of the directory is
+ * brought up to date first, and only the files the index says could hold a
+ * match are searched. Those files are memory mapped and searched in parallel,
+ * and the matching lines are added to a list on the JavaFX thread in batches
+ * as they are found. The value of the task is the amount of lines found.
+ */
+public class FindInFilesTask extends Task<Integer> {
+
+
+    /**
+     * The most lines that are found before the search stops.
+     */
+    public static final int MAX_RESULTS = 10000;
+
+
+    /**
+     * The most characters of a matching line that are kept.
+     */
+    private static final int MAX_LINE_LENGTH = 200;
+
+
+    /**
+     * The thread the searches are run on. Only one search runs at a time, since
+     * searches share the worker threads.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Find in Files");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The threads that files are read and searched on.
+     */
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+                Thread thread = new Thread(r, "Find in Files Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    /**
+     * The index of the directory being searched.
+     */
+    private final TrigramIndex index;
+
+
+    /**
+     * What is being searched for.
+     */
+    private final SearchQuery query;
+
+
+    /**
+     * The list the matching lines are added to.
+     */
+    private final ObservableList<Result> results;
+
+
+    /**
+     * The lines found that have not been added to the list yet.
+     */
+    private final Queue<Result> pendingResults = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Whether or not the results are already waiting to be added on the JavaFX
+     * thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * The amount of lines found.
+     */
+    private final AtomicInteger found = new AtomicInteger();
+
+
+    /**
+     * Creates a FindInFilesTask.
+     *
+     * @param index     The index of the directory to search.
+     * @param query     What to search for.
+     * @param results   The list to add the matching lines to.
+     */
+    public FindInFilesTask(TrigramIndex index, SearchQuery query, ObservableList<Result> results) {
+        this.index = index;
+        this.query = query;
+        this.results = results;
+    }
+
+
+    /**
+     * Starts the search on the search thread.
+     */
+    public void start() {
+        EXECUTOR.execute(this);
+    }
+
+
+    /*
+     * Updates the index, then searches the files that could hold a match.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        long startTime = System.nanoTime();
+
+        updateMessage("Indexing " + index.getRoot() + "...");
+        index.update(WORKERS, this::isCancelled);
+        if(isCancelled()) {
+            return found.get();
+        }
+
+        List<Path> candidates = index.getCandidates(query);
+        int fileCount = index.getFileCount();
+        int candidateCount = candidates.size();
+        updateMessage(String.format("Searching %,d of %,d files...", candidateCount, fileCount));
+
+        // Each worker takes the next file that has not been searched.
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger searched = new AtomicInteger();
+        List<Callable<Void>> searchers = new ArrayList<>();
+        for(int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+            searchers.add(() -> {
+                int file;
+                while((file = next.getAndIncrement()) < candidateCount && !isCancelled()
+                        && found.get() <= MAX_RESULTS) {
+                    search(candidates.get(file));
+                    updateProgress(searched.incrementAndGet(), candidateCount);
+                }
+                return null;
+            });
+        }
+
+        try {
+            for(Future<Void> future : WORKERS.invokeAll(searchers)) {
+                future.get();
+            }
+        } catch(ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        flush();
+
+        int lines = Math.min(found.get(), MAX_RESULTS);
+        updateMessage(String.format("%,d %s in %,d of %,d files searched, %,d ms%s",
+                lines, lines == 1 ? "line" : "lines", candidateCount, fileCount,
+                (System.nanoTime() - startTime) / 1000000,
+                found.get() > MAX_RESULTS ? ", stopped at " + MAX_RESULTS : ""));
+        return lines;
+    }
+
+
+    /*
+     * Adds the last of the matching lines to the list.
+     */
+    @Override
+    protected void succeeded() {
+        addPendingResults();
+    }
+
+
+    /**
+     * Searches a file, adding each line that holds a match. Files that can no
+     * longer be read are passed over.
+     *
+     * @param file  The file to search.
+     */
+    private void search(Path file) {
+        CharBuffer text;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size == 0) {
+                return;
+            }
+            text = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch(IOException e) {
+            return;
+        }
+
+        Matcher matcher = query.getPattern().matcher(text);
+        int length = text.length();
+        int line = 0;
+        int lineStart = 0;
+        int position = 0;
+        int lastLine = -1;
+
+        while(matcher.find()) {
+            int start = matcher.start();
+            if(matcher.end() == start) {
+                continue;
+            }
+
+            // Count the line breaks up to the match, the same way the loader
+            // does, so the line numbers agree with the opened file.
+            for(; position < start; position++) {
+                char c = text.get(position);
+                if(c == '\n' || c == '\r' && (position + 1 == length || text.get(position + 1) != '\n')) {
+                    line++;
+                    lineStart = position + 1;
+                }
+            }
+
+            if(line == lastLine) {
+                continue;
+            }
+            lastLine = line;
+
+            int lineEnd = lineStart;
+            while(lineEnd < length && lineEnd - lineStart < MAX_LINE_LENGTH
+                    && text.get(lineEnd) != '\n' && text.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            if(found.incrementAndGet() > MAX_RESULTS) {
+                break;
+            }
+            pendingResults.add(new Result(file, line, start - lineStart, text.subSequence(lineStart, lineEnd).toString()));
+            if(batchScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::addPendingResults);
+            }
+        }
+    }
+
+
+    /**
+     * Decodes a file the same way the loader does: in the charset of its byte
+     * order mark, or else as UTF-8, or else in the legacy charset.
+     *
+     * @param bytes The bytes of the file.
+     * @return  The text of the file.
+     * @throws CharacterCodingException    Never, since the legacy charset
+     *                                      replaces malformed input.
+     */
+    private static CharBuffer decode(MappedByteBuffer bytes) throws CharacterCodingException {
+        Charset charset = CharsetDetector.detectByteOrderMark(bytes);
+        if(charset != null) {
+            bytes.position(CharsetDetector.getByteOrderMark(charset).length);
+            return CharsetDetector.newDecoder(charset, false).decode(bytes);
+        }
+
+        try {
+            return CharsetDetector.newDecoder(StandardCharsets.UTF_8, true).decode(bytes);
+        } catch(CharacterCodingException e) {
+            bytes.rewind();
+            return CharsetDetector.newDecoder(CharsetDetector.getLegacyCharset(), false).decode(bytes);
+        }
+    }
+
+
+    /**
+     * Hands the last results to the JavaFX thread.
+     */
+    private void flush() {
+        updateValue(Math.min(found.get(), MAX_RESULTS));
+        if(!pendingResults.isEmpty() && batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingResults);
+        }
+    }
+
+
+    /**
+     * Adds the results that are waiting to the list. This runs on the JavaFX
+     * thread.
+     */
+    private void addPendingResults() {
+        batchScheduled.set(false);
+
+        List<Result> batch = new ArrayList<>();
+        Result result;
+        while((result = pendingResults.poll()) != null) {
+            batch.add(result);
+        }
+
+        if(!isCancelled() && !batch.isEmpty()) {
+            results.addAll(batch);
+        }
+    }
+
+
+    /**
+     * A line that holds a match.
+     */
+    public static class Result {
+
+
+        /**
+         * The file holding the line.
+         */
+        private final Path file;
+
+
+        /**
+         * The index of the line in the file, starting from 0.
+         */
+        private final int line;
+
+
+        /**
+         * The column the match starts at.
+         */
+        private final int column;
+
+
+        /**
+         * The text of the line.
+         */
+        private final String text;
+
+
+        /**
+         * Creates a Result.
+         *
+         * @param file      The file holding the line.
+         * @param line      The index of the line, starting from 0.
+         * @param column    The column the match starts at.
+         * @param text      The text of the line.
+         */
+        public Result(Path file, int line, int column, String text) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.text = text;
+        }
+
+
+        /**
+         * Returns the file holding the line.
+         *
+         * @return  The file.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+
+        /**
+         * Returns the index of the line, starting from 0.
+         *
+         * @return  The line.
+         */
+        public int getLine() {
+            return line;
+        }
+
+
+        /**
+         * Returns the column the match starts at.
+         *
+         * @return  The column.
+         */
+        public int getColumn() {
+            return column;
+        }
+
+
+        /**
+         * Returns the text of the line.
+         *
+         * @return  The text.
+         */
+        public String getText() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package texteditor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+
+/**
+ * A channel that reads the decompressed bytes of a gzip or deflate file. The
+ * file is decompressed on a background thread into pooled buffers, which wait
+ * in a short queue for the channel to be read, so the file is decompressed
+ * while the text already decompressed is decoded, and only a few buffers are
+ * held at a time however large the file is.
+ *
+ * The decompressed size is not known until the end of the file is reached, so
+ * the size and position of the channel are those of the compressed file, which
+ * is enough to show how much of it has been read. The position can only be set
+ * back to the start, which decompresses the file again from its beginning.
+ */
+public class InflatingChannel implements SeekableByteChannel {
+
+
+    /**
+     * The most decompressed buffers that wait to be read before the background
+     * thread stops and waits for the channel to be read.
+     */
+    private static final int MAX_PENDING_BUFFERS = 4;
+
+
+    /**
+     * The buffer put in the queue once the end of the file is reached or the
+     * file could not be decompressed.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+
+    /**
+     * The flags in a gzip header that say which optional fields follow it.
+     */
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+
+    /**
+     * The threads files are decompressed on. Each channel that is being read
+     * has a thread of its own.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool((Runnable r) -> {
+        Thread thread = new Thread(r, "Decompressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The compressed file.
+     */
+    private final FileChannel channel;
+
+
+    /**
+     * How the file is compressed.
+     */
+    private final Compression compression;
+
+
+    /**
+     * Decompresses the file on the background thread.
+     */
+    private Decompressor decompressor;
+
+
+    /**
+     * The background thread's work, so it can be waited for.
+     */
+    private Future<?> running;
+
+
+    /**
+     * The decompressed buffer being read, or null if the next one has not
+     * been taken from the queue.
+     */
+    private ByteBuffer current;
+
+
+    /**
+     * Whether or not the end of the file has been read.
+     */
+    private boolean endReached = false;
+
+
+    /**
+     * Whether or not the channel is open.
+     */
+    private boolean open = true;
+
+
+    /**
+     * Creates an InflatingChannel and starts decompressing the file.
+     *
+     * @param channel       The compressed file, which is closed when this
+     *                      channel is.
+     * @param compression   How the file is compressed.
+     */
+    public InflatingChannel(FileChannel channel, Compression compression) {
+        this.channel = channel;
+        this.compression = compression;
+        start();
+    }
+
+
+    /*
+     * Copies decompressed bytes, waiting for the background thread if none
+     * have been decompressed yet.
+     */
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+
+        while(current == null || !current.hasRemaining()) {
+            if(current != null) {
+                BufferPool.release(current);
+                current = null;
+            }
+
+            if(endReached) {
+                if(decompressor.failure != null) {
+                    throw new IOException(decompressor.failure.getMessage(), decompressor.failure);
+                }
+                return -1;
+            }
+
+            ByteBuffer next;
+            try {
+                next = decompressor.output.take();
+            } catch(InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new ClosedByInterruptException();
+            }
+
+            if(next == END) {
+                endReached = true;
+            } else {
+                current = next;
+            }
+        }
+
+        int count = Math.min(dst.remaining(), current.remaining());
+        int limit = current.limit();
+        current.limit(current.position() + count);
+        dst.put(current);
+        current.limit(limit);
+        return count;
+    }
+
+
+    /*
+     * Returns the amount of compressed bytes that have been decompressed.
+     */
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return decompressor.position;
+    }
+
+
+    /*
+     * Starts decompressing the file again from its start. No other position
+     * can be set.
+     */
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if(newPosition != 0) {
+            throw new IllegalArgumentException("A compressed file can only be read again from its start.");
+        }
+
+        stop();
+        start();
+        return this;
+    }
+
+
+    /*
+     * Returns the size of the compressed file.
+     */
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return channel.size();
+    }
+
+
+    /*
+     * The channel can not be written to.
+     */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+
+    /*
+     * The channel can not be written to.
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+
+    /*
+     * Returns whether or not the channel is open.
+     */
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+
+    /*
+     * Stops decompressing the file, gives the buffers back to the pool and
+     * closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(open) {
+            open = false;
+            stop();
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Throws an exception if the channel has been closed.
+     *
+     * @throws ClosedChannelException   If the channel is closed.
+     */
+    private void ensureOpen() throws ClosedChannelException {
+        if(!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+
+    /**
+     * Starts decompressing the file from its start on a background thread.
+     */
+    private void start() {
+        decompressor = new Decompressor();
+        running = EXECUTOR.submit(decompressor);
+    }
+
+
+    /**
+     * Stops the background thread, and gives back the buffers it decompressed
+     * that have not been read. The queue is emptied while the thread is waited
+     * for, so it is never left waiting for room.
+     */
+    private void stop() {
+        decompressor.stopped = true;
+        boolean interrupted = false;
+
+        while(!running.isDone()) {
+            try {
+                ByteBuffer buffer = decompressor.output.poll(10, TimeUnit.MILLISECONDS);
+                if(buffer != null && buffer != END) {
+                    BufferPool.release(buffer);
+                }
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        ByteBuffer buffer;
+        while((buffer = decompressor.output.poll()) != null) {
+            if(buffer != END) {
+                BufferPool.release(buffer);
+            }
+        }
+
+        if(current != null) {
+            BufferPool.release(current);
+            current = null;
+        }
+        endReached = false;
+
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Decompresses the file from its start on the background thread, handing
+     * each buffer to the channel as it is filled.
+     */
+    private class Decompressor implements Runnable {
+
+
+        /**
+         * The decompressed buffers that have not been read.
+         */
+        private final BlockingQueue<ByteBuffer> output = new ArrayBlockingQueue<>(MAX_PENDING_BUFFERS);
+
+
+        /**
+         * Whether or not the channel has stopped wanting the bytes.
+         */
+        private volatile boolean stopped = false;
+
+
+        /**
+         * The amount of compressed bytes read from the file.
+         */
+        private volatile long position = 0;
+
+
+        /**
+         * Why the file could not be decompressed, or null if it could.
+         */
+        private volatile IOException failure;
+
+
+        /**
+         * The compressed bytes read from the file that have not been
+         * decompressed.
+         */
+        private ByteBuffer in;
+
+
+        /*
+         * Decompresses the whole file, and marks the end of the bytes once it
+         * is done or has failed.
+         */
+        @Override
+        public void run() {
+            Inflater inflater = new Inflater(compression == Compression.GZIP);
+            in = BufferPool.acquire();
+            in.flip();
+
+            try {
+                decompress(inflater);
+            } catch(IOException e) {
+                failure = e;
+            } catch(InterruptedException e) {
+                failure = new IOException("Decompressing the file was interrupted.", e);
+            } finally {
+                inflater.end();
+                BufferPool.release(in);
+            }
+
+            try {
+                output.put(END);
+            } catch(InterruptedException e) {
+                // Nothing is waiting for the end once the channel is stopped.
+            }
+        }
+
+
+        /**
+         * Decompresses the file into pooled buffers and queues them. Gzip
+         * members are checked against the checksum and size in their trailer.
+         *
+         * @param inflater  The inflater to decompress with.
+         * @throws IOException          If the file could not be read or is not
+         *                              compressed properly.
+         * @throws InterruptedException If the thread was interrupted while
+         *                              waiting for room in the queue.
+         */
+        private void decompress(Inflater inflater) throws IOException, InterruptedException {
+            boolean gzip = compression == Compression.GZIP;
+            CRC32 crc = new CRC32();
+            long length = 0;
+            boolean more = !gzip || readGzipHeader(true);
+            ByteBuffer out = BufferPool.acquire();
+
+            try {
+                while(more && !stopped) {
+                    if(inflater.needsInput()) {
+                        if(!in.hasRemaining() && !refill()) {
+                            throw new EOFException("Unexpected end of compressed file.");
+                        }
+                        inflater.setInput(in);
+                    }
+
+                    int count;
+                    try {
+                        count = inflater.inflate(out);
+                    } catch(DataFormatException e) {
+                        throw new ZipException("The file is not compressed properly: " + e.getMessage());
+                    }
+                    if(count == 0 && inflater.needsDictionary()) {
+                        throw new ZipException("Files compressed with a preset dictionary can not be read.");
+                    }
+
+                    if(gzip && count > 0) {
+                        ByteBuffer inflated = out.duplicate();
+                        inflated.flip();
+                        inflated.position(inflated.limit() - count);
+                        crc.update(inflated);
+                        length += count;
+                    }
+
+                    if(!out.hasRemaining()) {
+                        out.flip();
+                        output.put(out);
+                        out = BufferPool.acquire();
+                    }
+
+                    if(inflater.finished()) {
+                        if(gzip) {
+                            readGzipTrailer(crc, length);
+                            more = readGzipHeader(false);
+                            inflater.reset();
+                            crc.reset();
+                            length = 0;
+                        } else {
+                            more = false;
+                        }
+                    }
+                }
+
+                if(out.position() > 0 && !stopped) {
+                    out.flip();
+                    output.put(out);
+                    out = null;
+                }
+            } finally {
+                if(out != null) {
+                    BufferPool.release(out);
+                }
+            }
+        }
+
+
+        /**
+         * Reads the header of a gzip member, skipping the optional fields.
+         *
+         * @param first Whether or not this is the first member of the file.
+         * @return  true if a member follows; false if the end of the file was
+         *          reached. Bytes after the last member that do not start
+         *          another one are ignored, as gzip does.
+         * @throws IOException  If the file could not be read, or does not start
+         *                      with a gzip header.
+         */
+        private boolean readGzipHeader(boolean first) throws IOException {
+            int id1 = readByte();
+            int id2 = readByte();
+            int method = readByte();
+            if(id1 != 0x1F || id2 != 0x8B || method != 8) {
+                if(first) {
+                    throw new ZipException("The file is not in the gzip format.");
+                }
+                return false;
+            }
+
+            int flags = nextByte();
+            for(int i = 0; i < 6; i++) {
+                nextByte();
+            }
+
+            if((flags & FEXTRA) != 0) {
+                int extraLength = nextByte() | nextByte() << 8;
+                for(int i = 0; i < extraLength; i++) {
+                    nextByte();
+                }
+            }
+            if((flags & FNAME) != 0) {
+                while(nextByte() != 0) {
+                    // Skip the original file name.
+                }
+            }
+            if((flags & FCOMMENT) != 0) {
+                while(nextByte() != 0) {
+                    // Skip the comment.
+                }
+            }
+            if((flags & FHCRC) != 0) {
+                nextByte();
+                nextByte();
+            }
+            return true;
+        }
+
+
+        /**
+         * Reads the trailer of a gzip member and checks the bytes decompressed
+         * from the member against it.
+         *
+         * @param crc       The checksum of the decompressed bytes.
+         * @param length    The amount of decompressed bytes.
+         * @throws IOException  If the file could not be read, or the bytes do
+         *                      not match the trailer.
+         */
+        private void readGzipTrailer(CRC32 crc, long length) throws IOException {
+            long expectedCrc = readInt();
+            long expectedLength = readInt();
+            if(expectedCrc != crc.getValue() || expectedLength != (length & 0xFFFFFFFFL)) {
+                throw new ZipException("The file is corrupt: its checksum does not match its contents.");
+            }
+        }
+
+
+        /**
+         * Reads a little endian unsigned int.
+         *
+         * @return  The int.
+         * @throws IOException  If the end of the file was reached first.
+         */
+        private long readInt() throws IOException {
+            long value = 0;
+            for(int i = 0; i < 4; i++) {
+                value |= (long)nextByte() << (8 * i);
+            }
+            return value;
+        }
+
+
+        /**
+         * Reads a byte that must be there.
+         *
+         * @return  The byte.
+         * @throws IOException  If the end of the file was reached first.
+         */
+        private int nextByte() throws IOException {
+            int b = readByte();
+            if(b == -1) {
+                throw new EOFException("Unexpected end of compressed file.");
+            }
+            return b;
+        }
+
+
+        /**
+         * Reads a byte.
+         *
+         * @return  The byte, or -1 if the end of the file was reached.
+         * @throws IOException  If the file could not be read.
+         */
+        private int readByte() throws IOException {
+            if(!in.hasRemaining() && !refill()) {
+                return -1;
+            }
+            return in.get() & 0xFF;
+        }
+
+
+        /**
+         * Reads more of the compressed file into the input buffer, keeping the
+         * bytes in it that have not been used.
+         *
+         * @return  true if anything was read; false if the end of the file was
+         *          reached.
+         * @throws IOException  If the file could not be read.
+         */
+        private boolean refill() throws IOException {
+            in.compact();
+            int count = channel.read(in, position);
+            in.flip();
+
+            if(count > 0) {
+                position += count;
+                return true;
+            }
+            return false;
+        }
+    }
+}
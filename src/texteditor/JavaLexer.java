@@ -0,0 +1,113 @@
+package texteditor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * A Lexer for Java. Block comments and text blocks can span lines, so a line
+ * can start inside either of them.
+ */
+public class JavaLexer implements Lexer {
+
+
+    /**
+     * The states a line can start in besides INITIAL_STATE.
+     */
+    private static final int BLOCK_COMMENT = 1, TEXT_BLOCK = 2;
+
+
+    /**
+     * The reserved words of the language.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+            "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+            "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+            "interface", "long", "native", "new", "package", "private", "protected", "public",
+            "record", "return", "sealed", "short", "static", "strictfp", "super", "switch",
+            "synchronized", "this", "throw", "throws", "transient", "try", "var", "void",
+            "volatile", "while", "yield"));
+
+
+    /**
+     * The words that are values.
+     */
+    private static final Set<String> LITERALS = new HashSet<>(Arrays.asList("true", "false", "null"));
+
+
+    /*
+     * Finds the comments, strings, numbers, keywords and annotations of a line.
+     */
+    @Override
+    public int tokenize(CharSequence text, int start, int end, int state, TokenSink sink) {
+        int i = start;
+
+        // Finish the comment or text block the line started in.
+        if(state == BLOCK_COMMENT || state == TEXT_BLOCK) {
+            String close = state == BLOCK_COMMENT ? "*/" : "\"\"\"";
+            int found = Lexers.indexOf(text, close, i, end);
+            TokenType type = state == BLOCK_COMMENT ? TokenType.COMMENT : TokenType.STRING;
+            if(found < 0) {
+                sink.token(start, end, type);
+                return state;
+            }
+            i = found + close.length();
+            sink.token(start, i, type);
+        }
+
+        while(i < end) {
+            char c = text.charAt(i);
+            if(c == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+                sink.token(i, end, TokenType.COMMENT);
+                return INITIAL_STATE;
+            } else if(c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+                int found = Lexers.indexOf(text, "*/", i + 2, end);
+                if(found < 0) {
+                    sink.token(i, end, TokenType.COMMENT);
+                    return BLOCK_COMMENT;
+                }
+                sink.token(i, found + 2, TokenType.COMMENT);
+                i = found + 2;
+            } else if(Lexers.startsWith(text, "\"\"\"", i, end)) {
+                int found = Lexers.indexOf(text, "\"\"\"", i + 3, end);
+                if(found < 0) {
+                    sink.token(i, end, TokenType.STRING);
+                    return TEXT_BLOCK;
+                }
+                sink.token(i, found + 3, TokenType.STRING);
+                i = found + 3;
+            } else if(c == '"' || c == '\'') {
+                int close = Lexers.endOfQuoted(text, i, end);
+                sink.token(i, close, TokenType.STRING);
+                i = close;
+            } else if(Character.isDigit(c)) {
+                int close = Lexers.endOfNumber(text, i, end);
+                sink.token(i, close, TokenType.NUMBER);
+                i = close;
+            } else if(c == '@' && i + 1 < end && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+                int close = Lexers.endOfIdentifier(text, i + 1, end);
+                sink.token(i, close, TokenType.ANNOTATION);
+                i = close;
+            } else if(Character.isJavaIdentifierStart(c)) {
+                int close = Lexers.endOfIdentifier(text, i, end);
+
+                // Words never change the state, so they are only looked up
+                // when the tokens are wanted.
+                if(sink != NONE) {
+                    String word = text.subSequence(i, close).toString();
+                    if(KEYWORDS.contains(word)) {
+                        sink.token(i, close, TokenType.KEYWORD);
+                    } else if(LITERALS.contains(word)) {
+                        sink.token(i, close, TokenType.LITERAL);
+                    }
+                }
+                i = close;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL_STATE;
+    }
+}
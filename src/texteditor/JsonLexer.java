@@ -0,0 +1,51 @@
+package texteditor;
+
+
+/**
+ * A Lexer for JSON. Nothing in JSON spans lines, so every line starts in
+ * INITIAL_STATE and lines are only read when their tokens are wanted.
+ */
+public class JsonLexer implements Lexer {
+
+
+    /*
+     * Finds the keys, strings, numbers and literals of a line. A string is a
+     * key when the next thing after it is a colon.
+     */
+    @Override
+    public int tokenize(CharSequence text, int start, int end, int state, TokenSink sink) {
+        if(sink == NONE) {
+            return INITIAL_STATE;
+        }
+
+        int i = start;
+        while(i < end) {
+            char c = text.charAt(i);
+            if(c == '"') {
+                int close = Lexers.endOfQuoted(text, i, end);
+                int next = close;
+                while(next < end && Character.isWhitespace(text.charAt(next))) {
+                    next++;
+                }
+                boolean key = next < end && text.charAt(next) == ':';
+                sink.token(i, close, key ? TokenType.KEY : TokenType.STRING);
+                i = close;
+            } else if(Character.isDigit(c) || (c == '-' && i + 1 < end && Character.isDigit(text.charAt(i + 1)))) {
+                int close = Lexers.endOfNumber(text, i + 1, end);
+                sink.token(i, close, TokenType.NUMBER);
+                i = close;
+            } else if(Character.isLetter(c)) {
+                int close = Lexers.endOfIdentifier(text, i, end);
+                if(Lexers.startsWith(text, "true", i, close) && close - i == 4
+                        || Lexers.startsWith(text, "false", i, close) && close - i == 5
+                        || Lexers.startsWith(text, "null", i, close) && close - i == 4) {
+                    sink.token(i, close, TokenType.LITERAL);
+                }
+                i = close;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL_STATE;
+    }
+}
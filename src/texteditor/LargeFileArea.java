@@ -0,0 +1,496 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import javafx.concurrent.Task;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+
+
+/**
+ * A LargeFileArea is a read-only EditingArea for files that are too large to be
+ * loaded into memory. The file is memory mapped, and since the skin only asks
+ * for the lines that are on screen, only those lines are ever decoded. The heap
+ * used does not depend on the size of the file.
+ *
+ * A compressed file is decompressed in the background instead, and the lines
+ * already decompressed can be scrolled through while the rest are. Its text is
+ * kept in memory compressed again in blocks, so the heap used grows with the
+ * size of the compressed file rather than the size of the text.
+ *
+ * The document of a LargeFileArea is empty, so its text is selected by line and
+ * column instead of by offset.
+ */
+public class LargeFileArea extends EditingArea {
+
+
+    /**
+     * Files that are at least this many bytes are opened in a LargeFileArea.
+     */
+    public static final long THRESHOLD = 128L * 1024 * 1024;
+
+
+    /**
+     * The most characters that can be copied from a large file at once. The
+     * clipboard holds the text as one String, so larger selections are not
+     * copied.
+     */
+    public static final int MAX_COPY_LENGTH = 16 * 1024 * 1024;
+
+
+    /**
+     * The amount of lines read from the file at a time while the selected
+     * text is built.
+     */
+    private static final int LINES_PER_READ = 4096;
+
+
+    /**
+     * The memory mapped file shown in this area.
+     */
+    private final MappedDocument mappedDocument;
+
+
+    /**
+     * The task that finds the lines in the file.
+     */
+    private Task<Void> indexer;
+
+
+    /**
+     * Whether or not the lines of the file are being found. This is read by
+     * searches, which wait for the indexer to find more lines.
+     */
+    private volatile boolean indexing = false;
+
+
+    /**
+     * The line that was decoded last for getCachedLine, and its text.
+     */
+    private int cachedLine = -1;
+    private String cachedText;
+
+
+    /**
+     * The search matches in the file.
+     */
+    private final LineMatches lineMatches = new LineMatches();
+
+
+    /**
+     * The index of the match that was selected last, or -1 if none has been.
+     */
+    private int selectedMatch = -1;
+
+
+    /**
+     * The line and column of the end of the selection that does not move, and
+     * of the end that does.
+     */
+    private int anchorLine = 0, anchorColumn = 0, caretLine = 0, caretColumn = 0;
+
+
+    /**
+     * Creates a LargeFileArea for a file.
+     *
+     * @param file  The file to show.
+     * @throws IOException  If the file could not be mapped.
+     */
+    public LargeFileArea(File file) throws IOException {
+        Charset charset = CharsetDetector.detect(file);
+        if("\n".getBytes(charset).length != 1) {
+            throw new IOException(file.getName() + " is too large to be opened in " + charset.name() + ".");
+        }
+
+        mappedDocument = new MappedDocument(file, charset);
+        setCurrentFile(file);
+        setCharset(charset);
+        setCompression(mappedDocument.getCompression());
+        setEditable(false);
+        setWrapText(false);
+        getStyleClass().add("large-file-area");
+    }
+
+
+    /**
+     * Returns whether or not a file is large enough to be opened in a
+     * LargeFileArea. The size of a compressed file is guessed, since it is not
+     * known until the file has been decompressed.
+     *
+     * @param file  The file.
+     * @return  true if the file is at least THRESHOLD bytes; false if not.
+     */
+    public static boolean isLarge(File file) {
+        try {
+            return Compression.detect(file).guessSize(file) >= THRESHOLD;
+        } catch(IOException e) {
+            return file.length() >= THRESHOLD;
+        }
+    }
+
+
+    /**
+     * Returns the memory mapped file shown in this area.
+     *
+     * @return  The mapped document.
+     */
+    public MappedDocument getMappedDocument() {
+        return mappedDocument;
+    }
+
+
+    /**
+     * Large files are always shown as plain text, since their lines are not in
+     * the document the highlighter reads.
+     *
+     * @param lexer Ignored.
+     */
+    @Override
+    public void setLexer(Lexer lexer) {
+    }
+
+
+    /**
+     * Returns the text of a line, decoded from the mapped file.
+     *
+     * @param line  The index of the line.
+     * @return  The text of the line.
+     */
+    @Override
+    public String getLine(int line) {
+        return mappedDocument.getLine(line);
+    }
+
+
+    /**
+     * Returns the length of a line, decoded from the mapped file.
+     *
+     * @param line  The index of the line.
+     * @return  The length of the line.
+     */
+    @Override
+    public int getLineLength(int line) {
+        return getCachedLine(line).length();
+    }
+
+
+    /**
+     * Returns part of a line, decoded from the mapped file. The skin asks for a
+     * long line a segment at a time, so the last line decoded is kept.
+     *
+     * @param line  The index of the line.
+     * @param start The column of the first character to return.
+     * @param end   The column after the last character to return.
+     * @return  The text between the columns.
+     */
+    @Override
+    public String getLinePart(int line, int start, int end) {
+        return getCachedLine(line).substring(start, end);
+    }
+
+
+    /**
+     * Returns the search matches in the file.
+     *
+     * @return  The matches of the last search.
+     */
+    public LineMatches getLineMatches() {
+        return lineMatches;
+    }
+
+
+    /**
+     * Adds search matches after the ones already found.
+     *
+     * @param lines     The lines of the matches.
+     * @param starts    The columns the matches start at.
+     * @param ends      The columns the matches end at.
+     * @param count     The amount of matches to add.
+     */
+    public void addLineMatches(int[] lines, int[] starts, int[] ends, int count) {
+        lineMatches.addAll(lines, starts, ends, count);
+        setMatchCount(lineMatches.size());
+    }
+
+
+    /**
+     * Removes every search match.
+     */
+    @Override
+    public void clearMatches() {
+        lineMatches.clear();
+        selectedMatch = -1;
+        super.clearMatches();
+    }
+
+
+    /**
+     * Returns the index of the match after the one selected last, or of the
+     * one before it. Matches are selected by their index rather than as text,
+     * so before a match has been selected the matches are looked for from the
+     * top of the viewport.
+     *
+     * @param forward   Whether to look after the selected match or before it.
+     * @return  The index of the match, which is -1 or getMatchCount() if there
+     *          is no match in that direction.
+     */
+    @Override
+    public int getNextMatch(boolean forward) {
+        if(selectedMatch >= 0) {
+            return forward ? selectedMatch + 1 : selectedMatch - 1;
+        }
+        int index = lineMatches.indexOf((int)getScrollPosition(), 0);
+        return forward ? index : index - 1;
+    }
+
+
+    /**
+     * Selects a search match, which is drawn as selected, and scrolls to its
+     * line.
+     *
+     * @param index The index of the match.
+     */
+    @Override
+    public void selectMatch(int index) {
+        selectedMatch = index;
+        goToLine(lineMatches.getLine(index));
+    }
+
+
+    /**
+     * Returns the match that was selected last.
+     *
+     * @return  The index of the match, or -1 if none has been selected.
+     */
+    public int getSelectedMatch() {
+        return selectedMatch;
+    }
+
+
+    /**
+     * Selects the text between two positions.
+     *
+     * @param anchorLine    The line of the end of the selection that does not
+     *                      move.
+     * @param anchorColumn  The column of that end.
+     * @param caretLine     The line of the end that moves.
+     * @param caretColumn   The column of that end.
+     */
+    public void selectLines(int anchorLine, int anchorColumn, int caretLine, int caretColumn) {
+        this.anchorLine = anchorLine;
+        this.anchorColumn = anchorColumn;
+        this.caretLine = caretLine;
+        this.caretColumn = caretColumn;
+        requestLayout();
+    }
+
+
+    /**
+     * Moves the end of the selection that moves to a position, and the other
+     * end along with it unless the selection is being extended.
+     *
+     * @param line      The line of the position.
+     * @param column    The column of the position.
+     * @param extend    Whether or not to extend the selection.
+     */
+    public void selectLinePosition(int line, int column, boolean extend) {
+        if(extend) {
+            selectLines(anchorLine, anchorColumn, line, column);
+        } else {
+            selectLines(line, column, line, column);
+        }
+    }
+
+
+    /**
+     * Returns the selection as the positions it starts and ends at.
+     *
+     * @return  The line and column of the start of the selection followed by
+     *          the line and column of its end.
+     */
+    public int[] getLineSelection() {
+        if(anchorLine < caretLine || (anchorLine == caretLine && anchorColumn <= caretColumn)) {
+            return new int[] { anchorLine, anchorColumn, caretLine, caretColumn };
+        }
+        return new int[] { caretLine, caretColumn, anchorLine, anchorColumn };
+    }
+
+
+    /**
+     * Selects the lines that have been found so far.
+     */
+    @Override
+    public void selectAll() {
+        int last = Math.max(0, getLineCount() - 1);
+        selectLines(0, 0, last, getLineLength(last));
+    }
+
+
+    /**
+     * Clears the selection, leaving the end that moves where it is.
+     */
+    @Override
+    public void deselect() {
+        selectLines(caretLine, caretColumn, caretLine, caretColumn);
+    }
+
+
+    /**
+     * Returns the selected text, read from the file a batch of lines at a
+     * time. Lines are cut off at MappedDocument.MAX_LINE_BYTES, as they are
+     * shown.
+     *
+     * @return  The selected text, or "" if it is longer than MAX_COPY_LENGTH.
+     */
+    @Override
+    public String getSelectedText() {
+        int[] selection = getLineSelection();
+        StringBuilder text = new StringBuilder();
+
+        for(int first = selection[0]; first <= selection[2]; first += LINES_PER_READ) {
+            List<String> lines = mappedDocument.getLines(first, Math.min(LINES_PER_READ, selection[2] - first + 1));
+            if(lines.isEmpty()) {
+                break;
+            }
+
+            for(int i = 0; i < lines.size(); i++) {
+                int line = first + i;
+                String lineText = lines.get(i);
+                int start = line == selection[0] ? Math.min(selection[1], lineText.length()) : 0;
+                int end = line == selection[2] ? Math.min(selection[3], lineText.length()) : lineText.length();
+                if(line > selection[0]) {
+                    text.append('\n');
+                }
+                text.append(lineText, start, Math.max(start, end));
+
+                if(text.length() > MAX_COPY_LENGTH) {
+                    return "";
+                }
+            }
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * Copies the selected text to the system clipboard, unless it is longer
+     * than MAX_COPY_LENGTH.
+     */
+    @Override
+    public void copy() {
+        String text = getSelectedText();
+        if(!text.isEmpty()) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(text);
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+
+    /**
+     * Large files are never edited, so they have no long lines to warn about.
+     * Their lines are cut off at MappedDocument.MAX_LINE_BYTES anyway.
+     *
+     * @return  -1.
+     */
+    @Override
+    public int findLongLine() {
+        return -1;
+    }
+
+
+    /**
+     * Returns the text of a line, decoding it only if it is not the line that
+     * was decoded last.
+     *
+     * @param line  The index of the line.
+     * @return  The text of the line.
+     */
+    private String getCachedLine(int line) {
+        if(line != cachedLine) {
+            cachedText = mappedDocument.getLine(line);
+            cachedLine = line;
+        }
+        return cachedText;
+    }
+
+
+    /**
+     * Starts finding the lines of the file on a background thread. The lines
+     * that have already been found can be scrolled through while the rest of
+     * the file is indexed.
+     *
+     * @return  The task that indexes the file.
+     */
+    public Task<Void> startIndexing() {
+        indexer = new Task<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                try {
+                    while(!isCancelled() && mappedDocument.indexNextBlock()) {
+                        updateProgress(mappedDocument.getProgress(), 1);
+                    }
+                    updateProgress(1, 1);
+                    return null;
+                } finally {
+                    indexing = false;
+                }
+            }
+        };
+
+        // Progress updates are delivered on the JavaFX thread.
+        indexer.progressProperty().addListener((observable, oldValue, newValue) -> {
+            // The last line may have been cut short by the end of a block.
+            cachedLine = -1;
+            setLineCount(mappedDocument.getLineCount());
+        });
+
+        indexing = true;
+        Thread thread = new Thread(indexer, "Line Indexer");
+        thread.setDaemon(true);
+        thread.start();
+
+        return indexer;
+    }
+
+
+    /**
+     * Returns the task that finds the lines of the file.
+     *
+     * @return  The task, or null if indexing has not been started.
+     */
+    public Task<Void> getIndexer() {
+        return indexer;
+    }
+
+
+    /**
+     * Returns whether or not the lines of the file are still being found.
+     *
+     * @return  true if the indexer is running; false if it has finished or
+     *          stopped.
+     */
+    public boolean isIndexing() {
+        return indexing;
+    }
+
+
+    /**
+     * Stops indexing the file and releases it.
+     */
+    public void close() {
+        if(indexer != null) {
+            indexer.cancel();
+        }
+
+        try {
+            mappedDocument.close();
+        } catch(IOException e) {
+            // The file is only read from, so there is nothing to lose.
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package texteditor;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import javafx.application.Platform;
+
+
+/**
+ * Searches the file of a LargeFileArea on a background thread. The lines are
+ * read from the MappedDocument a batch at a time, so only the lines being
+ * searched are decoded and the heap used does not depend on the size of the
+ * file. Matches are handed to the LargeFileArea by line in batches as they are
+ * found, the same way a SearchTask hands them to an EditingArea.
+ *
+ * A file that is still being indexed is searched as far as its lines have been
+ * found, and the search waits for the indexer to find more. A match can not
+ * span lines, and lines are searched as they are shown, cut off at
+ * MappedDocument.MAX_LINE_BYTES.
+ */
+public class LargeFileSearchTask extends SearchTask {
+
+
+    /**
+     * The amount of lines read from the file at a time.
+     */
+    private static final int LINES_PER_READ = 4096;
+
+
+    /**
+     * The amount of matches handed to the LargeFileArea at a time.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+
+    /**
+     * How many milliseconds to wait for the indexer when the search has caught
+     * up with it.
+     */
+    private static final long INDEX_WAIT = 50;
+
+
+    /**
+     * The LargeFileArea being searched.
+     */
+    private final LargeFileArea largeFileArea;
+
+
+    /**
+     * The file being searched.
+     */
+    private final MappedDocument document;
+
+
+    /**
+     * The matches found since the last batch was handed off.
+     */
+    private final int[] batchLines = new int[BATCH_SIZE], batchStarts = new int[BATCH_SIZE],
+            batchEnds = new int[BATCH_SIZE];
+
+
+    /**
+     * The amount of matches in the current batch.
+     */
+    private int batchCount = 0;
+
+
+    /**
+     * The amount of matches found.
+     */
+    private int found = 0;
+
+
+    /**
+     * The batches waiting to be added to the LargeFileArea. Each batch holds
+     * an array of lines, an array of starts and an array of ends.
+     */
+    private final Queue<int[][]> pendingBatches = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Whether or not the batches are already waiting to be added on the JavaFX
+     * thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * Creates a LargeFileSearchTask.
+     *
+     * @param largeFileArea The LargeFileArea to search.
+     * @param query         What to search for.
+     */
+    public LargeFileSearchTask(LargeFileArea largeFileArea, SearchQuery query) {
+        super(largeFileArea, query);
+        this.largeFileArea = largeFileArea;
+        this.document = largeFileArea.getMappedDocument();
+    }
+
+
+    /*
+     * Searches the lines of the file and returns the amount of matches. Plain
+     * text is matched with the literal pattern of the query, since each line
+     * is short enough that it is not worth copying into blocks.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        Matcher matcher = query.getPattern().matcher("");
+        int line = 0;
+
+        while(!isCancelled()) {
+            boolean indexing = largeFileArea.isIndexing();
+            int lineCount = document.getLineCount();
+
+            // The last line found may still be cut short by the end of the
+            // block the indexer scanned last.
+            int available = indexing ? lineCount - 1 : lineCount;
+            if(line >= available) {
+                if(!indexing) {
+                    break;
+                }
+                flush();
+                Thread.sleep(INDEX_WAIT);
+                continue;
+            }
+
+            List<String> lines = document.getLines(line, Math.min(LINES_PER_READ, available - line));
+            for(String text : lines) {
+                matcher.reset(text);
+                while(matcher.find()) {
+                    if(matcher.end() > matcher.start()) {
+                        found(line, matcher.start(), matcher.end());
+                    }
+                }
+                line++;
+            }
+
+            flush();
+            updateProgress(line, Math.max(1, lineCount));
+        }
+
+        flush();
+        return found;
+    }
+
+
+    /*
+     * Adds the last of the matches to the LargeFileArea.
+     */
+    @Override
+    protected void succeeded() {
+        addPendingBatches();
+    }
+
+
+    /**
+     * Adds a match to the current batch.
+     *
+     * @param line  The line the match is in.
+     * @param start The column of the first character of the match.
+     * @param end   The column after the last character of the match.
+     */
+    private void found(int line, int start, int end) {
+        batchLines[batchCount] = line;
+        batchStarts[batchCount] = start;
+        batchEnds[batchCount] = end;
+        batchCount++;
+        found++;
+
+        if(batchCount == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Hands the matches in the current batch to the JavaFX thread.
+     */
+    private void flush() {
+        updateValue(found);
+        if(batchCount == 0) {
+            return;
+        }
+
+        int[] lines = new int[batchCount];
+        int[] starts = new int[batchCount];
+        int[] ends = new int[batchCount];
+        System.arraycopy(batchLines, 0, lines, 0, batchCount);
+        System.arraycopy(batchStarts, 0, starts, 0, batchCount);
+        System.arraycopy(batchEnds, 0, ends, 0, batchCount);
+        batchCount = 0;
+
+        pendingBatches.add(new int[][] { lines, starts, ends });
+        if(batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingBatches);
+        }
+    }
+
+
+    /**
+     * Adds the batches that are waiting to the LargeFileArea. This runs on the
+     * JavaFX thread.
+     */
+    private void addPendingBatches() {
+        batchScheduled.set(false);
+
+        int[][] batch;
+        while((batch = pendingBatches.poll()) != null) {
+            if(!isCancelled()) {
+                largeFileArea.addLineMatches(batch[0], batch[1], batch[2], batch[0].length);
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package texteditor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Counts how long something took, in buckets that grow with the duration so a
+ * few hundred counters cover everything from a nanosecond to centuries. Every
+ * power of two is split into eight buckets, so a percentile read from the
+ * histogram is never more than an eighth off. Recording a duration only
+ * increments counters and never allocates, so it can be done on the JavaFX
+ * thread for every keystroke and every pulse without the measuring showing up
+ * in what is measured. Durations are recorded from any thread.
+ */
+public class LatencyHistogram {
+
+
+    /**
+     * The amount of bits of a duration that pick the bucket within its power
+     * of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+
+    /**
+     * The amount of buckets in every power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+
+    /**
+     * The amount of buckets, enough for any positive long.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+
+    /**
+     * The amount of durations in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+
+    /**
+     * The amount of durations recorded.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+
+    /**
+     * The sum of the durations recorded, in nanoseconds.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+
+    /**
+     * The longest duration recorded, in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * The amount of work done in the durations recorded, like bytes written or
+     * pages printed.
+     */
+    private final AtomicLong units = new AtomicLong();
+
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        record(nanos, 0);
+    }
+
+
+    /**
+     * Records a duration and the amount of work done in it.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @param work  The amount of work done, like bytes written.
+     */
+    public void record(long nanos, long work) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        units.addAndGet(work);
+
+        long longest = max.get();
+        while(nanos > longest && !max.compareAndSet(longest, nanos)) {
+            longest = max.get();
+        }
+    }
+
+
+    /**
+     * Forgets every duration recorded.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+        units.set(0);
+    }
+
+
+    /**
+     * Returns the amount of durations recorded.
+     *
+     * @return  The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+
+    /**
+     * Returns the duration that a fraction of the durations recorded are no
+     * longer than.
+     *
+     * @param fraction  The fraction, from 0 to 1, like 0.99 for the 99th
+     *                  percentile.
+     * @return  The duration in nanoseconds, or 0 if none were recorded.
+     */
+    public long getPercentile(double fraction) {
+        long recorded = count.get();
+        if(recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(fraction * recorded));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+
+    /**
+     * Takes a copy of what the histogram has recorded so far.
+     *
+     * @return  The snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+
+    /**
+     * Returns the bucket a duration is counted in.
+     *
+     * @param nanos The duration.
+     * @return  The index of the bucket.
+     */
+    private static int bucketOf(long nanos) {
+        if(nanos < SUB_BUCKETS) {
+            return (int)nanos;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /**
+     * Returns the longest duration counted in a bucket.
+     *
+     * @param bucket    The index of the bucket.
+     * @return  The duration in nanoseconds.
+     */
+    private static long upperBoundOf(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1 < 0 ? Long.MAX_VALUE : lowerBound + width - 1;
+    }
+
+
+    /**
+     * What a LatencyHistogram had recorded at one moment. Durations are given
+     * in milliseconds, and throughput in units of work per second.
+     */
+    public static class Snapshot {
+
+
+        /**
+         * The amount of durations recorded.
+         */
+        private final long count;
+
+
+        /**
+         * The mean, median and longest durations, and the 90th, 99th and 99.9th
+         * percentiles, in milliseconds.
+         */
+        private final double mean, median, p90, p99, p999, max;
+
+
+        /**
+         * The amount of work done per second.
+         */
+        private final double throughput;
+
+
+        /**
+         * Creates a Snapshot.
+         *
+         * @param histogram The histogram to take a copy of.
+         */
+        private Snapshot(LatencyHistogram histogram) {
+            count = histogram.count.get();
+            long total = histogram.total.get();
+            mean = count == 0 ? 0 : toMillis(total) / count;
+            median = toMillis(histogram.getPercentile(0.5));
+            p90 = toMillis(histogram.getPercentile(0.9));
+            p99 = toMillis(histogram.getPercentile(0.99));
+            p999 = toMillis(histogram.getPercentile(0.999));
+            max = toMillis(histogram.max.get());
+            throughput = total == 0 ? 0 : histogram.units.get() / (total / (double)TimeUnit.SECONDS.toNanos(1));
+        }
+
+
+        /**
+         * Returns the amount of durations recorded.
+         *
+         * @return  The count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+
+        /**
+         * Returns the mean duration.
+         *
+         * @return  The mean in milliseconds.
+         */
+        public double getMean() {
+            return mean;
+        }
+
+
+        /**
+         * Returns the median duration.
+         *
+         * @return  The median in milliseconds.
+         */
+        public double getMedian() {
+            return median;
+        }
+
+
+        /**
+         * Returns the duration 90% of the durations are no longer than.
+         *
+         * @return  The 90th percentile in milliseconds.
+         */
+        public double getP90() {
+            return p90;
+        }
+
+
+        /**
+         * Returns the duration 99% of the durations are no longer than.
+         *
+         * @return  The 99th percentile in milliseconds.
+         */
+        public double getP99() {
+            return p99;
+        }
+
+
+        /**
+         * Returns the duration 99.9% of the durations are no longer than.
+         *
+         * @return  The 99.9th percentile in milliseconds.
+         */
+        public double getP999() {
+            return p999;
+        }
+
+
+        /**
+         * Returns the longest duration.
+         *
+         * @return  The longest duration in milliseconds.
+         */
+        public double getMax() {
+            return max;
+        }
+
+
+        /**
+         * Returns the amount of work done per second spent, like bytes per
+         * second for saves.
+         *
+         * @return  The throughput, or 0 if no work was recorded.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+
+        /*
+         * Returns the snapshot on one line, the way it is written to the dump
+         * file.
+         */
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms throughput=%.1f/s",
+                    count, mean, median, p90, p99, p999, max, throughput);
+        }
+
+
+        /**
+         * Converts nanoseconds to milliseconds.
+         *
+         * @param nanos The nanoseconds.
+         * @return  The milliseconds.
+         */
+        private static double toMillis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package texteditor;
+
+import java.util.Arrays;
+import javafx.application.Application;
+
+
+/**
+ * The main class of the editor's jar. It is not an Application itself, since
+ * the java launcher starts JavaFX before main is called for one of those, and
+ * the batch mode has to run where there is no display.
+ */
+public final class Launcher {
+
+
+    /**
+     * The launcher only has static methods.
+     */
+    private Launcher() {
+    }
+
+
+    /**
+     * Processes files with the BatchProcessor if the first argument is
+     * "--batch", and starts the editor otherwise.
+     *
+     * @param args  The command line arguments.
+     */
+    public static void main(String[] args) {
+        if(args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchProcessor.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        Application.launch(TextEditor.class, args);
+    }
+}
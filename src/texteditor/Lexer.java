@@ -0,0 +1,64 @@
+package texteditor;
+
+
+/**
+ * Splits the lines of a document into tokens for syntax highlighting. A lexer
+ * reads one line at a time, starting in the state the previous line ended in,
+ * and returns the state the line ends in, like being inside a block comment.
+ * Because of that, a document only has to be read again from an edited line
+ * until a line ends in the same state it ended in before the edit.
+ *
+ * States are small numbers chosen by the lexer, and every line of a document
+ * starts out in INITIAL_STATE. Lexers hold no state of their own, so one lexer
+ * can be used for any number of documents and threads at once.
+ */
+public interface Lexer {
+
+
+    /**
+     * The state the first line of a document starts in.
+     */
+    int INITIAL_STATE = 0;
+
+
+    /**
+     * A sink that ignores every token, used when only the state a line ends
+     * in is wanted. Lexers may skip looking for tokens that do not change the
+     * state when they are given this sink.
+     */
+    TokenSink NONE = (start, end, type) -> {
+    };
+
+
+    /**
+     * Finds the tokens of a line.
+     *
+     * @param text  The text holding the line.
+     * @param start The offset of the first character of the line.
+     * @param end   The offset just past the last character of the line, not
+     *              counting the line break.
+     * @param state The state the line starts in.
+     * @param sink  Is given the tokens of the line, in order and without
+     *              overlapping.
+     * @return  The state the line ends in.
+     */
+    int tokenize(CharSequence text, int start, int end, int state, TokenSink sink);
+
+
+    /**
+     * Is given the tokens a Lexer finds.
+     */
+    @FunctionalInterface
+    interface TokenSink {
+
+
+        /**
+         * Takes a token.
+         *
+         * @param start The offset of the first character of the token.
+         * @param end   The offset just past the last character of the token.
+         * @param type  The type of the token.
+         */
+        void token(int start, int end, TokenType type);
+    }
+}
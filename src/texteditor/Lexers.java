@@ -0,0 +1,174 @@
+package texteditor;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Finds the Lexer for a file by its extension, and holds the pieces of
+ * scanning the lexers share. Lexers for more languages are added with
+ * register.
+ */
+public final class Lexers {
+
+
+    /**
+     * The lexers, by the extensions of the files they are for.
+     */
+    private static final Map<String, Lexer> LEXERS = new ConcurrentHashMap<>();
+
+
+    static {
+        register(new JavaLexer(), "java");
+        register(new JsonLexer(), "json");
+        register(new YamlLexer(), "yaml", "yml");
+        register(new LogLexer(), "log");
+    }
+
+
+    /**
+     * Lexers is not meant to be created.
+     */
+    private Lexers() {
+    }
+
+
+    /**
+     * Uses a lexer for files with any of a set of extensions.
+     *
+     * @param lexer         The lexer.
+     * @param extensions    The extensions, without the dot.
+     */
+    public static void register(Lexer lexer, String... extensions) {
+        for(String extension : extensions) {
+            LEXERS.put(extension.toLowerCase(Locale.ROOT), lexer);
+        }
+    }
+
+
+    /**
+     * Returns the lexer for a file.
+     *
+     * @param file  The file.
+     * @return  The lexer for the file's extension, or null if there is none.
+     */
+    public static Lexer forFile(File file) {
+        if(file == null) {
+            return null;
+        }
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : LEXERS.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+
+    /**
+     * Returns the offset of a string within a range of text.
+     *
+     * @param text  The text.
+     * @param s     The string to find.
+     * @param from  The offset to start looking at.
+     * @param to    The offset to stop looking at.
+     * @return  The offset of the string, or -1 if it is not in the range.
+     */
+    static int indexOf(CharSequence text, String s, int from, int to) {
+        for(int i = from; i <= to - s.length(); i++) {
+            if(startsWith(text, s, i, to)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns whether or not a string is at an offset of a range of text.
+     *
+     * @param text      The text.
+     * @param s         The string.
+     * @param offset    The offset.
+     * @param to        The end of the range.
+     * @return  true if the string is there; false if not.
+     */
+    static boolean startsWith(CharSequence text, String s, int offset, int to) {
+        if(offset + s.length() > to) {
+            return false;
+        }
+        for(int i = 0; i < s.length(); i++) {
+            if(text.charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the end of a quoted string, skipping characters escaped with a
+     * backslash. A string that is not closed ends with the range.
+     *
+     * @param text  The text.
+     * @param start The offset of the opening quote.
+     * @param to    The end of the range.
+     * @return  The offset just past the closing quote.
+     */
+    static int endOfQuoted(CharSequence text, int start, int to) {
+        char quote = text.charAt(start);
+        for(int i = start + 1; i < to; i++) {
+            char c = text.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == quote) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+
+    /**
+     * Returns the end of a number, including a sign in its exponent and any
+     * letters like a hexadecimal digit or a suffix.
+     *
+     * @param text  The text.
+     * @param start The offset of the first digit.
+     * @param to    The end of the range.
+     * @return  The offset just past the number.
+     */
+    static int endOfNumber(CharSequence text, int start, int to) {
+        int i = start;
+        boolean hex = startsWith(text, "0x", i, to) || startsWith(text, "0X", i, to);
+        while(i < to) {
+            char c = text.charAt(i);
+            if(Character.isLetterOrDigit(c) || c == '.' || c == '_') {
+                i++;
+            } else if((c == '+' || c == '-') && !hex && i > start
+                    && (text.charAt(i - 1) == 'e' || text.charAt(i - 1) == 'E')) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+
+    /**
+     * Returns the end of an identifier.
+     *
+     * @param text  The text.
+     * @param start The offset of the first character of the identifier.
+     * @param to    The end of the range.
+     * @return  The offset just past the identifier.
+     */
+    static int endOfIdentifier(CharSequence text, int start, int to) {
+        int i = start;
+        while(i < to && Character.isJavaIdentifierPart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,583 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the lines that differ between two texts with Myers' algorithm, which
+ * takes time proportional to the length of the texts times the amount of
+ * lines that differ, so texts that are mostly the same are compared quickly
+ * however long they are. The lines the texts start and end with in common are
+ * skipped before the algorithm runs.
+ *
+ * The lines are compared as numbers, equal lines having the same number. The
+ * middle of the shortest edit is found by searching from both ends at once,
+ * and the halves before and after it are compared the same way, so only two
+ * arrays as long as the texts are needed however much they differ. Lines that
+ * do not appear in the other text at all are taken as changed up front, which
+ * makes texts that share few lines quick to compare too. When the middle of a
+ * range still has not been found after searching a while, the range is split
+ * where the search got furthest instead, as git does, so a diff may be a
+ * little longer than the shortest one rather than take very long.
+ */
+public final class LineDiff {
+
+
+    /**
+     * The least amount of edits searched for the middle of a range before it
+     * is split where the search got furthest.
+     */
+    private static final int MIN_COST_LIMIT = 256;
+
+
+    /**
+     * The amount of edits searched for the middle of a range once the texts
+     * have taken too long to compare.
+     */
+    private static final int EXHAUSTED_COST_LIMIT = 16;
+
+
+    /**
+     * How many diagonals may be searched for each line of the texts before
+     * they have taken too long to compare.
+     */
+    private static final int WORK_PER_LINE = 64;
+
+
+    /**
+     * The diff only has static methods.
+     */
+    private LineDiff() {
+    }
+
+
+    /**
+     * Splits a text into its lines. Each line keeps its '\n', so joining the
+     * lines gives back the text.
+     *
+     * @param text  The text.
+     * @return  The lines, which are empty for an empty text.
+     */
+    public static List<String> split(CharSequence text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        for(int i = 0; i < length; i++) {
+            if(text.charAt(i) == '\n') {
+                lines.add(text.subSequence(start, i + 1).toString());
+                start = i + 1;
+            }
+        }
+        if(start < length) {
+            lines.add(text.subSequence(start, length).toString());
+        }
+        return lines;
+    }
+
+
+    /**
+     * Finds the ranges of lines that differ between two lists of lines.
+     *
+     * @param a The old lines.
+     * @param b The new lines.
+     * @return  The hunks that turn a into b, in order.
+     */
+    public static List<Hunk> diff(List<String> a, List<String> b) {
+        // Lines are compared as numbers, each distinct line getting its own.
+        Map<String, Integer> ids = new HashMap<>();
+        int[] x = new int[a.size()];
+        int[] y = new int[b.size()];
+        for(int i = 0; i < x.length; i++) {
+            x[i] = ids.computeIfAbsent(a.get(i), line -> ids.size());
+        }
+        for(int i = 0; i < y.length; i++) {
+            y[i] = ids.computeIfAbsent(b.get(i), line -> ids.size());
+        }
+
+        List<Hunk> hunks = new ArrayList<>();
+        diff(x, y, hunks::add, () -> false);
+        return hunks;
+    }
+
+
+    /**
+     * Finds the ranges of lines that differ between two texts whose lines have
+     * been numbered, equal lines having the same number. The hunks are handed
+     * over in order as soon as they are known, so they can be shown while the
+     * rest of the texts are still being compared.
+     *
+     * @param x         The numbers of the old lines, from 0 up.
+     * @param y         The numbers of the new lines.
+     * @param hunks     Is given the hunks that turn x into y, in order.
+     * @param cancelled Says whether to stop comparing.
+     * @return  false if the diff was cancelled; true otherwise.
+     */
+    public static boolean diff(int[] x, int[] y, Consumer<Hunk> hunks, BooleanSupplier cancelled) {
+        return new Differ(x, y, hunks, cancelled).run();
+    }
+
+
+    /**
+     * Compares two numbered texts. It keeps which lines are removed and
+     * inserted, and walks over them as they become known to hand over the
+     * hunks.
+     */
+    private static class Differ {
+
+
+        /**
+         * The numbers of the old and new lines.
+         */
+        private final int[] x, y;
+
+
+        /**
+         * Is given the hunks in order.
+         */
+        private final Consumer<Hunk> hunks;
+
+
+        /**
+         * Says whether to stop comparing.
+         */
+        private final BooleanSupplier cancelled;
+
+
+        /**
+         * Set for the old lines that are removed, and the new lines that are
+         * inserted.
+         */
+        private final boolean[] removed, inserted;
+
+
+        /**
+         * The numbers of the lines that appear in both texts, which are the
+         * only ones the algorithm looks at, and where they are in the texts.
+         */
+        private int[] cx, cy, xIndex, yIndex;
+
+
+        /**
+         * How far along the old text each diagonal has been searched from the
+         * start and from the end.
+         */
+        private int[] forward, backward;
+
+
+        /**
+         * The old and new line up to which the hunks have been handed over.
+         */
+        private int walkedX, walkedY;
+
+
+        /**
+         * How many more diagonals may be searched before only a few edits are
+         * searched for the middle of each range.
+         */
+        private long budget;
+
+
+        /**
+         * The first old and new line of the hunk being walked over, or -1 if
+         * the walk is between hunks.
+         */
+        private int hunkX = -1, hunkY = -1;
+
+
+        /**
+         * Creates a Differ.
+         *
+         * @param x         The numbers of the old lines.
+         * @param y         The numbers of the new lines.
+         * @param hunks     Is given the hunks in order.
+         * @param cancelled Says whether to stop comparing.
+         */
+        Differ(int[] x, int[] y, Consumer<Hunk> hunks, BooleanSupplier cancelled) {
+            this.x = x;
+            this.y = y;
+            this.hunks = hunks;
+            this.cancelled = cancelled;
+            this.removed = new boolean[x.length];
+            this.inserted = new boolean[y.length];
+        }
+
+
+        /**
+         * Compares the texts and hands over every hunk.
+         *
+         * @return  false if the diff was cancelled; true otherwise.
+         */
+        boolean run() {
+            keepCommonLines();
+
+            int size = (cx.length + cy.length + 1) / 2;
+            forward = new int[2 * size + 2];
+            backward = new int[2 * size + 2];
+            budget = WORK_PER_LINE * ((long)cx.length + cy.length) + (1 << 20);
+
+            // Each range is split in two around the middle of its shortest
+            // edit. The ranges are compared from the first to the last, so
+            // the lines before the end of a range are settled once it is done.
+            List<int[]> ranges = new ArrayList<>();
+            ranges.add(new int[] {0, cx.length, 0, cy.length});
+            while(!ranges.isEmpty()) {
+                if(cancelled.getAsBoolean()) {
+                    return false;
+                }
+
+                int[] range = ranges.remove(ranges.size() - 1);
+                int xStart = range[0];
+                int xEnd = range[1];
+                int yStart = range[2];
+                int yEnd = range[3];
+
+                while(xStart < xEnd && yStart < yEnd && cx[xStart] == cy[yStart]) {
+                    xStart++;
+                    yStart++;
+                }
+                while(xStart < xEnd && yStart < yEnd && cx[xEnd - 1] == cy[yEnd - 1]) {
+                    xEnd--;
+                    yEnd--;
+                }
+
+                int[] middle = null;
+                if(xStart < xEnd && yStart < yEnd) {
+                    middle = findMiddle(xStart, xEnd, yStart, yEnd);
+                    if(middle == null && cancelled.getAsBoolean()) {
+                        return false;
+                    }
+                }
+
+                if(middle == null) {
+                    for(int i = xStart; i < xEnd; i++) {
+                        removed[xIndex[i]] = true;
+                    }
+                    for(int i = yStart; i < yEnd; i++) {
+                        inserted[yIndex[i]] = true;
+                    }
+                    walk(xEnd < cx.length ? xIndex[xEnd] : x.length, yEnd < cy.length ? yIndex[yEnd] : y.length);
+                } else {
+                    ranges.add(new int[] {middle[0], xEnd, middle[1], yEnd});
+                    ranges.add(new int[] {xStart, middle[0], yStart, middle[1]});
+                }
+            }
+
+            walk(x.length, y.length);
+            if(hunkX >= 0) {
+                hunks.accept(new Hunk(hunkX, x.length, hunkY, y.length));
+            }
+            return true;
+        }
+
+
+        /**
+         * Marks the lines that do not appear in the other text as changed, and
+         * keeps the rest for the algorithm.
+         */
+        private void keepCommonLines() {
+            int ids = 0;
+            for(int id : x) {
+                ids = Math.max(ids, id + 1);
+            }
+            for(int id : y) {
+                ids = Math.max(ids, id + 1);
+            }
+
+            boolean[] inX = new boolean[ids];
+            boolean[] inY = new boolean[ids];
+            for(int id : x) {
+                inX[id] = true;
+            }
+            for(int id : y) {
+                inY[id] = true;
+            }
+
+            int count = 0;
+            xIndex = new int[x.length];
+            for(int i = 0; i < x.length; i++) {
+                if(inY[x[i]]) {
+                    xIndex[count++] = i;
+                } else {
+                    removed[i] = true;
+                }
+            }
+            cx = new int[count];
+            for(int i = 0; i < count; i++) {
+                cx[i] = x[xIndex[i]];
+            }
+
+            count = 0;
+            yIndex = new int[y.length];
+            for(int i = 0; i < y.length; i++) {
+                if(inX[y[i]]) {
+                    yIndex[count++] = i;
+                } else {
+                    inserted[i] = true;
+                }
+            }
+            cy = new int[count];
+            for(int i = 0; i < count; i++) {
+                cy[i] = y[yIndex[i]];
+            }
+        }
+
+
+        /**
+         * Finds where the shortest edit between two ranges of the kept lines
+         * crosses the middle, by searching from the start and the end at once
+         * until the searches meet. The ranges must differ in their first and
+         * in their last lines.
+         *
+         * @param xStart    The first old line.
+         * @param xEnd      The line after the last old line.
+         * @param yStart    The first new line.
+         * @param yEnd      The line after the last new line.
+         * @return  The old and new line to split the ranges at, or null if the
+         *          ranges have no line in common.
+         */
+        private int[] findMiddle(int xStart, int xEnd, int yStart, int yEnd) {
+            int n = xEnd - xStart;
+            int m = yEnd - yStart;
+            int maxD = (n + m + 1) / 2;
+            int offset = maxD;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int costLimit = budget > 0 ? Math.max(MIN_COST_LIMIT, (int)Math.sqrt(n + m)) : EXHAUSTED_COST_LIMIT;
+
+            // Only the diagonals the search can reach are cleared, so a search
+            // that stops early does not cost as much as the range is long.
+            int reach = Math.min(maxD, costLimit + 2);
+            int low = offset - reach;
+            int high = offset + reach + 1;
+            Arrays.fill(forward, low, high, -1);
+            Arrays.fill(backward, low, high, -1);
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+
+            // The diagonals that have run off the edge are not searched again.
+            int forwardStart = 0, forwardEnd = 0, backwardStart = 0, backwardEnd = 0;
+
+            for(int d = 0; d < maxD; d++) {
+                if(d > costLimit) {
+                    return furthestPoint(xStart, yStart, n, m, d - 1, offset, forwardStart, forwardEnd);
+                }
+                if((d & 63) == 63 && cancelled.getAsBoolean()) {
+                    return null;
+                }
+                budget -= 2 * d + 2;
+
+                for(int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                    int i;
+                    if(k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+                        i = forward[offset + k + 1];
+                    } else {
+                        i = forward[offset + k - 1] + 1;
+                    }
+                    int j = i - k;
+                    while(i < n && j < m && cx[xStart + i] == cy[yStart + j]) {
+                        i++;
+                        j++;
+                    }
+                    forward[offset + k] = i;
+
+                    if(i > n) {
+                        forwardEnd += 2;
+                    } else if(j > m) {
+                        forwardStart += 2;
+                    } else if(odd) {
+                        int other = offset + delta - k;
+                        if(other >= low && other < high && backward[other] != -1 && i >= n - backward[other]) {
+                            return new int[] {xStart + i, yStart + j};
+                        }
+                    }
+                }
+
+                for(int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                    int i;
+                    if(k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])) {
+                        i = backward[offset + k + 1];
+                    } else {
+                        i = backward[offset + k - 1] + 1;
+                    }
+                    int j = i - k;
+                    while(i < n && j < m && cx[xEnd - 1 - i] == cy[yEnd - 1 - j]) {
+                        i++;
+                        j++;
+                    }
+                    backward[offset + k] = i;
+
+                    if(i > n) {
+                        backwardEnd += 2;
+                    } else if(j > m) {
+                        backwardStart += 2;
+                    } else if(!odd) {
+                        int other = offset + delta - k;
+                        if(other >= low && other < high && forward[other] != -1 && forward[other] >= n - i) {
+                            int forwardI = forward[other];
+                            return new int[] {xStart + forwardI, yStart + forwardI - (other - offset)};
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+
+        /**
+         * Returns the point the search from the start got furthest to, for
+         * when the middle is taking too long to find.
+         *
+         * @param xStart        The first old line.
+         * @param yStart        The first new line.
+         * @param n             The amount of old lines.
+         * @param m             The amount of new lines.
+         * @param d             The last amount of edits searched.
+         * @param offset        Where diagonal 0 is in the forward array.
+         * @param forwardStart  How many diagonals at the bottom have run off.
+         * @param forwardEnd    How many diagonals at the top have run off.
+         * @return  The old and new line to split at, or null if the search
+         *          got nowhere.
+         */
+        private int[] furthestPoint(int xStart, int yStart, int n, int m, int d, int offset,
+                int forwardStart, int forwardEnd) {
+            int bestI = -1;
+            int bestJ = -1;
+            for(int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int i = forward[offset + k];
+                int j = i - k;
+                if(i >= 0 && i <= n && j >= 0 && j <= m && i + j > bestI + bestJ) {
+                    bestI = i;
+                    bestJ = j;
+                }
+            }
+
+            if(bestI + bestJ <= 0 || (bestI == n && bestJ == m)) {
+                return null;
+            }
+            return new int[] {xStart + bestI, yStart + bestJ};
+        }
+
+
+        /**
+         * Hands over the hunks that have become known. Every line before the
+         * given lines has been marked as removed, inserted or kept.
+         *
+         * @param xLimit    The old line up to which the lines are settled.
+         * @param yLimit    The new line up to which the lines are settled.
+         */
+        private void walk(int xLimit, int yLimit) {
+            while(walkedX < xLimit || walkedY < yLimit) {
+                if(walkedX < xLimit && walkedY < yLimit && !removed[walkedX] && !inserted[walkedY]) {
+                    if(hunkX >= 0) {
+                        hunks.accept(new Hunk(hunkX, walkedX, hunkY, walkedY));
+                        hunkX = hunkY = -1;
+                    }
+                    walkedX++;
+                    walkedY++;
+                } else if(walkedX < xLimit && removed[walkedX]) {
+                    startHunk();
+                    walkedX++;
+                } else if(walkedY < yLimit && inserted[walkedY]) {
+                    startHunk();
+                    walkedY++;
+                } else {
+                    // The line kept on one side is waiting for its partner.
+                    break;
+                }
+            }
+        }
+
+
+        /**
+         * Starts a hunk at the walk, unless one has been started already.
+         */
+        private void startHunk() {
+            if(hunkX < 0) {
+                hunkX = walkedX;
+                hunkY = walkedY;
+            }
+        }
+    }
+
+
+    /**
+     * A range of old lines that is replaced by a range of new lines. Either
+     * range may be empty.
+     */
+    public static class Hunk {
+
+
+        /**
+         * The first old line replaced, and the line after the last.
+         */
+        private final int aStart, aEnd;
+
+
+        /**
+         * The first new line put in its place, and the line after the last.
+         */
+        private final int bStart, bEnd;
+
+
+        /**
+         * Creates a Hunk.
+         *
+         * @param aStart    The first old line replaced.
+         * @param aEnd      The line after the last old line replaced.
+         * @param bStart    The first new line.
+         * @param bEnd      The line after the last new line.
+         */
+        public Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+
+        /**
+         * Returns the first old line replaced.
+         *
+         * @return  The index of the line.
+         */
+        public int getAStart() {
+            return aStart;
+        }
+
+
+        /**
+         * Returns the line after the last old line replaced.
+         *
+         * @return  The index of the line.
+         */
+        public int getAEnd() {
+            return aEnd;
+        }
+
+
+        /**
+         * Returns the first new line.
+         *
+         * @return  The index of the line.
+         */
+        public int getBStart() {
+            return bStart;
+        }
+
+
+        /**
+         * Returns the line after the last new line.
+         *
+         * @return  The index of the line.
+         */
+        public int getBEnd() {
+            return bEnd;
+        }
+    }
+}
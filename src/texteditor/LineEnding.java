@@ -0,0 +1,82 @@
+package texteditor;
+
+
+/**
+ * The characters that end a line in a file. The text of an EditingArea always
+ * uses "\n", and the line ending of the file is put back when it is saved.
+ */
+public enum LineEnding {
+
+    /**
+     * "\n", used on Linux and macOS.
+     */
+    LF("\n", "LF"),
+
+    /**
+     * "\r\n", used on Windows.
+     */
+    CRLF("\r\n", "CRLF"),
+
+    /**
+     * "\r", used on old versions of Mac OS.
+     */
+    CR("\r", "CR");
+
+
+    /**
+     * The characters that end a line.
+     */
+    private final String separator;
+
+
+    /**
+     * The name shown to the user.
+     */
+    private final String displayName;
+
+
+    /**
+     * Creates a LineEnding.
+     *
+     * @param separator     The characters that end a line.
+     * @param displayName   The name shown to the user.
+     */
+    private LineEnding(String separator, String displayName) {
+        this.separator = separator;
+        this.displayName = displayName;
+    }
+
+
+    /**
+     * Returns the characters that end a line.
+     *
+     * @return  The line separator.
+     */
+    public String getSeparator() {
+        return separator;
+    }
+
+
+    /**
+     * Returns the line ending of the platform, used for new documents.
+     *
+     * @return  The line ending of the platform.
+     */
+    public static LineEnding getDefault() {
+        for(LineEnding lineEnding : values()) {
+            if(lineEnding.separator.equals(System.lineSeparator())) {
+                return lineEnding;
+            }
+        }
+        return LF;
+    }
+
+
+    /*
+     * Returns the name shown to the user.
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,197 @@
+package texteditor;
+
+
+/**
+ * A LineIndex keeps the offset that each line of a PieceTable starts at. The
+ * offsets are kept in an int array with a gap in it, like a gap buffer. Edits
+ * happen at the gap, so an edit only touches the line starts it adds or removes,
+ * and the lines after the gap are moved by a single shared delta instead of
+ * being rewritten one by one.
+ *
+ * This relies on edits being close together, as typing is. Moving the gap
+ * rewrites every line start between the old and the new place of the edit,
+ * so an edit far from the one before it costs time in the amount of lines
+ * between them: a few milliseconds for a million lines. Edits that jump
+ * around a large document, like replacing all matches from the end, should
+ * be made in order of their offsets. EditBenchmark.editFarApart measures the
+ * worst case.
+ */
+public class LineIndex implements DocumentListener {
+
+
+    /**
+     * The amount of characters copied out of the document at a time while
+     * looking for new lines.
+     */
+    private static final int SCAN_BLOCK_SIZE = 8192;
+
+
+    /**
+     * The offsets of the line starts. The entries before gapStart are the real
+     * offsets, and the entries from gapEnd on must have delta added to them.
+     */
+    private int[] starts = new int[64];
+
+
+    /**
+     * The first index of the gap.
+     */
+    private int gapStart = 0;
+
+
+    /**
+     * The index after the last index of the gap.
+     */
+    private int gapEnd = starts.length;
+
+
+    /**
+     * The amount that is added to each entry after the gap.
+     */
+    private int delta = 0;
+
+
+    /**
+     * The buffer used to copy text out of the document while scanning it.
+     */
+    private final char[] scanBuffer = new char[SCAN_BLOCK_SIZE];
+
+
+    /**
+     * Creates a LineIndex for a document and finds the lines that are already
+     * in it. The index must be added as a listener of the document to be kept
+     * up to date.
+     *
+     * @param document  The document to index.
+     */
+    public LineIndex(PieceTable document) {
+        starts[gapStart++] = 0;
+        addLineStarts(document, 0, document.length());
+    }
+
+
+    /**
+     * Returns the amount of lines in the document. A document always has at
+     * least one line, even when it is empty.
+     *
+     * @return  The amount of lines.
+     */
+    public int getLineCount() {
+        return gapStart + starts.length - gapEnd;
+    }
+
+
+    /**
+     * Returns the offset that a line starts at.
+     *
+     * @param line  The index of the line.
+     * @return  The offset of the first character of the line.
+     */
+    public int getLineStart(int line) {
+        if(line < gapStart) {
+            return starts[line];
+        }
+        return starts[gapEnd + line - gapStart] + delta;
+    }
+
+
+    /**
+     * Returns the line that contains an offset.
+     *
+     * @param offset    The offset to find the line of.
+     * @return  The index of the line containing the offset.
+     */
+    public int getLineOfOffset(int offset) {
+        int low = 0;
+        int high = getLineCount() - 1;
+
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(getLineStart(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+
+    /*
+     * Removes the line starts that were inside of the removed text, moves the
+     * lines after the edit, and adds the line starts in the inserted text.
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        int offset = e.getOffset();
+        int removed = e.getRemovedLength();
+
+        // Lines that start after offset and up to the end of the removed text
+        // lost the '\n' in front of them.
+        int first = getLineOfOffset(offset) + 1;
+        int last = getLineOfOffset(offset + removed) + 1;
+
+        moveGap(first);
+        gapEnd += last - first;
+        delta += e.getInsertedLength() - removed;
+
+        addLineStarts(e.getDocument(), offset, e.getInsertedLength());
+    }
+
+
+    /**
+     * Adds a line start after every '\n' in a range of the document. The new
+     * starts are added at the gap, so the gap must already be at the line after
+     * offset.
+     *
+     * @param document  The document to scan.
+     * @param offset    The offset of the range.
+     * @param length    The length of the range.
+     */
+    private void addLineStarts(PieceTable document, int offset, int length) {
+        for(int block = 0; block < length; block += SCAN_BLOCK_SIZE) {
+            int count = Math.min(SCAN_BLOCK_SIZE, length - block);
+            document.getChars(offset + block, count, scanBuffer, 0);
+
+            for(int i = 0; i < count; i++) {
+                if(scanBuffer[i] == '\n') {
+                    if(gapStart == gapEnd) {
+                        growGap();
+                    }
+                    starts[gapStart++] = offset + block + i + 1;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Moves the gap so that it starts at the given line. This takes time in
+     * the amount of lines the gap moves over.
+     *
+     * @param line  The line the gap should start at.
+     */
+    private void moveGap(int line) {
+        while(gapStart > line) {
+            starts[--gapEnd] = starts[--gapStart] - delta;
+        }
+        while(gapStart < line) {
+            starts[gapStart++] = starts[gapEnd++] + delta;
+        }
+    }
+
+
+    /**
+     * Doubles the size of the array, keeping the gap where it is.
+     */
+    private void growGap() {
+        int[] grown = new int[starts.length * 2];
+        int tail = starts.length - gapEnd;
+
+        System.arraycopy(starts, 0, grown, 0, gapStart);
+        System.arraycopy(starts, gapEnd, grown, grown.length - tail, tail);
+
+        gapEnd = grown.length - tail;
+        starts = grown;
+    }
+}
@@ -0,0 +1,140 @@
+package texteditor;
+
+
+/**
+ * A LineMatches holds the search matches of a LargeFileArea, in the order they
+ * appear. A large file can be longer than an int offset can reach, so each
+ * match is kept as the line it is in and the columns it starts and ends at
+ * instead of as a range of the document.
+ */
+public class LineMatches {
+
+
+    /**
+     * The line of each match.
+     */
+    private int[] lines = new int[16];
+
+
+    /**
+     * The column of the first character of each match.
+     */
+    private int[] starts = new int[16];
+
+
+    /**
+     * The column after the last character of each match.
+     */
+    private int[] ends = new int[16];
+
+
+    /**
+     * The amount of matches.
+     */
+    private int size = 0;
+
+
+    /**
+     * Returns the amount of matches.
+     *
+     * @return  The amount of matches.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the line of a match.
+     *
+     * @param index The index of the match.
+     * @return  The index of the line the match is in.
+     */
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+
+    /**
+     * Returns the start of a match.
+     *
+     * @param index The index of the match.
+     * @return  The column of the first character of the match.
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+
+    /**
+     * Returns the end of a match.
+     *
+     * @param index The index of the match.
+     * @return  The column after the last character of the match.
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+
+    /**
+     * Adds matches after the last one. Matches must be added in order and must
+     * not overlap.
+     *
+     * @param newLines  The lines of the matches.
+     * @param newStarts The starts of the matches.
+     * @param newEnds   The ends of the matches.
+     * @param count     The amount of matches to add.
+     */
+    public void addAll(int[] newLines, int[] newStarts, int[] newEnds, int count) {
+        if(size + count > lines.length) {
+            int capacity = Math.max(size + count, lines.length * 2);
+            int[] grownLines = new int[capacity];
+            int[] grownStarts = new int[capacity];
+            int[] grownEnds = new int[capacity];
+            System.arraycopy(lines, 0, grownLines, 0, size);
+            System.arraycopy(starts, 0, grownStarts, 0, size);
+            System.arraycopy(ends, 0, grownEnds, 0, size);
+            lines = grownLines;
+            starts = grownStarts;
+            ends = grownEnds;
+        }
+
+        System.arraycopy(newLines, 0, lines, size, count);
+        System.arraycopy(newStarts, 0, starts, size, count);
+        System.arraycopy(newEnds, 0, ends, size, count);
+        size += count;
+    }
+
+
+    /**
+     * Removes every match.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+
+    /**
+     * Returns the index of the first match that ends after a column of a line,
+     * or that is in a later line.
+     *
+     * @param line      The line to look from.
+     * @param column    The column to look from.
+     * @return  The index of the match, or size() if there is none.
+     */
+    public int indexOf(int line, int column) {
+        int low = 0;
+        int high = size;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(lines[mid] < line || (lines[mid] == line && ends[mid] <= column)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,222 @@
+package texteditor;
+
+import java.util.List;
+
+
+/**
+ * Merges two texts that were both changed from the same original, line by
+ * line. Each text is compared with the original, and the changes made to
+ * either one are put together. Where both changed the same lines in different
+ * ways, both versions are kept between conflict markers, the way version
+ * control tools mark them, for the user to choose between.
+ */
+public final class LineMerge {
+
+
+    /**
+     * The merge only has static methods.
+     */
+    private LineMerge() {
+    }
+
+
+    /**
+     * Merges the changes made to two copies of a text.
+     *
+     * @param base          The text both copies started as.
+     * @param mine          The copy changed in the editor.
+     * @param theirs        The copy changed by someone else.
+     * @param theirsLabel   What to call their copy in the conflict markers.
+     * @return  The merged text and the amount of conflicts in it.
+     */
+    public static Result merge(CharSequence base, CharSequence mine, CharSequence theirs, String theirsLabel) {
+        List<String> baseLines = LineDiff.split(base);
+        List<String> mineLines = LineDiff.split(mine);
+        List<String> theirLines = LineDiff.split(theirs);
+        List<LineDiff.Hunk> mineHunks = LineDiff.diff(baseLines, mineLines);
+        List<LineDiff.Hunk> theirHunks = LineDiff.diff(baseLines, theirLines);
+
+        StringBuilder text = new StringBuilder(Math.max(mine.length(), theirs.length()));
+        int conflicts = 0;
+        int position = 0;
+        int mineDelta = 0;
+        int theirDelta = 0;
+        int i = 0;
+        int j = 0;
+
+        while(i < mineHunks.size() || j < theirHunks.size()) {
+            // Gather the hunks of both sides that touch each other into one
+            // range of the original.
+            int start;
+            if(j >= theirHunks.size() || (i < mineHunks.size()
+                    && mineHunks.get(i).getAStart() <= theirHunks.get(j).getAStart())) {
+                start = mineHunks.get(i).getAStart();
+            } else {
+                start = theirHunks.get(j).getAStart();
+            }
+            int end = start;
+            int firstMine = i;
+            int firstTheirs = j;
+            while(true) {
+                if(i < mineHunks.size() && mineHunks.get(i).getAStart() <= end) {
+                    end = Math.max(end, mineHunks.get(i++).getAEnd());
+                } else if(j < theirHunks.size() && theirHunks.get(j).getAStart() <= end) {
+                    end = Math.max(end, theirHunks.get(j++).getAEnd());
+                } else {
+                    break;
+                }
+            }
+
+            append(text, baseLines, position, start);
+
+            int mineStart = mapStart(mineHunks, firstMine, i, start, mineDelta);
+            int mineEnd = mapEnd(mineHunks, firstMine, i, end, mineDelta);
+            int theirStart = mapStart(theirHunks, firstTheirs, j, start, theirDelta);
+            int theirEnd = mapEnd(theirHunks, firstTheirs, j, end, theirDelta);
+            List<String> mineRange = mineLines.subList(mineStart, mineEnd);
+            List<String> theirRange = theirLines.subList(theirStart, theirEnd);
+
+            if(firstTheirs == j || mineRange.equals(theirRange)) {
+                append(text, mineLines, mineStart, mineEnd);
+            } else if(firstMine == i) {
+                append(text, theirLines, theirStart, theirEnd);
+            } else {
+                conflicts++;
+                text.append("<<<<<<< Yours\n");
+                append(text, mineLines, mineStart, mineEnd);
+                endLine(text);
+                text.append("=======\n");
+                append(text, theirLines, theirStart, theirEnd);
+                endLine(text);
+                text.append(">>>>>>> ").append(theirsLabel).append('\n');
+            }
+
+            position = end;
+            mineDelta = mineEnd - end;
+            theirDelta = theirEnd - end;
+        }
+        append(text, baseLines, position, baseLines.size());
+
+        return new Result(text.toString(), conflicts);
+    }
+
+
+    /**
+     * Returns the line of one side that an original line at the start of a
+     * range of hunks became.
+     *
+     * @param hunks The hunks of the side.
+     * @param first The first hunk in the range.
+     * @param end   The hunk after the last hunk in the range.
+     * @param line  The original line, which is at or before the first hunk.
+     * @param delta The amount of lines the side had gained before the range.
+     * @return  The line of the side.
+     */
+    private static int mapStart(List<LineDiff.Hunk> hunks, int first, int end, int line, int delta) {
+        if(first == end) {
+            return line + delta;
+        }
+        LineDiff.Hunk hunk = hunks.get(first);
+        return hunk.getBStart() - (hunk.getAStart() - line);
+    }
+
+
+    /**
+     * Returns the line of one side that an original line at the end of a range
+     * of hunks became.
+     *
+     * @param hunks The hunks of the side.
+     * @param first The first hunk in the range.
+     * @param end   The hunk after the last hunk in the range.
+     * @param line  The original line, which is at or after the last hunk.
+     * @param delta The amount of lines the side had gained before the range.
+     * @return  The line of the side.
+     */
+    private static int mapEnd(List<LineDiff.Hunk> hunks, int first, int end, int line, int delta) {
+        if(first == end) {
+            return line + delta;
+        }
+        LineDiff.Hunk hunk = hunks.get(end - 1);
+        return hunk.getBEnd() + (line - hunk.getAEnd());
+    }
+
+
+    /**
+     * Appends a range of lines to the text.
+     *
+     * @param text  The text.
+     * @param lines The lines.
+     * @param start The first line to append.
+     * @param end   The line after the last line to append.
+     */
+    private static void append(StringBuilder text, List<String> lines, int start, int end) {
+        for(int line = start; line < end; line++) {
+            text.append(lines.get(line));
+        }
+    }
+
+
+    /**
+     * Ends the last line of the text, if it has not been ended, so a conflict
+     * marker starts a line of its own.
+     *
+     * @param text  The text.
+     */
+    private static void endLine(StringBuilder text) {
+        if(text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+            text.append('\n');
+        }
+    }
+
+
+    /**
+     * The outcome of a merge.
+     */
+    public static class Result {
+
+
+        /**
+         * The merged text.
+         */
+        private final String text;
+
+
+        /**
+         * The amount of places both sides changed differently.
+         */
+        private final int conflicts;
+
+
+        /**
+         * Creates a Result.
+         *
+         * @param text      The merged text.
+         * @param conflicts The amount of conflicts.
+         */
+        private Result(String text, int conflicts) {
+            this.text = text;
+            this.conflicts = conflicts;
+        }
+
+
+        /**
+         * Returns the merged text.
+         *
+         * @return  The text.
+         */
+        public String getText() {
+            return text;
+        }
+
+
+        /**
+         * Returns the amount of places both sides changed differently, which
+         * are marked in the text.
+         *
+         * @return  The amount of conflicts.
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+
+/**
+ * Numbers the lines of texts so that equal lines, in any of the texts, get the
+ * same number, for LineDiff to compare. Each line is hashed where it is in the
+ * text and looked up in a table of the lines seen so far, and lines with the
+ * same hash are compared character by character, so no line is ever copied out
+ * into a String. A line keeps its '\n', so a last line without one is not
+ * equal to the same line with one.
+ */
+class LineNumbering {
+
+
+    /**
+     * The amount of characters read from a text at a time.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+
+    /**
+     * The texts that have been numbered.
+     */
+    private final List<DocumentSnapshot> texts = new ArrayList<>();
+
+
+    /**
+     * The number of each line of each text.
+     */
+    private final List<int[]> numbers = new ArrayList<>();
+
+
+    /**
+     * The offset of each line of each text, with one extra entry holding the
+     * length of the text.
+     */
+    private final List<int[]> lineStarts = new ArrayList<>();
+
+
+    /**
+     * The hash table of the distinct lines. Each slot holds one more than the
+     * number of a line, or 0 if it is empty.
+     */
+    private int[] table = new int[1024];
+
+
+    /**
+     * The hash of each distinct line.
+     */
+    private long[] hashes = new long[256];
+
+
+    /**
+     * The text, offset and length of the first line seen with each number,
+     * which the lines with the same hash are compared to.
+     */
+    private int[] lineTexts = new int[256], offsets = new int[256], lengths = new int[256];
+
+
+    /**
+     * The amount of distinct lines.
+     */
+    private int count = 0;
+
+
+    /**
+     * Buffers for comparing lines with the same hash.
+     */
+    private final char[] first = new char[CHUNK_SIZE], second = new char[CHUNK_SIZE];
+
+
+    /**
+     * Numbers the lines of a text.
+     *
+     * @param text      The text.
+     * @param cancelled Says whether to stop numbering.
+     * @return  false if the numbering was cancelled; true otherwise.
+     */
+    boolean add(DocumentSnapshot text, BooleanSupplier cancelled) {
+        int textIndex = texts.size();
+        int length = text.length();
+        int[] lineNumbers = new int[64];
+        int[] starts = new int[65];
+        int lines = 0;
+
+        char[] chunk = new char[Math.min(CHUNK_SIZE, Math.max(length, 1))];
+        int lineStart = 0;
+        long hash = 0;
+
+        texts.add(text);
+        for(int offset = 0; offset < length; offset += chunk.length) {
+            if(cancelled.getAsBoolean()) {
+                return false;
+            }
+
+            int chunkLength = Math.min(chunk.length, length - offset);
+            text.getChars(offset, chunkLength, chunk, 0);
+            for(int i = 0; i < chunkLength; i++) {
+                char c = chunk[i];
+                hash = hash * 31 + c;
+                if(c == '\n') {
+                    int end = offset + i + 1;
+                    if(lines == lineNumbers.length) {
+                        lineNumbers = Arrays.copyOf(lineNumbers, lines * 2);
+                        starts = Arrays.copyOf(starts, lines * 2 + 1);
+                    }
+                    starts[lines] = lineStart;
+                    lineNumbers[lines++] = number(mix(hash), textIndex, lineStart, end - lineStart);
+                    lineStart = end;
+                    hash = 0;
+                }
+            }
+        }
+
+        if(lineStart < length) {
+            if(lines == lineNumbers.length) {
+                lineNumbers = Arrays.copyOf(lineNumbers, lines + 1);
+                starts = Arrays.copyOf(starts, lines + 2);
+            }
+            starts[lines] = lineStart;
+            lineNumbers[lines++] = number(mix(hash), textIndex, lineStart, length - lineStart);
+        }
+        starts[lines] = length;
+
+        numbers.add(Arrays.copyOf(lineNumbers, lines));
+        lineStarts.add(Arrays.copyOf(starts, lines + 1));
+        return true;
+    }
+
+
+    /**
+     * Returns the numbers of the lines of a text.
+     *
+     * @param text  The index of the text, in the order they were added.
+     * @return  The number of each line.
+     */
+    int[] getNumbers(int text) {
+        return numbers.get(text);
+    }
+
+
+    /**
+     * Returns where the lines of a text start.
+     *
+     * @param text  The index of the text, in the order they were added.
+     * @return  The offset of each line, with one extra entry holding the
+     *          length of the text.
+     */
+    int[] getLineStarts(int text) {
+        return lineStarts.get(text);
+    }
+
+
+    /**
+     * Spreads the bits of a hash, since the hash of short lines only uses its
+     * low bits.
+     *
+     * @param hash  The hash.
+     * @return  The mixed hash.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+
+    /**
+     * Returns the number of a line, giving it a new number if no equal line
+     * has been seen.
+     *
+     * @param hash      The hash of the line.
+     * @param text      The index of the text holding the line.
+     * @param offset    The offset of the line.
+     * @param length    The length of the line, with its '\n'.
+     * @return  The number of the line.
+     */
+    private int number(long hash, int text, int offset, int length) {
+        int mask = table.length - 1;
+        int slot = (int)hash & mask;
+        while(table[slot] != 0) {
+            int id = table[slot] - 1;
+            if(hashes[id] == hash && lengths[id] == length && equal(id, text, offset, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if(count == hashes.length) {
+            int capacity = count * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            lineTexts = Arrays.copyOf(lineTexts, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int id = count++;
+        hashes[id] = hash;
+        lineTexts[id] = text;
+        offsets[id] = offset;
+        lengths[id] = length;
+        table[slot] = id + 1;
+
+        // The table is kept at most half full so the lines are found quickly.
+        if(count * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+
+    /**
+     * Returns whether a line is equal to the first line seen with a number.
+     *
+     * @param id        The number.
+     * @param text      The index of the text holding the line.
+     * @param offset    The offset of the line.
+     * @param length    The length of the line, which is the same as the
+     *                  length of the numbered line.
+     * @return  true if the lines are equal; false if not.
+     */
+    private boolean equal(int id, int text, int offset, int length) {
+        DocumentSnapshot firstText = texts.get(lineTexts[id]);
+        DocumentSnapshot secondText = texts.get(text);
+        for(int done = 0; done < length; done += CHUNK_SIZE) {
+            int part = Math.min(CHUNK_SIZE, length - done);
+            firstText.getChars(offsets[id] + done, part, first, 0);
+            secondText.getChars(offset + done, part, second, 0);
+            if(!Arrays.equals(first, 0, part, second, 0, part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for(int id = 0; id < count; id++) {
+            int slot = (int)hashes[id] & mask;
+            while(table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package texteditor;
+
+import java.util.Arrays;
+
+
+/**
+ * The segments a long line is laid out in. Laying out a line takes as long as
+ * the line is long, so a line of several megabytes, like minified JSON or a
+ * dump written on one line, would be measured as a whole on every keystroke.
+ * The skin lays a long line out one segment at a time instead, each in a Text
+ * node of its own, so typing only lays out the segment that was typed in.
+ *
+ * The positions the segments start at are kept while the line is edited. An
+ * edit moves the breaks after it by the amount of characters it added, and
+ * only a segment that grows past twice SEGMENT_LENGTH is broken up again, so
+ * the rest of the segments keep their text. Breaks are put after a space or a
+ * punctuation mark when there is one close by, since each segment starts a new
+ * row.
+ *
+ * The height of each segment at the current wrapping width is kept as well,
+ * so the height of the line is known without laying all of it out. Segments
+ * that have not been laid out yet are guessed from their length.
+ */
+public class LineSegments {
+
+
+    /**
+     * The amount of characters in a segment, give or take where a break is
+     * found.
+     */
+    public static final int SEGMENT_LENGTH = 4096;
+
+
+    /**
+     * How far back from the end of a segment a space or punctuation mark is
+     * looked for to break the segment after.
+     */
+    private static final int BREAK_SEARCH = 256;
+
+
+    /**
+     * The line the segments are for.
+     */
+    private int line;
+
+
+    /**
+     * The length of the line.
+     */
+    private int length;
+
+
+    /**
+     * The column each segment starts at. The first segment starts at 0.
+     */
+    private int[] breaks = new int[16];
+
+
+    /**
+     * The height of each segment, or -1 if the segment has not been measured
+     * at the current wrapping width.
+     */
+    private double[] heights = new double[16];
+
+
+    /**
+     * The amount of segments.
+     */
+    private int count = 0;
+
+
+    /**
+     * The height of the whole line, or -1 if it has to be added up again.
+     */
+    private double height = -1;
+
+
+    /**
+     * The width the segments are wrapped at, or 0 if they are not wrapped.
+     */
+    private double wrappingWidth = 0;
+
+
+    /**
+     * The height of a row and the width of an average character, which the
+     * heights of the segments that have not been measured are guessed from.
+     */
+    private double rowHeight = 1, charWidth = 1;
+
+
+    /**
+     * Breaks a line into segments.
+     *
+     * @param area  The area that holds the line.
+     * @param line  The index of the line.
+     */
+    public LineSegments(EditingArea area, int line) {
+        this.line = line;
+        this.length = area.getLineLength(line);
+        count = 1;
+        breaks[0] = 0;
+        heights[0] = -1;
+        split(area, 0);
+    }
+
+
+    /**
+     * Returns the line the segments are for.
+     *
+     * @return  The index of the line.
+     */
+    public int getLine() {
+        return line;
+    }
+
+
+    /**
+     * Returns the amount of segments.
+     *
+     * @return  The amount of segments.
+     */
+    public int getSegmentCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the column a segment starts at.
+     *
+     * @param segment   The index of the segment.
+     * @return  The column of the first character of the segment.
+     */
+    public int getSegmentStart(int segment) {
+        return breaks[segment];
+    }
+
+
+    /**
+     * Returns the column a segment ends at.
+     *
+     * @param segment   The index of the segment.
+     * @return  The column after the last character of the segment.
+     */
+    public int getSegmentEnd(int segment) {
+        return segment + 1 < count ? breaks[segment + 1] : length;
+    }
+
+
+    /**
+     * Returns the segment that holds a column. A column at a break belongs to
+     * the segment that starts there, except for the end of the line.
+     *
+     * @param column    The column.
+     * @return  The index of the segment.
+     */
+    public int getSegmentOf(int column) {
+        int index = Arrays.binarySearch(breaks, 0, count, column);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+
+    /**
+     * Sets the width the segments are wrapped at and the sizes their heights
+     * are guessed from. The measured heights are forgotten if the width
+     * changes.
+     *
+     * @param wrappingWidth The width the segments are wrapped at, or 0 if
+     *                      they are not wrapped.
+     * @param rowHeight     The height of a row of text.
+     * @param charWidth     The width of an average character.
+     */
+    public void setMetrics(double wrappingWidth, double rowHeight, double charWidth) {
+        if(wrappingWidth != this.wrappingWidth || rowHeight != this.rowHeight || charWidth != this.charWidth) {
+            this.wrappingWidth = wrappingWidth;
+            this.rowHeight = rowHeight;
+            this.charWidth = charWidth;
+            Arrays.fill(heights, 0, count, -1);
+            height = -1;
+        }
+    }
+
+
+    /**
+     * Returns the height of a segment, which is guessed from its length if it
+     * has not been measured.
+     *
+     * @param segment   The index of the segment.
+     * @return  The height of the segment.
+     */
+    public double getSegmentHeight(int segment) {
+        if(heights[segment] >= 0) {
+            return heights[segment];
+        } else if(wrappingWidth <= 0) {
+            return rowHeight;
+        }
+
+        double width = (getSegmentEnd(segment) - breaks[segment]) * charWidth;
+        return rowHeight * Math.max(1, Math.ceil(width / wrappingWidth));
+    }
+
+
+    /**
+     * Sets the measured height of a segment.
+     *
+     * @param segment   The index of the segment.
+     * @param value     The height of the segment.
+     */
+    public void setSegmentHeight(int segment, double value) {
+        if(heights[segment] != value) {
+            heights[segment] = value;
+            height = -1;
+        }
+    }
+
+
+    /**
+     * Returns how far below the top of the line a segment starts.
+     *
+     * @param segment   The index of the segment.
+     * @return  The top of the segment.
+     */
+    public double getSegmentTop(int segment) {
+        double top = 0;
+        for(int i = 0; i < segment; i++) {
+            top += getSegmentHeight(i);
+        }
+        return top;
+    }
+
+
+    /**
+     * Returns the segment at a distance below the top of the line. Distances
+     * past the bottom of the line are in the last segment.
+     *
+     * @param y The distance below the top of the line.
+     * @return  The index of the segment.
+     */
+    public int getSegmentAt(double y) {
+        double top = 0;
+        for(int i = 0; i < count - 1; i++) {
+            top += getSegmentHeight(i);
+            if(y < top) {
+                return i;
+            }
+        }
+        return count - 1;
+    }
+
+
+    /**
+     * Returns the height of the whole line.
+     *
+     * @return  The height of the line.
+     */
+    public double getHeight() {
+        if(height < 0) {
+            height = getSegmentTop(count);
+        }
+        return height;
+    }
+
+
+    /**
+     * Moves the segments along with an edit of the document. An edit inside
+     * of the line moves the breaks after it, and an edit before the line
+     * moves the line.
+     *
+     * @param area          The area that holds the line.
+     * @param startLine     The line the edit starts in.
+     * @param oldEndLine    The line the edit ended in before it was made.
+     * @param lineDelta     The amount of lines the edit added.
+     * @param e             The edit.
+     * @return  false if the edit added or removed a line break in the line,
+     *          in which case the segments have to be made again; true if not.
+     */
+    public boolean update(EditingArea area, int startLine, int oldEndLine, int lineDelta, DocumentEvent e) {
+        if(line < startLine) {
+            return true;
+        } else if(line > oldEndLine) {
+            line += lineDelta;
+            return true;
+        } else if(startLine != oldEndLine || lineDelta != 0) {
+            return false;
+        }
+
+        int from = e.getOffset() - area.getLineStart(line);
+        int to = from + e.getRemovedLength();
+        int delta = e.getInsertedLength() - e.getRemovedLength();
+        length += delta;
+
+        // Breaks inside of the removed text end up where it was.
+        for(int i = 1; i < count; i++) {
+            if(breaks[i] > to) {
+                breaks[i] += delta;
+            } else if(breaks[i] > from) {
+                breaks[i] = from;
+            }
+        }
+
+        // Segments that lost all of their text are dropped, and the ones that
+        // were touched have to be measured again.
+        int kept = 0;
+        int end = from + e.getInsertedLength();
+        for(int i = 0; i < count; i++) {
+            int segmentEnd = getSegmentEnd(i);
+            if(segmentEnd == breaks[i] && (kept > 0 || i < count - 1)) {
+                continue;
+            }
+            breaks[kept] = breaks[i];
+            heights[kept] = breaks[i] <= end && segmentEnd >= from ? -1 : heights[i];
+            kept++;
+        }
+        count = kept;
+        height = -1;
+
+        int segment = getSegmentOf(from);
+        if(getSegmentEnd(segment) - breaks[segment] > SEGMENT_LENGTH * 2) {
+            split(area, segment);
+        } else if(getSegmentEnd(segment) - breaks[segment] < SEGMENT_LENGTH / 4 && count > 1) {
+            merge(segment < count - 1 ? segment : segment - 1);
+        }
+        return true;
+    }
+
+
+    /**
+     * Breaks a segment up into segments of about SEGMENT_LENGTH characters.
+     *
+     * @param area      The area that holds the line.
+     * @param segment   The index of the segment.
+     */
+    private void split(EditingArea area, int segment) {
+        int end = getSegmentEnd(segment);
+        int position = breaks[segment];
+        int added = 0;
+        int[] found = new int[(end - position) / (SEGMENT_LENGTH - BREAK_SEARCH) + 1];
+
+        while(end - position > SEGMENT_LENGTH) {
+            position = findBreak(area, position + SEGMENT_LENGTH);
+            found[added++] = position;
+        }
+        if(added == 0) {
+            return;
+        }
+
+        ensureCapacity(count + added);
+        System.arraycopy(breaks, segment + 1, breaks, segment + 1 + added, count - segment - 1);
+        System.arraycopy(heights, segment + 1, heights, segment + 1 + added, count - segment - 1);
+        System.arraycopy(found, 0, breaks, segment + 1, added);
+        Arrays.fill(heights, segment, segment + 1 + added, -1);
+        count += added;
+        height = -1;
+    }
+
+
+    /**
+     * Joins a segment with the one after it, if the two together are not too
+     * long.
+     *
+     * @param segment   The index of the first of the two segments.
+     */
+    private void merge(int segment) {
+        if(getSegmentEnd(segment + 1) - breaks[segment] > SEGMENT_LENGTH * 2) {
+            return;
+        }
+
+        System.arraycopy(breaks, segment + 2, breaks, segment + 1, count - segment - 2);
+        System.arraycopy(heights, segment + 2, heights, segment + 1, count - segment - 2);
+        heights[segment] = -1;
+        count--;
+        height = -1;
+    }
+
+
+    /**
+     * Finds where to break the line near a column, which is just after the
+     * last space or punctuation mark before it if there is one close enough.
+     * A surrogate pair is never split, since neither half of it can be drawn
+     * on its own.
+     *
+     * @param area      The area that holds the line.
+     * @param column    The column to break the line at if there is no better
+     *                  place.
+     * @return  The column to break the line at.
+     */
+    private int findBreak(EditingArea area, int column) {
+        int from = column - BREAK_SEARCH;
+        String text = area.getLinePart(line, from, column);
+        for(int i = text.length() - 1; i > 0; i--) {
+            char c = text.charAt(i);
+            if(Character.isWhitespace(c) || c == ',' || c == ';' || c == '>' || c == '}' || c == ']') {
+                return from + i + 1;
+            }
+        }
+        return Character.isHighSurrogate(text.charAt(text.length() - 1)) ? column - 1 : column;
+    }
+
+
+    /**
+     * Grows the arrays to hold at least an amount of segments.
+     *
+     * @param capacity  The amount of segments.
+     */
+    private void ensureCapacity(int capacity) {
+        if(capacity > breaks.length) {
+            int grown = Math.max(capacity, breaks.length * 2);
+            breaks = Arrays.copyOf(breaks, grown);
+            heights = Arrays.copyOf(heights, grown);
+        }
+    }
+}
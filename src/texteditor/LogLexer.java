@@ -0,0 +1,72 @@
+package texteditor;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A Lexer for log files. Every line of a log stands alone, so every line starts
+ * in INITIAL_STATE and lines are only read when their tokens are wanted.
+ */
+public class LogLexer implements Lexer {
+
+
+    /**
+     * A date and time at the start of a line, optionally in brackets.
+     */
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "\\[?(\\d{2,4}[-/.]\\d{1,2}[-/.]\\d{1,4}([T ]\\d{1,2}:\\d{2}(:\\d{2})?([.,]\\d+)?)?"
+            + "|\\d{1,2}:\\d{2}:\\d{2}([.,]\\d+)?)(Z|[+-]\\d{2}:?\\d{2})?\\]?");
+
+
+    /**
+     * The other tokens of a line. Each kind of token is a named group.
+     */
+    private static final Pattern TOKENS = Pattern.compile(
+            "(?<string>\"(?:[^\"\\\\]|\\\\.)*\"?)"
+            + "|(?<error>\\b(?:ERROR|FATAL|SEVERE|CRITICAL|Caused by:)(?!\\w))"
+            + "|(?<warning>\\b(?:WARN|WARNING)\\b)"
+            + "|(?<info>\\b(?:INFO|NOTICE)\\b)"
+            + "|(?<debug>\\b(?:DEBUG|TRACE|FINE|FINER|FINEST)\\b|^\\s+at\\s.*|^\\s*\\.\\.\\. \\d+ more)"
+            + "|(?<exception>\\b[\\w.$]*(?:Exception|Error|Throwable)\\b)"
+            + "|(?<number>\\b\\d+(?:\\.\\d+)?\\b)", Pattern.MULTILINE);
+
+
+    /*
+     * Finds the timestamp, levels, exceptions, stack frames, strings and
+     * numbers of a line.
+     */
+    @Override
+    public int tokenize(CharSequence text, int start, int end, int state, TokenSink sink) {
+        if(sink == NONE) {
+            return INITIAL_STATE;
+        }
+
+        Matcher matcher = TIMESTAMP.matcher(text).region(start, end);
+        int i = start;
+        if(matcher.lookingAt()) {
+            sink.token(start, matcher.end(), TokenType.TIMESTAMP);
+            i = matcher.end();
+        }
+
+        // The bounds are transparent, so a stack frame is only matched at the
+        // start of the line even when the timestamp has been skipped.
+        matcher.usePattern(TOKENS).region(i, end).useTransparentBounds(true).useAnchoringBounds(false);
+        while(matcher.find()) {
+            if(matcher.group("string") != null) {
+                sink.token(matcher.start(), matcher.end(), TokenType.STRING);
+            } else if(matcher.group("error") != null || matcher.group("exception") != null) {
+                sink.token(matcher.start(), matcher.end(), TokenType.ERROR);
+            } else if(matcher.group("warning") != null) {
+                sink.token(matcher.start(), matcher.end(), TokenType.WARNING);
+            } else if(matcher.group("info") != null) {
+                sink.token(matcher.start(), matcher.end(), TokenType.INFO);
+            } else if(matcher.group("debug") != null) {
+                sink.token(matcher.start(), matcher.end(), TokenType.COMMENT);
+            } else {
+                sink.token(matcher.start(), matcher.end(), TokenType.NUMBER);
+            }
+        }
+        return INITIAL_STATE;
+    }
+}
@@ -0,0 +1,584 @@
+package texteditor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * A MappedDocument gives read-only, line based access to a file that is too
+ * large to load into memory. The file is memory mapped, so the operating system
+ * pages it in and out as needed, and text is only decoded for the lines that are
+ * asked for.
+ *
+ * To find lines without keeping an offset for each one, only the byte offset of
+ * every LINES_PER_CHECKPOINT-th line is stored. A line is found by starting at
+ * the checkpoint before it and scanning forward.
+ *
+ * A compressed file can not be mapped, so it is decompressed as it is indexed
+ * instead, without writing anything to the disk. The text is kept in memory in
+ * blocks of BLOCK_SIZE bytes that are each compressed again on their own, so
+ * any block can be decompressed without the ones before it, and the blocks
+ * used last are kept decompressed.
+ */
+public class MappedDocument implements Closeable {
+
+
+    /**
+     * The file is mapped in segments of 2^SEGMENT_SHIFT bytes, since a single
+     * mapping can not be larger than 2 GB.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+
+
+    /**
+     * The size of each mapped segment.
+     */
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+
+    /**
+     * The text of a compressed file is kept in blocks of 2^BLOCK_SHIFT bytes.
+     */
+    private static final int BLOCK_SHIFT = 22;
+
+
+    /**
+     * The size of each block of a compressed file.
+     */
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+
+    /**
+     * The most blocks of a compressed file that are kept decompressed.
+     */
+    private static final int MAX_CACHED_BLOCKS = 8;
+
+
+    /**
+     * The amount of lines between two checkpoints. This must be a power of two.
+     */
+    private static final int LINES_PER_CHECKPOINT = 1024;
+
+
+    /**
+     * The amount of bytes scanned by each call to indexNextBlock.
+     */
+    private static final int INDEX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+
+    /**
+     * Lines longer than this many bytes are cut off when they are decoded.
+     */
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+
+
+    /**
+     * The file that is mapped.
+     */
+    private final File file;
+
+
+    /**
+     * How the file is compressed.
+     */
+    private final Compression compression;
+
+
+    /**
+     * The channel the file was mapped through, or null if it is compressed.
+     */
+    private final FileChannel channel;
+
+
+    /**
+     * The mapped segments of the file, or null if it is compressed.
+     */
+    private final MappedByteBuffer[] segments;
+
+
+    /**
+     * The text of each segment is 2^segmentShift bytes long.
+     */
+    private final int segmentShift;
+
+
+    /**
+     * The compressed file that is being decompressed, or null once all of it
+     * has been, or if the file is not compressed.
+     */
+    private volatile SeekableByteChannel input;
+
+
+    /**
+     * The blocks of a compressed file, each compressed on its own.
+     */
+    private volatile byte[][] blocks = new byte[64][];
+
+
+    /**
+     * The blocks of a compressed file that were used last, decompressed, by
+     * index.
+     */
+    private final Map<Integer, ByteBuffer> cachedBlocks = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true) {
+
+        /*
+         * Lets go of the block used the longest ago once there are too many.
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+
+
+    /**
+     * The size of the compressed file, and how much of it has been
+     * decompressed.
+     */
+    private long compressedSize, compressedRead;
+
+
+    /**
+     * The size of the text in bytes. For a compressed file this grows as the
+     * file is decompressed.
+     */
+    private volatile long size;
+
+
+    /**
+     * The charset the file is decoded with.
+     */
+    private final Charset charset;
+
+
+    /**
+     * The byte offset of every LINES_PER_CHECKPOINT-th line.
+     */
+    private volatile long[] checkpoints = new long[1024];
+
+
+    /**
+     * The amount of lines that have been found so far.
+     */
+    private volatile int lineCount = 1;
+
+
+    /**
+     * The amount of bytes that have been scanned for lines so far.
+     */
+    private volatile long indexedBytes = 0;
+
+
+    /**
+     * Maps a file into memory, or starts decompressing it if it is compressed.
+     *
+     * @param file      The file to map.
+     * @param charset   The charset to decode the file with. It must encode '\n'
+     *                  and '\r' as single bytes, as ASCII does.
+     * @throws IOException  If the file could not be mapped.
+     */
+    public MappedDocument(File file, Charset charset) throws IOException {
+        this.file = file;
+        this.charset = charset;
+        this.compression = Compression.detect(file);
+
+        if(compression != Compression.NONE) {
+            channel = null;
+            segments = null;
+            segmentShift = BLOCK_SHIFT;
+            input = compression.open(file);
+            compressedSize = Math.max(1, input.size());
+            size = 0;
+        } else {
+            channel = new RandomAccessFile(file, "r").getChannel();
+            size = channel.size();
+            segmentShift = SEGMENT_SHIFT;
+
+            segments = new MappedByteBuffer[(int)((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for(int i = 0; i < segments.length; i++) {
+                long position = (long)i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SEGMENT_SIZE, size - position));
+            }
+        }
+
+        checkpoints[0] = 0;
+    }
+
+
+    /**
+     * Returns the file that is mapped.
+     *
+     * @return  The file that is mapped.
+     */
+    public File getFile() {
+        return file;
+    }
+
+
+    /**
+     * Returns how the file is compressed.
+     *
+     * @return  How the file is compressed.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+
+    /**
+     * Returns the size of the text in bytes. For a compressed file, this is
+     * the amount that has been decompressed so far.
+     *
+     * @return  The size of the text in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the amount of bytes that have been scanned for lines.
+     *
+     * @return  The amount of bytes that have been indexed.
+     */
+    public long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+
+    /**
+     * Returns whether or not every line in the file has been found.
+     *
+     * @return  true if the whole file has been indexed; false if not.
+     */
+    public boolean isIndexed() {
+        return input == null && indexedBytes == size;
+    }
+
+
+    /**
+     * Returns how much of the file has been indexed. For a compressed file,
+     * this is how much of it has been decompressed.
+     *
+     * @return  The part of the file that has been indexed, from 0 to 1.
+     */
+    public double getProgress() {
+        if(compression != Compression.NONE) {
+            return input == null ? 1 : (double)compressedRead / compressedSize;
+        }
+        return size == 0 ? 1 : (double)indexedBytes / size;
+    }
+
+
+    /**
+     * Returns the amount of lines that have been found so far. This only grows
+     * while the file is being indexed.
+     *
+     * @return  The amount of lines found.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+
+    /**
+     * Scans the next block of the file for lines. This is meant to be called
+     * over and over on a background thread until it returns false. For a
+     * compressed file, the next block is decompressed first.
+     *
+     * @return  true if there is more of the file left to index; false if not.
+     * @throws IOException  If a compressed file could not be decompressed.
+     */
+    public boolean indexNextBlock() throws IOException {
+        if(input != null && indexedBytes == size) {
+            decompressNextBlock();
+        }
+
+        long position = indexedBytes;
+        long end = Math.min(size, position + INDEX_BLOCK_SIZE);
+
+        while(position < end) {
+            ByteBuffer segment = getSegment((int)(position >>> segmentShift));
+            long segmentStart = position & -(1L << segmentShift);
+            int from = (int)(position - segmentStart);
+            int to = (int)(Math.min(end, segmentStart + segment.limit()) - segmentStart);
+
+            for(int i = from; i < to; i++) {
+                if(segment.get(i) == '\n') {
+                    addLineStart(segmentStart + i + 1);
+                }
+            }
+
+            position = segmentStart + to;
+        }
+
+        indexedBytes = end;
+        return end < size || input != null;
+    }
+
+
+    /**
+     * Decompresses the next block of a compressed file, compresses it again on
+     * its own and keeps it.
+     *
+     * @throws IOException  If the file could not be decompressed.
+     */
+    private void decompressNextBlock() throws IOException {
+        SeekableByteChannel channel = input;
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        boolean endOfInput = false;
+        while(block.hasRemaining() && !endOfInput) {
+            endOfInput = channel.read(block) == -1;
+        }
+        block.flip();
+        compressedRead = channel.position();
+
+        if(block.hasRemaining()) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            deflater.setInput(block.array(), 0, block.limit());
+            deflater.finish();
+
+            byte[] packed = new byte[BLOCK_SIZE / 8];
+            int length = 0;
+            while(!deflater.finished()) {
+                if(length == packed.length) {
+                    packed = Arrays.copyOf(packed, packed.length * 2);
+                }
+                length += deflater.deflate(packed, length, packed.length - length);
+            }
+            deflater.end();
+
+            int index = (int)(size >>> BLOCK_SHIFT);
+            byte[][] current = blocks;
+            if(index == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[index] = Arrays.copyOf(packed, length);
+            blocks = current;
+
+            synchronized(cachedBlocks) {
+                cachedBlocks.put(index, block);
+            }
+            size += block.limit();
+        }
+
+        if(endOfInput) {
+            input = null;
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Returns a segment of the file, decompressing it if the file is
+     * compressed.
+     *
+     * @param index The index of the segment.
+     * @return  The bytes of the segment, from 0 to its limit.
+     */
+    private ByteBuffer getSegment(int index) {
+        if(segments != null) {
+            return segments[index];
+        }
+
+        synchronized(cachedBlocks) {
+            ByteBuffer block = cachedBlocks.get(index);
+            if(block == null) {
+                byte[] packed = blocks[index];
+                byte[] bytes = new byte[BLOCK_SIZE];
+                Inflater inflater = new Inflater(true);
+                inflater.setInput(packed);
+                int length = 0;
+                try {
+                    while(length < bytes.length && !inflater.finished()) {
+                        length += inflater.inflate(bytes, length, bytes.length - length);
+                    }
+                } catch(DataFormatException e) {
+                    // The block was compressed by this class, so this can not happen.
+                    throw new IllegalStateException(e);
+                } finally {
+                    inflater.end();
+                }
+
+                block = ByteBuffer.wrap(bytes, 0, length);
+                cachedBlocks.put(index, block);
+            }
+            return block;
+        }
+    }
+
+
+    /**
+     * Records that a line starts at the given offset.
+     *
+     * @param offset    The byte offset the line starts at.
+     */
+    private void addLineStart(long offset) {
+        int line = lineCount;
+
+        if((line & (LINES_PER_CHECKPOINT - 1)) == 0) {
+            int checkpoint = line / LINES_PER_CHECKPOINT;
+            long[] current = checkpoints;
+            if(checkpoint == current.length) {
+                long[] grown = new long[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                grown[checkpoint] = offset;
+                checkpoints = grown;
+            } else {
+                current[checkpoint] = offset;
+            }
+        }
+
+        lineCount = line + 1;
+    }
+
+
+    /**
+     * Returns the byte offset that a line starts at.
+     *
+     * @param index The index of the line.
+     * @return  The byte offset of the start of the line.
+     */
+    public long getLineOffset(int index) {
+        if(index < 0 || index >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + index + " has not been found.");
+        }
+
+        long position = checkpoints[index / LINES_PER_CHECKPOINT];
+        for(int skip = index & (LINES_PER_CHECKPOINT - 1); skip > 0; skip--) {
+            position = findLineEnd(position) + 1;
+        }
+        return position;
+    }
+
+
+    /**
+     * Returns the text of a line, without its line ending.
+     *
+     * @param index The index of the line.
+     * @return  The text of the line.
+     */
+    public String getLine(int index) {
+        return decodeLine(getLineOffset(index));
+    }
+
+
+    /**
+     * Returns the text of several lines in a row. This is faster than getting
+     * each line on its own, since the file only has to be scanned once.
+     *
+     * @param first The index of the first line.
+     * @param count The most lines to return.
+     * @return  The text of the lines, which may be fewer than count if the end
+     *          of the indexed lines is reached.
+     */
+    public List<String> getLines(int first, int count) {
+        int last = Math.min(lineCount, first + count);
+        List<String> lines = new ArrayList<>(Math.max(0, last - first));
+
+        if(first < last) {
+            long position = getLineOffset(first);
+            for(int i = first; i < last; i++) {
+                lines.add(decodeLine(position));
+                position = findLineEnd(position) + 1;
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * Decodes the line that starts at the given offset.
+     *
+     * @param start The byte offset of the start of the line.
+     * @return  The text of the line.
+     */
+    private String decodeLine(long start) {
+        long end = Math.min(findLineEnd(start), start + MAX_LINE_BYTES);
+        if(end > start && end <= size && end < start + MAX_LINE_BYTES && byteAt(end - 1) == '\r') {
+            end--;
+        }
+
+        byte[] bytes = new byte[(int)(end - start)];
+        int copied = 0;
+        while(copied < bytes.length) {
+            long position = start + copied;
+            ByteBuffer segment = getSegment((int)(position >>> segmentShift)).duplicate();
+            segment.position((int)(position & ((1L << segmentShift) - 1)));
+            int count = Math.min(bytes.length - copied, segment.remaining());
+            segment.get(bytes, copied, count);
+            copied += count;
+        }
+        return new String(bytes, charset);
+    }
+
+
+    /**
+     * Returns the offset of the '\n' that ends the line starting at the given
+     * offset, or the size of the file if the line is the last one.
+     *
+     * @param start The byte offset of the start of the line.
+     * @return  The offset of the end of the line.
+     */
+    private long findLineEnd(long start) {
+        long position = start;
+        while(position < size) {
+            ByteBuffer segment = getSegment((int)(position >>> segmentShift));
+            long segmentStart = position & -(1L << segmentShift);
+            int limit = segment.limit();
+
+            for(int i = (int)(position - segmentStart); i < limit; i++) {
+                if(segment.get(i) == '\n') {
+                    return segmentStart + i;
+                }
+            }
+            position = segmentStart + limit;
+        }
+        return size;
+    }
+
+
+    /**
+     * Returns the byte at an offset in the file.
+     *
+     * @param position  The offset of the byte.
+     * @return  The byte at the offset.
+     */
+    private byte byteAt(long position) {
+        return getSegment((int)(position >>> segmentShift)).get((int)(position & ((1L << segmentShift) - 1)));
+    }
+
+
+    /**
+     * Closes the channel the file was mapped through, or stops decompressing
+     * it. The memory is given back once the segments are garbage collected.
+     *
+     * @throws IOException  If the channel could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        SeekableByteChannel compressed = input;
+        if(compressed != null) {
+            compressed.close();
+        }
+        if(channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package texteditor;
+
+
+/**
+ * A MatchList holds the ranges of the search matches in a document, in the order
+ * they appear. The ranges are kept in int arrays, and they are moved along with
+ * the text when the document is edited, so that the matches stay highlighted in
+ * the right place until the next search.
+ */
+public class MatchList implements DocumentListener {
+
+
+    /**
+     * The offset of the first character of each match.
+     */
+    private int[] starts = new int[16];
+
+
+    /**
+     * The offset after the last character of each match.
+     */
+    private int[] ends = new int[16];
+
+
+    /**
+     * The amount of matches.
+     */
+    private int size = 0;
+
+
+    /**
+     * Returns the amount of matches.
+     *
+     * @return  The amount of matches.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the start of a match.
+     *
+     * @param index The index of the match.
+     * @return  The offset of the first character of the match.
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+
+    /**
+     * Returns the end of a match.
+     *
+     * @param index The index of the match.
+     * @return  The offset after the last character of the match.
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+
+    /**
+     * Adds matches after the last one. Matches must be added in order and must
+     * not overlap.
+     *
+     * @param newStarts The starts of the matches.
+     * @param newEnds   The ends of the matches.
+     * @param count     The amount of matches to add.
+     */
+    public void addAll(int[] newStarts, int[] newEnds, int count) {
+        if(size + count > starts.length) {
+            int capacity = Math.max(size + count, starts.length * 2);
+            int[] grownStarts = new int[capacity];
+            int[] grownEnds = new int[capacity];
+            System.arraycopy(starts, 0, grownStarts, 0, size);
+            System.arraycopy(ends, 0, grownEnds, 0, size);
+            starts = grownStarts;
+            ends = grownEnds;
+        }
+
+        System.arraycopy(newStarts, 0, starts, size, count);
+        System.arraycopy(newEnds, 0, ends, size, count);
+        size += count;
+    }
+
+
+    /**
+     * Removes every match.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+
+    /**
+     * Returns the index of the first match that starts at or after an offset.
+     *
+     * @param offset    The offset to look from.
+     * @return  The index of the match, or size() if there is none.
+     */
+    public int indexOfStart(int offset) {
+        int low = 0;
+        int high = size;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Returns the index of the first match that ends after an offset.
+     *
+     * @param offset    The offset to look from.
+     * @return  The index of the match, or size() if there is none.
+     */
+    public int indexOfEnd(int offset) {
+        int low = 0;
+        int high = size;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(ends[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /*
+     * Removes the matches the edit changed, and moves the matches after the
+     * edit by the amount of text added or removed.
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        if(size == 0) {
+            return;
+        }
+
+        int offset = e.getOffset();
+        int removedEnd = offset + e.getRemovedLength();
+        int delta = e.getInsertedLength() - e.getRemovedLength();
+
+        // Matches that overlap the removed text, or that text was inserted
+        // inside of, no longer match.
+        int first = indexOfEnd(offset);
+        int last = first;
+        while(last < size && starts[last] < removedEnd) {
+            last++;
+        }
+
+        int removed = last - first;
+        for(int i = last; i < size; i++) {
+            starts[i - removed] = starts[i] + delta;
+            ends[i - removed] = ends[i] + delta;
+        }
+        size -= removed;
+    }
+}
@@ -0,0 +1,169 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Keeps the memory used by the open documents under a limit. The editing areas
+ * are kept in the order they were last selected, and when the documents use
+ * more than the limit, the areas that have gone unused the longest are put to
+ * hibernate until enough memory is freed. The selected area and areas that are
+ * still loading are never put to hibernate.
+ *
+ * The limit can be set in megabytes with the texteditor.memory.budget system
+ * property. It defaults to a quarter of the largest heap the JVM will use.
+ */
+public class MemoryBudget {
+
+
+    /**
+     * The limit used when none is given.
+     */
+    public static final long DEFAULT_LIMIT = Long.getLong("texteditor.memory.budget",
+            Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024)) * 1024 * 1024;
+
+
+    /**
+     * The areas, from the one selected longest ago to the one selected last.
+     */
+    private final Map<EditingArea, Boolean> areas = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * The most memory the documents should use, in bytes.
+     */
+    private long limit;
+
+
+    /**
+     * The area that is selected, or null.
+     */
+    private EditingArea selected;
+
+
+    /**
+     * Creates a MemoryBudget with the default limit.
+     */
+    public MemoryBudget() {
+        this(DEFAULT_LIMIT);
+    }
+
+
+    /**
+     * Creates a MemoryBudget.
+     *
+     * @param limit The most memory the documents should use, in bytes.
+     */
+    public MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+
+    /**
+     * Starts keeping track of an area. Newly added areas count as the least
+     * recently used until they are selected.
+     *
+     * @param area  The area to add.
+     */
+    public void add(EditingArea area) {
+        if(!areas.containsKey(area)) {
+            Map<EditingArea, Boolean> rest = new LinkedHashMap<>(areas);
+            areas.clear();
+            areas.put(area, Boolean.TRUE);
+            areas.putAll(rest);
+        }
+    }
+
+
+    /**
+     * Stops keeping track of an area.
+     *
+     * @param area  The area to remove.
+     */
+    public void remove(EditingArea area) {
+        areas.remove(area);
+        if(area == selected) {
+            selected = null;
+        }
+    }
+
+
+    /**
+     * Marks an area as the one being used, waking it if it is hibernating,
+     * then puts other areas to hibernate if the limit is exceeded.
+     *
+     * @param area  The area that was selected, or null if none is.
+     */
+    public void select(EditingArea area) {
+        selected = area;
+        if(area != null) {
+            areas.put(area, Boolean.TRUE);
+            area.wake();
+        }
+        enforce();
+    }
+
+
+    /**
+     * Puts the least recently used areas to hibernate until the documents use
+     * no more than the limit.
+     */
+    public void enforce() {
+        List<EditingArea> order = new ArrayList<>(areas.keySet());
+        long[] used = new long[order.size()];
+        long total = 0;
+        for(int i = 0; i < order.size(); i++) {
+            used[i] = order.get(i).getMemoryUsed();
+            total += used[i];
+        }
+
+        for(int i = 0; i < order.size() && total > limit; i++) {
+            EditingArea area = order.get(i);
+            if(area == selected || !area.isEditable()) {
+                continue;
+            }
+
+            area.hibernate();
+            total += area.getMemoryUsed() - used[i];
+        }
+    }
+
+
+    /**
+     * Returns how much memory the documents use.
+     *
+     * @return  The memory used in bytes.
+     */
+    public long getMemoryUsed() {
+        long total = 0;
+        for(EditingArea area : areas.keySet()) {
+            total += area.getMemoryUsed();
+        }
+        return total;
+    }
+
+
+    /**
+     * Returns the most memory the documents should use.
+     *
+     * @return  The limit in bytes.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+
+    /**
+     * Sets the most memory the documents should use, putting areas to
+     * hibernate if they already use more.
+     *
+     * @param limit The limit in bytes.
+     */
+    public void setLimit(long limit) {
+        this.limit = limit;
+        enforce();
+    }
+}
@@ -0,0 +1,1094 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An index of the paths of the files under a folder, for finding files by
+ * typing a few letters of their path. The folders under the root are walked in
+ * parallel, and every path is kept in one array of chars, so even half a
+ * million paths take little memory and no objects of their own. A WatchService
+ * on every folder keeps the index up to date as files are added and removed.
+ *
+ * A path matches if the letters typed appear in it in order, ignoring case.
+ * Matches are ranked by how well the letters line up with the start of the
+ * words of the path and with each other, preferring the file name and short
+ * paths. Each path has a mask of the characters in it, so most paths that can
+ * not match are passed over without looking at them, and when more letters are
+ * typed only the paths that matched before are looked at again.
+ */
+public class PathIndex {
+
+
+    /**
+     * The least amount of paths that are ranked in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 16 * 1024;
+
+
+    /**
+     * The amount of paths added to the index at a time while it is built, so
+     * the paths found so far can be searched.
+     */
+    private static final int BATCH_SIZE = 4096;
+
+
+    /**
+     * How long to wait for more events after an event, so a burst of changes
+     * is applied at once.
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+
+    /**
+     * The score of a path that does not match.
+     */
+    private static final int NO_MATCH = Integer.MIN_VALUE;
+
+
+    /**
+     * The lower case of each ASCII character.
+     */
+    private static final char[] LOWER = new char[128];
+
+
+    static {
+        for(char c = 0; c < LOWER.length; c++) {
+            LOWER[c] = Character.toLowerCase(c);
+        }
+    }
+
+
+    /**
+     * The threads the folders are walked on.
+     */
+    private static final ExecutorService WALKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+                Thread thread = new Thread(r, "Path Index Walker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    /**
+     * The threads the paths are ranked on. They are not the threads the
+     * folders are walked on, since a search holds the lock of the index that
+     * a walk waits for to add its paths.
+     */
+    private static final ExecutorService RANKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+                Thread thread = new Thread(r, "Path Index Ranker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    /**
+     * The folder that is indexed.
+     */
+    private final Path root;
+
+
+    /**
+     * Called on a background thread whenever paths are added or removed.
+     */
+    private final Runnable listener;
+
+
+    /**
+     * The watch service, or null if the platform does not have one.
+     */
+    private final WatchService service;
+
+
+    /**
+     * The folder each watch key is for.
+     */
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+
+
+    /**
+     * Whether or not every folder under the root is being watched.
+     */
+    private volatile boolean watchingAll;
+
+
+    /**
+     * Whether or not the root is still being walked.
+     */
+    private volatile boolean building = true;
+
+
+    /**
+     * The chars of every path, relative to the root, one after another.
+     */
+    private char[] chars = new char[64 * 1024];
+
+
+    /**
+     * The offset of each path in chars, with one extra entry holding the
+     * amount of chars used.
+     */
+    private int[] starts = new int[1024 + 1];
+
+
+    /**
+     * The mask of the characters in each path.
+     */
+    private long[] masks = new long[1024];
+
+
+    /**
+     * The hash code of each path, which is the same as the hash code of its
+     * String.
+     */
+    private int[] hashes = new int[1024];
+
+
+    /**
+     * The amount of paths, including the removed ones.
+     */
+    private int count = 0;
+
+
+    /**
+     * The paths that have been removed.
+     */
+    private final BitSet removed = new BitSet();
+
+
+    /**
+     * Counts the changes to the paths, so the matches of the last search are
+     * only reused if nothing has changed.
+     */
+    private long generation = 0;
+
+
+    /**
+     * The folded letters of the last search, or null if there has been none.
+     */
+    private String lastQuery = null;
+
+
+    /**
+     * The generation the last search was made in.
+     */
+    private long lastGeneration = -1;
+
+
+    /**
+     * The ids of the paths that may have matched the last search, in order.
+     * Paths that could not have been one of the best are in it without having
+     * been matched.
+     */
+    private int[] lastMatches = new int[0];
+
+
+    /**
+     * Creates a PathIndex. Nothing is indexed until it is started.
+     *
+     * @param root      The folder to index.
+     * @param listener  Called on a background thread whenever paths are
+     *                  added or removed.
+     */
+    public PathIndex(Path root, Runnable listener) {
+        this.root = root;
+        this.listener = listener;
+
+        WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch(IOException | UnsupportedOperationException e) {
+            watchService = null;
+        }
+        service = watchService;
+        watchingAll = service != null;
+    }
+
+
+    /**
+     * Starts walking the root in the background, and watching it once it has
+     * been walked.
+     */
+    public void start() {
+        Thread thread = new Thread(this::run, "Path Index Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Stops watching the root.
+     */
+    public void close() {
+        if(service != null) {
+            try {
+                service.close();
+            } catch(IOException e) {
+                // The service is gone either way.
+            }
+        }
+    }
+
+
+    /**
+     * Returns the folder that is indexed.
+     *
+     * @return  The root.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+
+    /**
+     * Returns whether or not the root is still being walked.
+     *
+     * @return  true if the index is being built; false if it is complete.
+     */
+    public boolean isBuilding() {
+        return building;
+    }
+
+
+    /**
+     * Returns whether or not the index is kept up to date. If the platform can
+     * not watch files, or there are more folders than can be watched, changes
+     * are missed and the index has to be built again to see them.
+     *
+     * @return  true if every folder is watched; false if not.
+     */
+    public boolean isWatchingAll() {
+        return watchingAll;
+    }
+
+
+    /**
+     * Returns the amount of paths in the index.
+     *
+     * @return  The amount of paths.
+     */
+    public synchronized int getPathCount() {
+        return count - removed.cardinality();
+    }
+
+
+    /**
+     * Finds the paths that best match the letters typed.
+     *
+     * @param query The letters typed. Spaces are ignored.
+     * @param max   The most paths to return.
+     * @return  The paths relative to the root, best first.
+     */
+    public synchronized List<String> find(String query, int max) {
+        StringBuilder letters = new StringBuilder();
+        for(int i = 0; i < query.length(); i++) {
+            if(query.charAt(i) != ' ') {
+                letters.append(fold(query.charAt(i)));
+            }
+        }
+        String folded = letters.toString();
+
+        // Narrow down the matches of the last search if letters were only
+        // added to it.
+        int[] candidates = null;
+        if(lastQuery != null && generation == lastGeneration && folded.startsWith(lastQuery)) {
+            candidates = lastMatches;
+        }
+        int total = candidates != null ? candidates.length : count;
+
+        int parts = total < PARALLEL_THRESHOLD ? 1 : Runtime.getRuntime().availableProcessors();
+        List<Callable<Ranking>> tasks = new ArrayList<>();
+        for(int part = 0; part < parts; part++) {
+            int from = (int)((long)total * part / parts);
+            int to = (int)((long)total * (part + 1) / parts);
+            int[] ids = candidates;
+            tasks.add(() -> rank(folded.toCharArray(), ids, from, to, max));
+        }
+
+        List<Ranking> rankings = new ArrayList<>();
+        try {
+            if(parts == 1) {
+                rankings.add(tasks.get(0).call());
+            } else {
+                for(Future<Ranking> future : RANKERS.invokeAll(tasks)) {
+                    rankings.add(future.get());
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch(Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        // The matches of each part are in order of id, so joining them keeps
+        // the whole list in order.
+        int matchCount = 0;
+        for(Ranking ranking : rankings) {
+            matchCount += ranking.matchCount;
+        }
+        int[] matches = new int[matchCount];
+        int filled = 0;
+        long[] best = new long[0];
+        for(Ranking ranking : rankings) {
+            System.arraycopy(ranking.matches, 0, matches, filled, ranking.matchCount);
+            filled += ranking.matchCount;
+            int length = best.length;
+            best = Arrays.copyOf(best, length + ranking.size);
+            System.arraycopy(ranking.heap, 0, best, length, ranking.size);
+        }
+        lastQuery = folded;
+        lastGeneration = generation;
+        lastMatches = matches;
+
+        Arrays.sort(best);
+        List<String> paths = new ArrayList<>();
+        for(int i = best.length - 1; i >= 0 && paths.size() < max; i--) {
+            int id = (int)(0xFFFFFFFFL - (best[i] & 0xFFFFFFFFL));
+            paths.add(new String(chars, starts[id], starts[id + 1] - starts[id]));
+        }
+        return paths;
+    }
+
+
+    /**
+     * Ranks a part of the paths. This runs on a worker thread while the
+     * thread searching holds the lock of the index.
+     *
+     * @param query The folded letters typed.
+     * @param ids   The paths to rank, or null to rank every path.
+     * @param from  The index of the first path to rank.
+     * @param to    The index after the last path to rank.
+     * @param max   The most paths to keep.
+     * @return  The best paths of the part and every path that may have matched.
+     */
+    private Ranking rank(char[] query, int[] ids, int from, int to, int max) {
+        long queryMask = 0;
+        int[] caseBits = new int[query.length];
+        for(int q = 0; q < query.length; q++) {
+            queryMask |= mask(query[q]);
+            caseBits[q] = query[q] >= 'a' && query[q] <= 'z' ? 0x20 : 0;
+        }
+
+        // The best score a path could have, less the cost of its length. Once
+        // a path could not beat the paths kept even if it matched as well as a
+        // path can, it is not looked at. It is kept as a possible match, so
+        // the next search still looks at it.
+        int best = query.length == 0 ? 0 : query.length * (16 + 32 + 8) + 32;
+
+        Ranking ranking = new Ranking(max);
+        for(int i = from; i < to; i++) {
+            int id = ids != null ? ids[i] : i;
+            if((masks[id] & queryMask) != queryMask || removed.get(id)) {
+                continue;
+            }
+
+            int start = starts[id], end = starts[id + 1];
+            if(!ranking.canKeep(id, best - (end - start) / 4)) {
+                ranking.addMatch(id);
+                continue;
+            }
+
+            int score = score(start, end, query, caseBits);
+            if(score != NO_MATCH) {
+                ranking.addMatch(id);
+                ranking.keep(id, score);
+            }
+        }
+        return ranking;
+    }
+
+
+    /**
+     * Scores how well a path matches the letters typed. The letters are first
+     * matched as late in the path as they can be, so that they fall in the
+     * file name if they can, then forward from where the first of them was
+     * found, scoring each letter as it is matched.
+     *
+     * A letter scores more if it starts a word, and a letter right after the
+     * one before it scores as much as the first letter of their run, so typing
+     * the start of a word beats picking letters out of several words. Letters
+     * skipped between two matches cost a little, and letters in the file name
+     * score a little more.
+     *
+     * @param start     The offset of the path.
+     * @param end       The offset after the path.
+     * @param query     The folded letters typed.
+     * @param caseBits  The bit that folds the case of each ASCII letter of the
+     *                  query, or 0 for the other characters, which are folded
+     *                  one at a time.
+     * @return  The score, which is higher for better matches, or NO_MATCH if
+     *          the path does not match.
+     */
+    private int score(int start, int end, char[] query, int[] caseBits) {
+        if(query.length == 0) {
+            return -(end - start) / 4;
+        }
+
+        int q = query.length - 1;
+        int i = end - 1;
+        for(; i >= start; i--) {
+            if(matches(chars[i], query[q], caseBits[q]) && --q < 0) {
+                break;
+            }
+        }
+        if(q >= 0) {
+            return NO_MATCH;
+        }
+
+        int fileStart = end;
+        while(fileStart > start && !isPathSeparator(chars[fileStart - 1])) {
+            fileStart--;
+        }
+
+        int score = 0;
+        int previous = -2;
+        int runBonus = 0;
+        q = 0;
+        for(; q < query.length; i++) {
+            if(!matches(chars[i], query[q], caseBits[q])) {
+                continue;
+            }
+
+            int bonus = i == start || isWordStart(chars[i - 1], chars[i]) ? 32 : 0;
+            if(i == previous + 1) {
+                bonus = Math.max(bonus, Math.max(runBonus, 16));
+            } else if(previous >= 0) {
+                score -= 3 + Math.min(i - previous - 2, 12);
+            }
+            runBonus = bonus;
+            score += 16 + bonus;
+
+            if(i >= fileStart) {
+                score += 8;
+                if(i == fileStart && q == 0) {
+                    score += 32;
+                }
+            }
+            previous = i;
+            q++;
+        }
+
+        // Shorter paths come first when matches are otherwise as good.
+        return score - (end - start) / 4;
+    }
+
+
+    /**
+     * Returns whether or not a character of a path matches a letter of the
+     * query, ignoring case.
+     *
+     * @param c         The character of the path.
+     * @param letter    The folded letter of the query.
+     * @param caseBit   The bit that folds the case of the letter if it is an
+     *                  ASCII letter, or 0 if it is not.
+     * @return  true if the character matches; false if not.
+     */
+    private static boolean matches(char c, char letter, int caseBit) {
+        return caseBit != 0 ? (c | caseBit) == letter : fold(c) == letter;
+    }
+
+
+    /**
+     * Walks the root and then applies the changes the watch service reports,
+     * until the index is closed. This runs on the watcher thread.
+     */
+    private void run() {
+        try {
+            build();
+            if(service == null) {
+                return;
+            }
+
+            while(true) {
+                Set<Path> created = new LinkedHashSet<>();
+                Set<Path> deleted = new LinkedHashSet<>();
+                boolean overflow = false;
+
+                // Take the events of a burst together.
+                WatchKey key = service.take();
+                while(key != null) {
+                    Path directory = keys.get(key);
+                    for(WatchEvent<?> event : key.pollEvents()) {
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path path = directory.resolve((Path)event.context());
+                        if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            created.add(path);
+                        } else {
+                            deleted.add(path);
+                        }
+                    }
+                    if(!key.reset()) {
+                        keys.remove(key);
+                    }
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                // Events were lost, so the whole root is walked again.
+                if(overflow) {
+                    for(WatchKey watchKey : keys.keySet()) {
+                        watchKey.cancel();
+                    }
+                    keys.clear();
+                    build();
+                    continue;
+                }
+
+                // A folder that was added may have had files added to it
+                // before it was watched, so it is walked as well.
+                remove(deleted);
+                List<String> paths = new ArrayList<>();
+                for(Path path : created) {
+                    walk(path, paths, true);
+                }
+                add(paths, true);
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // The index was closed.
+        }
+    }
+
+
+    /**
+     * Walks the root, replacing the paths in the index. Each folder in the
+     * root is walked on its own worker thread, and the paths are added in
+     * batches as they are found.
+     *
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void build() throws InterruptedException {
+        building = true;
+        synchronized(this) {
+            chars = new char[64 * 1024];
+            starts = new int[1024 + 1];
+            masks = new long[1024];
+            hashes = new int[1024];
+            count = 0;
+            removed.clear();
+            generation++;
+        }
+
+        List<Path> folders = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        watch(root);
+        try(DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for(Path entry : entries) {
+                if(Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if(!isHidden(entry)) {
+                        folders.add(entry);
+                    }
+                } else {
+                    files.add(root.relativize(entry).toString());
+                }
+            }
+        } catch(IOException e) {
+            // The root can not be read, so nothing is indexed.
+        }
+        add(files, false);
+
+        List<Future<?>> walks = new ArrayList<>();
+        for(Path folder : folders) {
+            walks.add(WALKERS.submit(() -> {
+                List<String> paths = new ArrayList<>();
+                walk(folder, paths, false);
+                add(paths, false);
+            }));
+        }
+        try {
+            for(Future<?> walk : walks) {
+                walk.get();
+            }
+        } catch(ExecutionException e) {
+            // A folder that could not be walked is left out.
+        } finally {
+            building = false;
+            listener.run();
+        }
+    }
+
+
+    /**
+     * Walks a folder, watching every folder under it and adding the paths of
+     * the files under it in batches. A path that is not a folder is added by
+     * itself.
+     *
+     * @param start         The folder or file to walk.
+     * @param paths         The paths found that have not been added yet.
+     * @param skipIndexed   Whether or not to leave out the paths that are
+     *                      already in the index.
+     */
+    private void walk(Path start, List<String> paths, boolean skipIndexed) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+                /*
+                 * Watches the folder, unless it is hidden.
+                 */
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if(!dir.equals(root) && isHidden(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    watch(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+
+                /*
+                 * Adds the file, in a batch of paths.
+                 */
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if(!attrs.isDirectory()) {
+                        paths.add(root.relativize(file).toString());
+                        if(paths.size() == BATCH_SIZE) {
+                            add(paths, skipIndexed);
+                            paths.clear();
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+
+                /*
+                 * Leaves out files and folders that can not be read.
+                 */
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch(IOException e) {
+            // The folder is gone, or can not be read.
+        }
+    }
+
+
+    /**
+     * Starts watching a folder for files being added and removed. Once a
+     * folder can not be watched, no more are tried.
+     *
+     * @param folder    The folder.
+     */
+    private void watch(Path folder) {
+        if(!watchingAll) {
+            return;
+        }
+        try {
+            keys.put(folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE), folder);
+        } catch(IOException | ClosedWatchServiceException e) {
+            // Usually the limit of watched folders has been reached.
+            watchingAll = false;
+        }
+    }
+
+
+    /**
+     * Adds paths to the index.
+     *
+     * @param paths         The paths relative to the root.
+     * @param skipIndexed   Whether or not to leave out the paths that are
+     *                      already in the index, which takes a pass over the
+     *                      whole index.
+     */
+    private void add(List<String> paths, boolean skipIndexed) {
+        if(paths.isEmpty()) {
+            return;
+        }
+
+        synchronized(this) {
+            if(skipIndexed) {
+                paths = new ArrayList<>(paths);
+                paths.removeAll(findIndexed(paths).keySet());
+            }
+
+            for(String path : paths) {
+                int length = path.length();
+                int offset = starts[count];
+                if(offset + length > chars.length) {
+                    chars = Arrays.copyOf(chars, Math.max(chars.length * 2, offset + length));
+                }
+                if(count == masks.length) {
+                    int capacity = count * 2;
+                    starts = Arrays.copyOf(starts, capacity + 1);
+                    masks = Arrays.copyOf(masks, capacity);
+                    hashes = Arrays.copyOf(hashes, capacity);
+                }
+
+                path.getChars(0, length, chars, offset);
+                long mask = 0;
+                for(int i = 0; i < length; i++) {
+                    mask |= mask(path.charAt(i));
+                }
+                masks[count] = mask;
+                hashes[count] = path.hashCode();
+                starts[++count] = offset + length;
+            }
+            generation++;
+        }
+        listener.run();
+    }
+
+
+    /**
+     * Removes paths from the index, along with everything under the ones that
+     * were folders.
+     *
+     * @param deleted   The paths that were deleted.
+     */
+    private void remove(Set<Path> deleted) {
+        if(deleted.isEmpty()) {
+            return;
+        }
+
+        List<String> paths = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for(Path path : deleted) {
+            String relative = root.relativize(path).toString();
+            paths.add(relative);
+            prefixes.add(relative + root.getFileSystem().getSeparator());
+        }
+
+        synchronized(this) {
+            Map<String, Integer> indexed = findIndexed(paths);
+            for(int id : indexed.values()) {
+                removed.set(id);
+            }
+            for(int id = 0; id < count; id++) {
+                for(String prefix : prefixes) {
+                    if(!removed.get(id) && startsWith(id, prefix)) {
+                        removed.set(id);
+                    }
+                }
+            }
+            generation++;
+
+            // Most of the index has been removed, so it is copied without it.
+            if(removed.cardinality() > Math.max(BATCH_SIZE, count / 2)) {
+                compact();
+            }
+        }
+        listener.run();
+    }
+
+
+    /**
+     * Returns the paths that are in the index, with their ids, in one pass
+     * over the hashes of the index.
+     *
+     * @param paths The paths to look for.
+     * @return  The id of each path that is in the index, by path.
+     */
+    private Map<String, Integer> findIndexed(List<String> paths) {
+        Map<Integer, List<String>> byHash = new HashMap<>();
+        for(String path : paths) {
+            byHash.computeIfAbsent(path.hashCode(), h -> new ArrayList<>()).add(path);
+        }
+
+        Map<String, Integer> found = new HashMap<>();
+        for(int id = 0; id < count; id++) {
+            List<String> sameHash = byHash.get(hashes[id]);
+            if(sameHash == null || removed.get(id)) {
+                continue;
+            }
+            for(String path : sameHash) {
+                if(path.length() == starts[id + 1] - starts[id] && startsWith(id, path)) {
+                    found.put(path, id);
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Returns whether or not a path in the index starts with a string.
+     *
+     * @param id        The id of the path.
+     * @param prefix    The string.
+     * @return  true if the path starts with the string; false if not.
+     */
+    private boolean startsWith(int id, String prefix) {
+        int start = starts[id];
+        if(starts[id + 1] - start < prefix.length()) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length(); i++) {
+            if(chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Copies the index without the paths that have been removed.
+     */
+    private void compact() {
+        int kept = 0;
+        int offset = 0;
+        for(int id = 0; id < count; id++) {
+            if(removed.get(id)) {
+                continue;
+            }
+            int start = starts[id];
+            int length = starts[id + 1] - start;
+            System.arraycopy(chars, start, chars, offset, length);
+            starts[kept] = offset;
+            masks[kept] = masks[id];
+            hashes[kept] = hashes[id];
+            offset += length;
+            kept++;
+        }
+        starts[kept] = offset;
+        count = kept;
+        removed.clear();
+        generation++;
+    }
+
+
+    /**
+     * Returns whether or not a path is hidden, in which case it is not
+     * indexed.
+     *
+     * @param path  The path.
+     * @return  true if the path is hidden; false if not.
+     */
+    private static boolean isHidden(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().startsWith(".");
+    }
+
+
+    /**
+     * Returns the lower case of a character.
+     *
+     * @param c The character.
+     * @return  The lower case character.
+     */
+    private static char fold(char c) {
+        return c < LOWER.length ? LOWER[c] : Character.toLowerCase(c);
+    }
+
+
+    /**
+     * Returns the bit of a character in the mask of the characters of a path.
+     * Letters and digits have a bit of their own, and the other characters
+     * share the rest.
+     *
+     * @param c The character.
+     * @return  The bit of the character.
+     */
+    private static long mask(char c) {
+        c = fold(c);
+        if(c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        } else if(c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        return 1L << (36 + c % 28);
+    }
+
+
+    /**
+     * Returns whether or not a character separates the folders of a path.
+     *
+     * @param c The character.
+     * @return  true if the character is a separator; false if not.
+     */
+    private static boolean isPathSeparator(char c) {
+        return c == '/' || c == '\\';
+    }
+
+
+    /**
+     * Returns whether or not a character starts a word of a path, such as the
+     * name of a folder, a part of a name joined with '_' or '-', or a capital
+     * letter in camel case.
+     *
+     * @param previous  The character before it.
+     * @param c         The character.
+     * @return  true if the character starts a word; false if not.
+     */
+    private static boolean isWordStart(char previous, char c) {
+        return isPathSeparator(previous) || previous == '_' || previous == '-' || previous == '.'
+                || previous == ' ' || Character.isLowerCase(previous) && Character.isUpperCase(c);
+    }
+
+
+    /**
+     * The best paths of a part of the index, kept in a heap with the worst of
+     * them at the top, and every path of the part that may have matched.
+     */
+    private static class Ranking {
+
+
+        /**
+         * The score and id of each path in the heap. The score is in the high
+         * bits, and the id is stored so that lower ids sort higher.
+         */
+        private final long[] heap;
+
+
+        /**
+         * The amount of paths in the heap.
+         */
+        private int size = 0;
+
+
+        /**
+         * The ids of the paths that matched or may have, in order.
+         */
+        private int[] matches = new int[256];
+
+
+        /**
+         * The amount of paths that matched or may have.
+         */
+        private int matchCount = 0;
+
+
+        /**
+         * Creates a Ranking.
+         *
+         * @param max   The most paths to keep.
+         */
+        private Ranking(int max) {
+            heap = new long[max];
+        }
+
+
+        /**
+         * Adds a path that matched, or may have.
+         *
+         * @param id    The id of the path.
+         */
+        private void addMatch(int id) {
+            if(matchCount == matches.length) {
+                matches = Arrays.copyOf(matches, matchCount * 2);
+            }
+            matches[matchCount++] = id;
+        }
+
+
+        /**
+         * Returns whether or not a path with a score would be one of the best
+         * paths so far.
+         *
+         * @param id    The id of the path.
+         * @param score The score of the path.
+         * @return  true if the path would be kept; false if not.
+         */
+        private boolean canKeep(int id, int score) {
+            return size < heap.length || toEntry(id, score) > heap[0];
+        }
+
+
+        /**
+         * Keeps a path if it is one of the best paths so far.
+         *
+         * @param id    The id of the path.
+         * @param score The score of the path.
+         */
+        private void keep(int id, int score) {
+            long entry = toEntry(id, score);
+            if(size < heap.length) {
+                heap[size] = entry;
+                siftUp(size++);
+            } else if(size > 0 && entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(0);
+            }
+        }
+
+
+        /**
+         * Returns the entry of a path in the heap.
+         *
+         * @param id    The id of the path.
+         * @param score The score of the path.
+         * @return  The entry.
+         */
+        private static long toEntry(int id, int score) {
+            return ((long)score << 32) | (0xFFFFFFFFL - id);
+        }
+
+
+        /**
+         * Moves an entry up the heap until its parent is worse.
+         *
+         * @param index The index of the entry.
+         */
+        private void siftUp(int index) {
+            long entry = heap[index];
+            while(index > 0) {
+                int parent = (index - 1) / 2;
+                if(heap[parent] <= entry) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = entry;
+        }
+
+
+        /**
+         * Moves an entry down the heap until its children are better.
+         *
+         * @param index The index of the entry.
+         */
+        private void siftDown(int index) {
+            long entry = heap[index];
+            while(true) {
+                int child = index * 2 + 1;
+                if(child >= size) {
+                    break;
+                }
+                if(child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if(heap[child] >= entry) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = entry;
+        }
+    }
+}
@@ -0,0 +1,858 @@
+package texteditor;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A PieceTable holds the text of a document as a sequence of pieces, where each
+ * piece points at a range of characters in a buffer that is never modified
+ * again. Inserted text is appended to an add buffer and deleting text only
+ * shrinks or drops pieces, so no edit ever copies the rest of the document.
+ *
+ * The pieces are kept in a treap ordered by their position in the document. Each
+ * node stores the amount of characters in its subtree, which lets an offset be
+ * found, and the tree be split or merged at it, in O(log n) time.
+ *
+ * A document that is not being used can be compacted, which keeps its text as
+ * Latin-1 or UTF-8 bytes instead of pieces of UTF-16 buffers. Reading the
+ * text decodes it without keeping the result, so that a search through every
+ * open document does not undo the compaction. The pieces are rebuilt the next
+ * time the text is changed, or when expand is called.
+ */
+public class PieceTable {
+
+
+    /**
+     * The size of each block in the add buffer.
+     */
+    private static final int ADD_BLOCK_SIZE = 64 * 1024;
+
+
+    /**
+     * Inserted text that is longer than this is given its own buffer instead of
+     * being copied into the add buffer.
+     */
+    private static final int LARGE_INSERT = ADD_BLOCK_SIZE / 4;
+
+
+    /**
+     * The root of the tree of pieces.
+     */
+    private Node root;
+
+
+    /**
+     * The block of the add buffer that typed text is currently appended to.
+     */
+    private char[] addBlock = new char[ADD_BLOCK_SIZE];
+
+
+    /**
+     * The amount of characters used in the current add block.
+     */
+    private int addLength = 0;
+
+
+    /**
+     * The full text of the document, built the first time it is asked for after
+     * the document changes.
+     */
+    private String cachedText = null;
+
+
+    /**
+     * The memory the text uses, counted the first time it is asked for after
+     * the document changes, or -1 if it has not been counted since. This keeps
+     * the memory of every open document cheap to check each time a tab is
+     * selected.
+     */
+    private long memoryUsed = -1;
+
+
+    /**
+     * The seed used to give every node a random priority.
+     */
+    private int seed = 0x2545F491;
+
+
+    /**
+     * The left and right trees produced by the last call to split.
+     */
+    private Node splitLeft, splitRight;
+
+
+    /**
+     * The text of the document while it is compacted, or null if it is not.
+     */
+    private byte[] compactText;
+
+
+    /**
+     * Whether the compacted text is in Latin-1 or UTF-8.
+     */
+    private boolean compactLatin1;
+
+
+    /**
+     * The length of the document while it is compacted.
+     */
+    private int compactLength;
+
+
+    /**
+     * The listeners that are notified when the document changes.
+     */
+    private final List<DocumentListener> listeners = new ArrayList<>();
+
+
+    /**
+     * Creates an empty PieceTable.
+     */
+    public PieceTable() {
+    }
+
+
+    /**
+     * Creates a PieceTable that contains the given text.
+     *
+     * @param text  The initial text of the document.
+     */
+    public PieceTable(String text) {
+        if(!text.isEmpty()) {
+            root = new Node(text.toCharArray(), 0, text.length(), nextPriority());
+        }
+    }
+
+
+    /**
+     * Adds a listener that is notified every time the document changes.
+     *
+     * @param listener  The listener to add.
+     */
+    public void addDocumentListener(DocumentListener listener) {
+        listeners.add(listener);
+    }
+
+
+    /**
+     * Removes a listener that was added to this document.
+     *
+     * @param listener  The listener to remove.
+     */
+    public void removeDocumentListener(DocumentListener listener) {
+        listeners.remove(listener);
+    }
+
+
+    /**
+     * Returns the amount of characters in the document.
+     *
+     * @return  The amount of characters in the document.
+     */
+    public int length() {
+        return compactText != null ? compactLength : size(root);
+    }
+
+
+    /**
+     * Returns the character at the given offset.
+     *
+     * @param offset    The offset of the character.
+     * @return  The character at the offset.
+     */
+    public char charAt(int offset) {
+        if(offset < 0 || offset >= length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of the document.");
+        }
+        if(compactText != null) {
+            return compactLatin1 ? (char)(compactText[offset] & 0xff) : decodeCompactText().charAt(offset);
+        }
+
+        Node node = root;
+        while(true) {
+            int leftSize = size(node.left);
+            if(offset < leftSize) {
+                node = node.left;
+            } else if(offset < leftSize + node.length) {
+                return node.buffer[node.start + offset - leftSize];
+            } else {
+                offset -= leftSize + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the text of the whole document. The text is only built when this
+     * method is called and is then kept until the document changes again,
+     * unless the document is compacted.
+     *
+     * @return  The text of the document.
+     */
+    public String getText() {
+        if(compactText != null) {
+            return decodeCompactText();
+        }
+        if(cachedText == null) {
+            cachedText = getText(0, length());
+        }
+        return cachedText;
+    }
+
+
+    /**
+     * Returns a range of the text in the document.
+     *
+     * @param offset    The offset of the first character to return.
+     * @param length    The amount of characters to return.
+     * @return  The text in the range.
+     */
+    public String getText(int offset, int length) {
+        checkRange(offset, length);
+        if(compactText != null) {
+            return compactLatin1 ? new String(compactText, offset, length, StandardCharsets.ISO_8859_1)
+                    : decodeCompactText().substring(offset, offset + length);
+        }
+
+        char[] dest = new char[length];
+        copy(root, offset, offset + length, dest, 0);
+        return new String(dest);
+    }
+
+
+    /**
+     * Copies a range of the text in the document into an array.
+     *
+     * @param offset    The offset of the first character to copy.
+     * @param length    The amount of characters to copy.
+     * @param dest      The array to copy the characters into.
+     * @param destPos   The position in dest to start copying to.
+     */
+    public void getChars(int offset, int length, char[] dest, int destPos) {
+        checkRange(offset, length);
+        if(compactText == null) {
+            copy(root, offset, offset + length, dest, destPos);
+        } else if(compactLatin1) {
+            for(int i = 0; i < length; i++) {
+                dest[destPos + i] = (char)(compactText[offset + i] & 0xff);
+            }
+        } else {
+            decodeCompactText().getChars(offset, offset + length, dest, destPos);
+        }
+    }
+
+
+    /**
+     * Returns a read-only snapshot of the current text of the document. Only
+     * the pieces are copied, so taking a snapshot does not depend on the length
+     * of the text, and the snapshot can be read on another thread while the
+     * document keeps changing. A snapshot of a compacted document reads its
+     * Latin-1 bytes directly, or a copy of its text decoded from UTF-8, and
+     * leaves the document compacted.
+     *
+     * @return  A snapshot of the document.
+     */
+    public DocumentSnapshot snapshot() {
+        if(compactText != null) {
+            if(compactLatin1) {
+                return new DocumentSnapshot(compactText);
+            }
+            char[] text = decodeCompactText().toCharArray();
+            return new DocumentSnapshot(new char[][] { text }, new int[] { 0 }, new int[] { text.length }, 1);
+        }
+
+        int count = countPieces(root);
+        char[][] buffers = new char[count][];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+
+        collectPieces(root, buffers, starts, lengths, 0);
+        return new DocumentSnapshot(buffers, starts, lengths, count);
+    }
+
+
+    /**
+     * Replaces the whole text of the document.
+     *
+     * @param text  The new text of the document.
+     */
+    public void setText(String text) {
+        int removed = length();
+        expand();
+
+        root = null;
+        if(!text.isEmpty()) {
+            root = new Node(text.toCharArray(), 0, text.length(), nextPriority());
+        }
+
+        cachedText = text;
+        memoryUsed = -1;
+        fireDocumentChanged(0, removed, text.length());
+    }
+
+
+    /**
+     * Keeps the text of the document as bytes until it is next used. Text that
+     * only uses Latin-1 takes one byte a character; other text is kept as
+     * UTF-8. Text that can not be encoded as UTF-8, such as a lone surrogate,
+     * is left as it is.
+     */
+    public void compact() {
+        if(compactText != null || root == null) {
+            return;
+        }
+
+        String text = getText();
+        byte[] bytes;
+        boolean latin1 = true;
+        for(int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) <= 0xff;
+        }
+
+        if(latin1) {
+            bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        } else {
+            try {
+                ByteBuffer encoded = StandardCharsets.UTF_8.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .encode(CharBuffer.wrap(text));
+                bytes = new byte[encoded.remaining()];
+                encoded.get(bytes);
+            } catch(CharacterCodingException e) {
+                return;
+            }
+        }
+
+        compactText = bytes;
+        compactLatin1 = latin1;
+        compactLength = text.length();
+        root = null;
+        addBlock = null;
+        addLength = 0;
+        cachedText = null;
+    }
+
+
+    /**
+     * Returns whether or not the text of the document is compacted.
+     *
+     * @return  true if the text is kept as bytes; false if not.
+     */
+    public boolean isCompacted() {
+        return compactText != null;
+    }
+
+
+    /**
+     * Returns about how much memory the text of the document takes up. Buffers
+     * shared by several pieces are only counted once. The pieces are only
+     * walked again after the document has changed.
+     *
+     * @return  The size of the text in bytes.
+     */
+    public long getMemoryUsed() {
+        if(compactText != null) {
+            return compactText.length;
+        }
+        if(memoryUsed >= 0) {
+            return memoryUsed;
+        }
+
+        int count = countPieces(root);
+        char[][] buffers = new char[count][];
+        collectPieces(root, buffers, new int[count], new int[count], 0);
+
+        Map<char[], Boolean> counted = new IdentityHashMap<>();
+        long used = (long)count * 40;
+        for(char[] buffer : buffers) {
+            if(counted.put(buffer, Boolean.TRUE) == null) {
+                used += buffer.length * 2L;
+            }
+        }
+        if(addBlock != null && !counted.containsKey(addBlock)) {
+            used += addBlock.length * 2L;
+        }
+        memoryUsed = used;
+        return used;
+    }
+
+
+    /**
+     * Rebuilds the pieces of a compacted document, so that reading it no
+     * longer has to decode it. Does nothing if the document is not compacted.
+     */
+    public void expand() {
+        if(compactText == null) {
+            return;
+        }
+
+        String text = decodeCompactText();
+        compactText = null;
+        memoryUsed = -1;
+        addBlock = new char[ADD_BLOCK_SIZE];
+        root = new Node(text.toCharArray(), 0, text.length(), nextPriority());
+    }
+
+
+    /**
+     * Decodes the text of a compacted document.
+     *
+     * @return  The text of the document.
+     */
+    private String decodeCompactText() {
+        return new String(compactText, compactLatin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Inserts text into the document.
+     *
+     * @param offset    The offset to insert the text at.
+     * @param text      The text to insert.
+     */
+    public void insert(int offset, CharSequence text) {
+        replace(offset, 0, text);
+    }
+
+
+    /**
+     * Removes text from the document.
+     *
+     * @param offset    The offset of the first character to remove.
+     * @param length    The amount of characters to remove.
+     */
+    public void delete(int offset, int length) {
+        replace(offset, length, "");
+    }
+
+
+    /**
+     * Replaces a range of the document with new text. Listeners are notified
+     * once, after both the removal and the insertion have been made.
+     *
+     * @param offset    The offset of the first character to replace.
+     * @param length    The amount of characters to replace.
+     * @param text      The text to put in place of the range.
+     */
+    public void replace(int offset, int length, CharSequence text) {
+        expand();
+        checkRange(offset, length);
+
+        if(length == 0 && text.length() == 0) {
+            return;
+        }
+
+        if(length > 0) {
+            split(root, offset);
+            Node left = splitLeft;
+            split(splitRight, length);
+            root = merge(left, splitRight);
+        }
+
+        if(text.length() > 0) {
+            insertPiece(offset, text);
+        }
+
+        cachedText = null;
+        memoryUsed = -1;
+        fireDocumentChanged(offset, length, text.length());
+    }
+
+
+    /**
+     * Adds the text as a new piece at the offset. Text that is typed one
+     * character at a time extends the piece before it when possible, so that a
+     * run of typing only ever uses a single piece.
+     *
+     * @param offset    The offset to insert the text at.
+     * @param text      The text to insert.
+     */
+    private void insertPiece(int offset, CharSequence text) {
+        int length = text.length();
+
+        if(length > LARGE_INSERT) {
+            char[] buffer = new char[length];
+            getChars(text, buffer, 0);
+            insertNode(offset, new Node(buffer, 0, length, nextPriority()));
+            return;
+        }
+
+        if(addLength + length > addBlock.length) {
+            addBlock = new char[ADD_BLOCK_SIZE];
+            addLength = 0;
+        }
+
+        int start = addLength;
+        getChars(text, addBlock, start);
+        addLength += length;
+
+        Node before = offset > 0 ? findPieceEndingAt(offset) : null;
+        if(before != null && before.buffer == addBlock && before.start + before.length == start) {
+            before.length += length;
+            grow(before, offset, length);
+        } else {
+            insertNode(offset, new Node(addBlock, start, length, nextPriority()));
+        }
+    }
+
+
+    /**
+     * Inserts a node into the tree at the offset.
+     *
+     * @param offset    The offset to insert the node at.
+     * @param node      The node to insert.
+     */
+    private void insertNode(int offset, Node node) {
+        split(root, offset);
+        Node right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+    }
+
+
+    /**
+     * Returns the node whose piece ends exactly at the offset, or null if the
+     * offset falls inside of a piece.
+     *
+     * @param offset    The offset just after the end of the piece.
+     * @return  The node whose piece ends at the offset.
+     */
+    private Node findPieceEndingAt(int offset) {
+        Node node = root;
+        while(node != null) {
+            int leftSize = size(node.left);
+            if(offset <= leftSize) {
+                node = node.left;
+            } else if(offset <= leftSize + node.length) {
+                return offset == leftSize + node.length ? node : null;
+            } else {
+                offset -= leftSize + node.length;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Adds to the subtree sizes of every node on the path to a piece, after that
+     * piece has been made longer.
+     *
+     * @param target    The node whose piece grew.
+     * @param offset    The offset the piece ended at before it grew.
+     * @param amount    The amount of characters the piece grew by.
+     */
+    private void grow(Node target, int offset, int amount) {
+        Node node = root;
+        while(node != null) {
+            node.size += amount;
+            if(node == target) {
+                return;
+            }
+
+            int leftSize = size(node.left);
+            if(offset <= leftSize) {
+                node = node.left;
+            } else {
+                offset -= leftSize + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+
+    /**
+     * Splits a tree in two so that the left tree holds the first k characters.
+     * The results are left in splitLeft and splitRight.
+     *
+     * @param node  The root of the tree to split.
+     * @param k     The amount of characters that go in the left tree.
+     */
+    private void split(Node node, int k) {
+        if(node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+
+        int leftSize = size(node.left);
+
+        if(k <= leftSize) {
+            split(node.left, k);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        } else if(k >= leftSize + node.length) {
+            split(node.right, k - leftSize - node.length);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            int cut = k - leftSize;
+            Node rest = new Node(node.buffer, node.start + cut, node.length - cut, nextPriority());
+            Node right = node.right;
+
+            node.length = cut;
+            node.right = null;
+            update(node);
+
+            splitLeft = node;
+            splitRight = merge(rest, right);
+        }
+    }
+
+
+    /**
+     * Joins two trees, where every character in the left tree comes before
+     * every character in the right tree.
+     *
+     * @param left  The left tree.
+     * @param right The right tree.
+     * @return  The root of the joined tree.
+     */
+    private Node merge(Node left, Node right) {
+        if(left == null) {
+            return right;
+        } else if(right == null) {
+            return left;
+        }
+
+        if(left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+
+    /**
+     * Copies the characters in the range [from, to) of a subtree into dest.
+     *
+     * @param node      The root of the subtree.
+     * @param from      The first offset to copy, relative to the subtree.
+     * @param to        The offset after the last one to copy.
+     * @param dest      The array to copy into.
+     * @param destPos   The position in dest to start copying to.
+     */
+    private void copy(Node node, int from, int to, char[] dest, int destPos) {
+        while(node != null && from < to) {
+            int leftSize = size(node.left);
+
+            if(from < leftSize) {
+                int leftTo = Math.min(to, leftSize);
+                copy(node.left, from, leftTo, dest, destPos);
+                destPos += leftTo - from;
+                from = leftTo;
+            }
+
+            int pieceFrom = from - leftSize;
+            if(from < to && pieceFrom < node.length) {
+                int count = Math.min(node.length, to - leftSize) - pieceFrom;
+                System.arraycopy(node.buffer, node.start + pieceFrom, dest, destPos, count);
+                destPos += count;
+                from += count;
+            }
+
+            from -= leftSize + node.length;
+            to -= leftSize + node.length;
+            node = node.right;
+        }
+    }
+
+
+    /**
+     * Returns the amount of pieces in a subtree.
+     *
+     * @param node  The root of the subtree.
+     * @return  The amount of nodes in the subtree.
+     */
+    private static int countPieces(Node node) {
+        int count = 0;
+        while(node != null) {
+            count += 1 + countPieces(node.left);
+            node = node.right;
+        }
+        return count;
+    }
+
+
+    /**
+     * Copies the pieces of a subtree into arrays, in document order.
+     *
+     * @param node      The root of the subtree.
+     * @param buffers   The array to copy the buffers into.
+     * @param starts    The array to copy the starts into.
+     * @param lengths   The array to copy the lengths into.
+     * @param index     The index to copy the first piece to.
+     * @return  The index after the last piece copied.
+     */
+    private static int collectPieces(Node node, char[][] buffers, int[] starts, int[] lengths, int index) {
+        while(node != null) {
+            index = collectPieces(node.left, buffers, starts, lengths, index);
+            buffers[index] = node.buffer;
+            starts[index] = node.start;
+            lengths[index] = node.length;
+            index++;
+            node = node.right;
+        }
+        return index;
+    }
+
+
+    /**
+     * Copies the characters of text into dest.
+     *
+     * @param text      The text to copy.
+     * @param dest      The array to copy into.
+     * @param destPos   The position in dest to start copying to.
+     */
+    private static void getChars(CharSequence text, char[] dest, int destPos) {
+        if(text instanceof String) {
+            ((String)text).getChars(0, text.length(), dest, destPos);
+        } else {
+            for(int i = 0; i < text.length(); i++) {
+                dest[destPos + i] = text.charAt(i);
+            }
+        }
+    }
+
+
+    /**
+     * Throws an IndexOutOfBoundsException if the range is not in the document.
+     *
+     * @param offset    The offset of the range.
+     * @param length    The length of the range.
+     */
+    private void checkRange(int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > length()) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length)
+                    + ") is outside of the document of length " + length() + ".");
+        }
+    }
+
+
+    /**
+     * Notifies the listeners that the document changed.
+     *
+     * @param offset            The offset where the change started.
+     * @param removedLength     The amount of characters removed.
+     * @param insertedLength    The amount of characters inserted.
+     */
+    private void fireDocumentChanged(int offset, int removedLength, int insertedLength) {
+        if(listeners.isEmpty()) {
+            return;
+        }
+
+        DocumentEvent e = new DocumentEvent(this, offset, removedLength, insertedLength);
+        for(DocumentListener listener : new ArrayList<>(listeners)) {
+            listener.documentChanged(e);
+        }
+    }
+
+
+    /**
+     * Returns the next random priority for a node.
+     *
+     * @return  A random priority.
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+
+    /**
+     * Returns the amount of characters in a subtree.
+     *
+     * @param node  The root of the subtree, which may be null.
+     * @return  The amount of characters in the subtree.
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+
+    /**
+     * Recomputes the size of a node from its piece and its children.
+     *
+     * @param node  The node to update.
+     */
+    private static void update(Node node) {
+        node.size = size(node.left) + node.length + size(node.right);
+    }
+
+
+    /**
+     * A node in the tree of pieces. Each node is one piece of the document.
+     */
+    private static class Node {
+
+
+        /**
+         * The buffer that the piece points into.
+         */
+        private final char[] buffer;
+
+
+        /**
+         * The index of the first character of the piece in the buffer.
+         */
+        private final int start;
+
+
+        /**
+         * The amount of characters in the piece.
+         */
+        private int length;
+
+
+        /**
+         * The amount of characters in the subtree rooted at this node.
+         */
+        private int size;
+
+
+        /**
+         * The random priority that keeps the tree balanced.
+         */
+        private final int priority;
+
+
+        /**
+         * The children of this node.
+         */
+        private Node left, right;
+
+
+        /**
+         * Creates a node for a piece.
+         *
+         * @param buffer    The buffer the piece points into.
+         * @param start     The index of the first character of the piece.
+         * @param length    The amount of characters in the piece.
+         * @param priority  The random priority of the node.
+         */
+        private Node(char[] buffer, int start, int length, int priority) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.size = length;
+            this.priority = priority;
+        }
+    }
+}
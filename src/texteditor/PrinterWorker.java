@@ -1,17 +1,28 @@
 package texteditor;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javafx.concurrent.Task;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
 import javafx.print.PageLayout;
 import javafx.print.PrinterJob;
+import javafx.scene.Group;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
+import javafx.stage.Window;
 
 
 /**
- * Adds printing functionality to the text editor.
+ * Adds printing functionality to the text editor. The document is split into
+ * pages as it is printed, so only the page being printed is laid out at any
+ * time, no matter how long the document is.
  *
  * @author Jordan Hartwick
  * Jul 3, 2016
@@ -20,73 +31,354 @@ public class PrinterWorker {
 
 
     /**
-     * The TextFlow that will contain the text that needs to be printed.
+     * The most characters of a line that are laid out at once. Longer lines
+     * are laid out a piece at a time.
      */
-    private final TextFlow node;
-    
-    
+    private static final int MAX_LINE_LENGTH = 16 * 1024;
+
+
+    /**
+     * The thread that documents are printed on.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Printer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * The text to print, taken when the PrinterWorker is created.
+     */
+    private final DocumentSnapshot snapshot;
+
+
+    /**
+     * The font the text is printed in.
+     */
+    private final Font font;
+
+
     /**
-     * The boolean that contains the value for if the printer has finished printing.
+     * The text printed at the top of each page, or null for none.
      */
-    private boolean printerFinished = false;
+    private String header;
 
 
     /**
-     * The PrintWorker constructor method will set the
-     * @param node
+     * Whether or not the page number is printed at the bottom of each page.
+     */
+    private boolean pageNumbers = true;
+
+
+    /**
+     * The PrintWorker constructor method will take a snapshot of the text in
+     * the editing area, so it can be printed while the user keeps editing.
+     *
+     * @param node  The EditingArea whose text will be printed.
      */
     public PrinterWorker(EditingArea node) {
-        Text text = new Text(node.getText());
-        text.setFont(new Font("Arial", 12));
-        this.node = new TextFlow(text);
+        snapshot = node.getDocument().snapshot();
+        font = node.getFont();
     }
 
 
     /**
-     * Creates a PrinterJob and prints the page the user typed.
+     * Sets the text printed at the top of each page.
+     *
+     * @param header    The header, or null to print no header.
      */
-    public void print() {
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+
+    /**
+     * Sets whether or not the page number is printed at the bottom of each
+     * page.
+     *
+     * @param pageNumbers   Whether or not to print page numbers.
+     */
+    public void setPageNumbers(boolean pageNumbers) {
+        this.pageNumbers = pageNumbers;
+    }
+
+
+    /**
+     * Creates a PrinterJob and prints the document on the printer the user
+     * chooses. A dialog shows the progress of the job and lets the user cancel
+     * it.
+     *
+     * @param owner The window the dialogs belong to.
+     */
+    public void print(Window owner) {
         PrinterJob job = PrinterJob.createPrinterJob();
-        
-        Task task = new Task<Void>() {
-
-            @Override
-            public Void call() {
-                if(job != null && job.showPrintDialog(null)) {
-                    PageLayout pageLayout = job.getJobSettings().getPageLayout();
-                    node.setMaxWidth(pageLayout.getPrintableWidth());
-
-                    boolean success = job.printPage(node);
-                    if(success) {
-                        job.endJob();
-                        printerFinished = true;
-                    }
-                }
-                return null;
-            }
-        };
-        
-        // Display a message for if the printer printed the page.
+        if(job == null) {
+            showError("No printer is available.");
+            return;
+        }
+
+        if(!job.showPrintDialog(owner)) {
+            job.cancelJob();
+            return;
+        }
+
+        PrintTask task = new PrintTask(job);
+
+        // Show the progress of the job until it is done.
+        Label message = new Label();
+        message.textProperty().bind(task.messageProperty());
+        ProgressBar progress = new ProgressBar();
+        progress.setMaxWidth(Double.MAX_VALUE);
+        progress.progressProperty().bind(task.progressProperty());
+
+        Alert progressDialog = new Alert(AlertType.NONE, null, ButtonType.CANCEL);
+        progressDialog.initOwner(owner);
+        progressDialog.setTitle("Printer");
+        progressDialog.setHeaderText(null);
+        progressDialog.getDialogPane().setContent(new VBox(6, message, progress));
+        progressDialog.getDialogPane().setPrefWidth(320);
+        progressDialog.resultProperty().addListener((observable, oldValue, newValue) -> {
+            task.cancel();
+        });
+
+        // Display a message for if the printer printed the document.
         task.setOnSucceeded(e -> {
-            if(printerFinished) {
-                Alert alert = new Alert(AlertType.INFORMATION);
-                alert.setTitle("Printer");
-                alert.setHeaderText(null);
-                alert.setContentText("Finished Printing!");
-                alert.showAndWait();
-            }
+            progressDialog.close();
+            Alert alert = new Alert(AlertType.INFORMATION);
+            alert.initOwner(owner);
+            alert.setTitle("Printer");
+            alert.setHeaderText(null);
+            alert.setContentText("Finished Printing! " + task.getValue()
+                    + (task.getValue() == 1 ? " page was printed." : " pages were printed."));
+            alert.showAndWait();
+        });
+
+        task.setOnCancelled(e -> {
+            progressDialog.close();
         });
-        
+
         // Display a message if the task failed.
         task.setOnFailed(e -> {
-            Alert alert = new Alert(AlertType.ERROR);
-            alert.setTitle("Error");
-            alert.setHeaderText(null);
-            alert.setContentText("The printing task encountered an error.");
-            alert.showAndWait();
+            progressDialog.close();
+            showError("The printing task encountered an error.");
         });
 
+        progressDialog.show();
+
         // Start the printing task.
-        new Thread(task).start();
+        EXECUTOR.execute(task);
+    }
+
+
+    /**
+     * Shows an error message.
+     *
+     * @param message   The message.
+     */
+    private static void showError(String message) {
+        Alert alert = new Alert(AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+
+    /**
+     * Lays out and prints the pages of the document one at a time. Lines are
+     * wrapped to the printable width, and a line that does not fit at the
+     * bottom of a page is continued on the next one. The value of the task is
+     * the amount of pages printed.
+     */
+    private class PrintTask extends Task<Integer> {
+
+
+        /**
+         * The job the pages are printed with.
+         */
+        private final PrinterJob job;
+
+
+        /**
+         * The text being printed.
+         */
+        private final CharSequence text = snapshot.asCharSequence();
+
+
+        /**
+         * The offset of the first character that has not been laid out.
+         */
+        private int offset = 0;
+
+
+        /**
+         * The rest of a line that did not fit on the last page, or null.
+         */
+        private String carry;
+
+
+        /**
+         * Creates a PrintTask.
+         *
+         * @param job   The job to print the pages with.
+         */
+        PrintTask(PrinterJob job) {
+            this.job = job;
+        }
+
+
+        /*
+         * Prints a page at a time until the whole document has been printed or
+         * the task is cancelled.
+         */
+        @Override
+        protected Integer call() throws Exception {
+            long startTime = System.nanoTime();
+            PageLayout pageLayout = job.getJobSettings().getPageLayout();
+            double width = pageLayout.getPrintableWidth();
+            double height = pageLayout.getPrintableHeight();
+
+            double lineHeight = newText("X").getLayoutBounds().getHeight();
+            double headerHeight = header == null ? 0 : lineHeight * 2;
+            double footerHeight = pageNumbers ? lineHeight * 2 : 0;
+            int rowsPerPage = Math.max(1, (int)((height - headerHeight - footerHeight) / lineHeight));
+
+            int pages = 0;
+            do {
+                pages++;
+                updateMessage("Printing page " + pages + "...");
+
+                Group page = new Group();
+                Group body = layoutRows(width, lineHeight, rowsPerPage);
+                body.setLayoutY(headerHeight);
+                page.getChildren().add(body);
+
+                if(header != null) {
+                    Text headerText = newText(header);
+                    page.getChildren().add(headerText);
+                }
+
+                if(pageNumbers) {
+                    Text number = newText("Page " + pages);
+                    number.setLayoutX((width - number.getLayoutBounds().getWidth()) / 2);
+                    number.setLayoutY(height - lineHeight);
+                    page.getChildren().add(number);
+                }
+
+                if(isCancelled()) {
+                    break;
+                }
+
+                if(!job.printPage(pageLayout, page)) {
+                    throw new IllegalStateException("The printer did not accept page " + pages + ".");
+                }
+                updateProgress(offset - (carry == null ? 0 : carry.length()), text.length());
+            } while((offset < text.length() || carry != null) && !isCancelled());
+
+            if(isCancelled()) {
+                job.cancelJob();
+                return pages;
+            }
+
+            job.endJob();
+            EditorMetrics.get().recordPrint(System.nanoTime() - startTime, pages);
+            return pages;
+        }
+
+
+        /**
+         * Lays out the text of the next page.
+         *
+         * @param width         The width the lines are wrapped to.
+         * @param lineHeight    The height of a row of text.
+         * @param rowsPerPage   The amount of rows that fit on a page.
+         * @return  The rows of the page.
+         */
+        private Group layoutRows(double width, double lineHeight, int rowsPerPage) {
+            Group body = new Group();
+            int rows = 0;
+
+            while(rows < rowsPerPage && (carry != null || offset < text.length())) {
+                String line = nextLine();
+                Text row = newText(line);
+                row.setWrappingWidth(width);
+
+                int lineRows = Math.max(1, (int)Math.round(row.getLayoutBounds().getHeight() / lineHeight));
+                int free = rowsPerPage - rows;
+                if(lineRows > free) {
+                    // Print as many of the line's rows as fit, and continue the
+                    // rest on the next page.
+                    int split = row.hitTest(new Point2D(0, free * lineHeight + lineHeight / 2)).getInsertionIndex();
+                    if(split > 0 && split < line.length()) {
+                        carry = line.substring(split);
+                        lineRows = free;
+
+                        // Spaces at the end of the last row would be wrapped
+                        // onto a row of their own.
+                        while(split > 0 && Character.isWhitespace(line.charAt(split - 1))) {
+                            split--;
+                        }
+                        row.setText(line.substring(0, split));
+                    } else if(rows > 0) {
+                        carry = line;
+                        break;
+                    }
+                }
+
+                row.setLayoutY(rows * lineHeight);
+                body.getChildren().add(row);
+                rows += lineRows;
+            }
+            return body;
+        }
+
+
+        /**
+         * Returns the next line to lay out: the rest of a line from the last
+         * page, or the next line of the text without its line break.
+         *
+         * @return  The line.
+         */
+        private String nextLine() {
+            if(carry != null) {
+                String line = carry;
+                carry = null;
+                return line;
+            }
+
+            int length = text.length();
+            int end = offset;
+            int limit = Math.min(length, offset + MAX_LINE_LENGTH);
+            while(end < limit && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+
+            String line = text.subSequence(offset, end).toString();
+            offset = end;
+
+            // Pieces of a long line are not followed by a line break.
+            if(end < length && (text.charAt(end) == '\n' || text.charAt(end) == '\r')) {
+                offset++;
+                if(text.charAt(end) == '\r' && offset < length && text.charAt(offset) == '\n') {
+                    offset++;
+                }
+            }
+            return line;
+        }
+
+
+        /**
+         * Creates a Text in the font of the document, positioned by its top.
+         *
+         * @param string    The text to show.
+         * @return  The Text.
+         */
+        private Text newText(String string) {
+            Text node = new Text(string);
+            node.setFont(font);
+            node.setTextOrigin(VPos.TOP);
+            return node;
+        }
     }
 }
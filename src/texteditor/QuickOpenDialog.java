@@ -0,0 +1,316 @@
+package texteditor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+
+/**
+ * The window for opening a file under a folder by typing a few letters of its
+ * path. The paths come from a PathIndex of the folder, which is kept up to date
+ * while the editor runs, so the window can be opened again straight away. The
+ * best matches are listed as each letter is typed; Up and Down pick one and
+ * Enter opens it.
+ */
+public class QuickOpenDialog extends Stage {
+
+
+    /**
+     * The most paths that are listed.
+     */
+    private static final int MAX_RESULTS = 50;
+
+
+    /**
+     * The fields for the folder to open files from and the letters to find.
+     */
+    private final TextField folderField, queryField;
+
+
+    /**
+     * The paths that best match the letters typed, relative to the folder.
+     */
+    private final ObservableList<String> results = FXCollections.observableArrayList();
+
+
+    /**
+     * The list showing the paths.
+     */
+    private final ListView<String> resultList = new ListView<>(results);
+
+
+    /**
+     * The label showing how many files are indexed.
+     */
+    private final Label status = new Label();
+
+
+    /**
+     * Called with the file the user picked.
+     */
+    private final Consumer<File> opener;
+
+
+    /**
+     * Whether or not the list is waiting to be brought up to date with the
+     * index.
+     */
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * The index of the folder, or null if no folder has been indexed.
+     */
+    private PathIndex index;
+
+
+    /**
+     * Creates a QuickOpenDialog.
+     *
+     * @param owner     The window the dialog belongs to.
+     * @param opener    Called with the file the user picked.
+     */
+    public QuickOpenDialog(Window owner, Consumer<File> opener) {
+        this.opener = opener;
+        initOwner(owner);
+        setTitle("Quick Open");
+
+        queryField = new TextField();
+        folderField = new TextField(System.getProperty("user.dir"));
+        HBox.setHgrow(folderField, Priority.ALWAYS);
+        folderField.setOnAction(e -> {
+            indexFolder();
+            queryField.requestFocus();
+        });
+
+        Button browse = new Button("Browse...");
+        browse.setOnAction(e -> chooseFolder());
+
+        HBox folderRow = new HBox(6, new Label("Folder:"), folderField, browse);
+        folderRow.setAlignment(Pos.CENTER_LEFT);
+
+        queryField.setPromptText("File name");
+        queryField.textProperty().addListener((observable, oldValue, newValue) -> update());
+
+        // The list is stepped through without leaving the field.
+        queryField.addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.DOWN) {
+                resultList.getSelectionModel().selectNext();
+                resultList.scrollTo(resultList.getSelectionModel().getSelectedIndex());
+                e.consume();
+            } else if(e.getCode() == KeyCode.UP) {
+                resultList.getSelectionModel().selectPrevious();
+                resultList.scrollTo(resultList.getSelectionModel().getSelectedIndex());
+                e.consume();
+            } else if(e.getCode() == KeyCode.ENTER) {
+                openSelected();
+                e.consume();
+            }
+        });
+
+        resultList.setCellFactory(list -> new PathCell());
+        resultList.setOnMouseClicked(e -> {
+            if(e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+        resultList.addEventHandler(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ENTER) {
+                openSelected();
+                e.consume();
+            }
+        });
+        VBox.setVgrow(resultList, Priority.ALWAYS);
+
+        status.setMaxWidth(Double.MAX_VALUE);
+
+        VBox root = new VBox(6, folderRow, queryField, resultList, status);
+        root.setPadding(new Insets(8));
+
+        Scene scene = new Scene(root, 600, 400);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
+            if(e.getCode() == KeyCode.ESCAPE) {
+                hide();
+            }
+        });
+        setScene(scene);
+    }
+
+
+    /**
+     * Shows the dialog with the field ready for typing, indexing the folder if
+     * it has not been indexed.
+     */
+    public void open() {
+        indexFolder();
+        show();
+        toFront();
+        queryField.requestFocus();
+        queryField.selectAll();
+    }
+
+
+    /**
+     * Starts indexing the folder in the field, unless it is already indexed.
+     * An index that could not watch every folder is built again, since it may
+     * have missed changes.
+     */
+    private void indexFolder() {
+        Path root = Paths.get(folderField.getText()).toAbsolutePath().normalize();
+        if(!Files.isDirectory(root)) {
+            status.setText(root + " is not a folder.");
+            return;
+        }
+
+        if(index == null || !index.getRoot().equals(root) || !index.isWatchingAll() && !index.isBuilding()) {
+            if(index != null) {
+                index.close();
+            }
+            index = new PathIndex(root, this::scheduleUpdate);
+            index.start();
+        }
+        update();
+    }
+
+
+    /**
+     * Lets the user pick the folder to open files from.
+     */
+    private void chooseFolder() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Folder to Open Files From");
+        File folder = new File(folderField.getText());
+        if(folder.isDirectory()) {
+            chooser.setInitialDirectory(folder);
+        }
+
+        folder = chooser.showDialog(this);
+        if(folder != null) {
+            folderField.setText(folder.getPath());
+            indexFolder();
+        }
+        queryField.requestFocus();
+    }
+
+
+    /**
+     * Brings the list up to date on the JavaFX thread once the index has
+     * changed. Changes that come in before then are taken care of by the same
+     * update.
+     */
+    private void scheduleUpdate() {
+        if(updateScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updateScheduled.set(false);
+                if(isShowing()) {
+                    update();
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Lists the paths that best match the letters typed, keeping the path
+     * that was picked if it is still listed.
+     */
+    private void update() {
+        if(index == null) {
+            results.clear();
+            return;
+        }
+
+        String selected = resultList.getSelectionModel().getSelectedItem();
+        results.setAll(index.find(queryField.getText(), MAX_RESULTS));
+        int selectedIndex = selected == null ? -1 : results.indexOf(selected);
+        resultList.getSelectionModel().select(Math.max(0, selectedIndex));
+        resultList.scrollTo(Math.max(0, selectedIndex));
+
+        String files = String.format("%,d files", index.getPathCount());
+        if(index.isBuilding()) {
+            status.setText("Indexing " + index.getRoot() + "... " + files);
+        } else if(!index.isWatchingAll()) {
+            status.setText(files + ", not watched for changes");
+        } else {
+            status.setText(files);
+        }
+    }
+
+
+    /**
+     * Opens the selected file and hides the dialog.
+     */
+    private void openSelected() {
+        String selected = resultList.getSelectionModel().getSelectedItem();
+        if(selected != null) {
+            hide();
+            opener.accept(index.getRoot().resolve(selected).toFile());
+        }
+    }
+
+
+    /**
+     * Shows a path as its file name followed by the folder it is in.
+     */
+    private static class PathCell extends ListCell<String> {
+
+
+        /**
+         * The label showing the folder, in grey.
+         */
+        private final Label folder = new Label();
+
+
+        /**
+         * Creates a PathCell.
+         */
+        private PathCell() {
+            folder.setStyle("-fx-text-fill: grey;");
+            setContentDisplay(ContentDisplay.RIGHT);
+            setGraphicTextGap(12);
+        }
+
+
+        /*
+         * Shows the path, or nothing for an empty cell.
+         */
+        @Override
+        protected void updateItem(String item, boolean empty) {
+            super.updateItem(item, empty);
+
+            if(empty || item == null) {
+                setText(null);
+                setGraphic(null);
+            } else {
+                Path path = Paths.get(item);
+                setText(path.getFileName().toString());
+                folder.setText(path.getParent() == null ? "" : path.getParent().toString());
+                setGraphic(folder);
+            }
+        }
+    }
+}
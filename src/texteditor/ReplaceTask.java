@@ -0,0 +1,135 @@
+package texteditor;
+
+import javafx.concurrent.WorkerStateEvent;
+
+
+/**
+ * Replaces every match of a search in an EditingArea. The matches are found and
+ * the new text is built on a background thread, and the text from the first
+ * match to the last is then replaced with a single edit, so replacing every
+ * match is one undo step and only tells the document's listeners once.
+ */
+public class ReplaceTask extends SearchTask {
+
+
+    /**
+     * The replacement the user typed.
+     */
+    private final String replacement;
+
+
+    /**
+     * The text that replaces the range from the first match to the last.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+
+    /**
+     * The start of the first match, or -1 if nothing has matched.
+     */
+    private int firstStart = -1;
+
+
+    /**
+     * The end of the last match found.
+     */
+    private int lastEnd = 0;
+
+
+    /**
+     * The amount of matches replaced.
+     */
+    private int replaced = 0;
+
+
+    /**
+     * Whether or not the replacement was made. It is not made if the document
+     * was edited while the matches were being found.
+     */
+    private boolean applied = false;
+
+
+    /**
+     * Creates a ReplaceTask. This must be called on the JavaFX thread, since it
+     * takes the snapshot of the document that is searched.
+     *
+     * @param editingArea   The EditingArea to replace the matches in.
+     * @param query         What to search for.
+     * @param replacement   What to replace each match with.
+     */
+    public ReplaceTask(EditingArea editingArea, SearchQuery query, String replacement) {
+        super(editingArea, query);
+        this.replacement = replacement;
+
+        // This handler is added before any other, so the replacement has been
+        // made by the time the handlers of whoever started the task are run.
+        addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+            apply();
+        });
+    }
+
+
+    /**
+     * Starts finding the matches on one of the search threads.
+     */
+    @Override
+    public void start() {
+        execute();
+    }
+
+
+    /**
+     * Returns whether or not the matches were replaced.
+     *
+     * @return  Whether or not the replacement was made.
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+
+    /*
+     * Finds the matches and returns the amount of matches replaced.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        super.call();
+        return replaced;
+    }
+
+
+    /*
+     * Adds the text between the last match and this one, then the replacement.
+     */
+    @Override
+    protected void found(int start, int end) {
+        if(firstStart < 0) {
+            firstStart = start;
+        } else {
+            text.append(snapshot.getText(lastEnd, start - lastEnd));
+        }
+
+        if(query.isRegex()) {
+            SearchQuery.appendReplacement(getMatcher(), replacement, text);
+        } else {
+            text.append(replacement);
+        }
+
+        lastEnd = end;
+        replaced++;
+    }
+
+
+    /**
+     * Replaces the matches with one edit, as long as the document is still the
+     * one that was searched.
+     */
+    private void apply() {
+        if(replaced == 0 || editingArea.getEditCount() != editCount) {
+            return;
+        }
+
+        editingArea.replaceText(firstStart, lastEnd, text.toString());
+        applied = true;
+    }
+}
@@ -0,0 +1,212 @@
+package texteditor;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * A SearchQuery is what the user is searching for: either plain text or a
+ * regular expression, with or without matching case. A query can be shared by
+ * the searches of several documents at once, since it is never changed.
+ */
+public class SearchQuery {
+
+
+    /**
+     * The text or regular expression to search for.
+     */
+    private final String text;
+
+
+    /**
+     * Whether or not the text is a regular expression.
+     */
+    private final boolean regex;
+
+
+    /**
+     * Whether or not upper and lower case letters are different.
+     */
+    private final boolean matchCase;
+
+
+    /**
+     * The compiled pattern. Plain text is compiled as a literal pattern.
+     */
+    private final Pattern pattern;
+
+
+    /**
+     * Creates a SearchQuery.
+     *
+     * @param text      The text or regular expression to search for.
+     * @param regex     Whether or not the text is a regular expression.
+     * @param matchCase Whether or not upper and lower case letters are different.
+     * @throws PatternSyntaxException   If the regular expression is not valid.
+     */
+    public SearchQuery(String text, boolean regex, boolean matchCase) {
+        this.text = text;
+        this.regex = regex;
+        this.matchCase = matchCase;
+
+        int flags = regex ? Pattern.MULTILINE : Pattern.LITERAL;
+        if(!matchCase) {
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        pattern = Pattern.compile(text, flags);
+    }
+
+
+    /**
+     * Returns the text or regular expression to search for.
+     *
+     * @return  The text of the query.
+     */
+    public String getText() {
+        return text;
+    }
+
+
+    /**
+     * Returns whether or not the text is a regular expression.
+     *
+     * @return  Whether or not the query is a regular expression.
+     */
+    public boolean isRegex() {
+        return regex;
+    }
+
+
+    /**
+     * Returns whether or not upper and lower case letters are different.
+     *
+     * @return  Whether or not the query matches case.
+     */
+    public boolean isMatchCase() {
+        return matchCase;
+    }
+
+
+    /**
+     * Returns the compiled pattern. For plain text this is a literal pattern,
+     * which is slower than the search used for plain text in a document but
+     * can match any CharSequence.
+     *
+     * @return  The pattern.
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+
+    /**
+     * Returns the text that replaces a match at a range of a text, or null if
+     * the range is no longer a match.
+     *
+     * @param text          The text holding the match.
+     * @param start         The offset of the first character of the match.
+     * @param end           The offset after the last character of the match.
+     * @param replacement   The replacement the user typed.
+     * @return  The text to put in place of the match, or null.
+     */
+    public String getReplacement(CharSequence text, int start, int end, String replacement) {
+        if(!regex) {
+            String match = text.subSequence(start, end).toString();
+            boolean matches = matchCase ? match.equals(this.text) : match.equalsIgnoreCase(this.text);
+            return matches ? replacement : null;
+        }
+
+        Matcher matcher = pattern.matcher(text);
+        if(!matcher.find(start) || matcher.start() != start || matcher.end() != end) {
+            return null;
+        }
+
+        StringBuilder out = new StringBuilder();
+        appendReplacement(matcher, replacement, out);
+        return out.toString();
+    }
+
+
+    /**
+     * Adds the replacement for the current match of a matcher to a builder.
+     * "$n" and "${name}" are filled in with the groups of the match, and a '\\'
+     * makes the character after it literal, the same as Matcher.replaceAll.
+     * References to groups that do not exist are added as they are.
+     *
+     * @param matcher       The matcher, positioned at a match.
+     * @param replacement   The replacement the user typed.
+     * @param out           The builder to add the replacement to.
+     */
+    public static void appendReplacement(Matcher matcher, String replacement, StringBuilder out) {
+        int length = replacement.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = replacement.charAt(i);
+
+            if(c == '\\' && i + 1 < length) {
+                out.append(replacement.charAt(++i));
+            } else if(c == '$' && i + 1 < length && replacement.charAt(i + 1) == '{') {
+                int close = replacement.indexOf('}', i + 2);
+                String group = null;
+                if(close > 0) {
+                    try {
+                        group = matcher.group(replacement.substring(i + 2, close));
+                    } catch(IllegalArgumentException e) {
+                        close = -1;
+                    }
+                }
+
+                if(close > 0) {
+                    out.append(group == null ? "" : group);
+                    i = close;
+                } else {
+                    out.append(c);
+                }
+            } else if(c == '$' && i + 1 < length && isDigit(replacement.charAt(i + 1))) {
+                // Take as many digits as still name a group.
+                int group = replacement.charAt(++i) - '0';
+                while(i + 1 < length && isDigit(replacement.charAt(i + 1))) {
+                    int next = group * 10 + replacement.charAt(i + 1) - '0';
+                    if(next > matcher.groupCount()) {
+                        break;
+                    }
+                    group = next;
+                    i++;
+                }
+
+                if(group <= matcher.groupCount()) {
+                    String text = matcher.group(group);
+                    out.append(text == null ? "" : text);
+                } else {
+                    out.append('$').append(group);
+                }
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * Folds a character so that characters that only differ in case are the
+     * same, the way String.equalsIgnoreCase compares them.
+     *
+     * @param c The character to fold.
+     * @return  The folded character.
+     */
+    public static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+
+    /**
+     * Returns whether or not a character is one of the digits 0 to 9.
+     *
+     * @param c The character.
+     * @return  true if the character is a digit; false if not.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,347 @@
+package texteditor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+
+/**
+ * Searches the text of an EditingArea on a background thread. Plain text is
+ * found with the Boyer-Moore-Horspool algorithm, and regular expressions are
+ * matched against a view of a snapshot of the document, so the document is
+ * never copied. Matches are handed to the EditingArea in batches as they are
+ * found, and the value of the task is the amount of matches found so far.
+ */
+public class SearchTask extends Task<Integer> {
+
+
+    /**
+     * The amount of characters copied out of the snapshot at a time when
+     * searching for plain text.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+
+    /**
+     * The amount of matches handed to the EditingArea at a time.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+
+    /**
+     * The size of the Horspool shift table. Characters share an entry by their
+     * low byte, and an entry holds the smallest shift of the characters that
+     * share it, which is always safe.
+     */
+    private static final int SHIFT_TABLE_SIZE = 256;
+
+
+    /**
+     * The threads that searches run on. Searching every tab starts one search
+     * for each tab, so the tabs are searched in parallel.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+                Thread thread = new Thread(r, "Searcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    /**
+     * The EditingArea being searched.
+     */
+    protected final EditingArea editingArea;
+
+
+    /**
+     * What is being searched for.
+     */
+    protected final SearchQuery query;
+
+
+    /**
+     * The text of the document when the search was started.
+     */
+    protected final DocumentSnapshot snapshot;
+
+
+    /**
+     * The edit count of the EditingArea when the search was started. Matches
+     * are only added while the document is still the one that was searched.
+     */
+    protected final long editCount;
+
+
+    /**
+     * The matcher of the regular expression, or null if the query is plain text.
+     */
+    private Matcher matcher;
+
+
+    /**
+     * The matches found since the last batch was handed off.
+     */
+    private int[] batchStarts = new int[BATCH_SIZE], batchEnds = new int[BATCH_SIZE];
+
+
+    /**
+     * The amount of matches in the current batch.
+     */
+    private int batchCount = 0;
+
+
+    /**
+     * The amount of matches found.
+     */
+    private int found = 0;
+
+
+    /**
+     * The batches waiting to be added to the EditingArea. Each batch holds an
+     * array of starts and an array of ends.
+     */
+    private final Queue<int[][]> pendingBatches = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Whether or not the batches are already waiting to be added on the JavaFX
+     * thread.
+     */
+    private final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * Creates a SearchTask. This must be called on the JavaFX thread, since it
+     * takes the snapshot of the document that is searched.
+     *
+     * @param editingArea   The EditingArea to search.
+     * @param query         What to search for.
+     */
+    public SearchTask(EditingArea editingArea, SearchQuery query) {
+        this.editingArea = editingArea;
+        this.query = query;
+        this.snapshot = editingArea.getDocument().snapshot();
+        this.editCount = editingArea.getEditCount();
+    }
+
+
+    /**
+     * Removes the matches of the last search from the EditingArea and starts
+     * searching on one of the search threads.
+     */
+    public void start() {
+        editingArea.clearMatches();
+        EXECUTOR.execute(this);
+    }
+
+
+    /**
+     * Starts the task on one of the search threads without touching the matches
+     * in the EditingArea.
+     */
+    protected void execute() {
+        EXECUTOR.execute(this);
+    }
+
+
+    /*
+     * Searches the snapshot and returns the amount of matches.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        if(query.isRegex()) {
+            searchRegex();
+        } else {
+            searchLiteral();
+        }
+        flush();
+        return found;
+    }
+
+
+    /*
+     * Adds the last of the matches to the EditingArea.
+     */
+    @Override
+    protected void succeeded() {
+        addPendingBatches();
+    }
+
+
+    /**
+     * Returns the matcher of the regular expression, positioned at the match
+     * that was just found.
+     *
+     * @return  The matcher, or null if the query is plain text.
+     */
+    protected Matcher getMatcher() {
+        return matcher;
+    }
+
+
+    /**
+     * Called on the search thread for each match, in order.
+     *
+     * @param start The offset of the first character of the match.
+     * @param end   The offset after the last character of the match.
+     */
+    protected void found(int start, int end) {
+        batchStarts[batchCount] = start;
+        batchEnds[batchCount] = end;
+        batchCount++;
+        found++;
+
+        if(batchCount == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Finds plain text with the Boyer-Moore-Horspool algorithm. The snapshot is
+     * copied out a block at a time, with each block overlapping the next by one
+     * less than the length of the text, so matches across blocks are found.
+     */
+    private void searchLiteral() {
+        char[] pattern = query.getText().toCharArray();
+        int m = pattern.length;
+        int length = snapshot.length();
+        if(m == 0 || m > length) {
+            return;
+        }
+
+        boolean foldCase = !query.isMatchCase();
+        if(foldCase) {
+            for(int i = 0; i < m; i++) {
+                pattern[i] = SearchQuery.foldCase(pattern[i]);
+            }
+        }
+
+        int[] shift = new int[SHIFT_TABLE_SIZE];
+        for(int i = 0; i < SHIFT_TABLE_SIZE; i++) {
+            shift[i] = m;
+        }
+        for(int i = 0; i < m - 1; i++) {
+            shift[pattern[i] & (SHIFT_TABLE_SIZE - 1)] = m - 1 - i;
+        }
+
+        char[] window = new char[BLOCK_SIZE + m - 1];
+        char last = pattern[m - 1];
+        int nextAllowed = 0;
+
+        for(int base = 0; base + m <= length; base += BLOCK_SIZE) {
+            if(isCancelled()) {
+                return;
+            }
+
+            int count = Math.min(window.length, length - base);
+            snapshot.getChars(base, count, window, 0);
+            if(foldCase) {
+                for(int i = 0; i < count; i++) {
+                    window[i] = SearchQuery.foldCase(window[i]);
+                }
+            }
+
+            // Matches starting in the overlap are found with the next block.
+            int limit = Math.min(BLOCK_SIZE, count - m + 1);
+            int i = Math.max(0, nextAllowed - base);
+            while(i < limit) {
+                char c = window[i + m - 1];
+                if(c == last) {
+                    int j = m - 2;
+                    while(j >= 0 && window[i + j] == pattern[j]) {
+                        j--;
+                    }
+                    if(j < 0) {
+                        found(base + i, base + i + m);
+                        nextAllowed = base + i + m;
+                        i += m;
+                        continue;
+                    }
+                }
+                i += shift[c & (SHIFT_TABLE_SIZE - 1)];
+            }
+
+            flush();
+            updateProgress(Math.min(length, base + BLOCK_SIZE), length);
+        }
+    }
+
+
+    /**
+     * Finds the matches of a regular expression. Empty matches are skipped,
+     * since there is nothing to highlight or replace.
+     */
+    private void searchRegex() {
+        matcher = query.getPattern().matcher(snapshot.asCharSequence());
+        int length = Math.max(1, snapshot.length());
+        int steps = 0;
+
+        while(matcher.find()) {
+            if(matcher.end() > matcher.start()) {
+                found(matcher.start(), matcher.end());
+            }
+
+            if(++steps % BATCH_SIZE == 0) {
+                if(isCancelled()) {
+                    return;
+                }
+                flush();
+                updateProgress(matcher.end(), length);
+            }
+        }
+    }
+
+
+    /**
+     * Hands the matches in the current batch to the JavaFX thread.
+     */
+    private void flush() {
+        updateValue(found);
+        if(batchCount == 0) {
+            return;
+        }
+
+        int[] starts = new int[batchCount];
+        int[] ends = new int[batchCount];
+        System.arraycopy(batchStarts, 0, starts, 0, batchCount);
+        System.arraycopy(batchEnds, 0, ends, 0, batchCount);
+        batchCount = 0;
+
+        pendingBatches.add(new int[][] { starts, ends });
+        if(batchScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::addPendingBatches);
+        }
+    }
+
+
+    /**
+     * Adds the batches that are waiting to the EditingArea. This runs on the
+     * JavaFX thread. If the document has been edited since it was searched, the
+     * offsets of the matches are out of date, so the search is stopped.
+     */
+    private void addPendingBatches() {
+        batchScheduled.set(false);
+
+        if(pendingBatches.isEmpty()) {
+            return;
+        } else if(editingArea.getEditCount() != editCount) {
+            pendingBatches.clear();
+            cancel();
+            return;
+        }
+
+        int[][] batch;
+        while((batch = pendingBatches.poll()) != null) {
+            if(!isCancelled()) {
+                editingArea.addMatches(batch[0], batch[1], batch[0].length);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package texteditor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The files that were open when the editor last exited, in the order of their
+ * tabs, along with where the caret and the view were in each and which tab was
+ * selected. The session is kept in a small binary file, so reading it takes
+ * the same time no matter how the files it lists have grown.
+ */
+public class Session {
+
+
+    /**
+     * The file the session is kept in.
+     */
+    private static final Path FILE = Paths.get(System.getProperty("user.home"), ".texteditor", "session.bin");
+
+
+    /**
+     * The first bytes of a session file, and the version of its format.
+     */
+    private static final int MAGIC = 0x54455353, VERSION = 1;
+
+
+    /**
+     * The flag set on an entry for a file opened as a large file.
+     */
+    private static final int LARGE = 1;
+
+
+    /**
+     * The open files.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+
+    /**
+     * The index of the selected entry, or -1 if none was selected.
+     */
+    private int selected = -1;
+
+
+    /**
+     * Adds an open file to the end of the session.
+     *
+     * @param file      The file.
+     * @param large     Whether or not the file was opened as a large file.
+     * @param caret     The position of the caret.
+     * @param scroll    The scroll position in lines.
+     * @param selected  Whether or not the file's tab was selected.
+     */
+    public void add(File file, boolean large, int caret, double scroll, boolean selected) {
+        if(selected) {
+            this.selected = entries.size();
+        }
+        entries.add(new Entry(file, large, caret, scroll));
+    }
+
+
+    /**
+     * Returns the open files, in the order of their tabs.
+     *
+     * @return  The entries of the session.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+
+    /**
+     * Returns the index of the entry whose tab was selected.
+     *
+     * @return  The index of the selected entry, or -1 if none was.
+     */
+    public int getSelected() {
+        return selected;
+    }
+
+
+    /**
+     * Writes the session to its file, replacing the last one.
+     *
+     * @throws IOException  If the file could not be written.
+     */
+    public void save() throws IOException {
+        Files.createDirectories(FILE.getParent());
+        Path temp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(selected);
+            for(Entry entry : entries) {
+                out.writeByte(entry.large ? LARGE : 0);
+                out.writeUTF(entry.file.getAbsolutePath());
+                out.writeInt(entry.caret);
+                out.writeDouble(entry.scroll);
+            }
+        }
+
+        try {
+            Files.move(temp, FILE, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * Reads the session saved when the editor last exited.
+     *
+     * @return  The session, which is empty if there is none or it could not be
+     *          read.
+     */
+    public static Session load() {
+        Session session = new Session();
+        if(!Files.isRegularFile(FILE)) {
+            return session;
+        }
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(FILE)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return session;
+            }
+
+            int count = in.readInt();
+            int selected = in.readInt();
+            for(int i = 0; i < count; i++) {
+                boolean large = (in.readByte() & LARGE) != 0;
+                File file = new File(in.readUTF());
+                int caret = in.readInt();
+                double scroll = in.readDouble();
+                session.add(file, large, caret, scroll, i == selected);
+            }
+        } catch(IOException e) {
+            // A damaged session is treated as an empty one.
+            return new Session();
+        }
+        return session;
+    }
+
+
+    /**
+     * A file that was open.
+     */
+    public static class Entry {
+
+
+        /**
+         * The file.
+         */
+        private final File file;
+
+
+        /**
+         * Whether or not the file was opened as a large file.
+         */
+        private final boolean large;
+
+
+        /**
+         * The position of the caret.
+         */
+        private final int caret;
+
+
+        /**
+         * The scroll position in lines.
+         */
+        private final double scroll;
+
+
+        /**
+         * Creates an Entry.
+         *
+         * @param file      The file.
+         * @param large     Whether or not the file was opened as a large file.
+         * @param caret     The position of the caret.
+         * @param scroll    The scroll position in lines.
+         */
+        private Entry(File file, boolean large, int caret, double scroll) {
+            this.file = file;
+            this.large = large;
+            this.caret = caret;
+            this.scroll = scroll;
+        }
+
+
+        /**
+         * Returns the file.
+         *
+         * @return  The file.
+         */
+        public File getFile() {
+            return file;
+        }
+
+
+        /**
+         * Returns whether or not the file was opened as a large file.
+         *
+         * @return  true if the file was opened as a large file; false if not.
+         */
+        public boolean isLarge() {
+            return large;
+        }
+
+
+        /**
+         * Returns the position of the caret.
+         *
+         * @return  The caret position.
+         */
+        public int getCaret() {
+            return caret;
+        }
+
+
+        /**
+         * Returns the scroll position.
+         *
+         * @return  The scroll position in lines.
+         */
+        public double getScroll() {
+            return scroll;
+        }
+    }
+}
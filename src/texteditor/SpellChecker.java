@@ -0,0 +1,368 @@
+package texteditor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+
+
+/**
+ * Checks the spelling of the lines an EditingArea shows. Only the lines the
+ * skin asks for are checked, on a background thread, so the size of the
+ * document does not matter. The misspellings of each line are kept until an
+ * edit touches the line, so typing only has the edited line checked again, and
+ * lines that scroll out of view are kept for a while so scrolling back does
+ * not check them again.
+ *
+ * Only documents without a lexer are checked, since code is full of words that
+ * are not in a dictionary, and only while the area can be edited. Words with
+ * capitals after their first letter, digits or underscores are passed over,
+ * and so are single letters.
+ *
+ * Everything but the checking itself happens on the JavaFX thread.
+ */
+public class SpellChecker implements DocumentListener {
+
+
+    /**
+     * The most lines whose misspellings are kept.
+     */
+    private static final int MAX_CACHED_LINES = 4096;
+
+
+    /**
+     * The most suggestions offered for a misspelled word.
+     */
+    private static final int MAX_SUGGESTIONS = 8;
+
+
+    /**
+     * The misspellings of a line that has none.
+     */
+    private static final int[] NONE = new int[0];
+
+
+    /**
+     * The thread the words are checked on.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Spell Checker");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+
+    /**
+     * The EditingArea being checked.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The start and end of each misspelled word of the lines that have been
+     * checked, relative to the start of the line, by line.
+     */
+    private final Map<Integer, int[]> misspellings = new HashMap<>();
+
+
+    /**
+     * The lines that have been asked for but not checked.
+     */
+    private final Set<Integer> wanted = new LinkedHashSet<>();
+
+
+    /**
+     * The amount of lines in the document.
+     */
+    private int lineCount;
+
+
+    /**
+     * The line asked for last, which the kept lines are kept around.
+     */
+    private int lastLine = 0;
+
+
+    /**
+     * Counts the edits, so that a check started before an edit throws away
+     * what it found.
+     */
+    private long generation = 0;
+
+
+    /**
+     * Whether or not a check is waiting to be started or running.
+     */
+    private boolean checking = false;
+
+
+    /**
+     * Whether or not there is no dictionary to check with.
+     */
+    private boolean unavailable = false;
+
+
+    /**
+     * Creates a SpellChecker.
+     *
+     * @param editingArea   The EditingArea to check.
+     */
+    public SpellChecker(EditingArea editingArea) {
+        this.editingArea = editingArea;
+        this.lineCount = editingArea.getLineIndex().getLineCount();
+        editingArea.getDocument().addDocumentListener(this);
+    }
+
+
+    /**
+     * Returns whether or not the area is being checked.
+     *
+     * @return  true if misspellings are marked; false if not.
+     */
+    public boolean isActive() {
+        return !unavailable && editingArea.isEditable() && editingArea.getLexer() == null;
+    }
+
+
+    /**
+     * Returns the misspelled words of a line, having the line checked if it has
+     * not been.
+     *
+     * @param line  The index of the line.
+     * @return  The start and end of each misspelled word relative to the start
+     *          of the line, or null if the line has not been checked yet.
+     */
+    public int[] getMisspellings(int line) {
+        lastLine = line;
+        int[] found = misspellings.get(line);
+        if(found == null) {
+            wanted.add(line);
+            scheduleCheck();
+        }
+        return found;
+    }
+
+
+    /**
+     * Returns the misspelled word at an offset, if its line has been checked.
+     *
+     * @param offset    The offset.
+     * @return  The start and end of the word, or null if there is no
+     *          misspelled word at the offset.
+     */
+    public int[] getMisspellingAt(int offset) {
+        int line = editingArea.getLineOfOffset(offset);
+        int[] found = misspellings.get(line);
+        if(found == null) {
+            return null;
+        }
+
+        int column = offset - editingArea.getLineStart(line);
+        for(int i = 0; i < found.length; i += 2) {
+            if(found[i] <= column && column <= found[i + 1]) {
+                int lineStart = editingArea.getLineStart(line);
+                return new int[] {lineStart + found[i], lineStart + found[i + 1]};
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the words that a misspelled word was probably meant to be.
+     *
+     * @param word  The misspelled word.
+     * @return  The suggestions, closest first, which are empty if there is no
+     *          dictionary.
+     */
+    public List<String> getSuggestions(String word) {
+        SpellDictionary dictionary = SpellDictionary.getDefault();
+        return dictionary == null ? List.of() : dictionary.suggest(word, MAX_SUGGESTIONS);
+    }
+
+
+    /*
+     * Forgets the misspellings of the edited lines, and moves the ones after
+     * them to where the lines are now.
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        LineIndex lineIndex = editingArea.getLineIndex();
+        int newCount = lineIndex.getLineCount();
+        int startLine = lineIndex.getLineOfOffset(e.getOffset());
+        int endLine = lineIndex.getLineOfOffset(e.getOffset() + e.getInsertedLength());
+        int delta = newCount - lineCount;
+        int oldEndLine = endLine - delta;
+        lineCount = newCount;
+        generation++;
+        wanted.clear();
+
+        if(misspellings.isEmpty()) {
+            return;
+        } else if(delta == 0) {
+            for(int line = startLine; line <= endLine; line++) {
+                misspellings.remove(line);
+            }
+            return;
+        }
+
+        Map<Integer, int[]> moved = new HashMap<>();
+        for(Iterator<Map.Entry<Integer, int[]>> i = misspellings.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Integer, int[]> entry = i.next();
+            int line = entry.getKey();
+            if(line >= startLine) {
+                i.remove();
+                if(line > oldEndLine) {
+                    moved.put(line + delta, entry.getValue());
+                }
+            }
+        }
+        misspellings.putAll(moved);
+    }
+
+
+    /**
+     * Starts checking the lines that are wanted once the layout asking for
+     * them is done, unless a check is already waiting or running.
+     */
+    private void scheduleCheck() {
+        if(!checking && !unavailable) {
+            checking = true;
+            Platform.runLater(this::startCheck);
+        }
+    }
+
+
+    /**
+     * Copies the wanted lines and checks them on the background thread. This
+     * runs on the JavaFX thread.
+     */
+    private void startCheck() {
+        int[] lines = new int[wanted.size()];
+        String[] texts = new String[lines.length];
+        int count = 0;
+        for(int line : wanted) {
+            if(line < editingArea.getLineCount()) {
+                lines[count] = line;
+                texts[count++] = editingArea.getLine(line);
+            }
+        }
+        wanted.clear();
+
+        if(count == 0) {
+            checking = false;
+            return;
+        }
+
+        long checkGeneration = generation;
+        int lineTotal = count;
+        EXECUTOR.execute(() -> {
+            SpellDictionary dictionary = SpellDictionary.getDefault();
+            int[][] found = new int[lineTotal][];
+            for(int i = 0; i < lineTotal && dictionary != null; i++) {
+                found[i] = check(dictionary, texts[i]);
+            }
+            Platform.runLater(() -> finishCheck(checkGeneration, lines, found, dictionary == null));
+        });
+    }
+
+
+    /**
+     * Keeps the misspellings that were found, unless the document was edited
+     * while they were being found, and has the area show them. This runs on
+     * the JavaFX thread.
+     *
+     * @param checkGeneration   The generation the check was started in.
+     * @param lines             The lines that were checked.
+     * @param found             The misspellings of each line.
+     * @param noDictionary      Whether or not there was no dictionary.
+     */
+    private void finishCheck(long checkGeneration, int[] lines, int[][] found, boolean noDictionary) {
+        checking = false;
+        if(noDictionary) {
+            unavailable = true;
+            wanted.clear();
+            return;
+        }
+
+        if(checkGeneration == generation) {
+            for(int i = 0; i < found.length; i++) {
+                misspellings.put(lines[i], found[i]);
+            }
+
+            // Lines far from the one asked for last are let go of.
+            if(misspellings.size() > MAX_CACHED_LINES) {
+                misspellings.keySet().removeIf(line -> Math.abs(line - lastLine) > MAX_CACHED_LINES / 4);
+            }
+            editingArea.requestLayout();
+        }
+
+        if(!wanted.isEmpty()) {
+            scheduleCheck();
+        }
+    }
+
+
+    /**
+     * Finds the misspelled words of a line. A word is a run of letters, with
+     * apostrophes inside it.
+     *
+     * @param dictionary    The dictionary to check the words with.
+     * @param text          The text of the line.
+     * @return  The start and end of each misspelled word.
+     */
+    static int[] check(SpellDictionary dictionary, String text) {
+        int[] found = NONE;
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+
+        while(i < length) {
+            if(!Character.isLetter(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            boolean skip = start > 0 && isPartOfName(text.charAt(start - 1));
+            while(i < length && (Character.isLetter(text.charAt(i))
+                    || text.charAt(i) == '\'' && i + 1 < length && Character.isLetter(text.charAt(i + 1)))) {
+                if(i > start && Character.isUpperCase(text.charAt(i))) {
+                    skip = true;
+                }
+                i++;
+            }
+            skip |= i < length && isPartOfName(text.charAt(i));
+
+            if(!skip && i - start > 1 && !dictionary.contains(text, start, i)
+                    && !(text.startsWith("'s", i - 2) && dictionary.contains(text, start, i - 2))) {
+                if(count == found.length) {
+                    found = Arrays.copyOf(found, Math.max(8, count * 2));
+                }
+                found[count++] = start;
+                found[count++] = i;
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+
+    /**
+     * Returns whether or not a character next to a word makes it part of a
+     * name, such as an identifier, a path or an email address, rather than a
+     * word.
+     *
+     * @param c The character.
+     * @return  true if the word is part of a name; false if not.
+     */
+    private static boolean isPartOfName(char c) {
+        return Character.isDigit(c) || c == '_' || c == '/' || c == '\\' || c == '@';
+    }
+}
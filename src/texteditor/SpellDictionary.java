@@ -0,0 +1,645 @@
+package texteditor;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * A dictionary of correctly spelled words, stored as a DAWG: a trie whose
+ * equal subtrees are merged, so words that end the same share their endings
+ * as well as their beginnings. The dictionary is built once from a list of
+ * words and written to a file, which is memory mapped when it is opened. Nothing
+ * is read into the heap, so opening it takes milliseconds, and every editor
+ * that has it open shares the same pages.
+ *
+ * The file holds the edges of the DAWG, two ints each. The edges leaving a
+ * node are stored together, sorted by their character, and the last of them is
+ * flagged. The first int of an edge holds its character, whether a word ends
+ * after it, and whether it is the last edge of its node. The second is the
+ * index of the first edge of the node it leads to, or -1 if that node has no
+ * edges. The edges of the root come first.
+ */
+public class SpellDictionary {
+
+
+    /**
+     * The first bytes of a dictionary file, and the version of its format.
+     */
+    private static final int MAGIC = 0x54454457, VERSION = 1;
+
+
+    /**
+     * The size of the header of a dictionary file in ints.
+     */
+    private static final int HEADER_INTS = 4;
+
+
+    /**
+     * The bits of the first int of an edge that flag the end of a word and the
+     * last edge of a node.
+     */
+    private static final int WORD_END = 1 << 16, LAST_EDGE = 1 << 17;
+
+
+    /**
+     * The dictionary file used when none is given with the
+     * texteditor.dictionary property.
+     */
+    private static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".texteditor",
+            "dictionary.dawg");
+
+
+    /**
+     * The list of words the dictionary is built from when its file does not
+     * exist, unless another one is given with the texteditor.words property.
+     */
+    private static final Path DEFAULT_WORDS = Paths.get("/usr/share/dict/words");
+
+
+    /**
+     * The most edits a suggestion may be away from the misspelled word.
+     */
+    private static final int MAX_SUGGESTION_DISTANCE = 2;
+
+
+    /**
+     * The dictionary the editor checks spelling with, once it has been opened.
+     */
+    private static SpellDictionary defaultDictionary;
+
+
+    /**
+     * Whether or not opening the editor's dictionary has been tried.
+     */
+    private static boolean defaultOpened = false;
+
+
+    /**
+     * The edges of the DAWG.
+     */
+    private final IntBuffer edges;
+
+
+    /**
+     * The amount of words in the dictionary.
+     */
+    private final int wordCount;
+
+
+    /**
+     * Creates a SpellDictionary.
+     *
+     * @param edges     The edges of the DAWG, from the first edge of the root.
+     * @param wordCount The amount of words.
+     */
+    private SpellDictionary(IntBuffer edges, int wordCount) {
+        this.edges = edges;
+        this.wordCount = wordCount;
+    }
+
+
+    /**
+     * Returns the dictionary the editor checks spelling with, opening it the
+     * first time. If its file does not exist yet, it is built from the list of
+     * words on the system. This can take a second, so it should not be called
+     * on the JavaFX thread the first time.
+     *
+     * @return  The dictionary, or null if there is neither a dictionary file
+     *          nor a list of words to build one from.
+     */
+    public static synchronized SpellDictionary getDefault() {
+        if(!defaultOpened) {
+            defaultOpened = true;
+
+            String file = System.getProperty("texteditor.dictionary");
+            String words = System.getProperty("texteditor.words");
+            Path dictionaryFile = file != null ? Paths.get(file) : DEFAULT_FILE;
+            Path wordsFile = words != null ? Paths.get(words) : DEFAULT_WORDS;
+
+            try {
+                if(!Files.exists(dictionaryFile) && Files.isRegularFile(wordsFile)) {
+                    // Lists of words are not always UTF-8, so bad bytes are
+                    // replaced rather than stopping the build.
+                    String list = new String(Files.readAllBytes(wordsFile), StandardCharsets.UTF_8);
+                    build(Arrays.asList(list.split("\\r?\\n")), dictionaryFile);
+                }
+                if(Files.exists(dictionaryFile)) {
+                    defaultDictionary = open(dictionaryFile);
+                }
+            } catch(IOException e) {
+                // Spelling is not checked without a dictionary.
+                defaultDictionary = null;
+            }
+        }
+        return defaultDictionary;
+    }
+
+
+    /**
+     * Opens a dictionary file by memory mapping it.
+     *
+     * @param file  The dictionary file.
+     * @return  The dictionary.
+     * @throws IOException  If the file could not be read, or is not a
+     *                      dictionary file.
+     */
+    public static SpellDictionary open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            if(ints.limit() < HEADER_INTS || ints.get(0) != MAGIC || ints.get(1) != VERSION
+                    || ints.get(2) * 2L != ints.limit() - HEADER_INTS) {
+                throw new IOException(file + " is not a dictionary file.");
+            }
+
+            int wordCount = ints.get(3);
+            ints.position(HEADER_INTS);
+            return new SpellDictionary(ints.slice(), wordCount);
+        }
+    }
+
+
+    /**
+     * Builds a dictionary from a list of words and writes it to a file. Blank
+     * lines are left out, and words may be in any order and repeated. The file
+     * is written next to where it goes and then moved there, so a dictionary
+     * that is open is never seen half written.
+     *
+     * @param words The words.
+     * @param file  The file to write.
+     * @throws IOException  If the file could not be written.
+     */
+    public static void build(List<String> words, Path file) throws IOException {
+        TreeSet<String> sorted = new TreeSet<>();
+        for(String word : words) {
+            word = word.trim();
+            if(!word.isEmpty()) {
+                sorted.add(word);
+            }
+        }
+
+        Builder builder = new Builder();
+        for(String word : sorted) {
+            builder.add(word);
+        }
+        int[] dawg = builder.finish();
+
+        Path target = file.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dawg.length / 2);
+            out.writeInt(sorted.size());
+            for(int value : dawg) {
+                out.writeInt(value);
+            }
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * Returns the amount of words in the dictionary.
+     *
+     * @return  The amount of words.
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+
+    /**
+     * Returns whether or not a word is spelled correctly. A word that starts
+     * with a capital letter, or is all in capitals, is also correct if the
+     * dictionary has it in lower case, or starting with a capital.
+     *
+     * @param text  The text holding the word.
+     * @param start The offset of the first character of the word.
+     * @param end   The offset after the last character of the word.
+     * @return  true if the word is in the dictionary; false if not.
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        if(find(text, start, end, 0)) {
+            return true;
+        }
+
+        boolean capitalized = Character.isUpperCase(text.charAt(start));
+        boolean allCapitals = capitalized;
+        for(int i = start + 1; i < end && allCapitals; i++) {
+            allCapitals = !Character.isLowerCase(text.charAt(i));
+        }
+
+        // 1 lowers the case of the first letter, 2 of every letter after it.
+        return capitalized && find(text, start, end, 1)
+                || allCapitals && (find(text, start, end, 3) || find(text, start, end, 2));
+    }
+
+
+    /**
+     * Returns the words in the dictionary that are the fewest edits away from a
+     * misspelled word. An edit is adding, removing or changing a letter, or
+     * swapping two letters next to each other. Case is ignored, and the
+     * suggestions start with a capital if the word does.
+     *
+     * @param word  The misspelled word.
+     * @param max   The most suggestions to return.
+     * @return  The suggestions, closest first.
+     */
+    public List<String> suggest(String word, int max) {
+        String lower = word.toLowerCase();
+        int length = lower.length();
+        int maxDepth = length + MAX_SUGGESTION_DISTANCE;
+
+        // The rows of the edit distance table, one for each letter of the
+        // word being spelled out along the DAWG.
+        int[][] rows = new int[maxDepth + 1][length + 1];
+        for(int j = 0; j <= length; j++) {
+            rows[0][j] = j;
+        }
+
+        Map<String, Integer> found = new HashMap<>();
+        char[] prefix = new char[maxDepth];
+        if(edges.limit() > 0 && length > 0) {
+            suggest(0, 0, lower, rows, prefix, found);
+        }
+
+        // Words whose first letter has the same case as the misspelled word's
+        // come before the same word with the other case.
+        boolean capitalized = length > 0 && Character.isUpperCase(word.charAt(0));
+        List<String> suggestions = new ArrayList<>(found.keySet());
+        suggestions.sort((String a, String b) -> {
+            int compare = Integer.compare(found.get(a), found.get(b));
+            if(compare == 0) {
+                compare = Boolean.compare(Character.isUpperCase(a.charAt(0)) != capitalized,
+                        Character.isUpperCase(b.charAt(0)) != capitalized);
+            }
+            if(compare == 0) {
+                compare = Integer.compare(Math.abs(a.length() - length), Math.abs(b.length() - length));
+            }
+            return compare != 0 ? compare : a.compareTo(b);
+        });
+
+        // Only the closest suggestions are kept if there are close ones.
+        List<String> closest = new ArrayList<>();
+        int best = suggestions.isEmpty() ? 0 : found.get(suggestions.get(0));
+        for(String suggestion : suggestions) {
+            if(closest.size() == max || found.get(suggestion) > best + 1) {
+                break;
+            }
+            if(capitalized) {
+                suggestion = Character.toUpperCase(suggestion.charAt(0)) + suggestion.substring(1);
+            }
+            if(!containsIgnoreCase(closest, suggestion)) {
+                closest.add(suggestion);
+            }
+        }
+        return closest;
+    }
+
+
+    /**
+     * Returns whether or not a list holds a word, ignoring case.
+     *
+     * @param words The list of words.
+     * @param word  The word.
+     * @return  true if the list holds the word; false if not.
+     */
+    private static boolean containsIgnoreCase(List<String> words, String word) {
+        for(String other : words) {
+            if(other.equalsIgnoreCase(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Walks the edges of a node, spelling out the words that are close enough
+     * to the misspelled word.
+     *
+     * @param edge      The first edge of the node.
+     * @param depth     The amount of letters spelled out so far.
+     * @param word      The misspelled word, in lower case.
+     * @param rows      The rows of the edit distance table.
+     * @param prefix    The letters spelled out so far.
+     * @param found     The words found, with how many edits away they are.
+     */
+    private void suggest(int edge, int depth, String word, int[][] rows, char[] prefix, Map<String, Integer> found) {
+        int length = word.length();
+        int[] previous = rows[depth];
+
+        for(;; edge++) {
+            int label = edges.get(edge * 2);
+            char c = (char)label;
+            char lowerC = Character.toLowerCase(c);
+
+            int[] row = rows[depth + 1];
+            row[0] = depth + 1;
+            int smallest = row[0];
+            for(int j = 1; j <= length; j++) {
+                int cost = word.charAt(j - 1) == lowerC ? 0 : 1;
+                int distance = Math.min(Math.min(row[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if(depth > 0 && j > 1 && lowerC == word.charAt(j - 2)
+                        && Character.toLowerCase(prefix[depth - 1]) == word.charAt(j - 1)) {
+                    distance = Math.min(distance, rows[depth - 1][j - 2] + 1);
+                }
+                row[j] = distance;
+                smallest = Math.min(smallest, distance);
+            }
+
+            prefix[depth] = c;
+            if((label & WORD_END) != 0 && row[length] <= MAX_SUGGESTION_DISTANCE) {
+                String suggestion = new String(prefix, 0, depth + 1);
+                found.merge(suggestion, row[length], Math::min);
+            }
+
+            int target = edges.get(edge * 2 + 1);
+            if(target >= 0 && smallest <= MAX_SUGGESTION_DISTANCE && depth + 1 < rows.length - 1) {
+                suggest(target, depth + 1, word, rows, prefix, found);
+            }
+
+            if((label & LAST_EDGE) != 0) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Returns whether or not the DAWG holds a word, with its case changed.
+     *
+     * @param text  The text holding the word.
+     * @param start The offset of the first character of the word.
+     * @param end   The offset after the last character of the word.
+     * @param lower 0 to keep the case, 1 to lower the first letter, 2 to lower
+     *              every letter after the first, or 3 to lower every letter.
+     * @return  true if the word is in the DAWG; false if not.
+     */
+    private boolean find(CharSequence text, int start, int end, int lower) {
+        int edge = edges.limit() > 0 ? 0 : -1;
+        for(int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if(i == start ? (lower & 1) != 0 : (lower & 2) != 0) {
+                c = Character.toLowerCase(c);
+            }
+
+            if(edge < 0) {
+                return false;
+            }
+
+            // The edges of a node are sorted, so the search stops at the first
+            // character past the one looked for.
+            int label;
+            while(true) {
+                label = edges.get(edge * 2);
+                char edgeChar = (char)label;
+                if(edgeChar >= c || (label & LAST_EDGE) != 0) {
+                    break;
+                }
+                edge++;
+            }
+            if((char)label != c) {
+                return false;
+            }
+
+            if(i == end - 1) {
+                return (label & WORD_END) != 0;
+            }
+            edge = edges.get(edge * 2 + 1);
+        }
+        return false;
+    }
+
+
+    /**
+     * Builds a DAWG from words added in sorted order, merging each subtree
+     * with an equal one that is already built as soon as no more words can be
+     * added to it.
+     */
+    private static class Builder {
+
+
+        /**
+         * The root of the DAWG.
+         */
+        private final Node root = new Node();
+
+
+        /**
+         * The nodes that are done, by what they hold, so that equal nodes can
+         * be merged.
+         */
+        private final Map<Node, Node> register = new HashMap<>();
+
+
+        /**
+         * The word added last.
+         */
+        private String previous = "";
+
+
+        /**
+         * Adds a word, which must come after the word added before it.
+         *
+         * @param word  The word.
+         */
+        void add(String word) {
+            int common = 0;
+            while(common < word.length() && common < previous.length()
+                    && word.charAt(common) == previous.charAt(common)) {
+                common++;
+            }
+
+            Node node = root;
+            for(int i = 0; i < common; i++) {
+                node = node.children[node.count - 1];
+            }
+            if(node.count > 0) {
+                replaceOrRegister(node);
+            }
+
+            for(int i = common; i < word.length(); i++) {
+                Node child = new Node();
+                node.add(word.charAt(i), child);
+                node = child;
+            }
+            node.wordEnd = true;
+            previous = word;
+        }
+
+
+        /**
+         * Merges the last of the words and lays out the edges of the DAWG.
+         *
+         * @return  The edges, two ints each.
+         */
+        int[] finish() {
+            if(root.count > 0) {
+                replaceOrRegister(root);
+            }
+
+            // Each node with edges gets the index of its first edge, with the
+            // root first.
+            List<Node> order = new ArrayList<>();
+            Map<Node, Integer> firstEdges = new IdentityHashMap<>();
+            int edgeCount = 0;
+            List<Node> stack = new ArrayList<>();
+            stack.add(root);
+            while(!stack.isEmpty()) {
+                Node node = stack.remove(stack.size() - 1);
+                if(node.count == 0 || firstEdges.containsKey(node)) {
+                    continue;
+                }
+                firstEdges.put(node, edgeCount);
+                edgeCount += node.count;
+                order.add(node);
+                for(int i = node.count - 1; i >= 0; i--) {
+                    stack.add(node.children[i]);
+                }
+            }
+
+            int[] dawg = new int[edgeCount * 2];
+            for(Node node : order) {
+                int edge = firstEdges.get(node);
+                for(int i = 0; i < node.count; i++, edge++) {
+                    Node child = node.children[i];
+                    dawg[edge * 2] = node.labels[i] | (child.wordEnd ? WORD_END : 0)
+                            | (i == node.count - 1 ? LAST_EDGE : 0);
+                    dawg[edge * 2 + 1] = child.count == 0 ? -1 : firstEdges.get(child);
+                }
+            }
+            return dawg;
+        }
+
+
+        /**
+         * Merges the last child of a node, and the nodes below it, with equal
+         * nodes that are done, or registers them as done.
+         *
+         * @param node  The node.
+         */
+        private void replaceOrRegister(Node node) {
+            Node child = node.children[node.count - 1];
+            if(child.count > 0) {
+                replaceOrRegister(child);
+            }
+
+            Node equal = register.get(child);
+            if(equal != null) {
+                node.children[node.count - 1] = equal;
+            } else {
+                register.put(child, child);
+            }
+        }
+    }
+
+
+    /**
+     * A node of the DAWG being built. Two nodes are equal if they end the same
+     * words the same way, which once their children are done is the case when
+     * they have the same edges to the same children.
+     */
+    private static class Node {
+
+
+        /**
+         * Whether or not a word ends at this node.
+         */
+        private boolean wordEnd;
+
+
+        /**
+         * The characters of the edges, in sorted order.
+         */
+        private char[] labels = new char[1];
+
+
+        /**
+         * The nodes the edges lead to.
+         */
+        private Node[] children = new Node[1];
+
+
+        /**
+         * The amount of edges.
+         */
+        private int count = 0;
+
+
+        /**
+         * Adds an edge after the others.
+         *
+         * @param label The character of the edge.
+         * @param child The node it leads to.
+         */
+        void add(char label, Node child) {
+            if(count == labels.length) {
+                labels = Arrays.copyOf(labels, count * 2);
+                children = Arrays.copyOf(children, count * 2);
+            }
+            labels[count] = label;
+            children[count++] = child;
+        }
+
+
+        /*
+         * Hashes the edges, with the children by identity since equal children
+         * have already been merged.
+         */
+        @Override
+        public int hashCode() {
+            int hash = wordEnd ? 1 : 0;
+            for(int i = 0; i < count; i++) {
+                hash = hash * 31 + labels[i];
+                hash = hash * 31 + System.identityHashCode(children[i]);
+            }
+            return hash;
+        }
+
+
+        /*
+         * Compares the edges, with the children by identity.
+         */
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Node)) {
+                return false;
+            }
+
+            Node node = (Node)other;
+            if(node.wordEnd != wordEnd || node.count != count) {
+                return false;
+            }
+            for(int i = 0; i < count; i++) {
+                if(node.labels[i] != labels[i] || node.children[i] != children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
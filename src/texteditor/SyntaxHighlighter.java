@@ -0,0 +1,355 @@
+package texteditor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+
+
+/**
+ * Keeps track of the state each line of an EditingArea starts in for a Lexer,
+ * which is all that is needed to find the tokens of any line by reading only
+ * that line. The states are found on a background thread, so even a document
+ * of hundreds of thousands of lines never holds up typing; the area only reads
+ * the lines it shows, on the JavaFX thread.
+ *
+ * After an edit, the lines are read again from the edited line until a line
+ * past the edit ends in the same state it ended in before, since every line
+ * after that must still start in the state it did. Until then, lines keep the
+ * states they had, so the highlighting does not flicker while the document is
+ * read again.
+ *
+ * The states are guarded by the highlighter's lock. The JavaFX thread holds
+ * it to move the states of lines an edit has moved and to read the states of
+ * the lines it shows, and the background thread holds it to store the states
+ * of a batch of lines it has read.
+ */
+public class SyntaxHighlighter implements DocumentListener {
+
+
+    /**
+     * The amount of lines read between storing their states.
+     */
+    private static final int BATCH_LINES = 4096;
+
+
+    /**
+     * The thread documents are read on.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Syntax Highlighter");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+
+    /**
+     * The EditingArea being highlighted.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The lexer the lines are read with.
+     */
+    private final Lexer lexer;
+
+
+    /**
+     * The state each line starts in.
+     */
+    private int[] states;
+
+
+    /**
+     * The amount of lines in the document.
+     */
+    private int lineCount;
+
+
+    /**
+     * The amount of lines, from the first, whose states have been found. The
+     * states of the rest of the lines are not known yet.
+     */
+    private int knownLines = 1;
+
+
+    /**
+     * The first line whose state may have been changed by an edit, or the
+     * amount of lines if every known state is right.
+     */
+    private int dirtyFrom = 0;
+
+
+    /**
+     * The last line an edit touched since the document was last read to the
+     * end. Reading stops early only once it is past this line.
+     */
+    private int damagedTo = -1;
+
+
+    /**
+     * Counts the edits, so that a reading started before an edit throws away
+     * what it found. It is only changed holding the lock, but a reading looks
+     * at it without the lock to give up early.
+     */
+    private volatile long generation = 0;
+
+
+    /**
+     * Whether or not a reading is already waiting to be started on the JavaFX
+     * thread.
+     */
+    private final AtomicBoolean readScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * Whether or not the area is already waiting to be laid out again.
+     */
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+
+
+    /**
+     * Whether or not the highlighter has been stopped.
+     */
+    private volatile boolean stopped = false;
+
+
+    /**
+     * Creates a SyntaxHighlighter and starts reading the document.
+     *
+     * @param editingArea   The EditingArea to highlight.
+     * @param lexer         The lexer to read the lines with.
+     */
+    public SyntaxHighlighter(EditingArea editingArea, Lexer lexer) {
+        this.editingArea = editingArea;
+        this.lexer = lexer;
+        this.lineCount = editingArea.getLineIndex().getLineCount();
+        this.states = new int[Math.max(16, lineCount + 1)];
+        states[0] = Lexer.INITIAL_STATE;
+
+        editingArea.getDocument().addDocumentListener(this);
+        scheduleRead();
+    }
+
+
+    /**
+     * Returns the lexer the lines are read with.
+     *
+     * @return  The lexer.
+     */
+    public Lexer getLexer() {
+        return lexer;
+    }
+
+
+    /**
+     * Returns the state a line starts in.
+     *
+     * @param line  The index of the line.
+     * @return  The state, or -1 if it is not known yet.
+     */
+    public synchronized int getLineState(int line) {
+        return line < knownLines ? states[line] : -1;
+    }
+
+
+    /**
+     * Returns whether or not the state of every line is known and right.
+     *
+     * @return  true if the whole document has been read; false if not.
+     */
+    public synchronized boolean isComplete() {
+        return dirtyFrom >= lineCount && knownLines >= lineCount;
+    }
+
+
+    /**
+     * Stops highlighting the area. A reading that is running stops at its
+     * next batch.
+     */
+    public void stop() {
+        stopped = true;
+        editingArea.getDocument().removeDocumentListener(this);
+        synchronized(this) {
+            generation++;
+        }
+    }
+
+
+    /*
+     * Moves the states of the lines after an edit to where the lines are now,
+     * and marks the edited lines to be read again.
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        LineIndex lineIndex = editingArea.getLineIndex();
+        int newCount = lineIndex.getLineCount();
+        int startLine = lineIndex.getLineOfOffset(e.getOffset());
+        int endLine = lineIndex.getLineOfOffset(e.getOffset() + e.getInsertedLength());
+
+        synchronized(this) {
+            int delta = newCount - lineCount;
+            int oldFrom = startLine + 1 + (endLine - startLine) - delta;
+            int newFrom = endLine + 1;
+
+            if(states.length < newCount + 1) {
+                int[] grown = new int[Math.max(newCount + 1, states.length * 2)];
+                System.arraycopy(states, 0, grown, 0, Math.min(knownLines, states.length));
+                states = grown;
+            }
+            if(oldFrom < knownLines) {
+                System.arraycopy(states, oldFrom, states, newFrom, knownLines - oldFrom);
+                knownLines += delta;
+
+                // Until they are read, new lines are guessed to start in the
+                // state of the line they were inserted into.
+                for(int line = startLine + 1; line < newFrom; line++) {
+                    states[line] = states[startLine];
+                }
+            } else {
+                knownLines = Math.min(knownLines, startLine + 1);
+            }
+
+            dirtyFrom = Math.min(dirtyFrom >= oldFrom ? dirtyFrom + delta : dirtyFrom, startLine);
+            damagedTo = Math.min(newCount, Math.max(damagedTo >= oldFrom ? damagedTo + delta : damagedTo, endLine));
+            lineCount = newCount;
+            generation++;
+        }
+        scheduleRead();
+    }
+
+
+    /**
+     * Starts reading the document from the first line that needs it, once the
+     * edits being made on the JavaFX thread right now are done. Nothing is read
+     * while the area is hibernating, so this is called again when it wakes.
+     */
+    void scheduleRead() {
+        if(readScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::startRead);
+        }
+    }
+
+
+    /**
+     * Takes a snapshot of the document and starts reading it on the background
+     * thread. This runs on the JavaFX thread.
+     */
+    private void startRead() {
+        readScheduled.set(false);
+        if(stopped || editingArea.isHibernating()) {
+            return;
+        }
+
+        long readGeneration;
+        int line;
+        int state;
+        synchronized(this) {
+            if(dirtyFrom >= lineCount && knownLines >= lineCount) {
+                return;
+            }
+            readGeneration = generation;
+            line = Math.min(dirtyFrom, knownLines - 1);
+            state = states[line];
+        }
+
+        DocumentSnapshot snapshot = editingArea.getDocument().snapshot();
+        int offset = editingArea.getLineIndex().getLineStart(line);
+        EXECUTOR.execute(() -> read(snapshot, readGeneration, line, offset, state));
+    }
+
+
+    /**
+     * Reads the lines of a snapshot, storing the state each line starts in,
+     * until the states agree with the ones from before the edits or the end
+     * of the document is reached.
+     *
+     * @param snapshot          The text of the document.
+     * @param readGeneration    The generation the snapshot was taken in.
+     * @param line              The line to start at.
+     * @param offset            The offset of that line.
+     * @param state             The state that line starts in.
+     */
+    private void read(DocumentSnapshot snapshot, long readGeneration, int line, int offset, int state) {
+        CharSequence text = snapshot.asCharSequence();
+        int length = text.length();
+        int[] batch = new int[BATCH_LINES];
+
+        while(!stopped && readGeneration == generation) {
+            int first = line;
+            int count = 0;
+            boolean end = false;
+            while(count < BATCH_LINES) {
+                int lineEnd = offset;
+                while(lineEnd < length && text.charAt(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                state = lexer.tokenize(text, offset, lineEnd, state, Lexer.NONE);
+                batch[count++] = state;
+                offset = lineEnd + 1;
+                if(lineEnd == length) {
+                    end = true;
+                    break;
+                }
+            }
+
+            synchronized(this) {
+                if(readGeneration != generation) {
+                    return;
+                }
+
+                for(int i = 0; i < count; i++) {
+                    int next = first + i + 1;
+                    if(next >= lineCount) {
+                        break;
+                    }
+
+                    // Once a line past the edits starts in the state it did
+                    // before, so does every line after it.
+                    if(next > damagedTo && next < knownLines && knownLines == lineCount && states[next] == batch[i]) {
+                        finishRead();
+                        return;
+                    }
+                    states[next] = batch[i];
+                }
+
+                line = first + count;
+                knownLines = Math.max(knownLines, Math.min(lineCount, line + 1));
+                dirtyFrom = Math.min(lineCount, line);
+                if(end) {
+                    finishRead();
+                    return;
+                }
+            }
+            scheduleUpdate();
+        }
+    }
+
+
+    /**
+     * Marks every line as read, and has the area show the new highlighting.
+     * This is called holding the lock.
+     */
+    private void finishRead() {
+        knownLines = lineCount;
+        dirtyFrom = lineCount;
+        damagedTo = -1;
+        scheduleUpdate();
+    }
+
+
+    /**
+     * Has the area laid out again, so the lines it shows are drawn with the
+     * states that were found.
+     */
+    private void scheduleUpdate() {
+        if(updateScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updateScheduled.set(false);
+                editingArea.requestLayout();
+            });
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Decodes the text of a file in large chunks. Files without a byte order mark
+ * are decoded as UTF-8, and if they turn out not to be UTF-8 they are read
+ * again in the legacy charset. Line endings are turned into "\n" as the text is
+ * decoded, and each kind is counted so the line ending of the file is known
+ * once it has been read.
+ *
+ * The decoder does not need JavaFX. FileLoader uses it to open files in the
+ * editor, and BatchProcessor to process files without a window.
+ */
+public class TextDecoder {
+
+
+    /**
+     * The amount of characters decoded from the file at a time.
+     */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+
+    /**
+     * Is given the text as it is decoded.
+     */
+    private final Sink sink;
+
+
+    /**
+     * The charset the file was decoded in.
+     */
+    private Charset charset;
+
+
+    /**
+     * Whether or not the file started with a byte order mark.
+     */
+    private boolean byteOrderMark;
+
+
+    /**
+     * Whether or not the last character of the previous chunk was a '\r'.
+     */
+    private boolean lastWasCR;
+
+
+    /**
+     * The amount of each kind of line ending found in the file.
+     */
+    private long lfCount, crlfCount, crCount;
+
+
+    /**
+     * Creates a TextDecoder.
+     *
+     * @param sink  Is given the text as it is decoded.
+     */
+    public TextDecoder(Sink sink) {
+        this.sink = sink;
+    }
+
+
+    /**
+     * Reads a file until its end is reached or the sink is cancelled. The
+     * channel is set back to its start if the file has to be read again, and
+     * its position and size are only used to show how much has been read, so
+     * a compressed file can be read through an InflatingChannel.
+     *
+     * @param channel   The file, positioned at its start.
+     * @throws IOException          If the file could not be read.
+     * @throws InterruptedException If the sink was interrupted while taking
+     *                              the text.
+     */
+    public void read(SeekableByteChannel channel) throws IOException, InterruptedException {
+        ByteBuffer bytes = BufferPool.acquire();
+
+        try {
+            boolean endOfInput = fill(channel, bytes);
+
+            charset = CharsetDetector.detectByteOrderMark(bytes);
+            byteOrderMark = charset != null;
+            if(byteOrderMark) {
+                bytes.position(CharsetDetector.getByteOrderMark(charset).length);
+            } else {
+                charset = StandardCharsets.UTF_8;
+            }
+
+            if(!decode(channel, bytes, endOfInput, !byteOrderMark) && !sink.isCancelled()) {
+                // Throw away what was read as UTF-8 and start over.
+                sink.restart();
+                lastWasCR = false;
+                lfCount = crlfCount = crCount = 0;
+                charset = CharsetDetector.getLegacyCharset();
+
+                channel.position(0);
+                bytes.clear();
+                endOfInput = fill(channel, bytes);
+                decode(channel, bytes, endOfInput, false);
+            }
+        } finally {
+            BufferPool.release(bytes);
+        }
+    }
+
+
+    /**
+     * Returns the charset the file was decoded in.
+     *
+     * @return  The charset.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+
+    /**
+     * Returns whether or not the file started with a byte order mark.
+     *
+     * @return  true if the file has a byte order mark; false if not.
+     */
+    public boolean hasByteOrderMark() {
+        return byteOrderMark;
+    }
+
+
+    /**
+     * Returns the line ending used the most in the file.
+     *
+     * @param fallback  The line ending to return if the file does not have any.
+     * @return  The line ending of the file.
+     */
+    public LineEnding getLineEnding(LineEnding fallback) {
+        if(lfCount == 0 && crlfCount == 0 && crCount == 0) {
+            return fallback;
+        } else if(crlfCount >= lfCount && crlfCount >= crCount) {
+            return LineEnding.CRLF;
+        } else if(crCount > lfCount) {
+            return LineEnding.CR;
+        }
+        return LineEnding.LF;
+    }
+
+
+    /**
+     * Returns whether or not the file uses more than one kind of line ending.
+     *
+     * @return  true if the line endings are mixed; false if not.
+     */
+    public boolean hasMixedLineEndings() {
+        int kinds = (lfCount > 0 ? 1 : 0) + (crlfCount > 0 ? 1 : 0) + (crCount > 0 ? 1 : 0);
+        return kinds > 1;
+    }
+
+
+    /**
+     * Reads from a channel until a buffer is full or the end of the channel is
+     * reached, then flips the buffer.
+     *
+     * @param channel   The channel to read.
+     * @param bytes     The buffer to read into.
+     * @return  Whether or not the end of the channel was reached.
+     * @throws IOException  If the channel could not be read.
+     */
+    private static boolean fill(SeekableByteChannel channel, ByteBuffer bytes) throws IOException {
+        boolean endOfInput = false;
+        while(bytes.hasRemaining() && !endOfInput) {
+            endOfInput = channel.read(bytes) == -1;
+        }
+        bytes.flip();
+        return endOfInput;
+    }
+
+
+    /**
+     * Decodes the rest of a channel in the current charset, handing the text to
+     * the sink a chunk at a time.
+     *
+     * @param channel       The channel to read.
+     * @param bytes         The buffer holding the bytes read so far.
+     * @param endOfInput    Whether or not the whole channel has been read.
+     * @param strict        Whether or not to stop at malformed input.
+     * @return  false if the input was malformed; true otherwise.
+     * @throws IOException          If the channel could not be read.
+     * @throws InterruptedException If the sink was interrupted.
+     */
+    private boolean decode(SeekableByteChannel channel, ByteBuffer bytes, boolean endOfInput, boolean strict)
+            throws IOException, InterruptedException {
+        long fileLength = Math.max(1, channel.size());
+        CharsetDecoder decoder = CharsetDetector.newDecoder(charset, strict);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+        while(true) {
+            if(sink.isCancelled()) {
+                return true;
+            }
+
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if(result.isError()) {
+                return false;
+            } else if(result.isOverflow()) {
+                addChunk(chars);
+            } else if(endOfInput) {
+                break;
+            } else {
+                bytes.compact();
+                endOfInput = fill(channel, bytes);
+                sink.progress(Math.min(channel.position(), fileLength), fileLength);
+            }
+        }
+
+        while(decoder.flush(chars).isOverflow()) {
+            addChunk(chars);
+        }
+        addChunk(chars);
+        return true;
+    }
+
+
+    /**
+     * Turns the line endings in the decoded characters into "\n", counting each
+     * kind, and hands the text to the sink.
+     *
+     * @param chars The decoded characters, which are cleared afterwards.
+     * @throws InterruptedException If the sink was interrupted.
+     */
+    private void addChunk(CharBuffer chars) throws InterruptedException {
+        chars.flip();
+        if(!chars.hasRemaining()) {
+            chars.clear();
+            return;
+        }
+
+        char[] buffer = chars.array();
+        int length = chars.remaining();
+        StringBuilder chunk = new StringBuilder(length);
+
+        for(int i = 0; i < length; i++) {
+            char c = buffer[i];
+            if(c == '\r') {
+                chunk.append('\n');
+                crCount++;
+            } else if(c != '\n') {
+                chunk.append(c);
+            } else if(lastWasCR) {
+                // The '\r' before this was counted as a CR, but it is a CRLF.
+                crCount--;
+                crlfCount++;
+            } else {
+                chunk.append(c);
+                lfCount++;
+            }
+            lastWasCR = c == '\r';
+        }
+        chars.clear();
+
+        sink.append(chunk);
+    }
+
+
+    /**
+     * Takes the text of a file as a TextDecoder decodes it.
+     */
+    public interface Sink {
+
+
+        /**
+         * Adds a chunk of decoded text.
+         *
+         * @param chunk The text, with its line endings turned into "\n". It is
+         *              not used by the decoder afterwards.
+         * @throws InterruptedException If the sink was interrupted while
+         *                              waiting for room for the text.
+         */
+        void append(CharSequence chunk) throws InterruptedException;
+
+
+        /**
+         * Throws away the text added so far, because the file is being read
+         * again in another charset.
+         *
+         * @throws InterruptedException If the sink was interrupted.
+         */
+        void restart() throws InterruptedException;
+
+
+        /**
+         * Is told how much of the file has been read.
+         *
+         * @param read  The amount of bytes read.
+         * @param size  The size of the file.
+         */
+        default void progress(long read, long size) {
+        }
+
+
+        /**
+         * Returns whether or not the decoder should stop reading.
+         *
+         * @return  true to stop; false to keep reading.
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+}
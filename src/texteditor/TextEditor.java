@@ -1,32 +1,49 @@
 package texteditor;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Consumer;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToolBar;
 import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
@@ -37,7 +54,10 @@ import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
@@ -81,6 +101,111 @@ public class TextEditor extends Application {
      */
     private Button newFile, openFile, saveFile, saveAs, print, exit;
 
+
+    /**
+     * The label at the bottom of the window that tells the user what the editor
+     * is doing, such as when a file has been saved.
+     */
+    private Label status;
+
+
+    /**
+     * The label in the status bar that shows the line and column of the caret.
+     * Clicking it opens the Go To Line dialog.
+     */
+    private Label position;
+
+
+    /**
+     * The button in the status bar that starts and stops following the file
+     * of the selected tab.
+     */
+    private ToggleButton follow;
+
+
+    /**
+     * The bar under the tool bar for finding and replacing text.
+     */
+    private FindBar findBar;
+
+
+    /**
+     * The window for searching the files in a folder, created the first time
+     * it is shown.
+     */
+    private FindInFilesDialog findInFilesDialog;
+
+
+    /**
+     * The window for comparing two tabs, created the first time it is shown.
+     */
+    private CompareWindow compareWindow;
+
+
+    /**
+     * The Quick Open window, created the first time it is shown. It keeps the
+     * index of its folder while the editor runs.
+     */
+    private QuickOpenDialog quickOpenDialog;
+
+
+    /**
+     * The autosave journal of each tab's editing area.
+     */
+    private final Map<EditingArea, AutosaveJournal> journals = new HashMap<>();
+
+
+    /**
+     * Puts the tabs that have not been used in a while to hibernate when the
+     * open documents take up too much memory.
+     */
+    private final MemoryBudget memoryBudget = new MemoryBudget();
+
+
+    /**
+     * The file of each tab's editing area, as it was last loaded or saved.
+     */
+    private final Map<EditingArea, WatchedFile> watchedFiles = new HashMap<>();
+
+
+    /**
+     * Notices when another program changes the files of the tabs.
+     */
+    private final FileWatcher fileWatcher = new FileWatcher(this::fileChanged);
+
+
+    /**
+     * The editing areas the user is being asked about changes made to their
+     * files, so they are only asked once at a time.
+     */
+    private final Set<EditingArea> externalChangePrompts = new HashSet<>();
+
+
+    /**
+     * The followers of the tabs whose files are being followed.
+     */
+    private final Map<EditingArea, FileFollower> followers = new HashMap<>();
+
+
+    /**
+     * The session entries of the restored tabs that have not been loaded yet,
+     * so their caret and scroll position are kept if the editor exits before
+     * they are selected.
+     */
+    private final Map<EditingArea, Session.Entry> unloadedTabs = new HashMap<>();
+
+
+    /**
+     * Adds the tabs of the last session that have not been added yet.
+     */
+    private final Queue<Runnable> pendingRestores = new ArrayDeque<>();
+
+
+    /**
+     * The amount of session tabs added at a time after the window is shown.
+     */
+    private static final int RESTORE_BATCH_SIZE = 8;
+
     
     /**
      * @param args the command line arguments
@@ -104,10 +229,53 @@ public class TextEditor extends Application {
 
         ToolBar tb = getToolBar();
 
-        borderPane.setTop(tb);
+        findBar = new FindBar(tabPane);
+
+        borderPane.setTop(new VBox(tb, findBar));
         borderPane.setCenter(tabPane);
+        borderPane.setBottom(getStatusBar());
+
+        // Show where the caret is in whichever tab is selected, and wake it up
+        // if it was hibernating.
+        tabPane.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+            memoryBudget.select(newValue == null ? null : (EditingArea)newValue.getContent());
+            follow.setSelected(newValue != null && followers.containsKey((EditingArea)newValue.getContent()));
+            updatePosition();
+        });
+
+        // A closed tab's undo history and autosave journal are not needed any
+        // more, and neither is watching its file.
+        tabPane.getTabs().addListener((ListChangeListener.Change<? extends Tab> change) -> {
+            while(change.next()) {
+                for(Tab tab : change.getRemoved()) {
+                    EditingArea editingArea = (EditingArea)tab.getContent();
+                    memoryBudget.remove(editingArea);
+                    editingArea.getUndoJournal().close();
+                    AutosaveJournal journal = journals.remove(editingArea);
+                    if(journal != null) {
+                        journal.close();
+                    }
+                    WatchedFile watchedFile = watchedFiles.remove(editingArea);
+                    if(watchedFile != null) {
+                        fileWatcher.unwatch(watchedFile);
+                    }
+                    FileFollower follower = followers.remove(editingArea);
+                    if(follower != null) {
+                        follower.stop();
+                    }
+                }
+                for(Tab tab : change.getAddedSubList()) {
+                    memoryBudget.add((EditingArea)tab.getContent());
+                }
+            }
+        });
 
-        addNewTab();
+        // Both run before anything is loaded, so the window shows straight
+        // away however many files the last session had open.
+        boolean recovered = recoverDocuments();
+        if(!restoreSession() && !recovered) {
+            addNewTab();
+        }
 
         fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().addAll(
@@ -123,6 +291,11 @@ public class TextEditor extends Application {
 
         Scene scene = new Scene(borderPane, 500, 500);
 
+        EditorMetrics metrics = EditorMetrics.get();
+        metrics.monitor(scene);
+        metrics.setTabMemory(this::getTabMemory);
+        metrics.register();
+
         primaryStage.setTitle("Text Editor");
         primaryStage.setScene(scene);
         primaryStage.show();
@@ -174,11 +347,7 @@ public class TextEditor extends Application {
             }
 
             EditingArea editingArea = getActiveEditingArea();
-
-            if(saveFile(editingArea, false)) {
-                tabPane.getSelectionModel().getSelectedItem().setText(editingArea.getCurrentFile().getName());
-            }
-
+            saveFile(editingArea, false);
             editingArea.requestFocus();
         });
         saveFile.setTooltip(new Tooltip("Save File - CTRL + S"));
@@ -195,10 +364,7 @@ public class TextEditor extends Application {
             }
 
             EditingArea editingArea = getActiveEditingArea();
-            if(saveFile(editingArea, true)) {
-                tabPane.getSelectionModel().getSelectedItem().setText(editingArea.getCurrentFile().getName());
-            }
-
+            saveFile(editingArea, true);
             editingArea.requestFocus();
         });
         saveAs.setTooltip(new Tooltip("Save File As - CTRL + Shift + S"));
@@ -214,8 +380,7 @@ public class TextEditor extends Application {
                 return;
             }
 
-            EditingArea editingArea = getActiveEditingArea();
-            new PrinterWorker(editingArea).print();
+            printDocument(getActiveEditingArea());
         });
         print.setTooltip(new Tooltip("Print the current document - CTRL + P"));
 
@@ -234,6 +399,48 @@ public class TextEditor extends Application {
     }
 
 
+    /**
+     * Returns the status bar shown at the bottom of the window.
+     * 
+     * @return  The status bar.
+     */
+    private HBox getStatusBar() {
+        status = new Label();
+
+        position = new Label();
+        position.setTooltip(new Tooltip("Go To Line - CTRL + G"));
+        position.setOnMouseClicked(e -> {
+            if(!tabPane.getTabs().isEmpty()) {
+                showGoToLineDialog(getActiveEditingArea());
+            }
+        });
+
+        follow = new ToggleButton("Follow");
+        follow.setTooltip(new Tooltip("Follow the end of the file as it grows - CTRL + T"));
+        follow.setFocusTraversable(false);
+        follow.setOnAction((ActionEvent e) -> {
+            if(tabPane.getTabs().isEmpty()) {
+                follow.setSelected(false);
+                return;
+            }
+
+            EditingArea editingArea = getActiveEditingArea();
+            toggleFollow(editingArea);
+            editingArea.requestFocus();
+        });
+        HBox.setMargin(follow, new Insets(0, 12, 0, 0));
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        HBox statusBar = new HBox(status, spacer, follow, position);
+        statusBar.setPadding(new Insets(2, 6, 2, 6));
+        statusBar.getStyleClass().add("status-bar");
+
+        return statusBar;
+    }
+
+
     /**
      * Returns the currently selected editing area.
      * 
@@ -248,12 +455,32 @@ public class TextEditor extends Application {
      * Adds a new tab to the Tab Pane.
      */
     private void addNewTab() {
+        addNewTab(new EditingArea());
+    }
+
+
+    /**
+     * Adds a new tab containing the given editing area to the Tab Pane.
+     * 
+     * @param editingArea   The EditingArea to show in the new tab.
+     */
+    private void addNewTab(final EditingArea editingArea) {
+        addNewTab(editingArea, tabPane.getTabs().size(), true);
+    }
+
+
+    /**
+     * Adds a new tab containing the given editing area to the Tab Pane.
+     * 
+     * @param editingArea   The EditingArea to show in the new tab.
+     * @param index         The position to add the tab at.
+     * @param select        Whether or not to select the new tab.
+     */
+    private void addNewTab(final EditingArea editingArea, final int index, final boolean select) {
         Tab tab = new Tab("Unsaved Document " + documentIndex);
 
         documentIndex++;
 
-        EditingArea editingArea = new EditingArea();
-
         tab.setOnCloseRequest((Event e) -> {
             if(showPossibleDataLossDialog(editingArea)) {
                 documentIndex--;
@@ -263,26 +490,39 @@ public class TextEditor extends Application {
         });
 
         tab.setContent(editingArea);
-        tabPane.getTabs().add(tab);
-        tabPane.getSelectionModel().select(tab);
+        tabPane.getTabs().add(Math.min(index, tabPane.getTabs().size()), tab);
+
+        // Large files are read-only, so they have nothing to autosave.
+        if(!(editingArea instanceof LargeFileArea)) {
+            journals.computeIfAbsent(editingArea, AutosaveJournal::new);
+        }
+        if(select) {
+            tabPane.getSelectionModel().select(tab);
+        }
 
         // Add key combinations for keyboard shortcuts.
         KeyCodeCombination saveKC = new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN);
         KeyCodeCombination saveAsKC = new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN);
         KeyCodeCombination openKC = new KeyCodeCombination(KeyCode.O, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination quickOpenKC = new KeyCodeCombination(KeyCode.O, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN);
         KeyCodeCombination quitKC = new KeyCodeCombination(KeyCode.Q, KeyCombination.CONTROL_DOWN);
         KeyCodeCombination newKC = new KeyCodeCombination(KeyCode.N, KeyCombination.CONTROL_DOWN);
         KeyCodeCombination printKC = new KeyCodeCombination(KeyCode.P, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination goToLineKC = new KeyCodeCombination(KeyCode.G, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination findKC = new KeyCodeCombination(KeyCode.F, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination replaceKC = new KeyCodeCombination(KeyCode.H, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination findInFilesKC = new KeyCodeCombination(KeyCode.F, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN);
+        KeyCodeCombination followKC = new KeyCodeCombination(KeyCode.T, KeyCombination.CONTROL_DOWN);
+        KeyCodeCombination compareKC = new KeyCodeCombination(KeyCode.D, KeyCombination.CONTROL_DOWN);
         
         editingArea.addEventFilter(KeyEvent.KEY_PRESSED, (KeyEvent e) -> {
             if(saveAsKC.match(e)) {
-                if(saveFile(getActiveEditingArea(), true)) {
-                    tabPane.getSelectionModel().getSelectedItem().setText(editingArea.getCurrentFile().getName());
-                }
+                saveFile(editingArea, true);
             } else if(saveKC.match(e)) {
-                if(saveFile(getActiveEditingArea(), false)) {
-                    tabPane.getSelectionModel().getSelectedItem().setText(editingArea.getCurrentFile().getName());
-                }
+                saveFile(editingArea, false);
+            } else if(quickOpenKC.match(e)) {
+                showQuickOpenDialog();
+                e.consume();
             } else if(openKC.match(e)) {
                 openFile();
             } else if(quitKC.match(e)) {
@@ -290,7 +530,44 @@ public class TextEditor extends Application {
             } else if(newKC.match(e)) {
                 addNewTab();
             } else if(printKC.match(e)) {
-                new PrinterWorker(editingArea).print();
+                printDocument(editingArea);
+            } else if(goToLineKC.match(e)) {
+                showGoToLineDialog(editingArea);
+                e.consume();
+            } else if(followKC.match(e)) {
+                toggleFollow(editingArea);
+                e.consume();
+            } else if(compareKC.match(e)) {
+                compareWithTab(editingArea);
+                e.consume();
+            } else if(findInFilesKC.match(e)) {
+                showFindInFilesDialog(editingArea);
+                e.consume();
+            } else if(findKC.match(e)) {
+                findBar.show(false);
+                e.consume();
+            } else if(replaceKC.match(e)) {
+                findBar.show(editingArea.isEditable());
+                e.consume();
+            }
+        });
+
+        // Keep the line and column in the status bar up to date.
+        editingArea.caretPositionProperty().addListener((observable, oldValue, newValue) -> {
+            if(tab.isSelected()) {
+                updatePosition();
+            }
+        });
+
+        editingArea.lineCountProperty().addListener((observable, oldValue, newValue) -> {
+            if(tab.isSelected()) {
+                updatePosition();
+            }
+        });
+
+        editingArea.editableProperty().addListener((observable, oldValue, newValue) -> {
+            if(tab.isSelected()) {
+                updatePosition();
             }
         });
 
@@ -299,10 +576,45 @@ public class TextEditor extends Application {
     }
 
 
+    /**
+     * Returns the tab that shows an editing area.
+     * 
+     * @param editingArea   The EditingArea to find the tab of.
+     * @return  The tab of the editing area, or null if it has been closed.
+     */
+    private Tab getTab(final EditingArea editingArea) {
+        for(Tab tab : tabPane.getTabs()) {
+            if(tab.getContent() == editingArea) {
+                return tab;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Closes the tab of an editing area the same way the close button of the
+     * tab does.
+     * 
+     * @param editingArea   The EditingArea whose tab should be closed.
+     */
+    private void closeTab(final EditingArea editingArea) {
+        Tab tab = getTab(editingArea);
+        if(tab == null) {
+            return;
+        }
+
+        documentIndex--;
+        tabPane.getTabs().remove(tab);
+        Event.fireEvent(tab, new Event(Tab.CLOSED_EVENT));
+    }
+
+
     /**
      * Shows a dialog telling the user that they may lose any unsaved changes if
      * the close the current tab, if the content in the current tab needs to
-     * be saved.
+     * be saved. If the user chooses to save, the tab is closed once the save
+     * has finished instead of straight away.
      * 
      * @param editingArea   The EditingArea that contains the content that may 
      *                      need to be save.
@@ -326,7 +638,16 @@ public class TextEditor extends Application {
             Optional<ButtonType> result = warning.showAndWait();
 
             if(result.get() == yes) {
-                return saveFile(editingArea, false);
+                FileSaver saver = saveFile(editingArea, false);
+                if(saver != null) {
+                    saver.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                        // Edits made while saving still have to be saved.
+                        if(!isFileSaveNeeded(editingArea)) {
+                            closeTab(editingArea);
+                        }
+                    });
+                }
+                return false;
             } else if(result.get() == cancel) {
                 return false;
             }
@@ -336,7 +657,9 @@ public class TextEditor extends Application {
 
 
     /**
-     * Used to aid in the opening of multiple files.
+     * Used to aid in the opening of multiple files. Each file is given its own
+     * tab straight away and is then loaded in the background, so several files
+     * load in parallel.
      */
     private void openFile() {
         fileChooser.setTitle("Open File");
@@ -345,122 +668,1131 @@ public class TextEditor extends Application {
         if(files != null) {
 
             for(File temp : files) {
+                openFile(temp);
+            }
+        }
+    }
 
-                addNewTab();
-                EditingArea editingArea = getActiveEditingArea();
-                editingArea.setCurrentFile(temp);
 
-                try (BufferedReader br = new BufferedReader(new FileReader(editingArea.getCurrentFile()))) {
-                    
-                    String line;
+    /**
+     * Opens a file in a new tab. Files too large to hold in memory are opened
+     * read-only.
+     * 
+     * @param file  The file to open.
+     */
+    private void openFile(final File file) {
+        if(LargeFileArea.isLarge(file)) {
+            openLargeFile(file);
+        } else {
+            loadFile(file);
+        }
+    }
+
 
-                    while((line = br.readLine()) != null) {
-                        editingArea.appendText(line + "\n");
-                    }
+    /**
+     * Opens a file in a new tab and starts loading it in the background.
+     * 
+     * @param file  The file to open.
+     * @return  The loader of the file.
+     */
+    private FileLoader loadFile(final File file) {
+        return loadFile(file, tabPane.getTabs().size(), true);
+    }
+
+
+    /**
+     * Opens a file in a new tab. A selected tab starts loading the file in the
+     * background straight away. A tab that is not selected stays an empty,
+     * hibernating placeholder until the user first selects it.
+     * 
+     * @param file      The file to open.
+     * @param index     The position to add the tab at.
+     * @param select    Whether or not to select the new tab.
+     * @return  The loader of the file.
+     */
+    private FileLoader loadFile(final File file, final int index, final boolean select) {
+        EditingArea editingArea = new EditingArea();
+        editingArea.setCurrentFile(file);
+        if(!select) {
+            editingArea.hibernate();
+        }
+        addNewTab(editingArea, index, select);
+        Tab tab = getTab(editingArea);
+        tab.setText(file.getName());
+
+        FileLoader loader = new FileLoader(file, editingArea);
+
+        // Show the progress of the loader in the tab.
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(16, 16);
+        progress.progressProperty().bind(loader.progressProperty());
+        tab.setGraphic(progress);
+
+        loader.setOnSucceeded(e -> {
+            tab.setGraphic(null);
+            watchFile(editingArea);
+            memoryBudget.enforce();
+
+            // The dialog waits for the user, so it is shown once the loader
+            // is done telling its listeners that it succeeded.
+            Platform.runLater(() -> offerToTurnOffWrapping(editingArea));
+        });
+
+        loader.setOnFailed(e -> {
+            tab.setGraphic(null);
+            showExceptionDialog(loader.getException());
+            editingArea.requestFocus();
+        });
 
-                    tabPane.getSelectionModel().getSelectedItem().setText(editingArea.getCurrentFile().getName());
+        // Closing the tab stops the file from loading.
+        tab.setOnClosed(e -> {
+            loader.cancel();
+        });
 
-                    br.close();
+        if(select) {
+            loader.start();
+            editingArea.requestFocus();
+            return loader;
+        }
 
-                    editingArea.resetHasBeenEdited();
-                    editingArea.requestFocus();
-                } catch (IOException err) {
-                    showExceptionDialog(err);
-                    editingArea.requestFocus();
+        ChangeListener<Boolean> startWhenSelected = new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+                if(newValue && loader.getState() == Worker.State.READY) {
+                    tab.selectedProperty().removeListener(this);
+                    loader.start();
                 }
             }
+        };
+        tab.selectedProperty().addListener(startWhenSelected);
+
+        // The tab pane selects the first tab added on its own, so that tab is
+        // only loaded if it is still selected once the other tabs are added.
+        if(tab.isSelected()) {
+            Platform.runLater(() -> {
+                startWhenSelected.changed(tab.selectedProperty(), false, tab.isSelected());
+            });
         }
+        return loader;
     }
 
 
     /**
-     * Returns whether or not the file has been saved.
+     * Offers to turn off wrapping in an area that has a line longer than
+     * EditingArea.LONG_LINE, like minified JSON. Long lines are laid out a
+     * segment at a time either way, but a segment that is not wrapped is a
+     * single row, which is quicker to lay out again while typing in it.
      * 
-     * @param editingArea   The editingArea that contains the content that needs
-     *                      to be saved.
-     * @param saveAs        Whether or not the file chooser should automatically
-     *                      be saved.
-     * @return  Whether or not the content in the editingArea has been saved.
+     * @param editingArea   The EditingArea that was loaded.
      */
-    private boolean saveFile(final EditingArea editingArea, final boolean saveAs) {
+    private void offerToTurnOffWrapping(final EditingArea editingArea) {
+        if(!editingArea.isWrapText()) {
+            return;
+        }
+        int line = editingArea.findLongLine();
+        if(line < 0) {
+            return;
+        }
 
-        fileChooser.setTitle("Save File");
+        Alert alert = new Alert(AlertType.CONFIRMATION);
+        alert.setTitle("Long Lines");
+        alert.setHeaderText(null);
+        alert.setContentText(editingArea.getCurrentFile().getName() + " has lines longer than "
+                + EditingArea.LONG_LINE + " characters, starting with line " + (line + 1) + ". Long lines are "
+                + "shown in segments that each start a new row. Would you like to turn off wrapping, so that "
+                + "each segment is a single row?");
 
-        if(saveAs) {
-            File temp = fileChooser.showSaveDialog(primaryStage);
-            if(temp == null) {
-                return false;
-            }
-            editingArea.setCurrentFile(temp);
-        } else if(isFileSaveNeeded(editingArea)) {
+        ButtonType turnOff = new ButtonType("Turn Off Wrapping");
+        ButtonType keep = new ButtonType("Keep Wrapping", ButtonData.CANCEL_CLOSE);
+        alert.getButtonTypes().setAll(turnOff, keep);
 
-            File temp = fileChooser.showSaveDialog(primaryStage);
-            if(temp == null) {
-                return false;
+        Optional<ButtonType> result = alert.showAndWait();
+        if(result.isPresent() && result.get() == turnOff && getTab(editingArea) != null) {
+            editingArea.setWrapText(false);
+        }
+    }
+
+
+    /**
+     * Opens a tab for each document that had unsaved changes when the editor
+     * last stopped without exiting normally. The recovered documents are
+     * marked as edited, and keep being autosaved in the same files.
+     * 
+     * @return  true if any documents were recovered; false if not.
+     */
+    private boolean recoverDocuments() {
+        List<AutosaveJournal.Recovery> recovered = AutosaveJournal.recover();
+
+        for(AutosaveJournal.Recovery recovery : recovered) {
+            EditingArea editingArea = new EditingArea();
+            AutosaveJournal journal = new AutosaveJournal(editingArea, recovery.getId());
+            journals.put(editingArea, journal);
+            recovery.restore(editingArea);
+            journal.start();
+
+            // Adding the tab marks the area as unedited, and the recovered
+            // text is only kept if closing the tab asks to save it first.
+            addNewTab(editingArea);
+            editingArea.markHasBeenEdited();
+            if(recovery.getFile() != null) {
+                tabPane.getSelectionModel().getSelectedItem().setText(recovery.getFile().getName());
             }
-            editingArea.setCurrentFile(temp);
         }
 
-        try(PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(editingArea.getCurrentFile())));) {
-            pw.println(editingArea.getText());
-            Alert alert = new Alert(AlertType.INFORMATION);
-            alert.setTitle("File Saved");
-            alert.setHeaderText(null);
-            alert.setContentText("File Saved!");
-            alert.showAndWait();
-            editingArea.resetHasBeenEdited();
-            return true;
-        } catch (IOException err) {
-            showExceptionDialog(err);
-            return false;
+        if(!recovered.isEmpty()) {
+            status.setText("Recovered " + recovered.size()
+                    + (recovered.size() == 1 ? " unsaved document" : " unsaved documents"));
         }
+        return !recovered.isEmpty();
     }
 
 
     /**
-     * Returns whether or not it is safe to exit the program.
+     * Reopens the files of the last session in their tabs. Only the tab that
+     * was selected is added and loaded straight away. The rest are added a few
+     * at a time once the window is shown, and wait to be loaded until they are
+     * selected. Files that no longer exist or are already open are passed
+     * over.
      * 
-     * @return  true if it is save to exit the program; false if not.
+     * @return  true if any files are reopened; false if not.
      */
-    private boolean exitProgram() {
-        ObservableList<Tab> tabs = tabPane.getTabs();
-        if(tabs.isEmpty()) {
-            System.exit(0);
+    private boolean restoreSession() {
+        Session session = Session.load();
+        List<Session.Entry> entries = new ArrayList<>();
+        int selected = 0;
+
+        for(int i = 0; i < session.getEntries().size(); i++) {
+            Session.Entry entry = session.getEntries().get(i);
+            if(entry.getFile().isFile() && findTab(entry.getFile()) == null) {
+                if(i == session.getSelected()) {
+                    selected = entries.size();
+                }
+                entries.add(entry);
+            }
         }
 
-        List<EditingArea> unsavedEditingAreas = new ArrayList();
-        ObservableList<String> unsavedDocuments = FXCollections.observableArrayList();
-
-        // Get the unsaved documents.
-        for(Tab tab : tabs) {
-            EditingArea editingArea = (EditingArea)tab.getContent();
+        if(entries.isEmpty()) {
+            return false;
+        }
 
-            if(isFileSaveNeeded(editingArea)) {
-                unsavedDocuments.add(tab.getText());
-                unsavedEditingAreas.add(editingArea);
+        // Every tab before a session tab is added before it, so each goes at
+        // the position of its entry.
+        int first = tabPane.getTabs().size();
+        restoreTab(entries.get(selected), first, true);
+        for(int i = 0; i < entries.size(); i++) {
+            if(i != selected) {
+                Session.Entry entry = entries.get(i);
+                int index = first + i;
+                pendingRestores.add(() -> restoreTab(entry, index, false));
             }
         }
 
-        if(unsavedDocuments.isEmpty()) {
-            System.exit(0);
-        }
+        Platform.runLater(() -> restorePendingTabs(RESTORE_BATCH_SIZE));
+        return true;
+    }
 
-        // Create the unsaved documents list.
-        ListView<String> unsaved = new ListView(unsavedDocuments);
-        unsaved.setMaxWidth(Double.MAX_VALUE);
-        unsaved.setMaxHeight(Double.MAX_VALUE);
 
-        final int rowHeight = 24;
+    /**
+     * Adds some of the session tabs that are still waiting, and leaves the
+     * rest for later so the editor keeps responding.
+     * 
+     * @param count The most tabs to add.
+     */
+    private void restorePendingTabs(int count) {
+        for(int i = 0; i < count && !pendingRestores.isEmpty(); i++) {
+            pendingRestores.poll().run();
+        }
 
-        unsaved.setPrefHeight(unsavedDocuments.size() * rowHeight + 2);
+        if(!pendingRestores.isEmpty()) {
+            Platform.runLater(() -> restorePendingTabs(RESTORE_BATCH_SIZE));
+        }
+    }
 
-        // Set up the alert dialog.
-        Alert alert = new Alert(AlertType.WARNING);
-        alert.setTitle("Unsaved Changes");
-        alert.setHeaderText(null);
 
-        ButtonType discardAll = new ButtonType("Discard All");
-        ButtonType save = new ButtonType("Save");
+    /**
+     * Reopens a file of the last session in a tab, putting the caret and the
+     * view back where they were once it has loaded.
+     * 
+     * @param entry     The session entry of the file.
+     * @param index     The position to add the tab at.
+     * @param select    Whether or not to select the tab and load it now.
+     */
+    private void restoreTab(final Session.Entry entry, final int index, final boolean select) {
+        if(entry.isLarge()) {
+            openLargeFile(entry.getFile(), index, select, entry.getScroll());
+            return;
+        }
+
+        FileLoader loader = loadFile(entry.getFile(), index, select);
+        EditingArea editingArea = loader.getEditingArea();
+        unloadedTabs.put(editingArea, entry);
+        loader.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+            unloadedTabs.remove(editingArea);
+            editingArea.positionCaret(Math.min(entry.getCaret(), editingArea.getLength()));
+            editingArea.setScrollPosition(entry.getScroll());
+        });
+    }
+
+
+    /**
+     * Writes the files that are open, and where the caret and view are in
+     * each, to the session file. Documents that have never been saved are not
+     * part of the session; their text is kept by their autosave journal.
+     */
+    private void saveSession() {
+        restorePendingTabs(Integer.MAX_VALUE);
+        Session session = new Session();
+        Tab selectedTab = tabPane.getSelectionModel().getSelectedItem();
+
+        for(Tab tab : tabPane.getTabs()) {
+            EditingArea editingArea = (EditingArea)tab.getContent();
+            File file = editingArea.getCurrentFile();
+            if(file == null) {
+                continue;
+            }
+
+            Session.Entry unloaded = unloadedTabs.get(editingArea);
+            if(unloaded != null) {
+                session.add(file, false, unloaded.getCaret(), unloaded.getScroll(), tab == selectedTab);
+            } else {
+                // A tab that followed a large file only holds its end, so it is
+                // opened as a large file next time.
+                boolean large = editingArea instanceof LargeFileArea || LargeFileArea.isLarge(file);
+                session.add(file, large, editingArea.getCaretPosition(),
+                        editingArea.getScrollPosition(), tab == selectedTab);
+            }
+        }
+
+        try {
+            session.save();
+        } catch(IOException e) {
+            // The next start opens with an empty tab instead.
+        }
+    }
+
+
+    /**
+     * Returns the tab showing a file.
+     * 
+     * @param file  The file.
+     * @return  The tab, or null if the file is not open.
+     */
+    private Tab findTab(final File file) {
+        for(Tab tab : tabPane.getTabs()) {
+            if(file.equals(((EditingArea)tab.getContent()).getCurrentFile())) {
+                return tab;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Shows a file at a line. If the file is already open its tab is selected,
+     * otherwise the file is opened and the line is shown once it has loaded.
+     * 
+     * @param file  The file to show.
+     * @param line  The index of the line to show, starting from 0.
+     */
+    private void openFileAtLine(final File file, final int line) {
+        Tab tab = findTab(file);
+        if(tab != null) {
+            tabPane.getSelectionModel().select(tab);
+            showLine((EditingArea)tab.getContent(), line);
+            return;
+        }
+
+        if(LargeFileArea.isLarge(file)) {
+            LargeFileArea largeFileArea = openLargeFile(file);
+            if(largeFileArea != null) {
+                largeFileArea.getIndexer().addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                    showLine(largeFileArea, line);
+                });
+            }
+            return;
+        }
+
+        FileLoader loader = loadFile(file);
+        if(loader != null) {
+            EditingArea editingArea = loader.getEditingArea();
+            loader.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                showLine(editingArea, line);
+            });
+        }
+    }
+
+
+    /**
+     * Scrolls an EditingArea to a line, puts the caret at the start of it and
+     * focuses the area.
+     * 
+     * @param editingArea   The EditingArea.
+     * @param line          The index of the line, starting from 0.
+     */
+    private void showLine(final EditingArea editingArea, final int line) {
+        editingArea.goToLine(line);
+        if(editingArea instanceof LargeFileArea) {
+            int last = Math.max(0, editingArea.getLineCount() - 1);
+            ((LargeFileArea)editingArea).selectLinePosition(Math.min(line, last), 0, false);
+        }
+        editingArea.requestFocus();
+    }
+
+
+    /**
+     * Shows the Quick Open window. The file picked is shown in its tab if it is
+     * already open, and opened in a new tab otherwise.
+     */
+    private void showQuickOpenDialog() {
+        if(quickOpenDialog == null) {
+            quickOpenDialog = new QuickOpenDialog(primaryStage, (File file) -> {
+                Tab tab = findTab(file);
+                if(tab != null) {
+                    tabPane.getSelectionModel().select(tab);
+                    tab.getContent().requestFocus();
+                } else {
+                    openFile(file);
+                }
+            });
+        }
+        quickOpenDialog.open();
+    }
+
+
+    /**
+     * Shows the Find in Files window, searching for the selected text if there
+     * is any.
+     * 
+     * @param editingArea   The EditingArea the window was opened from.
+     */
+    private void showFindInFilesDialog(final EditingArea editingArea) {
+        if(findInFilesDialog == null) {
+            findInFilesDialog = new FindInFilesDialog(primaryStage, this::openFileAtLine);
+        }
+
+        String selected = editingArea.getSelectedText();
+        findInFilesDialog.show(selected.indexOf('\n') < 0 ? selected : null);
+    }
+
+
+    /**
+     * Compares the text of an editing area with the text of another tab in the
+     * Compare window. If there are more than two tabs, the user picks the
+     * other one.
+     * 
+     * @param editingArea   The EditingArea the comparison was started from.
+     */
+    private void compareWithTab(final EditingArea editingArea) {
+        // Large files are not held in memory, so they cannot be compared.
+        List<Tab> others = new ArrayList<>();
+        for(Tab tab : tabPane.getTabs()) {
+            if(tab.getContent() != editingArea && !(tab.getContent() instanceof LargeFileArea)) {
+                others.add(tab);
+            }
+        }
+
+        if(editingArea instanceof LargeFileArea) {
+            status.setText("Large files cannot be compared.");
+            return;
+        } else if(others.isEmpty()) {
+            status.setText("Open another document to compare with.");
+            return;
+        }
+
+        Tab other = others.get(0);
+        if(others.size() > 1) {
+            // Tabs are numbered, since two tabs can have the same title.
+            List<String> choices = new ArrayList<>();
+            for(Tab tab : others) {
+                choices.add((tabPane.getTabs().indexOf(tab) + 1) + ": " + tab.getText());
+            }
+
+            ChoiceDialog<String> dialog = new ChoiceDialog<>(choices.get(0), choices);
+            dialog.setTitle("Compare");
+            dialog.setHeaderText(null);
+            dialog.setContentText("Compare with:");
+
+            Optional<String> result = dialog.showAndWait();
+            editingArea.requestFocus();
+            if(!result.isPresent()) {
+                return;
+            }
+            other = others.get(choices.indexOf(result.get()));
+        }
+
+        if(compareWindow == null) {
+            compareWindow = new CompareWindow(primaryStage);
+        }
+
+        EditingArea otherArea = (EditingArea)other.getContent();
+        compareWindow.compare(getCompareTitle(editingArea), editingArea.getDocument().snapshot(),
+                getCompareTitle(otherArea), otherArea.getDocument().snapshot());
+    }
+
+
+    /**
+     * Returns the name of an editing area's text in the Compare window: the
+     * path of its file, or the title of its tab if it has no file.
+     * 
+     * @param editingArea   The EditingArea.
+     * @return  The name of the text.
+     */
+    private String getCompareTitle(final EditingArea editingArea) {
+        File file = editingArea.getCurrentFile();
+        if(file != null) {
+            return file.getPath();
+        }
+        Tab tab = getTab(editingArea);
+        return tab != null ? tab.getText() : "";
+    }
+
+
+    /**
+     * Opens a file that is too large to load into memory in a read-only tab.
+     * 
+     * @param file  The file to open.
+     * @return  The LargeFileArea showing the file, or null if the file could
+     *          not be opened.
+     */
+    private LargeFileArea openLargeFile(final File file) {
+        return openLargeFile(file, tabPane.getTabs().size(), true, 0);
+    }
+
+
+    /**
+     * Opens a file that is too large to load into memory in a read-only tab.
+     * 
+     * @param file      The file to open.
+     * @param index     The position to add the tab at.
+     * @param select    Whether or not to select the new tab.
+     * @param scroll    The line to scroll to once the file has been indexed.
+     * @return  The LargeFileArea showing the file, or null if the file could
+     *          not be opened.
+     */
+    private LargeFileArea openLargeFile(final File file, final int index, final boolean select, final double scroll) {
+        long startTime = System.nanoTime();
+        LargeFileArea largeFileArea;
+        try {
+            largeFileArea = new LargeFileArea(file);
+        } catch(IOException err) {
+            showExceptionDialog(err);
+            return null;
+        }
+
+        addNewTab(largeFileArea, index, select);
+        Tab tab = getTab(largeFileArea);
+        tab.setText(file.getName() + " (read-only)");
+        watchFile(largeFileArea);
+
+        Task<Void> indexer = largeFileArea.startIndexing();
+
+        // Show how much of the file has been indexed in the tab.
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(16, 16);
+        progress.progressProperty().bind(indexer.progressProperty());
+        tab.setGraphic(progress);
+
+        indexer.setOnSucceeded(e -> {
+            EditorMetrics.get().recordOpen(System.nanoTime() - startTime, file.length());
+            tab.setGraphic(null);
+            if(scroll > 0) {
+                largeFileArea.setScrollPosition(scroll);
+            }
+        });
+
+        indexer.setOnFailed(e -> {
+            tab.setGraphic(null);
+            showExceptionDialog(indexer.getException());
+        });
+
+        tab.setOnClosed(e -> {
+            largeFileArea.close();
+        });
+
+        if(select) {
+            largeFileArea.requestFocus();
+        }
+        return largeFileArea;
+    }
+
+
+    /**
+     * Starts watching the current file of an editing area for changes made by
+     * other programs, taking the file as it is now as what the tab shows. A
+     * file the area was watching before stops being watched.
+     * 
+     * @param editingArea   The EditingArea whose file to watch.
+     */
+    private void watchFile(final EditingArea editingArea) {
+        WatchedFile watchedFile = watchedFiles.get(editingArea);
+        File file = editingArea.getCurrentFile();
+        if(watchedFile != null && file != null && watchedFile.getPath().equals(file.toPath().toAbsolutePath())) {
+            watchedFile.update();
+            return;
+        }
+
+        if(watchedFile != null) {
+            watchedFiles.remove(editingArea);
+            fileWatcher.unwatch(watchedFile);
+        }
+        if(file == null || getTab(editingArea) == null) {
+            return;
+        }
+
+        watchedFile = new WatchedFile(editingArea);
+        watchedFile.update();
+        watchedFiles.put(editingArea, watchedFile);
+        fileWatcher.watch(watchedFile);
+    }
+
+
+    /**
+     * Brings a tab up to date with a change another program made to its file.
+     * A tab without unsaved changes follows its file: text appended to the
+     * file is appended to the tab, and any other change reloads it. The user
+     * is asked what to do about a tab with unsaved changes.
+     * 
+     * @param change    The change the file watcher found.
+     */
+    private void fileChanged(final WatchedFile.Change change) {
+        WatchedFile watchedFile = change.getWatchedFile();
+        EditingArea editingArea = watchedFile.getEditingArea();
+
+        // The tab may have been closed, or saved to another file, since. A
+        // followed file is read by its follower.
+        if(watchedFiles.get(editingArea) != watchedFile || followers.containsKey(editingArea)) {
+            return;
+        }
+
+        if(change.getKind() == WatchedFile.Kind.DELETED) {
+            status.setText(editingArea.getCurrentFile().getName() + " was deleted by another program");
+        } else if(editingArea instanceof LargeFileArea) {
+            reopenFile(editingArea);
+        } else if(editingArea.getHasBeenEdited()) {
+            showExternalChangeDialog(editingArea);
+        } else if(change.getKind() == WatchedFile.Kind.APPENDED) {
+            appendExternalText(editingArea, change.getAppendedText());
+        } else if(!editingArea.isEditable()) {
+            // A tab that only holds the end of its file after following it is
+            // opened again, instead of reading the whole file into it.
+            reopenFile(editingArea);
+        } else {
+            reloadFile(editingArea);
+        }
+    }
+
+
+    /**
+     * Adds text another program appended to the file of a tab to the end of
+     * the tab. Like the text added while the file was loaded, it is not an edit
+     * the user can undo.
+     * 
+     * @param editingArea   The EditingArea to add the text to.
+     * @param text          The appended text.
+     */
+    private void appendExternalText(final EditingArea editingArea, final String text) {
+        if(text.isEmpty()) {
+            return;
+        }
+
+        boolean editable = editingArea.isEditable();
+        editingArea.setEditable(false);
+        editingArea.appendText(text);
+        editingArea.setEditable(editable);
+        editingArea.resetHasBeenEdited();
+    }
+
+
+    /**
+     * Asks the user whether to reload a file another program changed while
+     * its tab has unsaved changes, or to merge the changes to the file into
+     * the tab. Merging is only offered if the text the tab was last loaded or
+     * saved with is still known.
+     * 
+     * @param editingArea   The EditingArea whose file changed.
+     */
+    private void showExternalChangeDialog(final EditingArea editingArea) {
+        if(!externalChangePrompts.add(editingArea)) {
+            return;
+        }
+
+        Alert alert = new Alert(AlertType.WARNING);
+        alert.setTitle("File Changed");
+        alert.setHeaderText(null);
+        alert.setContentText(editingArea.getCurrentFile().getName() + " has been changed by another program, "
+                + "and you have unsaved changes. Would you like to reload the file and lose your changes, "
+                + "or merge the changes to the file into yours?");
+
+        ButtonType reload = new ButtonType("Reload");
+        ButtonType merge = new ButtonType("Merge");
+        ButtonType keep = new ButtonType("Keep Mine", ButtonData.CANCEL_CLOSE);
+
+        if(editingArea.getSavedText() != null) {
+            alert.getButtonTypes().setAll(reload, merge, keep);
+        } else {
+            alert.getButtonTypes().setAll(reload, keep);
+        }
+
+        Optional<ButtonType> result = alert.showAndWait();
+        externalChangePrompts.remove(editingArea);
+
+        if(getTab(editingArea) == null) {
+            return;
+        }
+        if(result.get() == reload) {
+            reloadFile(editingArea);
+        } else if(result.get() == merge) {
+            mergeFile(editingArea);
+        }
+    }
+
+
+    /**
+     * Reads the file of an editing area again in the background, into an area
+     * of its own, so the tab is left as it is until the whole file has been
+     * read.
+     * 
+     * @param editingArea   The EditingArea whose file to read.
+     * @param action        Is given the area the file was read into, if the
+     *                      tab still shows the same file by then.
+     */
+    private void readFileAgain(final EditingArea editingArea, final Consumer<EditingArea> action) {
+        File file = editingArea.getCurrentFile();
+        EditingArea fileArea = new EditingArea();
+        FileLoader loader = new FileLoader(file, fileArea);
+
+        loader.setOnSucceeded(e -> {
+            if(getTab(editingArea) != null && file.equals(editingArea.getCurrentFile())) {
+                action.accept(fileArea);
+            }
+            fileArea.getUndoJournal().close();
+        });
+
+        loader.setOnFailed(e -> {
+            fileArea.getUndoJournal().close();
+            status.setText("Could not read " + file.getName());
+            showExceptionDialog(loader.getException());
+        });
+
+        status.setText("Reading " + file.getName() + "...");
+        loader.start();
+    }
+
+
+    /**
+     * Replaces the text of a tab with its file as it is now, throwing away any
+     * unsaved changes. The caret and scroll position are kept as far as the
+     * new text allows.
+     * 
+     * @param editingArea   The EditingArea to reload.
+     */
+    private void reloadFile(final EditingArea editingArea) {
+        readFileAgain(editingArea, fileArea -> {
+            int caret = editingArea.getCaretPosition();
+            double scroll = editingArea.getScrollPosition();
+            boolean editable = editingArea.isEditable();
+
+            // Like opening the file, reloading it can not be undone.
+            editingArea.setEditable(false);
+            editingArea.replaceText(0, editingArea.getLength(), fileArea.getText());
+            editingArea.setEditable(editable);
+            editingArea.setCharset(fileArea.getCharset());
+            editingArea.setByteOrderMark(fileArea.hasByteOrderMark());
+            editingArea.setLineEnding(fileArea.getLineEnding());
+            editingArea.clearUndoHistory();
+            editingArea.resetHasBeenEdited();
+            editingArea.positionCaret(Math.min(caret, editingArea.getLength()));
+            editingArea.setScrollPosition(scroll);
+
+            AutosaveJournal journal = journals.get(editingArea);
+            if(journal != null) {
+                journal.discard();
+            }
+            watchFile(editingArea);
+            status.setText("Reloaded " + editingArea.getCurrentFile().getName());
+        });
+    }
+
+
+    /**
+     * Merges the changes another program made to the file of a tab with the
+     * unsaved changes made in the tab. Lines both changed differently are kept
+     * in both versions, between conflict markers. The texts are compared on a
+     * thread of their own, and the merge is made as a single edit, so it can be
+     * undone, and the tab still has to be saved afterwards.
+     * 
+     * @param editingArea   The EditingArea to merge into.
+     */
+    private void mergeFile(final EditingArea editingArea) {
+        DocumentSnapshot savedText = editingArea.getSavedText();
+
+        readFileAgain(editingArea, fileArea -> {
+            String name = editingArea.getCurrentFile().getName();
+            String mine = editingArea.getText();
+            String theirs = fileArea.getText();
+            long editCount = editingArea.getEditCount();
+
+            Task<LineMerge.Result> merger = new Task<LineMerge.Result>() {
+                @Override
+                protected LineMerge.Result call() {
+                    return LineMerge.merge(savedText.getText(0, savedText.length()), mine, theirs, name);
+                }
+            };
+
+            merger.setOnSucceeded(e -> {
+                if(getTab(editingArea) == null) {
+                    return;
+                }
+
+                // The tab was edited while the texts were compared, so they
+                // are compared again.
+                if(editingArea.getEditCount() != editCount) {
+                    mergeFile(editingArea);
+                    return;
+                }
+
+                LineMerge.Result result = merger.getValue();
+                String merged = result.getText();
+
+                // Only the part that changed is replaced, so the edit is small
+                // and the caret stays where it was if it was outside of it.
+                int start = 0;
+                int limit = Math.min(mine.length(), merged.length());
+                while(start < limit && mine.charAt(start) == merged.charAt(start)) {
+                    start++;
+                }
+                int end = 0;
+                while(end < limit - start
+                        && mine.charAt(mine.length() - 1 - end) == merged.charAt(merged.length() - 1 - end)) {
+                    end++;
+                }
+
+                int caret = editingArea.getCaretPosition();
+                editingArea.replaceText(start, mine.length() - end, merged.substring(start, merged.length() - end));
+                if(caret < start) {
+                    editingArea.positionCaret(caret);
+                } else if(caret > mine.length() - end) {
+                    editingArea.positionCaret(caret + merged.length() - mine.length());
+                }
+
+                watchFile(editingArea);
+                if(result.getConflicts() > 0) {
+                    status.setText("Merged " + name + " with " + result.getConflicts() + " conflicts to resolve");
+                } else {
+                    status.setText("Merged " + name);
+                }
+            });
+
+            merger.setOnFailed(e -> {
+                status.setText("Could not merge " + name);
+                showExceptionDialog(merger.getException());
+            });
+
+            Thread thread = new Thread(merger, "Merger");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+
+    /**
+     * Opens the file of a read-only tab again in the same place, since the
+     * file has changed under the tab.
+     * 
+     * @param editingArea   The EditingArea whose file changed.
+     */
+    private void reopenFile(final EditingArea editingArea) {
+        Tab tab = getTab(editingArea);
+        int index = tabPane.getTabs().indexOf(tab);
+        boolean selected = tab.isSelected();
+        double scroll = editingArea.getScrollPosition();
+        File file = editingArea.getCurrentFile();
+
+        closeTab(editingArea);
+        if(LargeFileArea.isLarge(file)) {
+            openLargeFile(file, index, selected, scroll);
+        } else {
+            loadFile(file, index, selected);
+        }
+    }
+
+
+    /**
+     * Starts or stops following the file of a tab. Only a file that has been
+     * loaded, and has no unsaved changes, can be followed. A large file is
+     * followed in a new tab that only holds its last lines.
+     * 
+     * @param editingArea   The EditingArea whose file to follow.
+     */
+    private void toggleFollow(final EditingArea editingArea) {
+        FileFollower follower = followers.remove(editingArea);
+        WatchedFile watchedFile = watchedFiles.get(editingArea);
+
+        if(follower != null) {
+            follower.stop();
+
+            // Anything written after the follower stopped is found to have
+            // been appended.
+            if(watchedFile != null) {
+                watchedFile.update(follower.getOffset());
+            }
+            status.setText("Stopped following " + editingArea.getCurrentFile().getName());
+        } else if(editingArea.getCompression() != Compression.NONE) {
+            status.setText("Compressed files can not be followed");
+        } else if(editingArea instanceof LargeFileArea) {
+            followLargeFile((LargeFileArea)editingArea);
+        } else if(watchedFile == null || watchedFile.isMissing()) {
+            status.setText("Only a file that has been opened can be followed");
+        } else if(isFileSaveNeeded(editingArea)) {
+            status.setText("Save " + editingArea.getCurrentFile().getName() + " before following it");
+        } else {
+            // A tab that can be edited holds the whole file.
+            startFollowing(editingArea, watchedFile.getSize(), editingArea.isEditable());
+        }
+
+        follow.setSelected(!tabPane.getTabs().isEmpty() && followers.containsKey(getActiveEditingArea()));
+    }
+
+
+    /**
+     * Starts following the file of a tab.
+     * 
+     * @param editingArea   The EditingArea to add the text of the file to.
+     * @param offset        The offset in the file the text of the tab ends at.
+     * @param wholeFile     Whether or not the tab holds the file from its start.
+     */
+    private void startFollowing(final EditingArea editingArea, final long offset, final boolean wholeFile) {
+        FileFollower follower = new FileFollower(editingArea, offset, wholeFile);
+        try {
+            follower.start();
+        } catch(IOException err) {
+            showExceptionDialog(err);
+            return;
+        }
+
+        followers.put(editingArea, follower);
+        editingArea.scrollToEnd();
+        status.setText("Following " + editingArea.getCurrentFile().getName());
+    }
+
+
+    /**
+     * Replaces a large file tab with a tab that holds only the last lines of
+     * the file, and follows the file from there. The whole file is never read.
+     * 
+     * @param largeFileArea The LargeFileArea whose file to follow.
+     */
+    private void followLargeFile(final LargeFileArea largeFileArea) {
+        File file = largeFileArea.getCurrentFile();
+        long offset;
+        try {
+            offset = FileFollower.findLastLines(file, largeFileArea.getCharset(), FileFollower.MAX_LINES);
+        } catch(IOException err) {
+            showExceptionDialog(err);
+            return;
+        }
+
+        EditingArea editingArea = new EditingArea();
+        editingArea.setCurrentFile(file);
+        editingArea.setCharset(largeFileArea.getCharset());
+        editingArea.setByteOrderMark(largeFileArea.hasByteOrderMark());
+
+        Tab tab = getTab(largeFileArea);
+        int index = tabPane.getTabs().indexOf(tab);
+        boolean selected = tab.isSelected();
+        closeTab(largeFileArea);
+
+        addNewTab(editingArea, index, selected);
+        getTab(editingArea).setText(file.getName() + " (read-only)");
+        watchFile(editingArea);
+        startFollowing(editingArea, offset, false);
+    }
+
+
+    /**
+     * Prints the document in the editing area. Documents that are opened as
+     * large files are not printed, since they can not be laid out in memory.
+     * 
+     * @param editingArea   The EditingArea containing the document to print.
+     */
+    private void printDocument(final EditingArea editingArea) {
+        if(editingArea instanceof LargeFileArea) {
+            showReadOnlyDialog("Large files can not be printed.");
+            return;
+        }
+
+        PrinterWorker printer = new PrinterWorker(editingArea);
+        printer.setHeader(getTab(editingArea).getText());
+        printer.print(primaryStage);
+    }
+
+
+    /**
+     * Starts saving the content of an editing area in the background. The user
+     * can keep editing while the file is written, and the status bar shows when
+     * the save has finished.
+     * 
+     * @param editingArea   The editingArea that contains the content that needs
+     *                      to be saved.
+     * @param saveAs        Whether or not the file chooser should automatically
+     *                      be saved.
+     * @return  The FileSaver writing the file, or null if nothing is saved.
+     */
+    private FileSaver saveFile(final EditingArea editingArea, final boolean saveAs) {
+
+        if(!editingArea.isEditable()) {
+            showReadOnlyDialog("This document is read-only and can not be saved.");
+            return null;
+        }
+
+        fileChooser.setTitle("Save File");
+
+        if(saveAs) {
+            File temp = fileChooser.showSaveDialog(primaryStage);
+            if(temp == null) {
+                return null;
+            }
+            editingArea.setCurrentFile(temp);
+            editingArea.setCompression(Compression.forName(temp.getName()));
+        } else if(isFileSaveNeeded(editingArea) || editingArea.getCurrentFile() == null) {
+
+            File temp = fileChooser.showSaveDialog(primaryStage);
+            if(temp == null) {
+                return null;
+            }
+            editingArea.setCurrentFile(temp);
+            editingArea.setCompression(Compression.forName(temp.getName()));
+        }
+
+        // An untitled document has nowhere to be written until a file is chosen.
+        if(editingArea.getCurrentFile() == null) {
+            return null;
+        }
+        return writeFile(editingArea);
+    }
+
+
+    /**
+     * Starts writing the content of an editing area to its current file in
+     * the background.
+     * 
+     * @param editingArea   The EditingArea to write.
+     * @return  The FileSaver writing the file.
+     */
+    private FileSaver writeFile(final EditingArea editingArea) {
+        File file = editingArea.getCurrentFile();
+        Tab tab = getTab(editingArea);
+        tab.setText(file.getName());
+
+        FileSaver saver = new FileSaver(file, editingArea);
+
+        // Show the progress of the save in the tab.
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(16, 16);
+        progress.progressProperty().bind(saver.progressProperty());
+        tab.setGraphic(progress);
+        status.setText("Saving " + file.getName() + "...");
+
+        saver.setOnSucceeded(e -> {
+            tab.setGraphic(null);
+            status.setText("Saved " + file.getName());
+            watchFile(editingArea);
+
+            // Edits made while the file was written still need autosaving.
+            AutosaveJournal journal = journals.get(editingArea);
+            if(journal != null && !editingArea.getHasBeenEdited()) {
+                journal.discard();
+            }
+        });
+
+        saver.setOnFailed(e -> {
+            tab.setGraphic(null);
+            status.setText("Could not save " + file.getName());
+            if(saver.failedToEncode() && !editingArea.getCharset().equals(StandardCharsets.UTF_8)) {
+                offerToSaveAsUtf8(editingArea);
+            } else {
+                showExceptionDialog(saver.getException());
+            }
+        });
+
+        saver.start();
+        return saver;
+    }
+
+
+    /**
+     * Offers to save a document in UTF-8 after it could not be saved because
+     * its charset can not hold some of its characters. The file is left as it
+     * was until the user chooses.
+     * 
+     * @param editingArea   The EditingArea that could not be saved.
+     */
+    private void offerToSaveAsUtf8(final EditingArea editingArea) {
+        Alert alert = new Alert(AlertType.CONFIRMATION);
+        alert.setTitle("Could Not Save");
+        alert.setHeaderText(null);
+        alert.setContentText(editingArea.getCurrentFile().getName() + " has characters that can not be "
+                + "written in " + editingArea.getCharset().name() + ", so it was not saved. Would you like "
+                + "to save it in UTF-8 instead?");
+
+        ButtonType utf8 = new ButtonType("Save as UTF-8");
+        ButtonType cancel = new ButtonType("Cancel", ButtonData.CANCEL_CLOSE);
+        alert.getButtonTypes().setAll(utf8, cancel);
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if(result.isPresent() && result.get() == utf8 && getTab(editingArea) != null) {
+            editingArea.setCharset(StandardCharsets.UTF_8);
+            editingArea.setByteOrderMark(false);
+            updatePosition();
+            writeFile(editingArea);
+        }
+    }
+
+
+    /**
+     * Returns whether or not it is safe to exit the program.
+     * 
+     * @return  true if it is save to exit the program; false if not.
+     */
+    private boolean exitProgram() {
+        ObservableList<Tab> tabs = tabPane.getTabs();
+        if(tabs.isEmpty()) {
+            exitNow();
+        }
+
+        List<EditingArea> unsavedEditingAreas = new ArrayList();
+        ObservableList<String> unsavedDocuments = FXCollections.observableArrayList();
+
+        // Get the unsaved documents.
+        for(Tab tab : tabs) {
+            EditingArea editingArea = (EditingArea)tab.getContent();
+
+            if(isFileSaveNeeded(editingArea)) {
+                unsavedDocuments.add(tab.getText());
+                unsavedEditingAreas.add(editingArea);
+            }
+        }
+
+        if(unsavedDocuments.isEmpty()) {
+            exitNow();
+        }
+
+        // Create the unsaved documents list.
+        ListView<String> unsaved = new ListView(unsavedDocuments);
+        unsaved.setMaxWidth(Double.MAX_VALUE);
+        unsaved.setMaxHeight(Double.MAX_VALUE);
+
+        final int rowHeight = 24;
+
+        unsaved.setPrefHeight(unsavedDocuments.size() * rowHeight + 2);
+
+        // Set up the alert dialog.
+        Alert alert = new Alert(AlertType.WARNING);
+        alert.setTitle("Unsaved Changes");
+        alert.setHeaderText(null);
+
+        ButtonType discardAll = new ButtonType("Discard All");
+        ButtonType save = new ButtonType("Save");
         ButtonType cancel = new ButtonType("Cancel", ButtonData.CANCEL_CLOSE);
         alert.getButtonTypes().setAll(discardAll, save, cancel);
 
@@ -481,16 +1813,20 @@ public class TextEditor extends Application {
         Optional<ButtonType> result = alert.showAndWait();
 
         if(result.get() == discardAll) {
-            System.exit(0);
+            exitNow();
         } else if(result.get() == save) {
             EditingArea editingArea = unsavedEditingAreas.get(unsaved.getSelectionModel().getSelectedIndex());
 
-            if(saveFile(editingArea, false)) {
-                unsavedEditingAreas.remove(editingArea);
-                unsaved.getItems().remove(unsaved.getSelectionModel().getSelectedIndex());
+            // Ask about the rest of the documents once the save has finished.
+            FileSaver saver = saveFile(editingArea, false);
+            if(saver != null) {
+                saver.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+                    exitProgram();
+                });
+                return false;
             }
 
-            exitProgram();
+            return exitProgram();
         } else {
             return false;
         }
@@ -498,6 +1834,90 @@ public class TextEditor extends Application {
     }
 
     
+    /**
+     * Shows the line and column of the caret of the selected tab in the status
+     * bar, along with the charset and line ending of its file. Read-only
+     * documents do not have a caret, so the amount of lines in them is shown
+     * instead.
+     */
+    private void updatePosition() {
+        if(tabPane.getTabs().isEmpty()) {
+            position.setText("");
+            return;
+        }
+
+        EditingArea editingArea = getActiveEditingArea();
+        String charset = editingArea.getCharset().name() + (editingArea.hasByteOrderMark() ? " BOM" : "");
+
+        if(!editingArea.isEditable()) {
+            position.setText(String.format("%,d lines    %s", editingArea.getLineCount(), charset));
+            return;
+        }
+
+        int caretPosition = editingArea.getCaretPosition();
+        int line = editingArea.getLineOfOffset(caretPosition);
+        int column = caretPosition - editingArea.getLineStart(line);
+        position.setText("Ln " + (line + 1) + ", Col " + (column + 1)
+                + "    " + charset + "    " + editingArea.getLineEnding());
+    }
+
+
+    /**
+     * Shows a dialog asking the user for a line number, and scrolls the editing
+     * area to that line.
+     * 
+     * @param editingArea   The EditingArea to move in.
+     */
+    private void showGoToLineDialog(final EditingArea editingArea) {
+        int lineCount = editingArea.getLineCount();
+
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Go To Line");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Line number (1 - " + lineCount + "):");
+
+        Optional<String> result = dialog.showAndWait();
+
+        if(result.isPresent()) {
+            try {
+                editingArea.goToLine(Integer.parseInt(result.get().trim()) - 1);
+            } catch(NumberFormatException err) {
+                // Anything that is not a number is ignored.
+            }
+        }
+        editingArea.requestFocus();
+    }
+
+
+    /**
+     * Returns an estimate of the memory used by the document of each tab, for
+     * the metrics. Tabs are numbered, since two tabs can have the same title.
+     *
+     * @return  The bytes used, by the number and title of the tab.
+     */
+    private Map<String, Long> getTabMemory() {
+        Map<String, Long> memory = new LinkedHashMap<>();
+        List<Tab> tabs = tabPane.getTabs();
+        for(int i = 0; i < tabs.size(); i++) {
+            EditingArea editingArea = (EditingArea)tabs.get(i).getContent();
+            memory.put((i + 1) + ": " + tabs.get(i).getText(), editingArea.getMemoryUsed());
+        }
+        return memory;
+    }
+
+
+    /**
+     * Exits the program once every save that has been started has finished.
+     */
+    private void exitNow() {
+        saveSession();
+        EditorMetrics.get().shutdown();
+        FileSaver.awaitPendingSaves(30);
+        AutosaveJournal.shutdown(true, 5);
+        System.exit(0);
+    }
+
+
     /**
      * Returns whether or not the content in the editing area needs to be saved.
      * 
@@ -506,8 +1926,8 @@ public class TextEditor extends Application {
      * @return  Whether or not the content in editingArea needs to be saved.
      */
     private boolean isFileSaveNeeded(final EditingArea editingArea) {
-        if(editingArea.getCurrentFile() != null 
-                && !(new File(editingArea.getCurrentFile().getAbsolutePath()).exists())) {
+        WatchedFile watchedFile = watchedFiles.get(editingArea);
+        if(watchedFile != null && watchedFile.isMissing()) {
             return true;
         } else {
             return editingArea.getHasBeenEdited();
@@ -515,6 +1935,21 @@ public class TextEditor extends Application {
     }
     
 
+    /**
+     * Shows a dialog telling the user that an action can not be done on a
+     * read-only document.
+     * 
+     * @param message   The message to show.
+     */
+    private void showReadOnlyDialog(final String message) {
+        Alert alert = new Alert(AlertType.INFORMATION);
+        alert.setTitle("Read-Only Document");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+    
+
     /**
      * Shows a dialog with the exception message.
      *
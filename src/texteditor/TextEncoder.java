@@ -0,0 +1,370 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserPrincipal;
+
+
+/**
+ * Writes text to a file in a charset, byte order mark and line ending, and
+ * compresses it if the file is compressed. The text is written to a temporary
+ * file next to the file, which is forced to the disk and then moved over the
+ * file, so the file is never left half written. A symbolic link is followed
+ * and the file it points to is replaced. When the new file can not be given
+ * the owner, group or access control list of the file it replaces, the text
+ * is copied into the file instead, which keeps them but is not atomic.
+ *
+ * The encoder does not need JavaFX. FileSaver uses it to save documents in the
+ * editor, and BatchProcessor to write files without a window.
+ */
+public class TextEncoder {
+
+
+    /**
+     * The amount of characters encoded at a time.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+
+    /**
+     * The charset the file is written in.
+     */
+    private final Charset charset;
+
+
+    /**
+     * Whether or not the file starts with a byte order mark.
+     */
+    private final boolean byteOrderMark;
+
+
+    /**
+     * The characters written at the end of each line.
+     */
+    private final String lineSeparator;
+
+
+    /**
+     * How the file is compressed.
+     */
+    private final Compression compression;
+
+
+    /**
+     * Creates a TextEncoder for a file that is not compressed.
+     *
+     * @param charset       The charset to write the file in.
+     * @param byteOrderMark Whether or not the file starts with a byte order
+     *                      mark.
+     * @param lineEnding    The line ending each "\n" is written as.
+     */
+    public TextEncoder(Charset charset, boolean byteOrderMark, LineEnding lineEnding) {
+        this(charset, byteOrderMark, lineEnding, Compression.NONE);
+    }
+
+
+    /**
+     * Creates a TextEncoder.
+     *
+     * @param charset       The charset to write the file in.
+     * @param byteOrderMark Whether or not the file starts with a byte order
+     *                      mark.
+     * @param lineEnding    The line ending each "\n" is written as.
+     * @param compression   How to compress the file.
+     */
+    public TextEncoder(Charset charset, boolean byteOrderMark, LineEnding lineEnding, Compression compression) {
+        this.charset = charset;
+        this.byteOrderMark = byteOrderMark;
+        this.lineSeparator = lineEnding.getSeparator();
+        this.compression = compression;
+    }
+
+
+    /**
+     * Writes text to a temporary file, forces it to the disk, and moves it over
+     * a file, or copies it into the file if the move would lose the owner,
+     * group or access control list of the file.
+     *
+     * @param file      The file to write.
+     * @param source    The text to write.
+     * @return  true if the file was written; false if the source was cancelled
+     *          first, in which case the file is left as it was.
+     * @throws IOException  If the text could not be encoded or written.
+     */
+    public boolean save(Path file, Source source) throws IOException {
+        Path target = Files.exists(file) ? file.toRealPath() : file.toAbsolutePath();
+        Path directory = target.getParent();
+        Path temp = directory.resolve("." + target.getFileName() + "."
+                + Long.toHexString(System.nanoTime()) + ".tmp");
+        boolean moved = false;
+
+        try {
+            boolean inPlace;
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                inPlace = Files.exists(target) && !copyAttributes(target, temp);
+
+                if(compression == Compression.NONE) {
+                    write(channel, source);
+                } else {
+                    try(DeflatingChannel deflating = new DeflatingChannel(channel, compression)) {
+                        write(deflating, source);
+                    }
+                }
+                if(source.isCancelled()) {
+                    return false;
+                }
+                channel.force(true);
+            }
+
+            if(inPlace) {
+                copyInto(temp, target);
+                return true;
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+
+            // Force the directory too, so that the move itself is on the disk.
+            try(FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            } catch(IOException e) {
+                // Not every platform can open a directory as a channel.
+            }
+        } finally {
+            if(!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Gives a new file the permissions, owner, group and access control list
+     * of the file it is to replace, where the file system has them.
+     *
+     * @param from  The file to copy the attributes of.
+     * @param to    The file to give them to.
+     * @return  true if they were all copied; false if one could not be, such
+     *          as the owner of a file that belongs to another user.
+     */
+    private static boolean copyAttributes(Path from, Path to) {
+        try {
+            PosixFileAttributeView posix = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+            if(posix != null) {
+                PosixFileAttributes attributes = posix.readAttributes();
+                PosixFileAttributeView copy = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+                copy.setPermissions(attributes.permissions());
+                if(!attributes.group().equals(copy.readAttributes().group())) {
+                    copy.setGroup(attributes.group());
+                }
+            }
+
+            FileOwnerAttributeView owner = Files.getFileAttributeView(from, FileOwnerAttributeView.class);
+            if(owner != null) {
+                UserPrincipal principal = owner.getOwner();
+                if(!principal.equals(Files.getOwner(to))) {
+                    Files.setOwner(to, principal);
+                }
+            }
+
+            AclFileAttributeView acl = Files.getFileAttributeView(from, AclFileAttributeView.class);
+            if(acl != null) {
+                Files.getFileAttributeView(to, AclFileAttributeView.class).setAcl(acl.getAcl());
+            }
+            return true;
+        } catch(IOException | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Copies a file that has been written in full into another file, over
+     * what was in it, and forces it to the disk.
+     *
+     * @param source    The file to copy.
+     * @param target    The file to write.
+     * @throws IOException  If the file could not be copied.
+     */
+    private static void copyInto(Path source, Path target) throws IOException {
+        try(FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for(long position = 0; position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+
+    /**
+     * Encodes text and writes it to a channel. The text is copied out of the
+     * source a chunk at a time, and the line endings are put back as each
+     * chunk is copied, so the whole text is never held as a single String or
+     * byte array. Text the charset can not hold is reported rather than written
+     * as '?', so a save never loses characters without the user knowing.
+     *
+     * @param channel   The channel to write to.
+     * @param source    The text to write.
+     * @throws IOException  If the text could not be encoded or written. A
+     *                      CharacterCodingException is thrown if the charset
+     *                      can not hold the text.
+     */
+    public void write(WritableByteChannel channel, Source source) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        int length = source.length();
+        char[] chunk = new char[Math.min(CHUNK_SIZE, Math.max(length, 1))];
+
+        // Every '\n' can become two characters, and half of a surrogate pair
+        // can be left over from the chunk before.
+        char[] separator = lineSeparator.toCharArray();
+        CharBuffer in = CharBuffer.allocate(chunk.length * separator.length + 1);
+        in.limit(0);
+
+        ByteBuffer out = BufferPool.acquire();
+        try {
+            if(byteOrderMark) {
+                out.put(CharsetDetector.getByteOrderMark(charset));
+            }
+
+            int offset = 0;
+            boolean endOfInput = false;
+
+            while(!endOfInput) {
+                if(source.isCancelled()) {
+                    return;
+                }
+
+                int count = Math.min(chunk.length, length - offset);
+                source.getChars(offset, count, chunk, 0);
+                offset += count;
+                endOfInput = offset == length;
+
+                in.compact();
+                char[] target = in.array();
+                int position = in.position();
+                for(int i = 0; i < count; i++) {
+                    char c = chunk[i];
+                    if(c != '\n') {
+                        target[position++] = c;
+                    } else {
+                        for(int j = 0; j < separator.length; j++) {
+                            target[position++] = separator[j];
+                        }
+                    }
+                }
+                in.position(position);
+                in.flip();
+
+                CoderResult result;
+                do {
+                    result = encoder.encode(in, out, endOfInput);
+                    if(result.isError()) {
+                        result.throwException();
+                    } else if(result.isOverflow()) {
+                        drain(channel, out);
+                    }
+                } while(result.isOverflow());
+
+                source.progress(offset, Math.max(1, length));
+            }
+
+            while(encoder.flush(out).isOverflow()) {
+                drain(channel, out);
+            }
+            drain(channel, out);
+        } finally {
+            BufferPool.release(out);
+        }
+    }
+
+
+    /**
+     * Writes the bytes in a buffer to a channel and empties the buffer.
+     *
+     * @param channel   The channel to write to.
+     * @param out       The buffer holding the bytes.
+     * @throws IOException  If the bytes could not be written.
+     */
+    private static void drain(WritableByteChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while(out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+
+    /**
+     * The text a TextEncoder writes, with "\n" at the end of each line.
+     */
+    public interface Source {
+
+
+        /**
+         * Returns the amount of characters in the text.
+         *
+         * @return  The length of the text.
+         */
+        int length();
+
+
+        /**
+         * Copies part of the text into an array.
+         *
+         * @param offset    The offset of the first character to copy.
+         * @param length    The amount of characters to copy.
+         * @param dest      The array to copy into.
+         * @param destPos   Where in the array to start.
+         */
+        void getChars(int offset, int length, char[] dest, int destPos);
+
+
+        /**
+         * Is told how much of the text has been written.
+         *
+         * @param written   The amount of characters written.
+         * @param length    The length of the text.
+         */
+        default void progress(long written, long length) {
+        }
+
+
+        /**
+         * Returns whether or not the encoder should stop writing.
+         *
+         * @return  true to stop; false to keep writing.
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package texteditor;
+
+import javafx.scene.paint.Color;
+
+
+/**
+ * The kinds of tokens a Lexer finds, each with the color it is drawn in. Text
+ * that is not part of any token is drawn in the color of the area.
+ */
+public enum TokenType {
+    KEYWORD(Color.web("#0033b3")),
+    STRING(Color.web("#067d17")),
+    NUMBER(Color.web("#1750eb")),
+    COMMENT(Color.web("#8c8c8c")),
+    LITERAL(Color.web("#871094")),
+    KEY(Color.web("#871094")),
+    ANNOTATION(Color.web("#9e880d")),
+    TIMESTAMP(Color.web("#0e7c86")),
+    ERROR(Color.web("#cc0000")),
+    WARNING(Color.web("#b35900")),
+    INFO(Color.web("#0033b3"));
+
+
+    /**
+     * The color tokens of this type are drawn in.
+     */
+    private final Color color;
+
+
+    /**
+     * Creates a TokenType.
+     *
+     * @param color The color tokens of this type are drawn in.
+     */
+    TokenType(Color color) {
+        this.color = color;
+    }
+
+
+    /**
+     * Returns the color tokens of this type are drawn in.
+     *
+     * @return  The color.
+     */
+    public Color getColor() {
+        return color;
+    }
+}
@@ -0,0 +1,963 @@
+package texteditor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+
+/**
+ * An index of the files under a directory that tells which files could hold a
+ * piece of text, so that only those files have to be searched. For each run of
+ * three ASCII characters, ignoring case, the index holds the files that contain
+ * it. A search only looks at the files that contain every trigram of the text
+ * it is looking for.
+ *
+ * The index is kept in a file in the user's home directory, and is brought up
+ * to date by reading again only the files whose size or modification time has
+ * changed. Each list of files is stored as the differences between the ids of
+ * the files, written as variable length integers.
+ */
+public class TrigramIndex {
+
+
+    /**
+     * The first bytes of an index file, and the version of its format.
+     */
+    private static final int MAGIC = 0x54524749, VERSION = 1;
+
+
+    /**
+     * The amount of distinct trigrams. Each of the three characters is ASCII,
+     * so it takes seven bits.
+     */
+    private static final int TRIGRAM_COUNT = 1 << 21;
+
+
+    /**
+     * The amount of files read by the worker threads before their trigrams are
+     * added to the index.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+
+    /**
+     * The kinds of files in the index. Indexed files have their trigrams in the
+     * index. Unindexed files are in an encoding the trigrams do not work for,
+     * so they are always searched. Skipped files, such as binary files, are
+     * never searched.
+     */
+    private static final byte INDEXED = 0, UNINDEXED = 1, SKIPPED = 2;
+
+
+    /**
+     * Finds the inline flags of a regular expression that turn on comments, in
+     * which case the spaces in the expression are not part of what it matches.
+     */
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+
+
+    /**
+     * The directory that is indexed.
+     */
+    private final Path root;
+
+
+    /**
+     * The file the index is kept in.
+     */
+    private final Path indexFile;
+
+
+    /**
+     * The files in the index. The id of a file is its place in the list.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+
+    /**
+     * The id of each file, by its path relative to the root.
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+
+    /**
+     * The ids of files that have been removed or changed since the index was
+     * last saved. They are left out of searches, and taken out of the lists
+     * when the index is saved.
+     */
+    private final BitSet removed = new BitSet();
+
+
+    /**
+     * The list of files that contain each trigram, or null if no file does.
+     */
+    private PostingList[] postings = new PostingList[TRIGRAM_COUNT];
+
+
+    /**
+     * Whether or not the index file has been read.
+     */
+    private boolean loaded = false;
+
+
+    /**
+     * Creates an index of a directory. Nothing is read until update is called.
+     *
+     * @param root  The directory to index.
+     */
+    public TrigramIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.indexFile = Paths.get(System.getProperty("user.home"), ".texteditor", "index",
+                Integer.toHexString(this.root.toString().hashCode()) + ".idx");
+    }
+
+
+    /**
+     * Returns the directory that is indexed.
+     *
+     * @return  The root of the index.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+
+    /**
+     * Returns the amount of files in the index that can be searched.
+     *
+     * @return  The amount of files.
+     */
+    public synchronized int getFileCount() {
+        int count = 0;
+        for(int id = removed.nextClearBit(0); id < entries.size(); id = removed.nextClearBit(id + 1)) {
+            if(entries.get(id).kind != SKIPPED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Brings the index up to date with the files under the root. The index file
+     * is read the first time this is called. New files and files whose size or
+     * modification time changed are read on the worker threads, and the index
+     * file is written again if anything changed.
+     *
+     * @param workers   The threads to read files on.
+     * @param cancelled Tells whether or not to stop updating.
+     * @throws IOException          If the directory could not be walked.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public synchronized void update(ExecutorService workers, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        if(!loaded) {
+            load();
+            loaded = true;
+        }
+
+        Map<String, BasicFileAttributes> files = walk();
+        List<String> changed = new ArrayList<>();
+
+        for(Map.Entry<String, BasicFileAttributes> file : files.entrySet()) {
+            Integer id = ids.get(file.getKey());
+            BasicFileAttributes attributes = file.getValue();
+            if(id == null) {
+                changed.add(file.getKey());
+            } else if(removed.get(id) || !entries.get(id).matches(attributes)) {
+                removed.set(id);
+                changed.add(file.getKey());
+            }
+        }
+
+        // Files removed by an update that was cancelled are still to be taken out.
+        boolean modified = !changed.isEmpty() || !removed.isEmpty();
+        for(Map.Entry<String, Integer> id : ids.entrySet()) {
+            if(!files.containsKey(id.getKey())) {
+                removed.set(id.getValue());
+                modified = true;
+            }
+        }
+        ids.keySet().retainAll(files.keySet());
+
+        for(int start = 0; start < changed.size() && !cancelled.getAsBoolean(); start += BATCH_SIZE) {
+            List<String> batch = changed.subList(start, Math.min(changed.size(), start + BATCH_SIZE));
+            readBatch(batch, files, workers);
+        }
+
+        if(modified && !cancelled.getAsBoolean()) {
+            compact();
+            save();
+        }
+    }
+
+
+    /**
+     * Returns the files that could hold matches of a query. The files that are
+     * left out can not hold a match; the files returned still have to be
+     * searched.
+     *
+     * @param query The query.
+     * @return  The files to search, in the order they were added to the index.
+     */
+    public synchronized List<Path> getCandidates(SearchQuery query) {
+        int[] trigrams = getTrigrams(query);
+        int[] candidates = null;
+
+        if(trigrams.length > 0) {
+            // Start with the shortest list, so each step has less to check.
+            PostingList[] lists = new PostingList[trigrams.length];
+            for(int i = 0; i < trigrams.length; i++) {
+                lists[i] = postings[trigrams[i]];
+                if(lists[i] == null) {
+                    lists = null;
+                    candidates = new int[0];
+                    break;
+                }
+            }
+
+            if(lists != null) {
+                Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+                candidates = lists[0].decode();
+                for(int i = 1; i < lists.length && candidates.length > 0; i++) {
+                    candidates = intersect(candidates, lists[i].decode());
+                }
+            }
+        }
+
+        List<Path> paths = new ArrayList<>();
+        int next = 0;
+        for(int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            boolean candidate;
+            if(candidates == null || entry.kind == UNINDEXED) {
+                candidate = entry.kind != SKIPPED;
+            } else {
+                while(next < candidates.length && candidates[next] < id) {
+                    next++;
+                }
+                candidate = next < candidates.length && candidates[next] == id;
+            }
+
+            if(candidate && !removed.get(id)) {
+                paths.add(root.resolve(entry.path));
+            }
+        }
+        return paths;
+    }
+
+
+    /**
+     * Returns the trigrams that every match of a query contains. For plain
+     * text this is every trigram of the text. For a regular expression, only
+     * the runs of literal characters that every match must contain are used,
+     * and nothing is used if the expression has alternatives.
+     *
+     * @param query The query.
+     * @return  The distinct trigrams, which may be empty.
+     */
+    static int[] getTrigrams(SearchQuery query) {
+        List<String> literals = new ArrayList<>();
+        if(query.isRegex()) {
+            literals.addAll(getRequiredLiterals(query.getText()));
+        } else {
+            literals.add(query.getText());
+        }
+
+        BitSet trigrams = new BitSet();
+        for(String literal : literals) {
+            int run = 0;
+            int key = 0;
+            for(int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if(c >= 0x80) {
+                    run = 0;
+                    continue;
+                }
+                key = ((key << 7) | foldCase(c)) & (TRIGRAM_COUNT - 1);
+                if(++run >= 3) {
+                    trigrams.set(key);
+                }
+            }
+        }
+        return trigrams.stream().toArray();
+    }
+
+
+    /**
+     * Returns the runs of literal characters that every match of a regular
+     * expression contains. Only the top level of the expression is looked at;
+     * groups and character classes end a run, and a character followed by a
+     * quantifier that allows it to be missing is left out.
+     *
+     * @param regex The regular expression.
+     * @return  The runs of characters, which is empty if the expression has
+     *          alternatives at the top level.
+     */
+    static List<String> getRequiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        if(COMMENTS_FLAG.matcher(regex).find()) {
+            return literals;
+        }
+
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        int length = regex.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = regex.charAt(i);
+
+            if(c == '\\' && i + 1 < length) {
+                char next = regex.charAt(++i);
+                if(Character.isLetterOrDigit(next)) {
+                    // A character class such as \d, a back reference or \Q.
+                    // Stop at \Q, since the quoted text is read differently.
+                    if(next == 'Q') {
+                        break;
+                    }
+                    if(depth == 0) {
+                        endRun(run, literals);
+                    }
+                } else if(depth == 0) {
+                    run.append(next);
+                }
+            } else if(c == '[') {
+                if(depth == 0) {
+                    endRun(run, literals);
+                }
+                i = skipCharacterClass(regex, i);
+            } else if(c == '(') {
+                if(depth == 0) {
+                    endRun(run, literals);
+                }
+                depth++;
+            } else if(c == ')') {
+                depth--;
+            } else if(depth > 0) {
+                continue;
+            } else if(c == '|') {
+                literals.clear();
+                return literals;
+            } else if(c == '*' || c == '?' || c == '{') {
+                // The character before this may not be in the match.
+                if(run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                endRun(run, literals);
+            } else if(c == '+' || c == '.' || c == '^' || c == '$') {
+                endRun(run, literals);
+            } else {
+                run.append(c);
+            }
+        }
+
+        endRun(run, literals);
+        return literals;
+    }
+
+
+    /**
+     * Adds a run of literal characters to a list if it is long enough to have a
+     * trigram, then clears it.
+     *
+     * @param run       The run of characters.
+     * @param literals  The list of runs.
+     */
+    private static void endRun(StringBuilder run, List<String> literals) {
+        if(run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+
+    /**
+     * Returns the index of the ']' that ends a character class.
+     *
+     * @param regex The regular expression.
+     * @param start The index of the '[' that starts the class.
+     * @return  The index of the end of the class.
+     */
+    private static int skipCharacterClass(String regex, int start) {
+        int length = regex.length();
+        int i = start + 1;
+
+        // A ']' at the start of the class is one of its characters.
+        if(i < length && regex.charAt(i) == '^') {
+            i++;
+        }
+        if(i < length && regex.charAt(i) == ']') {
+            i++;
+        }
+
+        int depth = 1;
+        for(; i < length; i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == '[') {
+                depth++;
+            } else if(c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+
+    /**
+     * Folds an ASCII character to lower case.
+     *
+     * @param c The character.
+     * @return  The folded character.
+     */
+    private static int foldCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+
+    /**
+     * Returns the ids that are in both of two sorted arrays.
+     *
+     * @param a The first array.
+     * @param b The second array.
+     * @return  The ids in both arrays, in order.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] both = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                i++;
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                both[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+
+    /**
+     * Returns the regular files under the root that can be indexed. Hidden
+     * directories, such as those of version control, are left out, and so are
+     * files that are too large to be opened in a normal tab.
+     *
+     * @return  The attributes of each file, by its path relative to the root.
+     * @throws IOException  If the root could not be walked.
+     */
+    private Map<String, BasicFileAttributes> walk() throws IOException {
+        Map<String, BasicFileAttributes> files = new HashMap<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            /*
+             * Skips hidden directories below the root.
+             */
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if(!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+
+            /*
+             * Adds regular files that are small enough to be loaded.
+             */
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if(attrs.isRegularFile() && attrs.size() < LargeFileArea.THRESHOLD) {
+                    files.put(root.relativize(file).toString(), attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+
+            /*
+             * Leaves out files and directories that can not be read.
+             */
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return files;
+    }
+
+
+    /**
+     * Reads the trigrams of a batch of files on the worker threads, then adds
+     * the files to the index in order, so that the lists of ids stay sorted.
+     *
+     * @param batch     The paths of the files, relative to the root.
+     * @param files     The attributes of the files.
+     * @param workers   The threads to read the files on.
+     * @throws IOException          If a worker failed.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void readBatch(List<String> batch, Map<String, BasicFileAttributes> files,
+            ExecutorService workers) throws IOException, InterruptedException {
+        int[][] trigrams = new int[batch.size()][];
+        byte[] kinds = new byte[batch.size()];
+
+        // Each worker reads every n-th file of the batch with its own buffers.
+        int threads = Math.min(batch.size(), Runtime.getRuntime().availableProcessors());
+        List<Callable<Void>> readers = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int first = t;
+            readers.add(() -> {
+                TrigramReader reader = new TrigramReader();
+                for(int i = first; i < trigrams.length; i += threads) {
+                    kinds[i] = reader.read(root.resolve(batch.get(i)));
+                    trigrams[i] = reader.getTrigrams();
+                }
+                return null;
+            });
+        }
+
+        try {
+            for(Future<Void> future : workers.invokeAll(readers)) {
+                future.get();
+            }
+        } catch(ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        for(int i = 0; i < trigrams.length; i++) {
+            String path = batch.get(i);
+            BasicFileAttributes attributes = files.get(path);
+            int id = entries.size();
+
+            entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime().toMillis(), kinds[i]));
+            ids.put(path, id);
+            for(int trigram : trigrams[i]) {
+                if(postings[trigram] == null) {
+                    postings[trigram] = new PostingList();
+                }
+                postings[trigram].add(id);
+            }
+        }
+    }
+
+
+    /**
+     * Takes the removed files out of the index and gives the rest new ids with
+     * no gaps. The order of the files does not change, so the lists of ids stay
+     * sorted.
+     */
+    private void compact() {
+        if(removed.isEmpty()) {
+            return;
+        }
+
+        int[] newIds = new int[entries.size()];
+        List<Entry> kept = new ArrayList<>();
+        for(int id = 0; id < entries.size(); id++) {
+            if(removed.get(id)) {
+                newIds[id] = -1;
+            } else {
+                newIds[id] = kept.size();
+                kept.add(entries.get(id));
+            }
+        }
+
+        for(int trigram = 0; trigram < TRIGRAM_COUNT; trigram++) {
+            PostingList list = postings[trigram];
+            if(list == null) {
+                continue;
+            }
+
+            PostingList compacted = new PostingList();
+            for(int id : list.decode()) {
+                if(newIds[id] >= 0) {
+                    compacted.add(newIds[id]);
+                }
+            }
+            postings[trigram] = compacted.count > 0 ? compacted : null;
+        }
+
+        entries.clear();
+        entries.addAll(kept);
+        ids.clear();
+        for(int id = 0; id < entries.size(); id++) {
+            ids.put(entries.get(id).path, id);
+        }
+        removed.clear();
+    }
+
+
+    /**
+     * Reads the index file. If it is missing, from an older version or for
+     * another directory, the index starts out empty and every file is read.
+     */
+    private void load() {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(root.toString())) {
+                return;
+            }
+
+            int fileCount = in.readInt();
+            List<Entry> read = new ArrayList<>(fileCount);
+            for(int i = 0; i < fileCount; i++) {
+                read.add(new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readByte()));
+            }
+
+            PostingList[] readPostings = new PostingList[TRIGRAM_COUNT];
+            int listCount = in.readInt();
+            for(int i = 0; i < listCount; i++) {
+                PostingList list = new PostingList();
+                int trigram = in.readInt();
+                list.count = in.readInt();
+                list.last = in.readInt();
+                list.length = in.readInt();
+                list.data = new byte[list.length];
+                in.readFully(list.data);
+                readPostings[trigram] = list;
+            }
+
+            entries.addAll(read);
+            for(int id = 0; id < entries.size(); id++) {
+                ids.put(entries.get(id).path, id);
+            }
+            postings = readPostings;
+        } catch(NoSuchFileException e) {
+            // The directory has not been indexed before.
+        } catch(IOException | RuntimeException e) {
+            // A damaged index is built again from the files.
+        }
+    }
+
+
+    /**
+     * Writes the index file. The index is written to a temporary file that is
+     * then moved over the old one, so a crash never leaves half an index.
+     *
+     * @throws IOException  If the index could not be written.
+     */
+    private void save() throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(root.toString());
+
+            out.writeInt(entries.size());
+            for(Entry entry : entries) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeByte(entry.kind);
+            }
+
+            int listCount = 0;
+            for(PostingList list : postings) {
+                if(list != null) {
+                    listCount++;
+                }
+            }
+
+            out.writeInt(listCount);
+            for(int trigram = 0; trigram < TRIGRAM_COUNT; trigram++) {
+                PostingList list = postings[trigram];
+                if(list != null) {
+                    out.writeInt(trigram);
+                    out.writeInt(list.count);
+                    out.writeInt(list.last);
+                    out.writeInt(list.length);
+                    out.write(list.data, 0, list.length);
+                }
+            }
+        }
+
+        try {
+            Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * A file in the index.
+     */
+    private static class Entry {
+
+
+        /**
+         * The path of the file relative to the root.
+         */
+        final String path;
+
+
+        /**
+         * The size and modification time of the file when it was read.
+         */
+        final long size, modified;
+
+
+        /**
+         * Whether the file is indexed, unindexed or skipped.
+         */
+        final byte kind;
+
+
+        /**
+         * Creates an Entry.
+         *
+         * @param path      The path of the file relative to the root.
+         * @param size      The size of the file.
+         * @param modified  The modification time of the file in milliseconds.
+         * @param kind      Whether the file is indexed, unindexed or skipped.
+         */
+        Entry(String path, long size, long modified, byte kind) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.kind = kind;
+        }
+
+
+        /**
+         * Returns whether or not the file is the same as when it was read.
+         *
+         * @param attributes    The attributes of the file now.
+         * @return  true if the size and modification time are the same.
+         */
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+
+    /**
+     * The sorted ids of the files that contain a trigram. Each id is stored as
+     * its difference from the one before, seven bits to a byte.
+     */
+    private static class PostingList {
+
+
+        /**
+         * The encoded ids.
+         */
+        byte[] data = new byte[4];
+
+
+        /**
+         * The amount of bytes used in the data.
+         */
+        int length = 0;
+
+
+        /**
+         * The amount of ids in the list.
+         */
+        int count = 0;
+
+
+        /**
+         * The last id added.
+         */
+        int last = 0;
+
+
+        /**
+         * Adds an id, which must be larger than the last one.
+         *
+         * @param id    The id to add.
+         */
+        void add(int id) {
+            if(length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+
+            int delta = id - last;
+            while((delta & ~0x7F) != 0) {
+                data[length++] = (byte)(delta | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte)delta;
+
+            last = id;
+            count++;
+        }
+
+
+        /**
+         * Returns the ids in the list.
+         *
+         * @return  The sorted ids.
+         */
+        int[] decode() {
+            int[] ids = new int[count];
+            int id = 0;
+            int position = 0;
+            for(int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while(b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+    }
+
+
+    /**
+     * Reads the trigrams of files. A reader belongs to one thread, and keeps
+     * its buffer and the set of trigrams it has seen from file to file.
+     */
+    private static class TrigramReader {
+
+
+        /**
+         * The trigrams seen in the current file, one bit each.
+         */
+        private final long[] seen = new long[TRIGRAM_COUNT / 64];
+
+
+        /**
+         * The trigrams of the current file in the order they were seen.
+         */
+        private int[] trigrams = new int[1024];
+
+
+        /**
+         * The amount of trigrams in the current file.
+         */
+        private int count = 0;
+
+
+        /**
+         * Reads a file. Files holding a NUL byte are taken to be binary and are
+         * skipped, and files in UTF-16 are left unindexed since their text is
+         * not stored as one byte per ASCII character.
+         *
+         * @param file  The file to read.
+         * @return  The kind of the file. Files that can not be read are skipped.
+         */
+        byte read(Path file) {
+            for(int i = 0; i < count; i++) {
+                seen[trigrams[i] >>> 6] = 0;
+            }
+            count = 0;
+
+            ByteBuffer bytes = BufferPool.acquire();
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                boolean first = true;
+                int run = 0;
+                int key = 0;
+
+                while(channel.read(bytes) != -1) {
+                    bytes.flip();
+                    if(first) {
+                        Charset charset = CharsetDetector.detectByteOrderMark(bytes);
+                        if(charset != null && !charset.equals(StandardCharsets.UTF_8)) {
+                            count = 0;
+                            return UNINDEXED;
+                        }
+                        first = false;
+                    }
+
+                    while(bytes.hasRemaining()) {
+                        byte b = bytes.get();
+                        if(b == 0) {
+                            count = 0;
+                            return SKIPPED;
+                        } else if(b < 0) {
+                            run = 0;
+                            continue;
+                        }
+
+                        key = ((key << 7) | foldCase(b)) & (TRIGRAM_COUNT - 1);
+                        if(++run >= 3) {
+                            add(key);
+                        }
+                    }
+                    bytes.clear();
+                }
+            } catch(IOException e) {
+                count = 0;
+                return SKIPPED;
+            } finally {
+                BufferPool.release(bytes);
+            }
+
+            return INDEXED;
+        }
+
+
+        /**
+         * Returns the distinct trigrams of the last file read, in order.
+         *
+         * @return  The sorted trigrams.
+         */
+        int[] getTrigrams() {
+            int[] sorted = Arrays.copyOf(trigrams, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+
+        /**
+         * Adds a trigram to the current file if it has not been seen yet.
+         *
+         * @param trigram   The trigram.
+         */
+        private void add(int trigram) {
+            long bit = 1L << trigram;
+            if((seen[trigram >>> 6] & bit) != 0) {
+                return;
+            }
+            seen[trigram >>> 6] |= bit;
+
+            if(count == trigrams.length) {
+                trigrams = Arrays.copyOf(trigrams, count * 2);
+            }
+            trigrams[count++] = trigram;
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * The undo and redo history of an EditingArea. Each edit is stored as the
+ * offset it was made at, the text it removed and the text it inserted, and
+ * runs of typing or deleting one character at a time are joined into a single
+ * edit.
+ *
+ * The edits held in memory are kept under a byte budget. When the budget is
+ * passed, the edits furthest from being undone or redone are written to
+ * temporary files, and are read back when they are reached. The files have a
+ * budget of their own, and once that is passed the oldest edits are forgotten.
+ */
+public class UndoJournal {
+
+
+    /**
+     * The amount of memory the edits may use before some are written to the
+     * temporary files.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 16L * 1024 * 1024;
+
+
+    /**
+     * The amount of the temporary files the edits may use before the oldest
+     * are forgotten.
+     */
+    public static final long DEFAULT_DISK_LIMIT = 256L * 1024 * 1024;
+
+
+    /**
+     * The memory an edit is counted as using on top of its text.
+     */
+    private static final int EDIT_OVERHEAD = 64;
+
+
+    /**
+     * The size of the fields written before the text of an edit in a file.
+     */
+    private static final int RECORD_HEADER = 12;
+
+
+    /**
+     * The edits in memory that can be undone, with the most recent one first.
+     * Every edit in memory is newer than every edit in the undo file.
+     */
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+
+
+    /**
+     * The edits in memory that can be redone, with the most recent one first.
+     * Every edit in memory is redone before every edit in the redo file.
+     */
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+
+
+    /**
+     * The edits that were written out of the bottom of each stack.
+     */
+    private final SpillStack undoSpill = new SpillStack(), redoSpill = new SpillStack();
+
+
+    /**
+     * The memory used by the edits in memory.
+     */
+    private long memoryUsed = 0;
+
+
+    /**
+     * The budgets for memory and for the files.
+     */
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT, diskLimit = DEFAULT_DISK_LIMIT;
+
+
+    /**
+     * Records an edit so that it can be undone, and forgets the edits that
+     * could be redone.
+     *
+     * @param offset    The offset the edit was made at.
+     * @param removed   The text the edit removed.
+     * @param inserted  The text the edit inserted.
+     */
+    public void record(int offset, String removed, String inserted) {
+        for(Edit edit : redoStack) {
+            memoryUsed -= edit.getSize();
+        }
+        redoStack.clear();
+        redoSpill.clear();
+
+        Edit edit = new Edit(offset, removed, inserted);
+        Edit last = undoStack.peek();
+        if(last != null) {
+            long size = last.getSize();
+            if(last.join(edit)) {
+                memoryUsed += last.getSize() - size;
+                trim();
+                return;
+            }
+            last.endRun();
+        }
+
+        undoStack.push(edit);
+        memoryUsed += edit.getSize();
+        trim();
+    }
+
+
+    /**
+     * Takes the most recent edit off the undo history and puts it on the redo
+     * history.
+     *
+     * @return  The edit to undo, or null if there is none.
+     */
+    Edit undo() {
+        return move(undoStack, undoSpill, redoStack);
+    }
+
+
+    /**
+     * Takes the most recently undone edit off the redo history and puts it back
+     * on the undo history.
+     *
+     * @return  The edit to redo, or null if there is none.
+     */
+    Edit redo() {
+        return move(redoStack, redoSpill, undoStack);
+    }
+
+
+    /**
+     * Returns whether or not there is an edit that can be undone.
+     *
+     * @return  true if there is an edit to undo; false if not.
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty() || undoSpill.size() > 0;
+    }
+
+
+    /**
+     * Returns whether or not there is an edit that can be redone.
+     *
+     * @return  true if there is an edit to redo; false if not.
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty() || redoSpill.size() > 0;
+    }
+
+
+    /**
+     * Returns the amount of edits that can be undone, in memory and on disk.
+     *
+     * @return  The amount of edits.
+     */
+    public int getUndoCount() {
+        return undoStack.size() + undoSpill.size();
+    }
+
+
+    /**
+     * Returns the memory used by the edits in memory.
+     *
+     * @return  The amount of bytes.
+     */
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+
+    /**
+     * Returns the amount of the temporary files used by edits.
+     *
+     * @return  The amount of bytes.
+     */
+    public long getSpilledBytes() {
+        return undoSpill.getBytes() + redoSpill.getBytes();
+    }
+
+
+    /**
+     * Returns the amount of memory the edits may use.
+     *
+     * @return  The memory budget in bytes.
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+
+    /**
+     * Sets the amount of memory the edits may use. The next edit to undo and
+     * the next edit to redo are always kept in memory, however large they are.
+     *
+     * @param memoryLimit   The memory budget in bytes.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        trim();
+    }
+
+
+    /**
+     * Returns the amount of the temporary files the edits may use.
+     *
+     * @return  The file budget in bytes.
+     */
+    public long getDiskLimit() {
+        return diskLimit;
+    }
+
+
+    /**
+     * Sets the amount of the temporary files the edits may use. A limit of 0
+     * means edits are forgotten instead of being written out.
+     *
+     * @param diskLimit The file budget in bytes.
+     */
+    public void setDiskLimit(long diskLimit) {
+        this.diskLimit = diskLimit;
+        trim();
+    }
+
+
+    /**
+     * Forgets every edit that could be undone or redone.
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        memoryUsed = 0;
+        undoSpill.clear();
+        redoSpill.clear();
+    }
+
+
+    /**
+     * Forgets every edit and deletes the temporary files.
+     */
+    public void close() {
+        clear();
+        undoSpill.close();
+        redoSpill.close();
+    }
+
+
+    /**
+     * Moves the next edit from one history to the other, reading it back from
+     * its file if none are left in memory.
+     *
+     * @param from      The stack to take the edit from.
+     * @param fromSpill The file holding the rest of that history.
+     * @param to        The stack to put the edit on.
+     * @return  The edit, or null if there is none.
+     */
+    private Edit move(Deque<Edit> from, SpillStack fromSpill, Deque<Edit> to) {
+        Edit edit = from.poll();
+        if(edit == null) {
+            edit = fromSpill.pop();
+            if(edit == null) {
+                return null;
+            }
+            memoryUsed += edit.getSize();
+        }
+
+        edit.endRun();
+        to.push(edit);
+        trim();
+        return edit;
+    }
+
+
+    /**
+     * Writes the edits furthest from being used to the files until the memory
+     * budget is met, then forgets the oldest edits until the file budget is
+     * met.
+     */
+    private void trim() {
+        while(memoryUsed > memoryLimit) {
+            Deque<Edit> stack;
+            SpillStack spill;
+            if(undoStack.size() > 1) {
+                stack = undoStack;
+                spill = undoSpill;
+            } else if(redoStack.size() > 1) {
+                stack = redoStack;
+                spill = redoSpill;
+            } else {
+                break;
+            }
+
+            Edit edit = stack.pollLast();
+            memoryUsed -= edit.getSize();
+            if(!spill.push(edit)) {
+                // The edits beyond one that could not be written are useless.
+                spill.clear();
+            }
+        }
+
+        while(getSpilledBytes() > diskLimit) {
+            if(undoSpill.size() > 0) {
+                undoSpill.dropOldest();
+            } else {
+                redoSpill.dropOldest();
+            }
+        }
+    }
+
+
+    /**
+     * A stack of edits kept in a temporary file. Edits are pushed and popped at
+     * the end of the file, and the oldest can be dropped from its start. The
+     * space of dropped edits is taken back once it is more than the space of
+     * the edits still in the file.
+     */
+    private static class SpillStack {
+
+
+        /**
+         * The file, or null if nothing has been written.
+         */
+        private FileChannel file;
+
+
+        /**
+         * The position of each edit in the file, with the oldest first.
+         */
+        private final Deque<Long> positions = new ArrayDeque<>();
+
+
+        /**
+         * The positions of the first byte in use and the byte after the last.
+         */
+        private long start = 0, end = 0;
+
+
+        /**
+         * Returns the amount of edits in the file.
+         *
+         * @return  The amount of edits.
+         */
+        int size() {
+            return positions.size();
+        }
+
+
+        /**
+         * Returns the amount of the file used by edits.
+         *
+         * @return  The amount of bytes.
+         */
+        long getBytes() {
+            return end - start;
+        }
+
+
+        /**
+         * Writes an edit to the end of the file.
+         *
+         * @param edit  The edit to write.
+         * @return  true if the edit was written; false if it was forgotten.
+         */
+        boolean push(Edit edit) {
+            edit.endRun();
+            long length = RECORD_HEADER + 2L * (edit.removed.length() + edit.inserted.length());
+            if(length > Integer.MAX_VALUE) {
+                return false;
+            }
+
+            try {
+                if(file == null) {
+                    file = FileChannel.open(Files.createTempFile("texteditor-undo", ".tmp"),
+                            StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+                }
+
+                ByteBuffer record = ByteBuffer.allocate((int)length);
+                record.putInt(edit.offset);
+                record.putInt(edit.removed.length());
+                record.putInt(edit.inserted.length());
+                record.asCharBuffer().put(edit.removed).put(edit.inserted);
+                record.clear();
+
+                long position = end;
+                while(record.hasRemaining()) {
+                    position += file.write(record, position);
+                }
+
+                positions.addLast(end);
+                end = position;
+                return true;
+            } catch(IOException e) {
+                return false;
+            }
+        }
+
+
+        /**
+         * Reads the newest edit back and removes it from the file.
+         *
+         * @return  The edit, or null if there is none or it could not be read.
+         */
+        Edit pop() {
+            Long position = positions.pollLast();
+            if(position == null) {
+                return null;
+            }
+
+            try {
+                ByteBuffer record = ByteBuffer.allocate((int)(end - position));
+                read(record, position);
+                record.flip();
+
+                int offset = record.getInt();
+                char[] removed = new char[record.getInt()];
+                char[] inserted = new char[record.getInt()];
+                record.asCharBuffer().get(removed).get(inserted);
+
+                end = position;
+                if(positions.isEmpty()) {
+                    clear();
+                } else {
+                    file.truncate(end);
+                }
+                return new Edit(offset, new String(removed), new String(inserted));
+            } catch(IOException e) {
+                clear();
+                return null;
+            }
+        }
+
+
+        /**
+         * Forgets the oldest edit in the file.
+         */
+        void dropOldest() {
+            positions.pollFirst();
+            if(positions.isEmpty()) {
+                clear();
+            } else {
+                start = positions.peekFirst();
+                if(start > end - start) {
+                    compact();
+                }
+            }
+        }
+
+
+        /**
+         * Forgets every edit in the file and empties it.
+         */
+        void clear() {
+            positions.clear();
+            start = 0;
+            end = 0;
+
+            if(file != null) {
+                try {
+                    file.truncate(0);
+                } catch(IOException e) {
+                    // The space is used again by the next edit written.
+                }
+            }
+        }
+
+
+        /**
+         * Deletes the file.
+         */
+        void close() {
+            clear();
+            if(file != null) {
+                try {
+                    file.close();
+                } catch(IOException e) {
+                    // The file is deleted when the program exits.
+                }
+                file = null;
+            }
+        }
+
+
+        /**
+         * Moves the edits in the file to its start, so the space of dropped
+         * edits can be used again.
+         */
+        private void compact() {
+            ByteBuffer buffer = BufferPool.acquire();
+            try {
+                long from = start;
+                long to = 0;
+
+                // The edits only move towards the start, so copying from the
+                // front never writes over bytes that have not been copied yet.
+                while(from < end) {
+                    buffer.clear();
+                    buffer.limit((int)Math.min(buffer.capacity(), end - from));
+                    read(buffer, from);
+                    buffer.flip();
+                    from += buffer.remaining();
+                    while(buffer.hasRemaining()) {
+                        to += file.write(buffer, to);
+                    }
+                }
+
+                int count = positions.size();
+                for(int i = 0; i < count; i++) {
+                    positions.addLast(positions.pollFirst() - start);
+                }
+                end -= start;
+                start = 0;
+                file.truncate(end);
+            } catch(IOException e) {
+                clear();
+            } finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+
+        /**
+         * Fills a buffer from the file.
+         *
+         * @param buffer    The buffer to fill.
+         * @param position  The position in the file to read from.
+         * @throws IOException  If the file could not be read or ended early.
+         */
+        private void read(ByteBuffer buffer, long position) throws IOException {
+            int first = buffer.position();
+            while(buffer.hasRemaining()) {
+                if(file.read(buffer, position + buffer.position() - first) < 0) {
+                    throw new IOException("The undo history ended early.");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A single edit that can be undone.
+     */
+    static class Edit {
+
+
+        /**
+         * The kinds of run an edit can be the start of.
+         */
+        private static final int TYPING = 1, BACKSPACE = 2, DELETE = 3;
+
+
+        /**
+         * The offset the edit was made at.
+         */
+        int offset;
+
+
+        /**
+         * The text that the edit removed.
+         */
+        String removed;
+
+
+        /**
+         * The text that the edit inserted.
+         */
+        String inserted;
+
+
+        /**
+         * The text of the run this edit is the start of, while more edits are
+         * being joined onto it, or null if there is no run or it has ended.
+         * Joining onto a String would copy the whole run for every character,
+         * so the run is built here and only becomes removed or inserted when it
+         * ends. Backspaced text is kept backwards, so that each character can
+         * be added at the end.
+         */
+        private StringBuilder run;
+
+
+        /**
+         * Whether the run is typing, backspacing or deleting forwards.
+         */
+        private int runKind;
+
+
+        /**
+         * Creates an Edit.
+         *
+         * @param offset    The offset the edit was made at.
+         * @param removed   The text that was removed.
+         * @param inserted  The text that was inserted.
+         */
+        Edit(int offset, String removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+
+        /**
+         * Returns the memory the edit is counted as using.
+         *
+         * @return  The amount of bytes.
+         */
+        long getSize() {
+            return EDIT_OVERHEAD + 2L * (getRemovedLength() + getInsertedLength());
+        }
+
+
+        /**
+         * Returns the length of the text the edit removed, including the run
+         * being joined onto it.
+         *
+         * @return  The amount of characters removed.
+         */
+        private int getRemovedLength() {
+            return run != null && runKind != TYPING ? run.length() : removed.length();
+        }
+
+
+        /**
+         * Returns the length of the text the edit inserted, including the run
+         * being joined onto it.
+         *
+         * @return  The amount of characters inserted.
+         */
+        private int getInsertedLength() {
+            return run != null && runKind == TYPING ? run.length() : inserted.length();
+        }
+
+
+        /**
+         * Joins the next edit onto this one if it carries on the same run of
+         * typing, of backspacing or of deleting forwards. Runs end at new lines,
+         * so undo takes back a line at a time.
+         *
+         * @param next  The edit made after this one.
+         * @return  true if the edits were joined; false if not.
+         */
+        boolean join(Edit next) {
+            if(getRemovedLength() == 0 && next.removed.isEmpty()
+                    && next.inserted.length() == 1 && !next.inserted.equals("\n")
+                    && next.offset == offset + getInsertedLength()) {
+                extendRun(TYPING, next.inserted.charAt(0));
+                return true;
+            }
+
+            if(getInsertedLength() == 0 && next.inserted.isEmpty()
+                    && next.removed.length() == 1 && !next.removed.equals("\n")) {
+                if(next.offset + 1 == offset) {
+                    extendRun(BACKSPACE, next.removed.charAt(0));
+                    offset = next.offset;
+                    return true;
+                } else if(next.offset == offset) {
+                    extendRun(DELETE, next.removed.charAt(0));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+
+        /**
+         * Adds a character to the run this edit is the start of, starting the
+         * run if there is none, or a new one if the run was of another kind.
+         *
+         * @param kind  The kind of run the character carries on.
+         * @param c     The character typed or removed.
+         */
+        private void extendRun(int kind, char c) {
+            if(run != null && runKind != kind) {
+                endRun();
+            }
+            if(run == null) {
+                run = new StringBuilder(kind == TYPING ? inserted : removed);
+                runKind = kind;
+                if(kind == BACKSPACE) {
+                    reverse(run);
+                }
+            }
+            run.append(c);
+        }
+
+
+        /**
+         * Ends the run this edit is the start of, turning the text of the run
+         * into the text the edit removed or inserted. This is called before
+         * the edit is read, and when an edit that can not be joined onto it is
+         * made.
+         */
+        void endRun() {
+            if(run == null) {
+                return;
+            }
+            if(runKind == BACKSPACE) {
+                reverse(run);
+            }
+            if(runKind == TYPING) {
+                inserted = run.toString();
+            } else {
+                removed = run.toString();
+            }
+            run = null;
+        }
+
+
+        /**
+         * Reverses the characters of a StringBuilder one by one. Unlike
+         * StringBuilder.reverse, surrogate pairs are not kept in order, so
+         * reversing twice always gives back the same text.
+         *
+         * @param text  The text to reverse.
+         */
+        private static void reverse(StringBuilder text) {
+            for(int i = 0, j = text.length() - 1; i < j; i++, j--) {
+                char c = text.charAt(i);
+                text.setCharAt(i, text.charAt(j));
+                text.setCharAt(j, c);
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+
+/**
+ * The file of an EditingArea as it was when the editor last read or wrote it.
+ * When the FileWatcher says the file may have changed, it is compared with
+ * what it was to find out whether another program changed it, and how.
+ *
+ * Besides the size and modification time, a checksum of the last few
+ * kilobytes is kept. A file that has grown but still has the same bytes where
+ * it used to end is taken to have had text appended, the way logs grow, and
+ * only the bytes after the old end are read.
+ */
+public class WatchedFile {
+
+
+    /**
+     * The amount of bytes before the end of the file that the checksum covers.
+     */
+    private static final int TAIL_SIZE = 4096;
+
+
+    /**
+     * The most bytes read as appended text. A file that grows more than this
+     * at once is read again as a whole.
+     */
+    private static final int MAX_APPENDED_SIZE = 64 * 1024 * 1024;
+
+
+    /**
+     * The ways a file can have changed.
+     */
+    public enum Kind {
+
+        /**
+         * The file is as it was.
+         */
+        UNCHANGED,
+
+        /**
+         * Text was added to the end of the file.
+         */
+        APPENDED,
+
+        /**
+         * The file was changed some other way, and has to be read again.
+         */
+        CHANGED,
+
+        /**
+         * The file no longer exists.
+         */
+        DELETED
+    }
+
+
+    /**
+     * The EditingArea the file is open in.
+     */
+    private final EditingArea editingArea;
+
+
+    /**
+     * The absolute path of the file.
+     */
+    private final Path path;
+
+
+    /**
+     * The charset text appended to the file is decoded in.
+     */
+    private Charset charset;
+
+
+    /**
+     * How the file is compressed. Bytes appended to a compressed file can not
+     * be decoded on their own, so it is read again instead.
+     */
+    private Compression compression;
+
+
+    /**
+     * What the file was like when it was last looked at.
+     */
+    private State state = State.MISSING;
+
+
+    /**
+     * Creates a WatchedFile for the current file of an EditingArea. Its state
+     * is not known until update is called.
+     *
+     * @param editingArea   The EditingArea the file is open in.
+     */
+    public WatchedFile(EditingArea editingArea) {
+        this.editingArea = editingArea;
+        this.path = editingArea.getCurrentFile().toPath().toAbsolutePath();
+        this.charset = editingArea.getCharset();
+        this.compression = editingArea.getCompression();
+    }
+
+
+    /**
+     * Returns the EditingArea the file is open in.
+     *
+     * @return  The EditingArea.
+     */
+    public EditingArea getEditingArea() {
+        return editingArea;
+    }
+
+
+    /**
+     * Returns the absolute path of the file.
+     *
+     * @return  The path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+
+    /**
+     * Returns whether or not the file was missing when it was last looked at.
+     *
+     * @return  true if the file does not exist; false if it does.
+     */
+    public synchronized boolean isMissing() {
+        return state == State.MISSING;
+    }
+
+
+    /**
+     * Returns the size of the file when it was last looked at.
+     *
+     * @return  The size in bytes, or -1 if the file was missing.
+     */
+    public synchronized long getSize() {
+        return state.size;
+    }
+
+
+    /**
+     * Takes what the file is like right now as what the editor last read or
+     * wrote. This is called once the file has been loaded or saved.
+     */
+    public synchronized void update() {
+        update(Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Takes the file up to an offset as what the editor last read, so that
+     * anything written past the offset is found to have been appended. This
+     * is called when a FileFollower stops following the file.
+     *
+     * @param size  The offset the editor read up to.
+     */
+    public synchronized void update(long size) {
+        charset = editingArea.getCharset();
+        compression = editingArea.getCompression();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            state = readState(channel, Files.getLastModifiedTime(path).toMillis(), Math.min(size, channel.size()));
+        } catch(IOException e) {
+            state = State.MISSING;
+        }
+    }
+
+
+    /**
+     * Compares the file with what it was when it was last looked at, and takes
+     * what it is now as what it was. This runs on the watcher thread.
+     *
+     * @return  How the file changed.
+     */
+    synchronized Change examine() {
+        State old = state;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch(NoSuchFileException e) {
+            state = State.MISSING;
+            return new Change(this, old == State.MISSING ? Kind.UNCHANGED : Kind.DELETED, null);
+        } catch(IOException e) {
+            return new Change(this, Kind.UNCHANGED, null);
+        }
+
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        if(old != State.MISSING && size == old.size && modified == old.modified) {
+            return new Change(this, Kind.UNCHANGED, null);
+        }
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            if(compression == Compression.NONE && old != State.MISSING && size > old.size
+                    && size - old.size <= MAX_APPENDED_SIZE
+                    && readState(channel, old.modified, old.size).tailHash == old.tailHash) {
+                ByteBuffer bytes = ByteBuffer.allocate((int)(size - old.size));
+                while(bytes.hasRemaining() && channel.read(bytes, old.size + bytes.position()) > 0) {
+                    // Keep reading until the buffer is full or the file ends.
+                }
+                bytes.flip();
+
+                CharsetDecoder decoder = CharsetDetector.newDecoder(charset, false);
+                CharBuffer chars = CharBuffer.allocate((int)(bytes.remaining() * (double)decoder.maxCharsPerByte()) + 1);
+
+                // Bytes at the end that do not make a whole character yet are
+                // left for the next time the file grows.
+                decoder.decode(bytes, chars, false);
+                chars.flip();
+
+                state = readState(channel, modified, old.size + bytes.position());
+                return new Change(this, Kind.APPENDED, normalizeLineEndings(chars, old.endsWithCR));
+            }
+
+            state = readState(channel, modified, size);
+            return new Change(this, Kind.CHANGED, null);
+        } catch(IOException e) {
+            state = State.MISSING;
+            return new Change(this, old == State.MISSING ? Kind.UNCHANGED : Kind.DELETED, null);
+        }
+    }
+
+
+    /**
+     * Reads the checksum of the bytes before an offset in a file, and whether
+     * or not they end in a carriage return.
+     *
+     * @param channel   The file.
+     * @param modified  The modification time to store in the state.
+     * @param size      The offset, which is taken as the size of the file.
+     * @return  The state of the file up to the offset.
+     * @throws IOException  If the file could not be read.
+     */
+    private State readState(FileChannel channel, long modified, long size) throws IOException {
+        int length = (int)Math.min(TAIL_SIZE, size);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        while(tail.hasRemaining() && channel.read(tail, size - length + tail.position()) > 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(tail.array(), 0, tail.position());
+
+        byte[] cr = "\r".getBytes(charset);
+        boolean endsWithCR = tail.position() >= cr.length && Arrays.equals(tail.array(),
+                tail.position() - cr.length, tail.position(), cr, 0, cr.length);
+        return new State(size, modified, crc.getValue(), endsWithCR);
+    }
+
+
+    /**
+     * Turns the line endings of appended text into "\n", the way FileLoader
+     * does.
+     *
+     * @param chars         The appended text.
+     * @param afterCR       Whether or not the file ended in a '\r' before the
+     *                      text was appended, so a '\n' at the start of the text
+     *                      finishes a line ending that is already in the
+     *                      document.
+     * @return  The text with its line endings turned into "\n".
+     */
+    private static String normalizeLineEndings(CharBuffer chars, boolean afterCR) {
+        StringBuilder text = new StringBuilder(chars.remaining());
+        boolean lastWasCR = afterCR;
+        while(chars.hasRemaining()) {
+            char c = chars.get();
+            if(c == '\r') {
+                text.append('\n');
+            } else if(c != '\n' || !lastWasCR) {
+                text.append(c);
+            }
+            lastWasCR = c == '\r';
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * What a file was like at one moment.
+     */
+    private static class State {
+
+
+        /**
+         * The state of a file that does not exist, or has not been looked at.
+         */
+        static final State MISSING = new State(-1, 0, 0, false);
+
+
+        /**
+         * The size of the file in bytes.
+         */
+        final long size;
+
+
+        /**
+         * When the file was last modified, in milliseconds.
+         */
+        final long modified;
+
+
+        /**
+         * The checksum of the last bytes of the file.
+         */
+        final long tailHash;
+
+
+        /**
+         * Whether or not the file ends in a carriage return.
+         */
+        final boolean endsWithCR;
+
+
+        /**
+         * Creates a State.
+         *
+         * @param size          The size of the file.
+         * @param modified      When the file was last modified.
+         * @param tailHash      The checksum of the last bytes of the file.
+         * @param endsWithCR    Whether or not the file ends in a '\r'.
+         */
+        State(long size, long modified, long tailHash, boolean endsWithCR) {
+            this.size = size;
+            this.modified = modified;
+            this.tailHash = tailHash;
+            this.endsWithCR = endsWithCR;
+        }
+    }
+
+
+    /**
+     * How a WatchedFile was found to have changed.
+     */
+    public static class Change {
+
+
+        /**
+         * The file that changed.
+         */
+        private final WatchedFile watchedFile;
+
+
+        /**
+         * How the file changed.
+         */
+        private final Kind kind;
+
+
+        /**
+         * The text appended to the file, with its line endings turned into
+         * "\n", or null if nothing was appended.
+         */
+        private final String appendedText;
+
+
+        /**
+         * Creates a Change.
+         *
+         * @param watchedFile   The file that changed.
+         * @param kind          How the file changed.
+         * @param appendedText  The text appended to the file, or null.
+         */
+        private Change(WatchedFile watchedFile, Kind kind, String appendedText) {
+            this.watchedFile = watchedFile;
+            this.kind = kind;
+            this.appendedText = appendedText;
+        }
+
+
+        /**
+         * Returns the file that changed.
+         *
+         * @return  The WatchedFile.
+         */
+        public WatchedFile getWatchedFile() {
+            return watchedFile;
+        }
+
+
+        /**
+         * Returns how the file changed.
+         *
+         * @return  The kind of change.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+
+        /**
+         * Returns the text appended to the file.
+         *
+         * @return  The appended text, or null if the file did not grow.
+         */
+        public String getAppendedText() {
+            return appendedText;
+        }
+    }
+}
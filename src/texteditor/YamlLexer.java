@@ -0,0 +1,185 @@
+package texteditor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * A Lexer for YAML. A block scalar, started by a value of | or >, goes on for
+ * every line indented more than the line that started it, so a line that
+ * starts inside one is in the state 1 plus the indentation of that line.
+ */
+public class YamlLexer implements Lexer {
+
+
+    /**
+     * The plain values that are literals rather than strings.
+     */
+    private static final Set<String> LITERALS = new HashSet<>(Arrays.asList(
+            "true", "false", "True", "False", "TRUE", "FALSE", "yes", "no", "on", "off",
+            "null", "Null", "NULL", "~"));
+
+
+    /*
+     * Finds the keys, values, comments and block scalars of a line.
+     */
+    @Override
+    public int tokenize(CharSequence text, int start, int end, int state, TokenSink sink) {
+        int indent = 0;
+        while(start + indent < end && text.charAt(start + indent) == ' ') {
+            indent++;
+        }
+
+        // The lines of a block scalar are indented more than the key above it.
+        // Blank lines do not end it.
+        if(state != INITIAL_STATE) {
+            if(start + indent == end) {
+                return state;
+            }
+            if(indent > state - 1) {
+                sink.token(start, end, TokenType.STRING);
+                return state;
+            }
+        }
+
+        int i = start + indent;
+        if(indent == 0 && (Lexers.startsWith(text, "---", i, end) || Lexers.startsWith(text, "...", i, end))
+                && (i + 3 == end || text.charAt(i + 3) == ' ')) {
+            sink.token(i, i + 3, TokenType.KEYWORD);
+            i += 3;
+        }
+
+        // Items of a list start with a dash.
+        while(i + 1 < end && text.charAt(i) == '-' && text.charAt(i + 1) == ' ') {
+            i = skipSpaces(text, i + 2, end);
+        }
+
+        int colon = findKeyEnd(text, i, end);
+        if(colon >= 0) {
+            sink.token(i, colon, TokenType.KEY);
+            i = colon + 1;
+        }
+
+        i = skipSpaces(text, i, end);
+        if(i < end && (text.charAt(i) == '|' || text.charAt(i) == '>')) {
+            int close = i + 1;
+            while(close < end && "+-0123456789".indexOf(text.charAt(close)) >= 0) {
+                close++;
+            }
+            sink.token(i, close, TokenType.KEYWORD);
+            scanValues(text, close, end, sink);
+            return indent + 1;
+        }
+
+        scanValues(text, i, end, sink);
+        return INITIAL_STATE;
+    }
+
+
+    /**
+     * Finds the colon that ends the key at the start of a line.
+     *
+     * @param text  The text.
+     * @param start The offset the key would start at.
+     * @param end   The end of the line.
+     * @return  The offset of the colon, or -1 if the line does not start with
+     *          a key.
+     */
+    private static int findKeyEnd(CharSequence text, int start, int end) {
+        int i = start;
+        if(i < end && (text.charAt(i) == '"' || text.charAt(i) == '\'')) {
+            i = Lexers.endOfQuoted(text, i, end);
+        }
+
+        for(; i < end; i++) {
+            char c = text.charAt(i);
+            if(c == ':' && (i + 1 == end || text.charAt(i + 1) == ' ' || text.charAt(i + 1) == '\t')) {
+                return i > start ? i : -1;
+            }
+            if(c == '#' && i > start && text.charAt(i - 1) == ' ' || "{}[],\"'".indexOf(c) >= 0 && i > start) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Finds the comments, strings, anchors and plain values in the rest of a
+     * line.
+     *
+     * @param text  The text.
+     * @param start The offset to start at.
+     * @param end   The end of the line.
+     * @param sink  Is given the tokens.
+     */
+    private static void scanValues(CharSequence text, int start, int end, TokenSink sink) {
+        if(sink == NONE) {
+            return;
+        }
+
+        int i = start;
+        while(i < end) {
+            char c = text.charAt(i);
+            if(c == '#' && (i == start || Character.isWhitespace(text.charAt(i - 1)))) {
+                sink.token(i, end, TokenType.COMMENT);
+                return;
+            } else if(c == '"' || c == '\'') {
+                int close = Lexers.endOfQuoted(text, i, end);
+                sink.token(i, close, TokenType.STRING);
+                i = close;
+            } else if(Character.isWhitespace(c) || "{}[],:-?".indexOf(c) >= 0) {
+                i++;
+            } else {
+                int close = i;
+                while(close < end && !Character.isWhitespace(text.charAt(close))
+                        && ",]}".indexOf(text.charAt(close)) < 0) {
+                    close++;
+                }
+                String word = text.subSequence(i, close).toString();
+                if(c == '&' || c == '*' || c == '!') {
+                    sink.token(i, close, TokenType.ANNOTATION);
+                } else if(LITERALS.contains(word)) {
+                    sink.token(i, close, TokenType.LITERAL);
+                } else if(isNumber(word)) {
+                    sink.token(i, close, TokenType.NUMBER);
+                }
+                i = close;
+            }
+        }
+    }
+
+
+    /**
+     * Returns whether or not a plain value is a number.
+     *
+     * @param word  The value.
+     * @return  true if the value is a number; false if not.
+     */
+    private static boolean isNumber(String word) {
+        try {
+            Double.parseDouble(word);
+            return !word.endsWith("d") && !word.endsWith("f") && !word.endsWith("D") && !word.endsWith("F");
+        } catch(NumberFormatException e) {
+            return word.startsWith("0x") && word.length() > 2;
+        }
+    }
+
+
+    /**
+     * Returns the offset of the first character that is not a space.
+     *
+     * @param text  The text.
+     * @param start The offset to start at.
+     * @param end   The end of the line.
+     * @return  The offset of the first other character, or end.
+     */
+    private static int skipSpaces(CharSequence text, int start, int end) {
+        int i = start;
+        while(i < end && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+}